@@ -0,0 +1,13 @@
+-- Indizes fuer die Zugriffe von CoolingJdbc und CoolingService.
+-- Eingespielt mit de.htwberlin.dbtech.utils.SchemaMigrator.
+
+-- Suche eines passenden Tabletts: Gleichheit auf DiameterInCM, Bereich auf
+-- ExpirationDate, TrayID fuer die Sortierung; die Abfrage kommt ohne
+-- Tabellenzugriff aus.
+create index ix_tray_diameter_expiration on Tray(DiameterInCM, ExpirationDate, TrayID);
+
+-- Platz einer Probe. Wird ausserdem beim Loeschen von Proben fuer die
+-- Pruefung des Fremdschluessels fk_sample gebraucht, ohne Index liest Oracle
+-- dafuer je Probe die ganze Tabelle Place.
+-- Place.TrayID ist ueber den Primaerschluessel (TrayID, PlaceNo) indiziert.
+create index ix_place_sample on Place(SampleID);
@@ -0,0 +1,53 @@
+-- Belegung je Tablett. Wird von Triggern auf Tray und Place in derselben
+-- Anweisung mitgefuehrt, die Tabellen Tray und Place selbst bleiben
+-- unveraendert. Ein TRUNCATE umgeht die Trigger, dann hilft nur ein erneutes
+-- Befuellen wie unten.
+create table TrayFill (
+  TrayID            integer         not null,
+  DiameterInCM      integer         not null,
+  Capacity          integer         not null,
+  ExpirationDate    date            null,
+  Occupied          integer         default 0 not null,
+  HasFreeSpace      as (case when Occupied < Capacity then 1 else 0 end),
+  constraint pk_trayfill primary key(TrayID),
+  constraint fk_trayfill_tray foreign key (TrayID) references Tray on delete cascade
+);
+
+-- Suche eines nicht vollen Tabletts: Gleichheit auf DiameterInCM und
+-- HasFreeSpace, Bereich auf ExpirationDate.
+create index ix_trayfill_free on TrayFill(DiameterInCM, HasFreeSpace, ExpirationDate, TrayID);
+
+insert into TrayFill (TrayID, DiameterInCM, Capacity, ExpirationDate, Occupied)
+select t.TrayID, t.DiameterInCM, t.Capacity, t.ExpirationDate,
+       (select count(*) from Place p where p.TrayID = t.TrayID)
+from Tray t;
+
+create or replace trigger tr_tray_fill
+after insert or update of DiameterInCM, Capacity, ExpirationDate on Tray
+for each row
+begin
+  if inserting then
+    insert into TrayFill (TrayID, DiameterInCM, Capacity, ExpirationDate, Occupied)
+    values (:new.TrayID, :new.DiameterInCM, :new.Capacity, :new.ExpirationDate, 0);
+  else
+    update TrayFill
+       set DiameterInCM = :new.DiameterInCM,
+           Capacity = :new.Capacity,
+           ExpirationDate = :new.ExpirationDate
+     where TrayID = :new.TrayID;
+  end if;
+end;
+/
+
+create or replace trigger tr_place_fill
+after insert or update of TrayID or delete on Place
+for each row
+begin
+  if inserting or updating then
+    update TrayFill set Occupied = Occupied + 1 where TrayID = :new.TrayID;
+  end if;
+  if deleting or updating then
+    update TrayFill set Occupied = Occupied - 1 where TrayID = :old.TrayID;
+  end if;
+end;
+/
@@ -0,0 +1,8 @@
+-- Indizes fuer findSamplesExpiringBetween und findTraysExpiringBetween in
+-- CoolingJdbc. Die Seiten werden nach (ExpirationDate, ID) sortiert gelesen,
+-- der Index liefert diese Reihenfolge ohne Sortierung und ohne Full Scan.
+create index ix_sample_expiration on Sample(ExpirationDate, SampleID);
+
+-- ix_tray_diameter_expiration beginnt mit DiameterInCM und taugt daher nicht
+-- fuer eine Bereichssuche nur ueber das Datum.
+create index ix_tray_expiration on Tray(ExpirationDate, TrayID);
@@ -0,0 +1,25 @@
+-- Zaehler je Tablett, der bei jeder Aenderung seiner Plaetze steigt.
+-- TrayOccupancy.catchUp vergleicht ihn mit der gelesenen Version und liest
+-- nur die Plaetze geaenderter Tabletts neu. Anzahl oder Summen der PlaceNo
+-- reichen dafuer nicht, verschiedene Belegungen koennen gleich aussehen.
+alter table TrayFill add Version integer default 0 not null;
+
+-- wie in V002, zusaetzlich Version und Aenderungen der PlaceNo
+create or replace trigger tr_place_fill
+after insert or update of TrayID, PlaceNo or delete on Place
+for each row
+begin
+  if inserting or updating then
+    update TrayFill
+       set Occupied = Occupied + 1,
+           Version = Version + 1
+     where TrayID = :new.TrayID;
+  end if;
+  if deleting or updating then
+    update TrayFill
+       set Occupied = Occupied - 1,
+           Version = Version + 1
+     where TrayID = :old.TrayID;
+  end if;
+end;
+/
@@ -2,9 +2,15 @@
 -- drop sequence seq_sample;
 -- drop sequence seq_samplekind;
 
+-- aus migrations/V002
+drop table TrayFill;
+
 drop table Place;
 drop table Sample;
 drop table SampleKind;
 drop table Tray;
 
+-- von SchemaMigrator angelegt
+drop table schema_history;
+
 commit;
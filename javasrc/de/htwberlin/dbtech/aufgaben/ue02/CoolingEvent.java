@@ -0,0 +1,102 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Ereignisse der Kuehlschrank-Dienste, veroeffentlicht ueber einen EventBus,
+ * nachdem die Aenderung festgeschrieben ist.
+ */
+public abstract class CoolingEvent {
+
+  /**
+   * CoolingJdbc.createSample
+   */
+  public static class SampleCreated extends CoolingEvent {
+    private final int sampleId;
+    private final int sampleKindId;
+    private final LocalDate expirationDate;
+
+    public SampleCreated(int sampleId, int sampleKindId, LocalDate expirationDate) {
+      this.sampleId = sampleId;
+      this.sampleKindId = sampleKindId;
+      this.expirationDate = expirationDate;
+    }
+
+    public int getSampleId() {
+      return sampleId;
+    }
+
+    public int getSampleKindId() {
+      return sampleKindId;
+    }
+
+    public LocalDate getExpirationDate() {
+      return expirationDate;
+    }
+
+    @Override
+    public String toString() {
+      return "SampleCreated[sampleId=" + sampleId + ", sampleKindId=" + sampleKindId + ", expirationDate="
+          + expirationDate + "]";
+    }
+  }
+
+  /**
+   * ICoolingService.transferSample
+   */
+  public static class SamplePlaced extends CoolingEvent {
+    private final int sampleId;
+    private final int trayId;
+    private final int placeNo;
+
+    public SamplePlaced(int sampleId, int trayId, int placeNo) {
+      this.sampleId = sampleId;
+      this.trayId = trayId;
+      this.placeNo = placeNo;
+    }
+
+    public int getSampleId() {
+      return sampleId;
+    }
+
+    public int getTrayId() {
+      return trayId;
+    }
+
+    public int getPlaceNo() {
+      return placeNo;
+    }
+
+    @Override
+    public String toString() {
+      return "SamplePlaced[sampleId=" + sampleId + ", trayId=" + trayId + ", placeNo=" + placeNo + "]";
+    }
+  }
+
+  /**
+   * CoolingJdbc.clearTray, mit den entsorgten Proben.
+   */
+  public static class TrayCleared extends CoolingEvent {
+    private final int trayId;
+    private final int[] sampleIds;
+
+    public TrayCleared(int trayId, int[] sampleIds) {
+      this.trayId = trayId;
+      this.sampleIds = sampleIds.clone();
+    }
+
+    public int getTrayId() {
+      return trayId;
+    }
+
+    public int[] getSampleIds() {
+      return sampleIds.clone();
+    }
+
+    @Override
+    public String toString() {
+      return "TrayCleared[trayId=" + trayId + ", sampleIds=" + Arrays.toString(sampleIds) + "]";
+    }
+  }
+}
@@ -6,13 +6,17 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.Stream;
 
 import de.htwberlin.dbtech.exceptions.DataException;
 import de.htwberlin.dbtech.exceptions.CoolingSystemException;
 import de.htwberlin.dbtech.utils.DateUtils;
+import de.htwberlin.dbtech.utils.EventBus;
+import de.htwberlin.dbtech.utils.EventOutbox;
+import de.htwberlin.dbtech.utils.IntList;
 import de.htwberlin.dbtech.utils.JdbcUtils;
+import de.htwberlin.dbtech.utils.KeysetStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,14 +25,63 @@ public class CoolingJdbc implements ICoolingJdbc {
   // Logger zur Ausgabe von Informationen und Fehlern
   private static final Logger L = LoggerFactory.getLogger(CoolingJdbc.class);
 
+  // SQL der Zugriffe, package-private fuer die Pruefung der Ausfuehrungsplaene
+  static final String SQL_SAMPLE_KINDS = "SELECT text FROM samplekind ORDER BY samplekindid ASC";
+  static final String SQL_FIND_SAMPLE = "SELECT samplekindid, expirationdate FROM sample WHERE sampleid = ?";
+  static final String SQL_SAMPLE_EXISTS = "SELECT 1 FROM sample WHERE sampleid = ?";
+  static final String SQL_SAMPLE_KIND_DAYS = "SELECT validnoofdays FROM samplekind WHERE samplekindid = ?";
+  static final String SQL_INSERT_SAMPLE = "INSERT INTO sample (sampleid, samplekindid, expirationdate) VALUES (?, ?, ?)";
+  static final String SQL_TRAY_EXISTS = "SELECT 1 FROM tray WHERE trayid = ?";
+  static final String SQL_PLACE_SAMPLE_IDS = "SELECT sampleid FROM place WHERE trayid = ?";
+  static final String SQL_DELETE_PLACES = "DELETE FROM place WHERE trayid = ?";
+  static final String SQL_DELETE_SAMPLE = "DELETE FROM sample WHERE sampleid = ?";
+  // Keyset-Paginierung: Bereichsgrenzen, dann nach dem letzten (Datum, ID) der vorigen Seite
+  static final String SQL_SAMPLES_EXPIRING = String.join(" ",
+      "SELECT sampleid, samplekindid, expirationdate FROM sample",
+      "WHERE expirationdate >= ? AND expirationdate <= ?",
+      "AND (expirationdate > ? OR sampleid > ?)",
+      "ORDER BY expirationdate, sampleid FETCH FIRST ? ROWS ONLY");
+  static final String SQL_TRAYS_EXPIRING = String.join(" ",
+      "SELECT trayid, diameterincm, capacity, expirationdate FROM tray",
+      "WHERE expirationdate >= ? AND expirationdate <= ?",
+      "AND (expirationdate > ? OR trayid > ?)",
+      "ORDER BY expirationdate, trayid FETCH FIRST ? ROWS ONLY");
+
+  static final int DEFAULT_PAGE_SIZE = 500;
+
   // Datenbankverbindung
   private Connection connection;
 
+  // Seitengroesse der Streams
+  private int pageSize = DEFAULT_PAGE_SIZE;
+
+  // Ereignisse gehen erst nach dem Commit an den EventBus
+  private final EventOutbox<CoolingEvent> events = new EventOutbox<>();
+
   @Override
   public void setConnection(Connection connection) {
     this.connection = connection;
   }
 
+  public void setEventBus(EventBus<? super CoolingEvent> eventBus) {
+    events.setEventBus(eventBus);
+  }
+
+  /**
+   * Ohne autoCommit nach dem Commit des Aufrufers aufzurufen, veroeffentlicht
+   * die gesammelten Ereignisse.
+   */
+  public EventOutbox<CoolingEvent> events() {
+    return events;
+  }
+
+  public void setPageSize(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("pageSize " + pageSize);
+    }
+    this.pageSize = pageSize;
+  }
+
   // Methode, die die Verbindung verwendet und prüft, ob eine Verbindung vorhanden ist
   private Connection useConnection() {
     if (connection == null) {
@@ -46,12 +99,11 @@ public class CoolingJdbc implements ICoolingJdbc {
   public List<String> getSampleKinds() {
     ResultSet rs = null;
     PreparedStatement ps = null;
-    List<String> samplekind = new LinkedList<>();
-    String query = "SELECT text FROM samplekind ORDER BY samplekindid ASC";
+    List<String> samplekind = new ArrayList<>();
 
     try {
       // Vorbereitung und Ausführung der SQL-Abfrage
-      ps = useConnection().prepareStatement(query);
+      ps = useConnection().prepareStatement(SQL_SAMPLE_KINDS);
       rs = ps.executeQuery();
 
       // Die Ergebnisliste wird durchlaufen und die Bezeichnungen (text) gesammelt
@@ -78,21 +130,25 @@ public class CoolingJdbc implements ICoolingJdbc {
    */
   @Override
   public Sample findSampleById(Integer sampleId) {
+    return findSampleById(sampleId.intValue());
+  }
+
+  @Override
+  public Sample findSampleById(int sampleId) {
     L.info("findSampleById: sampleId: " + sampleId);
     ResultSet rs = null;
     PreparedStatement ps = null;
-    String query = "SELECT samplekindid, expirationdate FROM sample WHERE sampleid = ?";
 
     try {
       // Vorbereitung der Abfrage, die ein Sample mit einer bestimmten ID findet
-      ps = useConnection().prepareStatement(query);
+      ps = useConnection().prepareStatement(SQL_FIND_SAMPLE);
       ps.setInt(1, sampleId);
       rs = ps.executeQuery();
 
       // Wenn das Sample gefunden wird, wird ein Sample-Objekt erstellt und zurückgegeben
       if (rs.next()) {
         Integer sampleKindId = rs.getInt("samplekindid");
-        LocalDate expirationDate = DateUtils.sqlDate2LocalDate(rs.getDate("expirationdate"));
+        LocalDate expirationDate = DateUtils.getLocalDate(rs, "expirationdate");
         return new Sample(sampleId, sampleKindId, expirationDate);
       } else {
         // Wenn kein Sample gefunden wird, wird eine Ausnahme ausgelöst
@@ -123,8 +179,7 @@ public class CoolingJdbc implements ICoolingJdbc {
 
     try {
       // Prüfen, ob das Sample mit dieser ID bereits existiert
-      String checkSampleQuery = "SELECT 1 FROM sample WHERE sampleid = ?";
-      psCheck = useConnection().prepareStatement(checkSampleQuery);
+      psCheck = useConnection().prepareStatement(SQL_SAMPLE_EXISTS);
       psCheck.setInt(1, sampleId);
       rs = psCheck.executeQuery();
 
@@ -133,8 +188,7 @@ public class CoolingJdbc implements ICoolingJdbc {
       }
 
       // Prüfen, ob das SampleKind existiert und gültige Anzahl von Tagen holen
-      String checkSampleKindQuery = "SELECT validnoofdays FROM samplekind WHERE samplekindid = ?";
-      psCheck = useConnection().prepareStatement(checkSampleKindQuery);
+      psCheck = useConnection().prepareStatement(SQL_SAMPLE_KIND_DAYS);
       psCheck.setInt(1, sampleKindId);
       rs = psCheck.executeQuery();
 
@@ -146,12 +200,12 @@ public class CoolingJdbc implements ICoolingJdbc {
       LocalDate expirationDate = LocalDate.now().plusDays(validNoOfDays);
 
       // Das neue Sample wird in die Datenbank eingefügt
-      String insertQuery = "INSERT INTO sample (sampleid, samplekindid, expirationdate) VALUES (?, ?, ?)";
-      psInsert = useConnection().prepareStatement(insertQuery);
+      psInsert = useConnection().prepareStatement(SQL_INSERT_SAMPLE);
       psInsert.setInt(1, sampleId);
       psInsert.setInt(2, sampleKindId);
-      psInsert.setDate(3, DateUtils.localDate2SqlDate(expirationDate));
+      DateUtils.setLocalDate(psInsert, 3, expirationDate);
       psInsert.executeUpdate();
+      events.emit(useConnection(), new CoolingEvent.SampleCreated(sampleId, sampleKindId, expirationDate));
 
     } catch (SQLException e) {
       throw new DataException(e);
@@ -171,57 +225,106 @@ public class CoolingJdbc implements ICoolingJdbc {
    */
   @Override
   public void clearTray(Integer trayId) {
+    clearTray(trayId.intValue());
+  }
+
+  @Override
+  public void clearTray(int trayId) {
     L.info("clearTray: trayId: " + trayId);
     PreparedStatement psCheck = null;
+    PreparedStatement psSelectSampleIds = null;
     PreparedStatement psDeletePlaces = null;
     PreparedStatement psDeleteSamples = null;
+    ResultSet rs = null;
 
     try {
       // Prüfen, ob das Tablett existiert
-      String checkTrayQuery = "SELECT 1 FROM tray WHERE trayid = ?";
-      psCheck = useConnection().prepareStatement(checkTrayQuery);
+      psCheck = useConnection().prepareStatement(SQL_TRAY_EXISTS);
       psCheck.setInt(1, trayId);
-      ResultSet rsCheck = psCheck.executeQuery();
+      rs = psCheck.executeQuery();
 
-      if (!rsCheck.next()) {
+      if (!rs.next()) {
         throw new CoolingSystemException("Tray with ID " + trayId + " does not exist.");
       }
+      JdbcUtils.closeResultSetQuietly(rs);
 
       // Speichern der sampleId-Werte, die mit diesem Tablett verknüpft sind
-      String selectSampleIdsQuery = "SELECT sampleid FROM place WHERE trayid = ?";
-      PreparedStatement psSelectSampleIds = useConnection().prepareStatement(selectSampleIdsQuery);
+      psSelectSampleIds = useConnection().prepareStatement(SQL_PLACE_SAMPLE_IDS);
       psSelectSampleIds.setInt(1, trayId);
-      ResultSet rsSampleIds = psSelectSampleIds.executeQuery();
-
-      List<Integer> sampleIds = new ArrayList<>();
-      while (rsSampleIds.next()) {
-        sampleIds.add(rsSampleIds.getInt("sampleid"));
-      }
-      JdbcUtils.closeResultSetQuietly(rsSampleIds);
-      JdbcUtils.closeStatementQuietly(psSelectSampleIds);
+      rs = psSelectSampleIds.executeQuery();
+      IntList sampleIds = JdbcUtils.readIntList(rs, 1);
 
-      // Löschen der Place-Einträge für das Tablett
-      String deletePlaceQuery = "DELETE FROM place WHERE trayid = ?";
-      psDeletePlaces = useConnection().prepareStatement(deletePlaceQuery);
+      // Löschen der Place-Einträge für das Tablett, der Trigger auf Place
+      // setzt TrayFill.Occupied in derselben Anweisung mit herunter
+      psDeletePlaces = useConnection().prepareStatement(SQL_DELETE_PLACES);
       psDeletePlaces.setInt(1, trayId);
       psDeletePlaces.executeUpdate();
 
-      // Löschen der Samples, die in der sampleIds-Liste gespeichert sind
-      for (Integer sampleId : sampleIds) {
-        String deleteSampleQuery = "DELETE FROM sample WHERE sampleid = ?";
-        psDeleteSamples = useConnection().prepareStatement(deleteSampleQuery);
-        psDeleteSamples.setInt(1, sampleId);
-        psDeleteSamples.executeUpdate();
-        JdbcUtils.closeStatementQuietly(psDeleteSamples); // Jede Abfrage schließen
+      // Löschen der Samples in einem Batch statt einer Anweisung pro Probe
+      if (!sampleIds.isEmpty()) {
+        psDeleteSamples = useConnection().prepareStatement(SQL_DELETE_SAMPLE);
+        for (int i = 0; i < sampleIds.size(); i++) {
+          psDeleteSamples.setInt(1, sampleIds.get(i));
+          psDeleteSamples.addBatch();
+        }
+        psDeleteSamples.executeBatch();
       }
+      events.emit(useConnection(), new CoolingEvent.TrayCleared(trayId, sampleIds.toArray()));
 
     } catch (SQLException e) {
       throw new DataException(e);
     } finally {
       // Ressourcen schließen
+      JdbcUtils.closeResultSetQuietly(rs);
       JdbcUtils.closeStatementQuietly(psCheck);
+      JdbcUtils.closeStatementQuietly(psSelectSampleIds);
       JdbcUtils.closeStatementQuietly(psDeletePlaces);
       JdbcUtils.closeStatementQuietly(psDeleteSamples);
     }
   }
+
+  @Override
+  public Stream<Sample> findSamplesExpiringBetween(LocalDate from, LocalDate to) {
+    L.info("findSamplesExpiringBetween: from: " + from + ", to: " + to);
+    Connection c = useConnection();
+    return KeysetStream.<Sample>of((last, n, page) -> {
+      try (PreparedStatement ps = c.prepareStatement(SQL_SAMPLES_EXPIRING)) {
+        // erste Seite: alles ab from, jede SampleID ist groesser als MIN_VALUE
+        LocalDate lastDate = last == null ? from : last.getExpirationDate();
+        bindPage(ps, lastDate, to, last == null ? Integer.MIN_VALUE : last.getSampleId(), n);
+        try (ResultSet rs = ps.executeQuery()) {
+          while (rs.next()) {
+            page.add(new Sample(rs.getInt(1), rs.getInt(2), DateUtils.getLocalDate(rs, 3)));
+          }
+        }
+      }
+    }, pageSize);
+  }
+
+  @Override
+  public Stream<Tray> findTraysExpiringBetween(LocalDate from, LocalDate to) {
+    L.info("findTraysExpiringBetween: from: " + from + ", to: " + to);
+    Connection c = useConnection();
+    return KeysetStream.<Tray>of((last, n, page) -> {
+      try (PreparedStatement ps = c.prepareStatement(SQL_TRAYS_EXPIRING)) {
+        LocalDate lastDate = last == null ? from : last.getExpirationDate();
+        bindPage(ps, lastDate, to, last == null ? Integer.MIN_VALUE : last.getTrayId(), n);
+        try (ResultSet rs = ps.executeQuery()) {
+          while (rs.next()) {
+            page.add(new Tray(rs.getInt(1), rs.getInt(2), rs.getInt(3), DateUtils.getLocalDate(rs, 4)));
+          }
+        }
+      }
+    }, pageSize);
+  }
+
+  private static void bindPage(PreparedStatement ps, LocalDate lastDate, LocalDate to, int lastId, int n)
+      throws SQLException {
+    DateUtils.setLocalDate(ps, 1, lastDate);
+    DateUtils.setLocalDate(ps, 2, to);
+    DateUtils.setLocalDate(ps, 3, lastDate);
+    ps.setInt(4, lastId);
+    ps.setInt(5, n);
+    ps.setFetchSize(n);
+  }
 }
@@ -0,0 +1,102 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+import static de.htwberlin.dbtech.utils.QueryPlan.assertNoFullScan;
+import static de.htwberlin.dbtech.utils.QueryPlan.distinct;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import de.htwberlin.dbtech.utils.QueryPlan;
+import de.htwberlin.dbtech.utils.SchemaMigrator;
+import de.htwberlin.dbtech.utils.TestDb;
+
+/**
+ * Prueft, dass die Abfragen von CoolingJdbc bei grossen Tabellen ueber einen
+ * Index statt ueber einen Full Scan zugreifen.
+ */
+public class CoolingJdbcQueryPlanTest {
+  private static final String[] TABLES = { "SampleKind", "Tray", "Sample", "Place" };
+  private static Connection connection;
+
+  @BeforeClass
+  public static void setUp() {
+    connection = TestDb.connect();
+    new SchemaMigrator(connection, Paths.get(SchemaMigrator.DEFAULT_DIRECTORY)).migrate();
+    QueryPlan.setTableStats(connection, "SampleKind", 1000, distinct("SampleKindID", 1000));
+    QueryPlan.setTableStats(connection, "Tray", 100000,
+        distinct("TrayID", 100000, "DiameterInCM", 20, "ExpirationDate", 2000));
+    QueryPlan.setTableStats(connection, "Sample", 5000000,
+        distinct("SampleID", 5000000, "SampleKindID", 1000, "ExpirationDate", 2000));
+    QueryPlan.setTableStats(connection, "Place", 5000000,
+        distinct("TrayID", 100000, "PlaceNo", 50, "SampleID", 5000000));
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    try {
+      QueryPlan.deleteTableStats(connection, TABLES);
+    } finally {
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+
+  // SQL_SAMPLE_KINDS liest absichtlich alle Probenarten und wird nicht geprueft
+
+  @org.junit.Test
+  public void testFindSample() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_FIND_SAMPLE);
+  }
+
+  @org.junit.Test
+  public void testSampleExists() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_SAMPLE_EXISTS);
+  }
+
+  @org.junit.Test
+  public void testSampleKindDays() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_SAMPLE_KIND_DAYS);
+  }
+
+  @org.junit.Test
+  public void testTrayExists() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_TRAY_EXISTS);
+  }
+
+  @org.junit.Test
+  public void testPlaceSampleIds() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_PLACE_SAMPLE_IDS);
+  }
+
+  @org.junit.Test
+  public void testDeletePlaces() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_DELETE_PLACES);
+  }
+
+  @org.junit.Test
+  public void testDeleteSample() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_DELETE_SAMPLE);
+  }
+
+  @org.junit.Test
+  public void testSamplesExpiring() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_SAMPLES_EXPIRING);
+  }
+
+  @org.junit.Test
+  public void testTraysExpiring() {
+    assertNoFullScan(connection, CoolingJdbc.SQL_TRAYS_EXPIRING);
+  }
+
+  /**
+   * Platz einer Probe, ueber ix_place_sample. Denselben Zugriff braucht Oracle
+   * beim Loeschen einer Probe fuer die Pruefung von fk_sample.
+   */
+  @org.junit.Test
+  public void testPlaceOfSample() {
+    assertNoFullScan(connection, "SELECT trayid, placeno FROM place WHERE sampleid = ?");
+  }
+}
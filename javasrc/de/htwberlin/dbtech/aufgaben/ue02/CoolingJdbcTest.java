@@ -1,15 +1,14 @@
 package de.htwberlin.dbtech.aufgaben.ue02;
 
-import java.io.File;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.dbunit.Assertion;
 import org.dbunit.DatabaseUnitException;
 import org.dbunit.IDatabaseTester;
-import org.dbunit.JdbcDatabaseTester;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.database.QueryDataSet;
 import org.dbunit.dataset.DataSetException;
@@ -17,9 +16,7 @@ import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.IRowValueProvider;
 import org.dbunit.dataset.ITable;
 import org.dbunit.dataset.RowFilterTable;
-import org.dbunit.dataset.csv.CsvDataSet;
 import org.dbunit.dataset.filter.IRowFilter;
-import org.dbunit.operation.DatabaseOperation;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -29,8 +26,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.htwberlin.dbtech.exceptions.CoolingSystemException;
-import de.htwberlin.dbtech.utils.DbCred;
 import de.htwberlin.dbtech.utils.DbUnitUtils;
+import de.htwberlin.dbtech.utils.FixtureEngine;
+import de.htwberlin.dbtech.utils.StatementCounter;
+import de.htwberlin.dbtech.utils.TestDb;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class CoolingJdbcTest {
@@ -44,13 +43,13 @@ public class CoolingJdbcTest {
   public static void setUp() {
     L.debug("setup: start");
     try {
-      IDatabaseTester dbTester = new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, DbCred.user, DbCred.password,
-          DbCred.schema);
+      IDatabaseTester dbTester = TestDb.tester();
       dbTesterCon = dbTester.getConnection();
-      pre = new CsvDataSet(new File("test-data/ue02"));
-      dbTester.setDataSet(pre);
-      DatabaseOperation.CLEAN_INSERT.execute(dbTesterCon, pre);
-      cj.setConnection(dbTesterCon.getConnection());
+      FixtureEngine.Fixture fixture = FixtureEngine.load("test-data/ue02");
+      TestDb.restore(fixture, dbTesterCon.getConnection());
+      pre = fixture.asDataSet();
+      // zaehlt die Roundtrips je Aufruf, siehe StatementCounter
+      cj.setConnection(StatementCounter.wrap(dbTesterCon.getConnection()));
     } catch (Exception e) {
       DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
       throw new RuntimeException(e);
@@ -72,7 +71,7 @@ public class CoolingJdbcTest {
   @org.junit.Test
   public void aaaGetSampleKinds1() throws SQLException {
     String[] actualSampleKinds = new String[3];
-    List<String> sampleKinds = cj.getSampleKinds();
+    List<String> sampleKinds = StatementCounter.assertMaxRoundTrips(1, () -> cj.getSampleKinds());
     for (int i = 0; i < sampleKinds.size(); i++) {
       actualSampleKinds[i] = sampleKinds.get(i);
     }
@@ -87,7 +86,7 @@ public class CoolingJdbcTest {
    */
   @org.junit.Test
   public void bbbfindSampleById1() throws SQLException {
-    Sample sample = cj.findSampleById(1);
+    Sample sample = StatementCounter.assertMaxRoundTrips(1, () -> cj.findSampleById(1));
     LocalDate d = LocalDate.of(2017, 3, 24);
     Assert.assertEquals(d, sample.getExpirationDate());
   }
@@ -99,7 +98,7 @@ public class CoolingJdbcTest {
    */
   @org.junit.Test(expected = CoolingSystemException.class)
   public void bbbfindSampleById2() throws SQLException {
-    cj.findSampleById(999);
+    StatementCounter.assertMaxRoundTrips(1, () -> cj.findSampleById(999));
   }
 
   /**
@@ -109,7 +108,7 @@ public class CoolingJdbcTest {
    */
   @org.junit.Test(expected = CoolingSystemException.class)
   public void cccCreateSample1() throws SQLException {
-    cj.createSample(1, 1);
+    StatementCounter.assertMaxRoundTrips(1, () -> cj.createSample(1, 1));
   }
 
   /**
@@ -119,7 +118,7 @@ public class CoolingJdbcTest {
    */
   @org.junit.Test(expected = CoolingSystemException.class)
   public void cccCreateSample2() throws SQLException {
-    cj.createSample(1, 999);
+    StatementCounter.assertMaxRoundTrips(1, () -> cj.createSample(1, 999));
   }
 
   /**
@@ -134,7 +133,8 @@ public class CoolingJdbcTest {
     int sampleKindId = 1; // for blood
     int validNoOfDays = 4; // for blood
 
-    cj.createSample(99, sampleKindId);
+    // Pruefung Probe, Pruefung Probenart, Einfuegen
+    StatementCounter.assertMaxRoundTrips(3, () -> cj.createSample(99, sampleKindId));
 
     // Hole Daten aus der Tabelle Sample, ausser Datensatz 99
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -161,7 +161,7 @@ public class CoolingJdbcTest {
    */
   @org.junit.Test(expected = CoolingSystemException.class)
   public void dddClearTray1() throws SQLException {
-    cj.clearTray(999);
+    StatementCounter.assertMaxRoundTrips(1, () -> cj.clearTray(999));
   }
 
   /**
@@ -173,7 +173,7 @@ public class CoolingJdbcTest {
    */
   @org.junit.Test
   public void dddClearTray2() throws SQLException, DatabaseUnitException {
-    cj.clearTray(6);
+    StatementCounter.assertMaxRoundTrips(3, () -> cj.clearTray(6));
 
     // Hole Daten aus der Tabelle Sample, ausser Datensatz 99
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -196,7 +196,8 @@ public class CoolingJdbcTest {
    */
   @org.junit.Test
   public void dddClearTray3() throws SQLException, DatabaseUnitException {
-    cj.clearTray(9);
+    // Pruefung, Proben lesen, Plaetze loeschen, ein Batch fuer alle Proben
+    StatementCounter.assertMaxRoundTrips(4, () -> cj.clearTray(9));
 
     // Hole Daten aus der Tabelle Sample, ausser Datensatz 99
     // Dieser Datensatz wurde durch einen anderen Test eingefuegt
@@ -229,4 +230,41 @@ public class CoolingJdbcTest {
     Assertion.assertEquals(expectedTable, actualTable);
   }
 
+  /**
+   * Test von findSamplesExpiringBetween. Reihenfolge nach Ablaufdatum, bei
+   * gleichem Datum nach SampleID. Die Proben 8 bis 10 hat dddClearTray3
+   * geloescht, Probe 99 liegt ausserhalb des Bereichs.
+   */
+  @org.junit.Test
+  public void eeeFindSamplesExpiringBetween1() {
+    List<Integer> ids = cj.findSamplesExpiringBetween(LocalDate.of(2017, 3, 24), LocalDate.of(2017, 3, 30))
+        .map(Sample::getSampleId).collect(Collectors.toList());
+    Assert.assertEquals(Arrays.asList(1, 3, 4, 5, 6, 7), ids);
+  }
+
+  /**
+   * Test von findSamplesExpiringBetween mit Seiten von 2 Proben, die Seite
+   * endet zwischen den beiden Proben vom 2017-03-30.
+   */
+  @org.junit.Test
+  public void eeeFindSamplesExpiringBetween2() throws SQLException {
+    CoolingJdbc paged = new CoolingJdbc();
+    paged.setConnection(dbTesterCon.getConnection());
+    paged.setPageSize(2);
+    List<Integer> ids = paged.findSamplesExpiringBetween(LocalDate.of(2017, 3, 25), LocalDate.of(2017, 3, 30))
+        .map(Sample::getSampleId).collect(Collectors.toList());
+    Assert.assertEquals(Arrays.asList(3, 4, 5, 6, 7), ids);
+  }
+
+  /**
+   * Test von findTraysExpiringBetween. Tablett 6 ohne Ablaufdatum ist nicht
+   * enthalten.
+   */
+  @org.junit.Test
+  public void eeeFindTraysExpiringBetween1() {
+    List<Integer> ids = cj.findTraysExpiringBetween(LocalDate.of(2017, 3, 23), LocalDate.of(2017, 3, 30))
+        .map(Tray::getTrayId).collect(Collectors.toList());
+    Assert.assertEquals(Arrays.asList(2, 1, 3, 4, 5, 7, 8), ids);
+  }
+
 }
@@ -1,9 +1,12 @@
 package de.htwberlin.dbtech.aufgaben.ue02;
 
 import java.sql.Connection;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 import de.htwberlin.dbtech.exceptions.CoolingSystemException;
+import de.htwberlin.dbtech.exceptions.DataException;
 
 public interface ICoolingJdbc {
 
@@ -31,6 +34,11 @@ public interface ICoolingJdbc {
    */
   Sample findSampleById(Integer sampleId);
 
+  /**
+   * Wie findSampleById(Integer), aber ohne Boxing.
+   */
+  Sample findSampleById(int sampleId);
+
   /**
    * Fuegt einen neuen Proben-Datensatz in die Datenbank ein. Das Ablaufdatum
    * berechnet sich aus dem aktuellen Datum plus Anzahl der gueltigen Tage fuer
@@ -57,4 +65,26 @@ public interface ICoolingJdbc {
    */
   void clearTray(Integer trayId);
 
+  /**
+   * Wie clearTray(Integer), aber ohne Boxing.
+   */
+  void clearTray(int trayId);
+
+  /**
+   * Liefert die Proben, deren Ablaufdatum zwischen from und to liegt (jeweils
+   * einschliesslich), aufsteigend nach Ablaufdatum und SampleID. Die Proben
+   * werden erst beim Verbrauch des Streams seitenweise gelesen.
+   * 
+   * @throws DataException
+   *           bei Datenbankfehlern, auch waehrend des Verbrauchs.
+   */
+  Stream<Sample> findSamplesExpiringBetween(LocalDate from, LocalDate to);
+
+  /**
+   * Wie findSamplesExpiringBetween(LocalDate, LocalDate) fuer Tabletts,
+   * aufsteigend nach Ablaufdatum und TrayID. Tabletts ohne Ablaufdatum sind
+   * nicht enthalten.
+   */
+  Stream<Tray> findTraysExpiringBetween(LocalDate from, LocalDate to);
+
 }
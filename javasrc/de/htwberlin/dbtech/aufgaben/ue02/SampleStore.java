@@ -0,0 +1,231 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DateUtils;
+
+/**
+ * Speicher fuer sehr viele Proben ausserhalb des Java-Heaps.
+ * <p>
+ * Jede Probe belegt einen Satz fester Laenge (sampleId, sampleKindId,
+ * Ablaufdatum als Epoch-Day, je 4 Byte) in einem direkten ByteBuffer. Der
+ * Index ist eine offene Hash-Tabelle, ebenfalls direkt, deren Eintraege auf
+ * die Satznummer zeigen. Sample-Objekte werden erst bei Bedarf erzeugt.
+ * <p>
+ * Nicht threadsicher.
+ */
+public class SampleStore {
+  private static final Logger L = LoggerFactory.getLogger(SampleStore.class);
+
+  /** Rueckgabewert fuer nicht vorhandene Proben. */
+  public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+  private static final int RECORD_SIZE = 12;
+  private static final int F_SAMPLE_ID = 0;
+  private static final int F_SAMPLE_KIND_ID = 4;
+  private static final int F_EXPIRATION = 8;
+  // Index-Eintraege enthalten Satznummer + 1, 0 bedeutet frei
+  private static final int EMPTY = 0;
+  private static final double LOAD_FACTOR = 0.8;
+
+  private ByteBuffer records;
+  private ByteBuffer index;
+  private int slots;
+  private int size;
+
+  public SampleStore() {
+    this(1024);
+  }
+
+  public SampleStore(int expectedSize) {
+    records = ByteBuffer.allocateDirect(Math.max(1, expectedSize) * RECORD_SIZE);
+    slots = slotsFor(expectedSize);
+    index = ByteBuffer.allocateDirect(slots * 4);
+  }
+
+  /**
+   * Laedt alle Proben aus der Datenbank.
+   */
+  public static SampleStore load(Connection connection) {
+    String sql = "SELECT SampleID, SampleKindID, ExpirationDate FROM Sample";
+    L.info(sql);
+    SampleStore store = new SampleStore();
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      ps.setFetchSize(10000);
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          store.put(rs.getInt(1), rs.getInt(2), DateUtils.getEpochDay(rs, 3));
+        }
+      }
+    } catch (SQLException e) {
+      throw new DataException(e);
+    }
+    L.info("loaded " + store.size() + " samples, " + store.memoryBytes() + " bytes");
+    return store;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Belegter Speicher ausserhalb des Heaps in Byte.
+   */
+  public long memoryBytes() {
+    return (long) records.capacity() + index.capacity();
+  }
+
+  public boolean contains(int sampleId) {
+    return index.getInt(slotOf(sampleId) * 4) != EMPTY;
+  }
+
+  public void put(int sampleId, int sampleKindId, LocalDate expirationDate) {
+    put(sampleId, sampleKindId, DateUtils.toEpochDay(expirationDate));
+  }
+
+  public void put(int sampleId, int sampleKindId, int expirationEpochDay) {
+    int slot = slotOf(sampleId);
+    int ref = index.getInt(slot * 4);
+    int r;
+    if (ref != EMPTY) {
+      r = ref - 1;
+    } else {
+      if (size + 1 > slots * LOAD_FACTOR) {
+        growIndex();
+        slot = slotOf(sampleId);
+      }
+      if ((size + 1) * RECORD_SIZE > records.capacity()) {
+        growRecords();
+      }
+      r = size++;
+      index.putInt(slot * 4, r + 1);
+    }
+    int pos = r * RECORD_SIZE;
+    records.putInt(pos + F_SAMPLE_ID, sampleId);
+    records.putInt(pos + F_SAMPLE_KIND_ID, sampleKindId);
+    records.putInt(pos + F_EXPIRATION, expirationEpochDay);
+  }
+
+  public int sampleKindId(int sampleId) {
+    int r = recordOf(sampleId);
+    return r < 0 ? NOT_FOUND : records.getInt(r * RECORD_SIZE + F_SAMPLE_KIND_ID);
+  }
+
+  public int expirationEpochDay(int sampleId) {
+    int r = recordOf(sampleId);
+    return r < 0 ? NOT_FOUND : records.getInt(r * RECORD_SIZE + F_EXPIRATION);
+  }
+
+  /**
+   * Erzeugt ein Sample-Objekt fuer die Probe.
+   *
+   * @return das Sample oder null, falls die Probe nicht vorhanden ist.
+   */
+  public Sample get(int sampleId) {
+    int r = recordOf(sampleId);
+    if (r < 0) {
+      return null;
+    }
+    int pos = r * RECORD_SIZE;
+    return new Sample(sampleId, records.getInt(pos + F_SAMPLE_KIND_ID),
+        LocalDate.ofEpochDay(records.getInt(pos + F_EXPIRATION)));
+  }
+
+  public boolean remove(int sampleId) {
+    int slot = slotOf(sampleId);
+    int ref = index.getInt(slot * 4);
+    if (ref == EMPTY) {
+      return false;
+    }
+    deleteSlot(slot);
+    // letzten Satz in die Luecke verschieben, damit die Saetze dicht bleiben
+    int r = ref - 1;
+    int last = --size;
+    if (r != last) {
+      int from = last * RECORD_SIZE;
+      int to = r * RECORD_SIZE;
+      int movedId = records.getInt(from + F_SAMPLE_ID);
+      records.putInt(to + F_SAMPLE_ID, movedId);
+      records.putInt(to + F_SAMPLE_KIND_ID, records.getInt(from + F_SAMPLE_KIND_ID));
+      records.putInt(to + F_EXPIRATION, records.getInt(from + F_EXPIRATION));
+      index.putInt(slotOf(movedId) * 4, r + 1);
+    }
+    return true;
+  }
+
+  private int recordOf(int sampleId) {
+    return index.getInt(slotOf(sampleId) * 4) - 1;
+  }
+
+  // Slot mit der sampleId oder der erste freie Slot der Sondierkette
+  private int slotOf(int sampleId) {
+    int mask = slots - 1;
+    int s = hash(sampleId) & mask;
+    while (true) {
+      int ref = index.getInt(s * 4);
+      if (ref == EMPTY || records.getInt((ref - 1) * RECORD_SIZE + F_SAMPLE_ID) == sampleId) {
+        return s;
+      }
+      s = (s + 1) & mask;
+    }
+  }
+
+  private void deleteSlot(int slot) {
+    int mask = slots - 1;
+    int gap = slot;
+    int j = slot;
+    while (true) {
+      j = (j + 1) & mask;
+      int ref = index.getInt(j * 4);
+      if (ref == EMPTY) {
+        break;
+      }
+      int home = hash(records.getInt((ref - 1) * RECORD_SIZE + F_SAMPLE_ID)) & mask;
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        index.putInt(gap * 4, ref);
+        gap = j;
+      }
+    }
+    index.putInt(gap * 4, EMPTY);
+  }
+
+  private void growRecords() {
+    ByteBuffer bigger = ByteBuffer.allocateDirect(records.capacity() * 2);
+    ByteBuffer old = records.duplicate();
+    old.clear();
+    bigger.put(old);
+    records = bigger;
+  }
+
+  private void growIndex() {
+    slots *= 2;
+    index = ByteBuffer.allocateDirect(slots * 4);
+    int mask = slots - 1;
+    for (int r = 0; r < size; r++) {
+      int s = hash(records.getInt(r * RECORD_SIZE + F_SAMPLE_ID)) & mask;
+      while (index.getInt(s * 4) != EMPTY) {
+        s = (s + 1) & mask;
+      }
+      index.putInt(s * 4, r + 1);
+    }
+  }
+
+  private static int slotsFor(int expectedSize) {
+    int min = (int) Math.ceil(Math.max(1, expectedSize) / LOAD_FACTOR) + 1;
+    return Integer.highestOneBit(min * 2 - 1);
+  }
+
+  private static int hash(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
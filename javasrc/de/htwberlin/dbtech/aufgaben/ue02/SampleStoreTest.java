@@ -0,0 +1,54 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class SampleStoreTest {
+
+  @org.junit.Test
+  public void testPutGet() {
+    SampleStore s = new SampleStore(2);
+    s.put(1, 1, LocalDate.of(2017, 3, 24));
+    s.put(2, 2, LocalDate.of(2017, 3, 23));
+    Sample sample = s.get(1);
+    assertEquals(Integer.valueOf(1), sample.getSampleId());
+    assertEquals(LocalDate.of(2017, 3, 24), sample.getExpirationDate());
+    assertEquals(2, s.sampleKindId(2));
+    assertNull(s.get(3));
+    assertEquals(SampleStore.NOT_FOUND, s.expirationEpochDay(3));
+  }
+
+  @org.junit.Test
+  public void testVergleichMitHashMap() {
+    SampleStore s = new SampleStore(4);
+    Map<Integer, Integer> soll = new HashMap<>();
+    Random r = new Random(7);
+    for (int i = 0; i < 200000; i++) {
+      int id = r.nextInt(5000);
+      if (r.nextInt(3) == 0) {
+        assertEquals(soll.remove(id) != null, s.remove(id));
+      } else {
+        soll.put(id, i);
+        s.put(id, id % 3, i);
+      }
+    }
+    assertEquals(soll.size(), s.size());
+    for (int id = 0; id < 5000; id++) {
+      Integer day = soll.get(id);
+      if (day == null) {
+        assertFalse(s.contains(id));
+      } else {
+        assertTrue(s.contains(id));
+        assertEquals(day.intValue(), s.expirationEpochDay(id));
+        assertEquals(id % 3, s.sampleKindId(id));
+      }
+    }
+  }
+}
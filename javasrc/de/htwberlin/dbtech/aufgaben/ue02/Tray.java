@@ -0,0 +1,60 @@
+package de.htwberlin.dbtech.aufgaben.ue02;
+
+import java.time.LocalDate;
+
+public class Tray {
+	private Integer trayId;
+	private Integer diameterInCM;
+	private Integer capacity;
+	private LocalDate expirationDate;
+
+	public Tray() {
+	}
+
+	public Tray(Integer trayId, Integer diameterInCM, Integer capacity, LocalDate expirationDate) {
+		super();
+		this.trayId = trayId;
+		this.diameterInCM = diameterInCM;
+		this.capacity = capacity;
+		this.expirationDate = expirationDate;
+	}
+
+	@Override
+	public String toString() {
+		return "Tray[trayId=" + trayId + ", diameterInCM=" + diameterInCM + ", capacity=" + capacity
+				+ ", expirationDate=" + expirationDate + "]";
+	}
+
+	public Integer getTrayId() {
+		return trayId;
+	}
+
+	public void setTrayId(Integer trayId) {
+		this.trayId = trayId;
+	}
+
+	public Integer getDiameterInCM() {
+		return diameterInCM;
+	}
+
+	public void setDiameterInCM(Integer diameterInCM) {
+		this.diameterInCM = diameterInCM;
+	}
+
+	public Integer getCapacity() {
+		return capacity;
+	}
+
+	public void setCapacity(Integer capacity) {
+		this.capacity = capacity;
+	}
+
+	public LocalDate getExpirationDate() {
+		return expirationDate;
+	}
+
+	public void setExpirationDate(LocalDate expirationDate) {
+		this.expirationDate = expirationDate;
+	}
+
+}
@@ -4,115 +4,170 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
 
+import de.htwberlin.dbtech.aufgaben.ue02.CoolingEvent;
 import de.htwberlin.dbtech.exceptions.CoolingSystemException;
-
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DateUtils;
+import de.htwberlin.dbtech.utils.EventBus;
+import de.htwberlin.dbtech.utils.EventOutbox;
+
+/**
+ * Sucht Tabletts ueber die Tabelle TrayFill (migrations/V002), deren Belegung
+ * von Triggern auf Place mitgefuehrt wird. Ob ein Tablett Platz hat, ist damit
+ * ein Indexzugriff statt eines count(*) ueber Place.
+ * <p>
+ * Welches Tablett die Probe bekommt, entscheidet die PlacementStrategy,
+ * ohne Angabe die Regel aus ICoolingService (EarliestExpiration).
+ */
 public class CoolingService implements ICoolingService {
 
+  // package-private for the execution plan check
+  static final String SQL_SAMPLE_EXPIRATION = "SELECT ExpirationDate FROM Sample WHERE SampleID = ?";
+  static final String SQL_SUITABLE_TRAY = "SELECT TrayID, Capacity FROM TrayFill " +
+          "WHERE DiameterInCM = ? AND HasFreeSpace = 1 AND ExpirationDate >= ? " +
+          "ORDER BY ExpirationDate, TrayID FETCH FIRST 1 ROWS ONLY";
+  static final String SQL_SUITABLE_TRAY_UNTIL = "SELECT TrayID, Capacity FROM TrayFill " +
+          "WHERE DiameterInCM = ? AND HasFreeSpace = 1 AND ExpirationDate BETWEEN ? AND ? " +
+          "ORDER BY ExpirationDate, TrayID FETCH FIRST 1 ROWS ONLY";
+  static final String SQL_FULLEST_TRAY = "SELECT TrayID, Capacity FROM TrayFill " +
+          "WHERE DiameterInCM = ? AND HasFreeSpace = 1 AND ExpirationDate BETWEEN ? AND ? " +
+          "ORDER BY Capacity - Occupied, ExpirationDate, TrayID FETCH FIRST 1 ROWS ONLY";
+  static final String SQL_EMPTY_TRAY = "SELECT TrayID, Capacity FROM TrayFill " +
+          "WHERE DiameterInCM = ? AND HasFreeSpace = 1 AND Occupied = 0 " +
+          "ORDER BY TrayID FETCH FIRST 1 ROWS ONLY";
+  static final String SQL_OPEN_TRAY = "UPDATE Tray SET ExpirationDate = ? WHERE TrayID = ?";
+  static final String SQL_INSERT_PLACE = "INSERT INTO Place (TrayID, PlaceNo, SampleID) VALUES (?, ?, ?)";
+
   private Connection connection;
 
+  private PlacementStrategy placementStrategy = new PlacementStrategy.EarliestExpiration();
+
+  private final TrayLookup trayLookup = new TrayLookup() {
+    @Override
+    public int[] earliestExpiring(int diameter, LocalDate from, LocalDate to) {
+      return to == null ? findTray(SQL_SUITABLE_TRAY, diameter, from)
+          : findTray(SQL_SUITABLE_TRAY_UNTIL, diameter, from, to);
+    }
+
+    @Override
+    public int[] fullest(int diameter, LocalDate from, LocalDate to) {
+      return findTray(SQL_FULLEST_TRAY, diameter, from, to);
+    }
+
+    @Override
+    public int[] empty(int diameter) {
+      return findTray(SQL_EMPTY_TRAY, diameter);
+    }
+  };
+
+  // events are handed to the bus after commit
+  private final EventOutbox<CoolingEvent> events = new EventOutbox<>();
+
   @Override
   public void setConnection(Connection connection) {
     this.connection = connection;
   }
 
+  public void setPlacementStrategy(PlacementStrategy placementStrategy) {
+    this.placementStrategy = placementStrategy;
+  }
+
+  public void setEventBus(EventBus<? super CoolingEvent> eventBus) {
+    events.setEventBus(eventBus);
+  }
+
+  /**
+   * Without autocommit the caller flushes the collected events after its commit.
+   */
+  public EventOutbox<CoolingEvent> events() {
+    return events;
+  }
+
   @Override
   public void transferSample(Integer sampleId, Integer diameter) {
+    transferSample(sampleId.intValue(), diameter.intValue());
+  }
+
+  @Override
+  public void transferSample(int sampleId, int diameter) {
     try {
       if (connection == null || connection.isClosed()) {
         throw new IllegalStateException("Connection is not set or is closed.");
       }
 
-      // Check if the sample exists
-      if (!sampleExists(sampleId)) {
+      // Get sample expiration date, null if the sample does not exist
+      LocalDate sampleExpiration = getSampleExpiration(sampleId);
+      if (sampleExpiration == null) {
         throw new CoolingSystemException("Sample does not exist.");
       }
 
-      // Get sample expiration date
-      String sampleExpiration = getSampleExpiration(sampleId);
-
-      // Find a suitable tray
-      Integer trayId = findSuitableTray(diameter, sampleExpiration);
-      if (trayId == null) {
+      PlacementStrategy.Placement tray = placementStrategy.place(trayLookup, diameter, sampleExpiration);
+      if (tray == null) {
         throw new CoolingSystemException("No suitable tray found.");
       }
+      if (tray.openUntil != null) {
+        openTray(tray.trayId, tray.openUntil);
+      }
 
-      // Find a free place in the tray
-      Integer placeNo = findFreePlaceInTray(trayId);
-      if (placeNo == null) {
+      // Smallest free place, fills gaps
+      int placeNo = PlaceGapFinder.lowestFreePlace(connection, tray.trayId, tray.capacity);
+      if (placeNo < 0) {
         throw new CoolingSystemException("No free place in the tray.");
       }
 
-      // Transfer the sample to the tray
-      assignSampleToPlace(trayId, placeNo, sampleId);
+      // Insert the place, the trigger on Place updates TrayFill.Occupied in the same statement
+      insertPlace(tray.trayId, placeNo, sampleId);
+      events.emit(connection, new CoolingEvent.SamplePlaced(sampleId, tray.trayId, placeNo));
     } catch (SQLException e) {
-      throw new CoolingSystemException("Database error: " + e.getMessage(), e);
+      throw new DataException(e);
     }
   }
 
-  private boolean sampleExists(Integer sampleId) throws SQLException {
-    String query = "SELECT COUNT(*) FROM Sample WHERE SampleID = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(query)) {
+  private LocalDate getSampleExpiration(int sampleId) throws SQLException {
+    try (PreparedStatement stmt = connection.prepareStatement(SQL_SAMPLE_EXPIRATION)) {
       stmt.setInt(1, sampleId);
       try (ResultSet rs = stmt.executeQuery()) {
         if (rs.next()) {
-          return rs.getInt(1) > 0;
+          return DateUtils.getLocalDate(rs, "ExpirationDate");
         }
       }
     }
-    return false;
-  }
-
-  private String getSampleExpiration(Integer sampleId) throws SQLException {
-    String query = "SELECT TO_CHAR(ExpirationDate, 'YYYY-MM-DD') AS ExpirationDate FROM Sample WHERE SampleID = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(query)) {
-      stmt.setInt(1, sampleId);
-      try (ResultSet rs = stmt.executeQuery()) {
-        if (rs.next()) {
-          return rs.getString("ExpirationDate");
-        }
-      }
-    }
-    throw new CoolingSystemException("Sample expiration date not found.");
+    return null;
   }
 
-  private Integer findSuitableTray(Integer diameter, String expirationDate) throws SQLException {
-    String query = "SELECT TrayID FROM Tray " +
-            "WHERE DiameterInCM = ? " +
-            "AND (ExpirationDate IS NULL OR TO_DATE(ExpirationDate, 'YYYY-MM-DD') >= TO_DATE(?, 'YYYY-MM-DD')) " +
-            "AND EXISTS (SELECT 1 FROM Place WHERE Tray.TrayID = Place.TrayID AND SampleID IS NULL) " +
-            "ORDER BY TrayID FETCH FIRST 1 ROWS ONLY";
+  // returns {TrayID, Capacity} or null, the dates are bound after the diameter
+  private int[] findTray(String query, int diameter, LocalDate... dates) {
     try (PreparedStatement stmt = connection.prepareStatement(query)) {
       stmt.setInt(1, diameter);
-      stmt.setString(2, expirationDate);
+      for (int i = 0; i < dates.length; i++) {
+        DateUtils.setLocalDate(stmt, 2 + i, dates[i]);
+      }
       try (ResultSet rs = stmt.executeQuery()) {
         if (rs.next()) {
-          return rs.getInt("TrayID");
+          return new int[] { rs.getInt("TrayID"), rs.getInt("Capacity") };
         }
       }
+    } catch (SQLException e) {
+      throw new DataException(e);
     }
     return null;
   }
 
-  private Integer findFreePlaceInTray(Integer trayId) throws SQLException {
-    String query = "SELECT PlaceNo FROM Place WHERE TrayID = ? AND SampleID IS NULL FETCH FIRST 1 ROWS ONLY";
-    try (PreparedStatement stmt = connection.prepareStatement(query)) {
-      stmt.setInt(1, trayId);
-      try (ResultSet rs = stmt.executeQuery()) {
-        if (rs.next()) {
-          return rs.getInt("PlaceNo");
-        }
-      }
+  private void openTray(int trayId, LocalDate expirationDate) throws SQLException {
+    try (PreparedStatement stmt = connection.prepareStatement(SQL_OPEN_TRAY)) {
+      DateUtils.setLocalDate(stmt, 1, expirationDate);
+      stmt.setInt(2, trayId);
+      stmt.executeUpdate();
     }
-    return null;
   }
 
-  private void assignSampleToPlace(Integer trayId, Integer placeNo, Integer sampleId) throws SQLException {
-    String query = "UPDATE Place SET SampleID = ? WHERE TrayID = ? AND PlaceNo = ?";
-    try (PreparedStatement stmt = connection.prepareStatement(query)) {
-      stmt.setInt(1, sampleId);
-      stmt.setInt(2, trayId);
-      stmt.setInt(3, placeNo);
+  private void insertPlace(int trayId, int placeNo, int sampleId) throws SQLException {
+    try (PreparedStatement stmt = connection.prepareStatement(SQL_INSERT_PLACE)) {
+      stmt.setInt(1, trayId);
+      stmt.setInt(2, placeNo);
+      stmt.setInt(3, sampleId);
       stmt.executeUpdate();
     }
   }
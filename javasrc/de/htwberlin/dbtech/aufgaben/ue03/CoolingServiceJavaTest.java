@@ -1,18 +1,16 @@
 package de.htwberlin.dbtech.aufgaben.ue03;
 
-import java.io.File;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 
 import org.dbunit.Assertion;
 import org.dbunit.DatabaseUnitException;
 import org.dbunit.IDatabaseTester;
-import org.dbunit.JdbcDatabaseTester;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.database.QueryDataSet;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.ITable;
-import org.dbunit.dataset.csv.CsvDataSet;
-import org.dbunit.operation.DatabaseOperation;
+import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
@@ -21,14 +19,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.htwberlin.dbtech.exceptions.CoolingSystemException;
-import de.htwberlin.dbtech.utils.DbCred;
 import de.htwberlin.dbtech.utils.DbUnitUtils;
+import de.htwberlin.dbtech.utils.FixtureEngine;
+import de.htwberlin.dbtech.utils.StatementCounter;
+import de.htwberlin.dbtech.utils.TestDb;
+import de.htwberlin.dbtech.utils.SchemaMigrator;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class CoolingServiceJavaTest {
   private static final Logger L = LoggerFactory.getLogger(CoolingServiceJavaTest.class);
   private static IDatabaseConnection dbTesterCon = null;
-  private static IDataSet pre = null;
+  private static FixtureEngine.Session fixture = null;
 
   private static ICoolingService cs = new CoolingService();
 
@@ -36,13 +37,14 @@ public class CoolingServiceJavaTest {
   public static void setUp() {
     L.debug("setUp: start");
     try {
-      IDatabaseTester dbTester = new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, DbCred.user, DbCred.password,
-          DbCred.schema);
+      IDatabaseTester dbTester = TestDb.tester();
       dbTesterCon = dbTester.getConnection();
-      pre = new CsvDataSet(new File("test-data/ue03-04/pre"));
-      dbTester.setDataSet(pre);
-      DatabaseOperation.CLEAN_INSERT.execute(dbTesterCon, pre);
-      cs.setConnection(dbTesterCon.getConnection());
+      // TrayFill und die Trigger aus den Migrationen muessen vor den Testdaten da sein
+      new SchemaMigrator(dbTesterCon.getConnection(), Paths.get(SchemaMigrator.DEFAULT_DIRECTORY)).migrate();
+      // einmal laden, nach jedem Test auf den Savepoint zurueck
+      fixture = FixtureEngine.load("test-data/ue03-04/pre").begin(dbTesterCon.getConnection());
+      // zaehlt die Roundtrips je Aufruf, siehe StatementCounter
+      cs.setConnection(StatementCounter.wrap(dbTesterCon.getConnection()));
     } catch (Exception e) {
       DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
       throw new RuntimeException(e);
@@ -52,9 +54,17 @@ public class CoolingServiceJavaTest {
   @AfterClass
   public static void tearDown() throws Exception {
     L.debug("tearDown: start");
+    if (fixture != null) {
+      fixture.close();
+    }
     DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
   }
 
+  @After
+  public void resetFixture() {
+    fixture.reset();
+  }
+
   /**
    * SampleID existiert nicht.
    */
@@ -62,7 +72,7 @@ public class CoolingServiceJavaTest {
   public void testCoolingService01() {
     Integer nonexistentSampleId = 999;
     Integer validDiameter = 1;
-    cs.transferSample(nonexistentSampleId, validDiameter);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(nonexistentSampleId, validDiameter));
   }
 
   /**
@@ -72,7 +82,7 @@ public class CoolingServiceJavaTest {
   public void testCoolingService02() {
     Integer validSampleId = 1;
     Integer diameterTooLarge = 999;
-    cs.transferSample(validSampleId, diameterTooLarge);
+    StatementCounter.assertMaxRoundTrips(3, () -> cs.transferSample(validSampleId, diameterTooLarge));
   }
 
   /**
@@ -82,7 +92,7 @@ public class CoolingServiceJavaTest {
   public void testCoolingService03() {
     Integer sampleIdWithExpirationToFarInFuture = 1;
     Integer validDiameter = 1;
-    cs.transferSample(sampleIdWithExpirationToFarInFuture, validDiameter);
+    StatementCounter.assertMaxRoundTrips(3, () -> cs.transferSample(sampleIdWithExpirationToFarInFuture, validDiameter));
   }
 
   /**
@@ -93,7 +103,7 @@ public class CoolingServiceJavaTest {
   public void testCoolingService04() {
     Integer sampleIdWithExpirationOk = 2;
     Integer diameterPossible = 1;
-    cs.transferSample(sampleIdWithExpirationOk, diameterPossible);
+    StatementCounter.assertMaxRoundTrips(3, () -> cs.transferSample(sampleIdWithExpirationOk, diameterPossible));
   }
 
   /**
@@ -106,7 +116,8 @@ public class CoolingServiceJavaTest {
   public void testCoolingService05() throws SQLException, DatabaseUnitException {
     Integer sampleIdWithExpirationToFarInFuture = 3;
     Integer validDiameter = 2;
-    cs.transferSample(sampleIdWithExpirationToFarInFuture, validDiameter);
+    // Ablaufdatum, zwei Tablett-Suchen, Tablett oeffnen, Luecke, Einfuegen
+    StatementCounter.assertMaxRoundTrips(6, () -> cs.transferSample(sampleIdWithExpirationToFarInFuture, validDiameter));
 
     // Lade tatsaechliche Daten aus der Datenbank
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -118,7 +129,7 @@ public class CoolingServiceJavaTest {
     ITable actualTablePlace = databaseDataSet.getTable("Place");
 
     // Lade erwartete Daten
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/ue03-04/post01"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/ue03-04/post01").asDataSet();
     ITable expectedTableTray = expectedDataSet.getTable("Tray");
     ITable expectedTablePlace = expectedDataSet.getTable("Place");
 
@@ -134,7 +145,7 @@ public class CoolingServiceJavaTest {
   public void testCoolingService06() throws SQLException, DatabaseUnitException {
     Integer validSampleId = 5;
     Integer validDiameter = 3;
-    cs.transferSample(validSampleId, validDiameter);
+    StatementCounter.assertMaxRoundTrips(6, () -> cs.transferSample(validSampleId, validDiameter));
 
     // Lade tatsaechliche Daten aus der Datenbank
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -146,7 +157,7 @@ public class CoolingServiceJavaTest {
     ITable actualTablePlace = databaseDataSet.getTable("Place");
 
     // Lade erwartete Daten
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/ue03-04/post02"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/ue03-04/post02").asDataSet();
     ITable expectedTableTray = expectedDataSet.getTable("Tray");
     ITable expectedTablePlace = expectedDataSet.getTable("Place");
 
@@ -164,8 +175,9 @@ public class CoolingServiceJavaTest {
     Integer validSampleId1 = 7;
     Integer validSampleId2 = 8;
     Integer validDiameter = 4;
-    cs.transferSample(validSampleId1, validDiameter);
-    cs.transferSample(validSampleId2, validDiameter);
+    // Ablaufdatum, Tablett-Suche, Luecke, Einfuegen
+    StatementCounter.assertMaxRoundTrips(4, () -> cs.transferSample(validSampleId1, validDiameter));
+    StatementCounter.assertMaxRoundTrips(4, () -> cs.transferSample(validSampleId2, validDiameter));
 
     // Lade tatsaechliche Daten aus der Datenbank
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -177,7 +189,7 @@ public class CoolingServiceJavaTest {
     ITable actualTablePlace = databaseDataSet.getTable("Place");
 
     // Lade erwartete Daten
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/ue03-04/post03"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/ue03-04/post03").asDataSet();
     ITable expectedTableTray = expectedDataSet.getTable("Tray");
     ITable expectedTablePlace = expectedDataSet.getTable("Place");
 
@@ -195,8 +207,8 @@ public class CoolingServiceJavaTest {
     Integer validSampleId1 = 11;
     Integer validSampleId2 = 12;
     Integer validDiameter = 5;
-    cs.transferSample(validSampleId1, validDiameter);
-    cs.transferSample(validSampleId2, validDiameter);
+    StatementCounter.assertMaxRoundTrips(4, () -> cs.transferSample(validSampleId1, validDiameter));
+    StatementCounter.assertMaxRoundTrips(4, () -> cs.transferSample(validSampleId2, validDiameter));
 
     // Lade tatsaechliche Daten aus der Datenbank
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -208,7 +220,7 @@ public class CoolingServiceJavaTest {
     ITable actualTablePlace = databaseDataSet.getTable("Place");
 
     // Lade erwartete Daten
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/ue03-04/post04"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/ue03-04/post04").asDataSet();
     ITable expectedTableTray = expectedDataSet.getTable("Tray");
     ITable expectedTablePlace = expectedDataSet.getTable("Place");
 
@@ -0,0 +1,82 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import static de.htwberlin.dbtech.utils.QueryPlan.assertNoFullScan;
+import static de.htwberlin.dbtech.utils.QueryPlan.distinct;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+import de.htwberlin.dbtech.utils.JdbcUtils;
+import de.htwberlin.dbtech.utils.QueryPlan;
+import de.htwberlin.dbtech.utils.SchemaMigrator;
+import de.htwberlin.dbtech.utils.TestDb;
+
+/**
+ * Prueft, dass die Abfragen von CoolingService bei grossen Tabellen ueber einen
+ * Index statt ueber einen Full Scan zugreifen.
+ */
+public class CoolingServiceQueryPlanTest {
+  private static final String[] TABLES = { "Tray", "TrayFill", "Sample", "Place" };
+  private static Connection connection;
+
+  @BeforeClass
+  public static void setUp() {
+    connection = TestDb.connect();
+    new SchemaMigrator(connection, Paths.get(SchemaMigrator.DEFAULT_DIRECTORY)).migrate();
+    QueryPlan.setTableStats(connection, "Tray", 100000,
+        distinct("TrayID", 100000, "DiameterInCM", 20, "ExpirationDate", 2000));
+    QueryPlan.setTableStats(connection, "TrayFill", 100000,
+        distinct("TrayID", 100000, "DiameterInCM", 20, "ExpirationDate", 2000, "Occupied", 50, "HasFreeSpace", 2));
+    QueryPlan.setTableStats(connection, "Sample", 5000000,
+        distinct("SampleID", 5000000, "SampleKindID", 1000, "ExpirationDate", 2000));
+    QueryPlan.setTableStats(connection, "Place", 5000000,
+        distinct("TrayID", 100000, "PlaceNo", 50, "SampleID", 5000000));
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    try {
+      QueryPlan.deleteTableStats(connection, TABLES);
+    } finally {
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+
+  @org.junit.Test
+  public void testSampleExpiration() {
+    assertNoFullScan(connection, CoolingService.SQL_SAMPLE_EXPIRATION);
+  }
+
+  @org.junit.Test
+  public void testSuitableTray() {
+    assertNoFullScan(connection, CoolingService.SQL_SUITABLE_TRAY);
+  }
+
+  @org.junit.Test
+  public void testSuitableTrayUntil() {
+    assertNoFullScan(connection, CoolingService.SQL_SUITABLE_TRAY_UNTIL);
+  }
+
+  @org.junit.Test
+  public void testFullestTray() {
+    assertNoFullScan(connection, CoolingService.SQL_FULLEST_TRAY);
+  }
+
+  @org.junit.Test
+  public void testEmptyTray() {
+    assertNoFullScan(connection, CoolingService.SQL_EMPTY_TRAY);
+  }
+
+  @org.junit.Test
+  public void testOpenTray() {
+    assertNoFullScan(connection, CoolingService.SQL_OPEN_TRAY);
+  }
+
+  @org.junit.Test
+  public void testLowestFreePlace() {
+    assertNoFullScan(connection, PlaceGapFinder.SQL_LOWEST_FREE_PLACE);
+  }
+}
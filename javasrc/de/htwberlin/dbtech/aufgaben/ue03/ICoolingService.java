@@ -21,7 +21,7 @@ public interface ICoolingService {
    * <ul>
    * <li>Der Durchmesser muss passen.</li>
    * <li>Die Probe soll auf das Tablett mit dem kleinsten Ablaufdatum kommen,
-   * das groesser als das Ablaufdatum der Probe ist.</li>
+   * das groesser oder gleich dem Ablaufdatum der Probe ist.</li>
    * <li>Auf dem ausgewaehlten Tablett soll die Probe auf den kleinsten freien
    * Platz kommen. Da stellt sicher, dass Luecken gefuellt werden.</li>
    * <li>Gibt es kein passendes Tablett, so wird ein leeres Tablett mit
@@ -42,4 +42,9 @@ public interface ICoolingService {
    *           bei allen Datenbankfehlern.
    */
   void transferSample(Integer sampleId, Integer diameterInCM);
+
+  /**
+   * Wie transferSample(Integer, Integer), aber ohne Boxing.
+   */
+  void transferSample(int sampleId, int diameterInCM);
 }
@@ -0,0 +1,91 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Kleinster freier Platz eines Tabletts. Place enthaelt nur die belegten
+ * Plaetze, gesucht ist also die erste Luecke in PlaceNo zwischen 1 und
+ * Capacity.
+ * <ul>
+ * <li>Ohne Zustand per SQL: ROW_NUMBER ueber die sortierten PlaceNo, die erste
+ * Zeile mit PlaceNo &lt;&gt; Zeilennummer markiert die Luecke. Gelesen wird nur
+ * der Primaerschluesselindex (TrayID, PlaceNo), zur Anwendung kommt nur eine
+ * Zahl zurueck.</li>
+ * <li>Mit Cache: Bitmap der belegten Plaetze, Bit i steht fuer PlaceNo i + 1,
+ * gesucht ist das erste 0-Bit. Siehe auch TrayOccupancy.lowestFreePlace().</li>
+ * </ul>
+ * Alle Varianten liefern -1, wenn das Tablett voll ist.
+ */
+public class PlaceGapFinder {
+  private static final Logger L = LoggerFactory.getLogger(PlaceGapFinder.class);
+
+  // ohne Zeilen liefert die Aggregation eine Zeile mit count(*) = 0, also Platz 1
+  static final String SQL_LOWEST_FREE_PLACE = String.join(" ",
+      "SELECT NVL(MIN(CASE WHEN PlaceNo <> rn THEN rn END), COUNT(*) + 1)",
+      "FROM (SELECT PlaceNo, ROW_NUMBER() OVER (ORDER BY PlaceNo) AS rn",
+      "      FROM Place WHERE TrayID = ?)");
+
+  private PlaceGapFinder() {
+  }
+
+  public static int lowestFreePlace(Connection connection, int trayId, int capacity) {
+    L.debug(SQL_LOWEST_FREE_PLACE);
+    try (PreparedStatement ps = connection.prepareStatement(SQL_LOWEST_FREE_PLACE)) {
+      ps.setInt(1, trayId);
+      try (ResultSet rs = ps.executeQuery()) {
+        rs.next();
+        return withinCapacity(rs.getInt(1), capacity);
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+  }
+
+  /**
+   * @param occupied
+   *          belegte Plaetze, Bit i fuer PlaceNo i + 1.
+   */
+  public static int lowestFreePlace(BitSet occupied, int capacity) {
+    return withinCapacity(occupied.nextClearBit(0) + 1, capacity);
+  }
+
+  /**
+   * @param occupied
+   *          belegte Plaetze, Bit i fuer PlaceNo i + 1, 64 Plaetze je Wort.
+   */
+  public static int lowestFreePlace(long[] occupied, int capacity) {
+    for (int w = 0; w < occupied.length; w++) {
+      long free = ~occupied[w];
+      if (free != 0) {
+        return withinCapacity((w << 6) + Long.numberOfTrailingZeros(free) + 1, capacity);
+      }
+    }
+    return withinCapacity((occupied.length << 6) + 1, capacity);
+  }
+
+  /**
+   * Wie die SQL-Variante, aber ueber die aufsteigend sortierten PlaceNo in der
+   * Anwendung.
+   */
+  public static int lowestFreePlace(int[] sortedPlaceNos, int count, int capacity) {
+    int expected = 1;
+    for (int i = 0; i < count && sortedPlaceNos[i] == expected; i++) {
+      expected++;
+    }
+    return withinCapacity(expected, capacity);
+  }
+
+  private static int withinCapacity(int placeNo, int capacity) {
+    return placeNo <= capacity ? placeNo : -1;
+  }
+}
@@ -0,0 +1,150 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.aufgaben.ue03.TrayOccupancy.TrayInfo;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+
+/**
+ * Vergleicht die Varianten von PlaceGapFinder auf Tabletts mit einigen tausend
+ * Plaetzen, die bis auf wenige zufaellige Luecken belegt sind. Mit dem
+ * Argument "db" wird zusaetzlich die SQL-Variante fuer alle Tabletts des
+ * Schemas aus DbCred gemessen.
+ */
+public class PlaceGapFinderBenchmark {
+  private static final Logger L = LoggerFactory.getLogger(PlaceGapFinderBenchmark.class);
+
+  private static final int[] KAPAZITAETEN = { 1000, 5000, 20000 };
+  private static final int TABLETTS = 64;
+  private static final int N = 200_000;
+  private static final int RUNDEN = 5;
+
+  public static void main(String[] args) {
+    for (int kapazitaet : KAPAZITAETEN) {
+      miss(kapazitaet);
+    }
+    if (args.length > 0 && args[0].equals("db")) {
+      missSql();
+    }
+  }
+
+  private static void miss(int kapazitaet) {
+    Random r = new Random(42);
+    BitSet[] bitSets = new BitSet[TABLETTS];
+    long[][] woerter = new long[TABLETTS][];
+    int[][] sortiert = new int[TABLETTS][];
+    List<TrayInfo> infos = new ArrayList<>();
+    for (int t = 0; t < TABLETTS; t++) {
+      infos.add(new TrayInfo(t + 1, 1, kapazitaet, TrayOccupancy.NO_DATE));
+    }
+    TrayOccupancy o = TrayOccupancy.allocate(infos);
+    for (int t = 0; t < TABLETTS; t++) {
+      // Tabletts fuellen sich von vorn, die Luecke liegt meist weit hinten
+      int luecke = kapazitaet / 2 + r.nextInt(kapazitaet / 2);
+      bitSets[t] = new BitSet(kapazitaet);
+      woerter[t] = new long[TrayOccupancy.wordsFor(kapazitaet)];
+      sortiert[t] = new int[kapazitaet - 1];
+      int n = 0;
+      for (int p = 1; p <= kapazitaet; p++) {
+        if (p != luecke) {
+          bitSets[t].set(p - 1);
+          woerter[t][(p - 1) >>> 6] |= 1L << (p - 1);
+          sortiert[t][n++] = p;
+          o.occupy(t, p);
+        }
+      }
+    }
+    for (int runde = 0; runde < RUNDEN; runde++) {
+      boolean ausgeben = runde == RUNDEN - 1;
+      String k = " (" + kapazitaet + ")";
+      messe("sortierte PlaceNo" + k, ausgeben, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          int[] a = sortiert[i & (TABLETTS - 1)];
+          x += PlaceGapFinder.lowestFreePlace(a, a.length, kapazitaet);
+        }
+        return x;
+      });
+      messe("BitSet.nextClearBit" + k, ausgeben, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += PlaceGapFinder.lowestFreePlace(bitSets[i & (TABLETTS - 1)], kapazitaet);
+        }
+        return x;
+      });
+      messe("long[]" + k, ausgeben, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += PlaceGapFinder.lowestFreePlace(woerter[i & (TABLETTS - 1)], kapazitaet);
+        }
+        return x;
+      });
+      messe("TrayOccupancy" + k, ausgeben, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += o.lowestFreePlace(i & (TABLETTS - 1));
+        }
+        return x;
+      });
+    }
+  }
+
+  private static void missSql() {
+    JdbcUtils.loadDriver(DbCred.driverClass);
+    Connection connection = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password);
+    try {
+      List<int[]> tabletts = new ArrayList<>();
+      try (PreparedStatement ps = connection.prepareStatement("SELECT TrayID, Capacity FROM Tray ORDER BY TrayID");
+          ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          tabletts.add(new int[] { rs.getInt(1), rs.getInt(2) });
+        }
+      }
+      if (tabletts.isEmpty()) {
+        L.info("keine Tabletts im Schema");
+        return;
+      }
+      int n = 2000;
+      for (int runde = 0; runde < RUNDEN; runde++) {
+        long start = System.nanoTime();
+        long x = 0;
+        for (int i = 0; i < n; i++) {
+          int[] t = tabletts.get(i % tabletts.size());
+          x += PlaceGapFinder.lowestFreePlace(connection, t[0], t[1]);
+        }
+        if (runde == RUNDEN - 1) {
+          L.info(String.format("%-30s %8.1f us/op  (%d)", "SQL ROW_NUMBER", (System.nanoTime() - start) / 1000.0 / n, x));
+        }
+      }
+    } catch (SQLException e) {
+      throw new DataException(e);
+    } finally {
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+
+  private interface Lauf {
+    long ausfuehren();
+  }
+
+  private static void messe(String name, boolean ausgeben, Lauf lauf) {
+    long start = System.nanoTime();
+    long ergebnis = lauf.ausfuehren();
+    double nsProAufruf = (System.nanoTime() - start) / (double) N;
+    if (ausgeben) {
+      L.info(String.format("%-30s %8.2f ns/op  (%d)", name, nsProAufruf, ergebnis));
+    }
+  }
+}
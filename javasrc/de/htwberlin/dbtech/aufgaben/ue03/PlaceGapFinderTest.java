@@ -0,0 +1,62 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import de.htwberlin.dbtech.aufgaben.ue03.TrayOccupancy.TrayInfo;
+
+public class PlaceGapFinderTest {
+
+  /**
+   * Alle Varianten fuer dieselben belegten Plaetze.
+   */
+  private static void assertLowestFree(int expected, int capacity, int... placeNos) {
+    BitSet bits = new BitSet();
+    long[] words = new long[TrayOccupancy.wordsFor(capacity)];
+    TrayOccupancy o = TrayOccupancy.allocate(Arrays.asList(new TrayInfo(1, 1, capacity, TrayOccupancy.NO_DATE)));
+    for (int p : placeNos) {
+      bits.set(p - 1);
+      words[(p - 1) >>> 6] |= 1L << (p - 1);
+      o.occupy(0, p);
+    }
+    int[] sorted = placeNos.clone();
+    Arrays.sort(sorted);
+    assertEquals("BitSet", expected, PlaceGapFinder.lowestFreePlace(bits, capacity));
+    assertEquals("long[]", expected, PlaceGapFinder.lowestFreePlace(words, capacity));
+    assertEquals("int[]", expected, PlaceGapFinder.lowestFreePlace(sorted, sorted.length, capacity));
+    assertEquals("TrayOccupancy", expected, o.lowestFreePlace(0));
+  }
+
+  @org.junit.Test
+  public void testLeer() {
+    assertLowestFree(1, 4);
+  }
+
+  @org.junit.Test
+  public void testLueckeZwischendrin() {
+    assertLowestFree(2, 4, 1, 4);
+  }
+
+  @org.junit.Test
+  public void testPlatzAmEnde() {
+    assertLowestFree(3, 3, 1, 2);
+  }
+
+  @org.junit.Test
+  public void testVoll() {
+    assertLowestFree(-1, 3, 1, 2, 3);
+  }
+
+  @org.junit.Test
+  public void testUeberWortgrenze() {
+    int[] belegt = new int[130];
+    for (int i = 0; i < belegt.length; i++) {
+      belegt[i] = i + 1;
+    }
+    assertLowestFree(131, 5000, belegt);
+    assertLowestFree(-1, 130, belegt);
+    assertLowestFree(-1, 64, Arrays.copyOf(belegt, 64));
+  }
+}
@@ -0,0 +1,274 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.utils.DateUtils;
+
+/**
+ * Spielt einen erzeugten Zugang von Proben durch jede PlacementStrategy und
+ * vergleicht: Dauer einer Entscheidung, Suchen je Entscheidung (in
+ * CoolingService je ein Roundtrip), geoeffnete Tabletts, abgewiesene Proben
+ * und die Fragmentierung, d.h. der Anteil freier Plaetze auf belegten
+ * Tabletts im Mittel ueber alle Tage.
+ * <p>
+ * Jeden Tag werden zuerst abgelaufene Tabletts geleert (wie clearTray) und
+ * vorzeitig entnommene Proben entfernt, dann kommen die neuen Proben. Alle
+ * Strategien sehen denselben Zugang, die Tabletts liegen im Speicher (Trays).
+ * <p>
+ * Aufruf: PlacementHarness [Tage [Proben je Tag [Tabletts je Durchmesser]]]
+ */
+public class PlacementHarness {
+  private static final Logger L = LoggerFactory.getLogger(PlacementHarness.class);
+
+  static final int DIAMETERS = 5;
+  static final int CAPACITY = 50;
+  // Haltbarkeit der Probenarten in Tagen
+  private static final int[] VALID_DAYS = { 4, 7, 30 };
+  // Anteil der Proben, die vor ihrem Ablaufdatum entnommen werden, in Prozent
+  private static final int TAKEN_OUT_PERCENT = 30;
+  private static final int RUNDEN = 3;
+
+  /**
+   * Tabletts im Speicher. Die Suchen gehen linear ueber die Tabletts eines
+   * Durchmessers und zaehlen mit.
+   */
+  static class Trays implements TrayLookup {
+    final int[] diameter;
+    final int[] capacity;
+    final int[] occupied;
+    final int[] expiration;
+    long lookups;
+
+    Trays(int[] diameter, int[] capacity) {
+      this.diameter = diameter;
+      this.capacity = capacity;
+      this.occupied = new int[diameter.length];
+      this.expiration = new int[diameter.length];
+      Arrays.fill(expiration, DateUtils.NO_EPOCH_DAY);
+    }
+
+    static Trays uniform(int diameters, int perDiameter, int capacity) {
+      int n = diameters * perDiameter;
+      int[] d = new int[n];
+      int[] c = new int[n];
+      for (int i = 0; i < n; i++) {
+        d[i] = i / perDiameter + 1;
+        c[i] = capacity;
+      }
+      return new Trays(d, c);
+    }
+
+    // TrayID ist Index + 1
+    private int[] tray(int i) {
+      return i < 0 ? null : new int[] { i + 1, capacity[i] };
+    }
+
+    private boolean free(int i, int d) {
+      return diameter[i] == d && occupied[i] < capacity[i];
+    }
+
+    @Override
+    public int[] earliestExpiring(int d, LocalDate from, LocalDate to) {
+      lookups++;
+      int lo = DateUtils.toEpochDay(from);
+      int hi = to == null ? Integer.MAX_VALUE : DateUtils.toEpochDay(to);
+      int best = -1;
+      for (int i = 0; i < diameter.length; i++) {
+        int e = expiration[i];
+        if (free(i, d) && e != DateUtils.NO_EPOCH_DAY && e >= lo && e <= hi && (best < 0 || e < expiration[best])) {
+          best = i;
+        }
+      }
+      return tray(best);
+    }
+
+    @Override
+    public int[] fullest(int d, LocalDate from, LocalDate to) {
+      lookups++;
+      int lo = DateUtils.toEpochDay(from);
+      int hi = DateUtils.toEpochDay(to);
+      int best = -1;
+      for (int i = 0; i < diameter.length; i++) {
+        int e = expiration[i];
+        if (free(i, d) && e != DateUtils.NO_EPOCH_DAY && e >= lo && e <= hi) {
+          if (best < 0 || capacity[i] - occupied[i] < capacity[best] - occupied[best]
+              || capacity[i] - occupied[i] == capacity[best] - occupied[best] && e < expiration[best]) {
+            best = i;
+          }
+        }
+      }
+      return tray(best);
+    }
+
+    @Override
+    public int[] empty(int d) {
+      lookups++;
+      for (int i = 0; i < diameter.length; i++) {
+        if (diameter[i] == d && occupied[i] == 0) {
+          return tray(i);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Zugang: je Probe Tag, Durchmesser, Ablauftag und Tag der Entnahme
+   * (Integer.MAX_VALUE, wenn sie bis zum Ablauf bleibt).
+   */
+  static class Intake {
+    final int[] day;
+    final int[] diameter;
+    final int[] expiration;
+    final int[] takenOut;
+
+    Intake(int n) {
+      day = new int[n];
+      diameter = new int[n];
+      expiration = new int[n];
+      takenOut = new int[n];
+    }
+
+    int size() {
+      return day.length;
+    }
+
+    static Intake generate(LocalDate start, int days, int perDay, long seed) {
+      Random r = new Random(seed);
+      Intake in = new Intake(days * perDay);
+      int first = DateUtils.toEpochDay(start);
+      for (int i = 0; i < in.size(); i++) {
+        int d = first + i / perDay;
+        in.day[i] = d;
+        in.diameter[i] = 1 + r.nextInt(DIAMETERS);
+        in.expiration[i] = d + VALID_DAYS[r.nextInt(VALID_DAYS.length)];
+        int life = in.expiration[i] - d;
+        in.takenOut[i] = life > 1 && r.nextInt(100) < TAKEN_OUT_PERCENT ? d + 1 + r.nextInt(life - 1) : Integer.MAX_VALUE;
+      }
+      return in;
+    }
+  }
+
+  static class Result {
+    final String strategy;
+    final long[] nanos;
+    long lookups;
+    int opened;
+    int rejected;
+    double fragmentation;
+    double traysInUse;
+
+    Result(String strategy, int n) {
+      this.strategy = strategy;
+      this.nanos = new long[n];
+    }
+
+    long percentile(double p) {
+      long[] sorted = nanos.clone();
+      Arrays.sort(sorted);
+      return sorted[Math.max(0, (int) Math.ceil(p / 100 * sorted.length) - 1)];
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-28s p50 %6d ns  p99 %6d ns  %4.2f lookups/op  opened %6d  rejected %5d"
+          + "  fragmentation %5.1f %%  trays in use %6.1f", strategy, percentile(50), percentile(99),
+          (double) lookups / nanos.length, opened, rejected, fragmentation * 100, traysInUse);
+    }
+  }
+
+  static Result run(PlacementStrategy strategy, Intake in, Trays trays) {
+    Result result = new Result(strategy.toString(), in.size());
+    // Proben auf den Tabletts: Index im Zugang und Tablett
+    int[] liveSample = new int[in.size()];
+    int[] liveTray = new int[in.size()];
+    int live = 0;
+    int days = 0;
+    double fragmentation = 0;
+    double inUse = 0;
+    int i = 0;
+    while (i < in.size()) {
+      int today = in.day[i];
+      // abgelaufene Tabletts leeren, entnommene Proben entfernen
+      int kept = 0;
+      for (int k = 0; k < live; k++) {
+        int t = liveTray[k];
+        if (trays.expiration[t] < today || in.takenOut[liveSample[k]] <= today) {
+          trays.occupied[t]--;
+        } else {
+          liveSample[kept] = liveSample[k];
+          liveTray[kept++] = t;
+        }
+      }
+      live = kept;
+      LocalDate date = DateUtils.fromEpochDay(today);
+      for (; i < in.size() && in.day[i] == today; i++) {
+        LocalDate sampleExpiration = DateUtils.fromEpochDay(in.expiration[i]);
+        long start = System.nanoTime();
+        PlacementStrategy.Placement p = strategy.place(trays, in.diameter[i], sampleExpiration);
+        result.nanos[i] = System.nanoTime() - start;
+        if (p == null) {
+          result.rejected++;
+          continue;
+        }
+        int t = p.trayId - 1;
+        if (p.openUntil != null) {
+          trays.expiration[t] = DateUtils.toEpochDay(p.openUntil);
+          result.opened++;
+        }
+        trays.occupied[t]++;
+        liveSample[live] = i;
+        liveTray[live++] = t;
+      }
+      // Fragmentierung am Ende des Tages
+      long capacity = 0;
+      long free = 0;
+      int used = 0;
+      for (int t = 0; t < trays.occupied.length; t++) {
+        if (trays.occupied[t] > 0) {
+          used++;
+          capacity += trays.capacity[t];
+          free += trays.capacity[t] - trays.occupied[t];
+        }
+      }
+      fragmentation += capacity == 0 ? 0 : (double) free / capacity;
+      inUse += used;
+      days++;
+      if (date.getDayOfMonth() == 1) {
+        L.debug(strategy + " " + date + ": " + live + " samples on " + used + " trays");
+      }
+    }
+    result.lookups = trays.lookups;
+    result.fragmentation = fragmentation / days;
+    result.traysInUse = inUse / days;
+    return result;
+  }
+
+  static List<PlacementStrategy> strategies() {
+    return Arrays.asList(new PlacementStrategy.EarliestExpiration(), new PlacementStrategy.BestFit(7),
+        new PlacementStrategy.BestFit(30), new PlacementStrategy.ExpiryBucketed(3),
+        new PlacementStrategy.ExpiryBucketed(7));
+  }
+
+  public static void main(String[] args) {
+    int days = args.length > 0 ? Integer.parseInt(args[0]) : 365;
+    int perDay = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int traysPerDiameter = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+    Intake in = Intake.generate(LocalDate.of(2017, 1, 1), days, perDay, 42);
+    L.info(in.size() + " samples over " + days + " days, " + traysPerDiameter * DIAMETERS + " trays of " + CAPACITY);
+    for (int runde = 0; runde < RUNDEN; runde++) {
+      for (PlacementStrategy s : strategies()) {
+        Result r = run(s, in, Trays.uniform(DIAMETERS, traysPerDiameter, CAPACITY));
+        if (runde == RUNDEN - 1) {
+          L.info(r.toString());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import java.time.LocalDate;
+
+/**
+ * Waehlt das Tablett fuer eine Probe. Den Platz auf dem Tablett bestimmt
+ * weiterhin CoolingService (kleinster freier Platz, siehe PlaceGapFinder).
+ * <p>
+ * Eine Strategie arbeitet nur ueber TrayLookup und haelt keinen eigenen
+ * Zustand, dieselbe Instanz kann also von mehreren Diensten und Threads
+ * benutzt werden. PlacementHarness vergleicht die Strategien ohne Datenbank.
+ */
+public interface PlacementStrategy {
+
+  /**
+   * Das gewaehlte Tablett. Ist openUntil gesetzt, ist das Tablett leer und
+   * bekommt dieses Ablaufdatum, bevor die Probe darauf kommt.
+   */
+  final class Placement {
+    public final int trayId;
+    public final int capacity;
+    public final LocalDate openUntil;
+
+    private Placement(int trayId, int capacity, LocalDate openUntil) {
+      this.trayId = trayId;
+      this.capacity = capacity;
+      this.openUntil = openUntil;
+    }
+
+    public static Placement existing(int[] tray) {
+      return new Placement(tray[0], tray[1], null);
+    }
+
+    public static Placement open(int[] tray, LocalDate until) {
+      return new Placement(tray[0], tray[1], until);
+    }
+
+    @Override
+    public String toString() {
+      return "Tray " + trayId + (openUntil == null ? "" : " opened until " + openUntil);
+    }
+  }
+
+  /**
+   * @return das Tablett oder null, wenn keines die Probe aufnehmen kann.
+   */
+  Placement place(TrayLookup trays, int diameter, LocalDate sampleExpiration);
+
+  /**
+   * Die Regel aus ICoolingService: Tablett mit dem kleinsten Ablaufdatum
+   * nicht vor dem der Probe, sonst ein leeres Tablett mit dem Ablaufdatum der
+   * Probe plus 30 Tage.
+   */
+  final class EarliestExpiration implements PlacementStrategy {
+    static final int EMPTY_TRAY_EXTRA_DAYS = 30;
+
+    @Override
+    public Placement place(TrayLookup trays, int diameter, LocalDate sampleExpiration) {
+      int[] tray = trays.earliestExpiring(diameter, sampleExpiration, null);
+      if (tray != null) {
+        return Placement.existing(tray);
+      }
+      tray = trays.empty(diameter);
+      return tray == null ? null : Placement.open(tray, sampleExpiration.plusDays(EMPTY_TRAY_EXTRA_DAYS));
+    }
+
+    @Override
+    public String toString() {
+      return "earliest expiration";
+    }
+  }
+
+  /**
+   * Best Fit: unter den Tabletts, die hoechstens slackDays nach der Probe
+   * ablaufen, das vollste. Volle Tabletts bleiben voll, angebrochene werden
+   * eher aufgefuellt als neue geoeffnet. Danach wie EarliestExpiration, die
+   * Suche kostet also einen Roundtrip mehr, wenn im Fenster nichts frei ist.
+   */
+  final class BestFit implements PlacementStrategy {
+    private final int slackDays;
+
+    public BestFit(int slackDays) {
+      this.slackDays = slackDays;
+    }
+
+    @Override
+    public Placement place(TrayLookup trays, int diameter, LocalDate sampleExpiration) {
+      int[] tray = trays.fullest(diameter, sampleExpiration, sampleExpiration.plusDays(slackDays));
+      if (tray != null) {
+        return Placement.existing(tray);
+      }
+      tray = trays.earliestExpiring(diameter, sampleExpiration, null);
+      if (tray != null) {
+        return Placement.existing(tray);
+      }
+      tray = trays.empty(diameter);
+      return tray == null ? null
+          : Placement.open(tray, sampleExpiration.plusDays(EarliestExpiration.EMPTY_TRAY_EXTRA_DAYS));
+    }
+
+    @Override
+    public String toString() {
+      return "best fit (" + slackDays + " days)";
+    }
+  }
+
+  /**
+   * Ablaufdaten in Eimern zu bucketDays Tagen (ab 1970-01-01): eine Probe
+   * kommt auf ein Tablett, das im Eimer ihres Ablaufdatums ablaeuft. Neue
+   * Tabletts laufen am letzten Tag des Eimers ab. Die Proben eines Tabletts
+   * laufen so fast gleichzeitig ab, das Tablett wird auf einmal frei, statt
+   * lange mit wenigen Proben zu stehen. Ist kein leeres Tablett mehr da,
+   * nimmt die Probe wie EarliestExpiration ein spaeter ablaufendes.
+   */
+  final class ExpiryBucketed implements PlacementStrategy {
+    private final int bucketDays;
+
+    public ExpiryBucketed(int bucketDays) {
+      if (bucketDays < 1) {
+        throw new IllegalArgumentException("bucketDays " + bucketDays);
+      }
+      this.bucketDays = bucketDays;
+    }
+
+    LocalDate bucketEnd(LocalDate d) {
+      long day = d.toEpochDay();
+      return LocalDate.ofEpochDay(Math.floorDiv(day, bucketDays) * bucketDays + bucketDays - 1);
+    }
+
+    @Override
+    public Placement place(TrayLookup trays, int diameter, LocalDate sampleExpiration) {
+      LocalDate end = bucketEnd(sampleExpiration);
+      int[] tray = trays.earliestExpiring(diameter, sampleExpiration, end);
+      if (tray != null) {
+        return Placement.existing(tray);
+      }
+      tray = trays.empty(diameter);
+      if (tray != null) {
+        return Placement.open(tray, end);
+      }
+      tray = trays.earliestExpiring(diameter, end.plusDays(1), null);
+      return tray == null ? null : Placement.existing(tray);
+    }
+
+    @Override
+    public String toString() {
+      return "expiry bucketed (" + bucketDays + " days)";
+    }
+  }
+}
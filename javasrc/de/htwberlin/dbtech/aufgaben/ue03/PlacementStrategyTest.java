@@ -0,0 +1,84 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import java.time.LocalDate;
+
+import org.junit.Assert;
+
+import de.htwberlin.dbtech.utils.DateUtils;
+
+public class PlacementStrategyTest {
+  private static final LocalDate D = LocalDate.of(2017, 3, 24);
+
+  /**
+   * Durchmesser 1: Tablett 1 laeuft D+2 ab und ist halb voll, Tablett 2 laeuft
+   * D+5 ab und hat noch einen Platz, Tablett 3 ist voll, Tablett 4 leer.
+   * Tablett 5 hat Durchmesser 2.
+   */
+  private static PlacementHarness.Trays trays() {
+    PlacementHarness.Trays t = new PlacementHarness.Trays(new int[] { 1, 1, 1, 1, 2 }, new int[] { 10, 10, 10, 10, 10 });
+    set(t, 0, 2, 5);
+    set(t, 1, 5, 9);
+    set(t, 2, 1, 10);
+    return t;
+  }
+
+  private static void set(PlacementHarness.Trays t, int i, int days, int occupied) {
+    t.expiration[i] = DateUtils.toEpochDay(D.plusDays(days));
+    t.occupied[i] = occupied;
+  }
+
+  private static String place(PlacementStrategy s, PlacementHarness.Trays t, int diameter, int days) {
+    PlacementStrategy.Placement p = s.place(t, diameter, D.plusDays(days));
+    return p == null ? null : p.toString();
+  }
+
+  @org.junit.Test
+  public void testEarliestExpiration() {
+    PlacementStrategy s = new PlacementStrategy.EarliestExpiration();
+    Assert.assertEquals("Tray 1", place(s, trays(), 1, 0));
+    Assert.assertEquals("Tray 2", place(s, trays(), 1, 3));
+    Assert.assertEquals("Tray 4 opened until 2017-05-01", place(s, trays(), 1, 8));
+    Assert.assertEquals("Tray 5 opened until 2017-04-23", place(s, trays(), 2, 0));
+    Assert.assertNull(place(s, trays(), 3, 0));
+  }
+
+  @org.junit.Test
+  public void testBestFit() {
+    PlacementHarness.Trays t = trays();
+    // Tablett 2 ist voller als Tablett 1 und liegt im Fenster
+    Assert.assertEquals("Tray 2", place(new PlacementStrategy.BestFit(7), t, 1, 0));
+    // Fenster zu klein: wie EarliestExpiration, eine Suche mehr
+    t.lookups = 0;
+    Assert.assertEquals("Tray 2", place(new PlacementStrategy.BestFit(1), t, 1, 3));
+    Assert.assertEquals(2, t.lookups);
+  }
+
+  @org.junit.Test
+  public void testExpiryBucketed() {
+    PlacementStrategy.ExpiryBucketed s = new PlacementStrategy.ExpiryBucketed(7);
+    // 2017-03-24 ist Tag 17249, der Eimer reicht bis Tag 17254 = 2017-03-29
+    Assert.assertEquals(LocalDate.of(2017, 3, 29), s.bucketEnd(D));
+    Assert.assertEquals(LocalDate.of(2017, 3, 29), s.bucketEnd(LocalDate.of(2017, 3, 29)));
+    Assert.assertEquals(LocalDate.of(2017, 4, 5), s.bucketEnd(LocalDate.of(2017, 3, 30)));
+    PlacementHarness.Trays t = trays();
+    Assert.assertEquals("Tray 1", place(s, t, 1, 0));
+    // Tablett 2 (D+5) liegt im naechsten Eimer, also ein leeres oeffnen
+    Assert.assertEquals("Tray 4 opened until 2017-04-05", place(s, t, 1, 6));
+    // kein leeres Tablett mehr: ein spaeter ablaufendes
+    t.occupied[3] = 1;
+    Assert.assertNull(place(s, t, 1, 6));
+    set(t, 1, 14, 9);
+    Assert.assertEquals("Tray 2", place(s, t, 1, 6));
+  }
+
+  @org.junit.Test
+  public void testHarness() {
+    PlacementHarness.Intake in = PlacementHarness.Intake.generate(D, 60, 50, 1);
+    for (PlacementStrategy s : PlacementHarness.strategies()) {
+      PlacementHarness.Result r = PlacementHarness.run(s, in, PlacementHarness.Trays.uniform(5, 20, 50));
+      Assert.assertEquals(s.toString(), 0, r.rejected);
+      Assert.assertTrue(s.toString(), r.opened > 0 && r.lookups >= in.size());
+      Assert.assertTrue(s.toString(), r.fragmentation >= 0 && r.fragmentation < 1);
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import java.time.LocalDate;
+
+/**
+ * Suchen nach Tabletts, aus denen eine PlacementStrategy ihre Entscheidung
+ * zusammensetzt. Gesucht wird immer unter den Tabletts mit dem Durchmesser
+ * diameter und mindestens einem freien Platz, geliefert wird {TrayID,
+ * Capacity} oder null. Jede Suche ist in CoolingService eine Anfrage an
+ * TrayFill, also ein Roundtrip.
+ */
+public interface TrayLookup {
+
+  /**
+   * Tablett mit dem kleinsten Ablaufdatum in [from, to], bei gleichem Datum
+   * die kleinste TrayID. to == null heisst ohne obere Grenze.
+   */
+  int[] earliestExpiring(int diameter, LocalDate from, LocalDate to);
+
+  /**
+   * Tablett mit den wenigsten freien Plaetzen und Ablaufdatum in [from, to],
+   * danach wie earliestExpiring().
+   */
+  int[] fullest(int diameter, LocalDate from, LocalDate to);
+
+  /**
+   * Leeres Tablett mit der kleinsten TrayID, gleich welches Ablaufdatum es
+   * noch hat.
+   */
+  int[] empty(int diameter);
+}
@@ -0,0 +1,449 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DateUtils;
+
+/**
+ * Belegung aller Tabletts im Speicher: Metadaten aus Tray und pro Tablett eine
+ * Bitmap der belegten Plaetze aus Place.
+ * <p>
+ * Alle Daten liegen in einem einzigen ByteBuffer in dem Format, das auch
+ * TrayOccupancySnapshot auf die Platte schreibt. Ein geladener Snapshot wird
+ * daher ohne Umkopieren direkt ueber die gemappte Datei benutzt.
+ * <p>
+ * Layout: Kopf (32 Byte), danach ein Satz pro Tablett (40 Byte, nach TrayID
+ * sortiert), danach die Bitmaps als long-Woerter. Bit i eines Tabletts steht
+ * fuer PlaceNo i+1.
+ * <p>
+ * Ob sich die Plaetze eines Tabletts seit dem letzten Lesen geaendert haben,
+ * zeigt TrayFill.Version (migrations/V004). Die gelesene
+ * Version steht im Satz des Tabletts, eine Aenderung im Speicher setzt sie
+ * auf UNKNOWN_VERSION, damit catchUp das Tablett sicher neu liest.
+ * <p>
+ * Aenderungen sind synchronisiert, lesende Zugriffe nicht.
+ */
+public class TrayOccupancy {
+  private static final Logger L = LoggerFactory.getLogger(TrayOccupancy.class);
+
+  static final int MAGIC = 0x504B5331; // "PKS1"
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 32;
+  static final int RECORD_SIZE = 40;
+
+  /** Plaetze nicht auf einem bekannten Stand der Datenbank. */
+  static final long UNKNOWN_VERSION = -1;
+
+  /** Ablaufdatum null in der Datenbank. */
+  public static final int NO_DATE = DateUtils.NO_EPOCH_DAY;
+
+  // Offsets im Kopf
+  private static final int H_MAGIC = 0;
+  private static final int H_VERSION = 4;
+  private static final int H_TRAYS = 8;
+  private static final int H_WORDS = 12;
+  private static final int H_CREATED = 16;
+
+  // Offsets im Satz eines Tabletts
+  private static final int R_TRAY_ID = 0;
+  private static final int R_DIAMETER = 4;
+  private static final int R_CAPACITY = 8;
+  private static final int R_EXPIRATION = 12;
+  private static final int R_OCCUPIED = 16;
+  private static final int R_WORD_OFFSET = 20;
+  private static final int R_PLACE_VERSION = 24;
+  // 32 bis 40 frei
+
+  private final ByteBuffer buf;
+  private final int trays;
+  private final int bitmapStart;
+
+  TrayOccupancy(ByteBuffer buf) {
+    if (buf.getInt(H_MAGIC) != MAGIC || buf.getInt(H_VERSION) != VERSION) {
+      throw new DataException("unknown tray occupancy format");
+    }
+    this.buf = buf;
+    this.trays = buf.getInt(H_TRAYS);
+    this.bitmapStart = HEADER_SIZE + trays * RECORD_SIZE;
+    if (buf.capacity() < bitmapStart + 8L * buf.getInt(H_WORDS)) {
+      throw new DataException("tray occupancy data truncated");
+    }
+  }
+
+  /**
+   * Erzeugt eine leere Belegung fuer die uebergebenen Tabletts.
+   *
+   * @param trays
+   *          Tabletts aufsteigend nach TrayID.
+   */
+  static TrayOccupancy allocate(List<TrayInfo> trays) {
+    int words = 0;
+    for (TrayInfo t : trays) {
+      words += wordsFor(t.capacity);
+    }
+    ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE + trays.size() * RECORD_SIZE + 8 * words);
+    b.putInt(H_MAGIC, MAGIC);
+    b.putInt(H_VERSION, VERSION);
+    b.putInt(H_TRAYS, trays.size());
+    b.putInt(H_WORDS, words);
+    b.putLong(H_CREATED, System.currentTimeMillis());
+    int offset = 0;
+    for (int i = 0; i < trays.size(); i++) {
+      TrayInfo t = trays.get(i);
+      int r = HEADER_SIZE + i * RECORD_SIZE;
+      b.putInt(r + R_TRAY_ID, t.trayId);
+      b.putInt(r + R_DIAMETER, t.diameter);
+      b.putInt(r + R_CAPACITY, t.capacity);
+      b.putInt(r + R_EXPIRATION, t.expirationEpochDay);
+      b.putInt(r + R_WORD_OFFSET, offset);
+      b.putLong(r + R_PLACE_VERSION, UNKNOWN_VERSION);
+      offset += wordsFor(t.capacity);
+    }
+    return new TrayOccupancy(b);
+  }
+
+  /**
+   * Liest alle Tabletts und Plaetze aus der Datenbank (Kaltstart).
+   */
+  public static TrayOccupancy load(Connection connection) {
+    // Versionen vor den Plaetzen lesen: eine Aenderung dazwischen fuehrt
+    // beim naechsten catchUp nur zu einem ueberfluessigen Neulesen
+    List<TrayInfo> current = readTrays(connection);
+    TrayOccupancy o = allocate(current);
+    String sql = "SELECT TrayID, PlaceNo FROM Place ORDER BY TrayID, PlaceNo";
+    L.info(sql);
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      ps.setFetchSize(5000);
+      try (ResultSet rs = ps.executeQuery()) {
+        o.readPlaces(rs);
+      }
+    } catch (SQLException e) {
+      throw new DataException(e);
+    }
+    for (int i = 0; i < o.trays; i++) {
+      o.putLong(i, R_PLACE_VERSION, current.get(i).placeVersion);
+    }
+    L.info("loaded " + o.size() + " trays");
+    return o;
+  }
+
+  /**
+   * Bringt die Belegung auf den Stand der Datenbank. Dafuer wird pro Tablett
+   * nur TrayFill.Version gelesen; die Plaetze werden nur fuer Tabletts neu
+   * gelesen, deren Version abweicht oder unbekannt ist. Haben sich Tabletts
+   * oder ihre Kapazitaet geaendert, wird komplett neu geladen.
+   *
+   * @return diese Belegung oder eine neu geladene.
+   */
+  public TrayOccupancy catchUp(Connection connection) {
+    List<TrayInfo> current = readTrays(connection);
+    if (!sameLayout(current)) {
+      L.info("tray layout changed, full reload");
+      return load(connection);
+    }
+    List<Integer> changed = changedTrays(current);
+    L.info("catch up: " + changed.size() + " of " + trays + " trays changed");
+    if (changed.isEmpty()) {
+      return this;
+    }
+    String sql = "SELECT TrayID, PlaceNo FROM Place WHERE TrayID = ? ORDER BY PlaceNo";
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      for (int i : changed) {
+        ps.setInt(1, trayId(i));
+        try (ResultSet rs = ps.executeQuery()) {
+          synchronized (this) {
+            clear(i);
+            readPlaces(rs);
+            putLong(i, R_PLACE_VERSION, current.get(i).placeVersion);
+          }
+        }
+      }
+    } catch (SQLException e) {
+      throw new DataException(e);
+    }
+    return this;
+  }
+
+  /**
+   * Uebernimmt die Ablaufdaten und liefert die Tabletts, deren Plaetze neu
+   * gelesen werden muessen.
+   */
+  synchronized List<Integer> changedTrays(List<TrayInfo> current) {
+    List<Integer> changed = new ArrayList<>();
+    buf.putLong(H_CREATED, System.currentTimeMillis());
+    for (int i = 0; i < trays; i++) {
+      TrayInfo t = current.get(i);
+      putInt(i, R_EXPIRATION, t.expirationEpochDay);
+      long version = placeVersion(i);
+      if (version == UNKNOWN_VERSION || version != t.placeVersion) {
+        changed.add(i);
+      }
+    }
+    return changed;
+  }
+
+  long placeVersion(int i) {
+    return getLong(i, R_PLACE_VERSION);
+  }
+
+  public int size() {
+    return trays;
+  }
+
+  /**
+   * Position des Tabletts oder -1, falls es nicht existiert.
+   */
+  public int indexOf(int trayId) {
+    int lo = 0;
+    int hi = trays - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int id = getInt(mid, R_TRAY_ID);
+      if (id < trayId) {
+        lo = mid + 1;
+      } else if (id > trayId) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  public int trayId(int i) {
+    return getInt(i, R_TRAY_ID);
+  }
+
+  public int diameter(int i) {
+    return getInt(i, R_DIAMETER);
+  }
+
+  public int capacity(int i) {
+    return getInt(i, R_CAPACITY);
+  }
+
+  /**
+   * Ablaufdatum als Epoch-Day oder NO_DATE.
+   */
+  public int expirationEpochDay(int i) {
+    return getInt(i, R_EXPIRATION);
+  }
+
+  public int occupied(int i) {
+    return getInt(i, R_OCCUPIED);
+  }
+
+  public boolean isOccupied(int i, int placeNo) {
+    if (placeNo < 1 || placeNo > capacity(i)) {
+      return false;
+    }
+    int bit = placeNo - 1;
+    return (word(i, bit >>> 6) & (1L << bit)) != 0;
+  }
+
+  /**
+   * Kleinster freier Platz des Tabletts oder -1, falls es voll ist. Sucht das
+   * erste Wort mit einem 0-Bit, im Wort liefert numberOfTrailingZeros die
+   * Stelle.
+   */
+  public int lowestFreePlace(int i) {
+    int capacity = capacity(i);
+    if (occupied(i) >= capacity) {
+      return -1;
+    }
+    int base = bitmapStart + 8 * getInt(i, R_WORD_OFFSET);
+    int words = wordsFor(capacity);
+    for (int w = 0; w < words; w++) {
+      long free = ~buf.getLong(base + 8 * w);
+      if (free != 0) {
+        int bit = (w << 6) + Long.numberOfTrailingZeros(free);
+        return bit < capacity ? bit + 1 : -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Zeitpunkt des letzten Abgleichs mit der Datenbank.
+   */
+  public long createdMillis() {
+    return buf.getLong(H_CREATED);
+  }
+
+  public synchronized void setExpirationEpochDay(int i, int epochDay) {
+    putInt(i, R_EXPIRATION, epochDay);
+  }
+
+  public synchronized boolean occupy(int i, int placeNo) {
+    return set(i, placeNo, true);
+  }
+
+  public synchronized boolean release(int i, int placeNo) {
+    return set(i, placeNo, false);
+  }
+
+  public synchronized void clear(int i) {
+    int from = bitmapStart + 8 * getInt(i, R_WORD_OFFSET);
+    for (int w = 0; w < wordsFor(capacity(i)); w++) {
+      buf.putLong(from + 8 * w, 0L);
+    }
+    putInt(i, R_OCCUPIED, 0);
+    putLong(i, R_PLACE_VERSION, UNKNOWN_VERSION);
+  }
+
+  /**
+   * Kopie des gesamten Puffers, konsistent zu einem Zeitpunkt.
+   */
+  synchronized byte[] toBytes() {
+    byte[] b = new byte[buf.capacity()];
+    buf.duplicate().clear().get(b);
+    return b;
+  }
+
+  private boolean set(int i, int placeNo, boolean value) {
+    if (placeNo < 1 || placeNo > capacity(i)) {
+      throw new IllegalArgumentException("place " + placeNo + " out of range for tray " + trayId(i));
+    }
+    int bit = placeNo - 1;
+    int pos = bitmapStart + 8 * (getInt(i, R_WORD_OFFSET) + (bit >>> 6));
+    long w = buf.getLong(pos);
+    long mask = 1L << bit;
+    if (((w & mask) != 0) == value) {
+      return false;
+    }
+    buf.putLong(pos, value ? w | mask : w & ~mask);
+    putInt(i, R_OCCUPIED, occupied(i) + (value ? 1 : -1));
+    putLong(i, R_PLACE_VERSION, UNKNOWN_VERSION);
+    return true;
+  }
+
+  long word(int i, int w) {
+    return buf.getLong(bitmapStart + 8 * (getInt(i, R_WORD_OFFSET) + w));
+  }
+
+  static int wordsFor(int capacity) {
+    return (capacity + 63) >>> 6;
+  }
+
+  private void readPlaces(ResultSet rs) throws SQLException {
+    int i = -1;
+    while (rs.next()) {
+      int trayId = rs.getInt(1);
+      int placeNo = rs.getInt(2);
+      if (i < 0 || trayId(i) != trayId) {
+        i = indexOf(trayId);
+      }
+      if (i < 0 || placeNo < 1 || placeNo > capacity(i)) {
+        L.warn("ignoring place " + trayId + "/" + placeNo);
+        continue;
+      }
+      set(i, placeNo, true);
+    }
+  }
+
+  private boolean sameLayout(List<TrayInfo> current) {
+    if (current.size() != trays) {
+      return false;
+    }
+    for (int i = 0; i < trays; i++) {
+      TrayInfo t = current.get(i);
+      if (t.trayId != trayId(i) || t.capacity != capacity(i) || t.diameter != diameter(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static List<TrayInfo> readTrays(Connection connection) {
+    String sql = String.join(" ",
+        "SELECT t.TrayID, t.DiameterInCM, t.Capacity, t.ExpirationDate, f.Version",
+        "FROM Tray t LEFT JOIN TrayFill f ON f.TrayID = t.TrayID",
+        "ORDER BY t.TrayID");
+    L.info(sql);
+    List<TrayInfo> l = new ArrayList<>();
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      ps.setFetchSize(5000);
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          TrayInfo t = new TrayInfo();
+          t.trayId = rs.getInt(1);
+          t.diameter = rs.getInt(2);
+          t.capacity = rs.getInt(3);
+          t.expirationEpochDay = DateUtils.getEpochDay(rs, 4);
+          t.placeVersion = rs.getLong(5);
+          if (rs.wasNull()) {
+            t.placeVersion = UNKNOWN_VERSION;
+          }
+          l.add(t);
+        }
+      }
+    } catch (SQLException e) {
+      throw new DataException(e);
+    }
+    return l;
+  }
+
+  private int getInt(int i, int field) {
+    return buf.getInt(HEADER_SIZE + i * RECORD_SIZE + field);
+  }
+
+  private void putInt(int i, int field, int value) {
+    buf.putInt(HEADER_SIZE + i * RECORD_SIZE + field, value);
+  }
+
+  private long getLong(int i, int field) {
+    return buf.getLong(HEADER_SIZE + i * RECORD_SIZE + field);
+  }
+
+  private void putLong(int i, int field, long value) {
+    buf.putLong(HEADER_SIZE + i * RECORD_SIZE + field, value);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("TrayOccupancy[");
+    for (int i = 0; i < trays; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(trayId(i)).append(':').append(occupied(i)).append('/').append(capacity(i));
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Metadaten eines Tabletts, wie sie aus der Datenbank gelesen werden.
+   */
+  static class TrayInfo {
+    int trayId;
+    int diameter;
+    int capacity;
+    int expirationEpochDay = NO_DATE;
+    long placeVersion = UNKNOWN_VERSION;
+
+    TrayInfo() {
+    }
+
+    TrayInfo(int trayId, int diameter, int capacity, int expirationEpochDay) {
+      this.trayId = trayId;
+      this.diameter = diameter;
+      this.capacity = capacity;
+      this.expirationEpochDay = expirationEpochDay;
+    }
+
+    @Override
+    public String toString() {
+      return "TrayInfo[trayId=" + trayId + ", diameter=" + diameter + ", capacity=" + capacity + "]";
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Schreibt die Tablett-Belegung als Binaerdatei und laedt sie beim Start
+ * wieder. Die Datei enthaelt genau den Puffer von TrayOccupancy und wird beim
+ * Laden privat gemappt: gelesen wird direkt aus der Datei, Aenderungen im
+ * Speicher landen per Copy-on-Write nicht in der Datei.
+ */
+public class TrayOccupancySnapshot {
+  private static final Logger L = LoggerFactory.getLogger(TrayOccupancySnapshot.class);
+
+  private final Path file;
+  private ScheduledExecutorService scheduler;
+
+  public TrayOccupancySnapshot(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Schreibt die Belegung ueber eine gemappte temporaere Datei, die danach
+   * atomar umbenannt wird. Ein Absturz waehrend des Schreibens laesst den
+   * alten Snapshot also unveraendert.
+   */
+  public void write(TrayOccupancy occupancy) {
+    byte[] data = occupancy.toBytes();
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_WRITE, 0, data.length);
+      mb.put(data);
+      mb.force();
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+    try {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+    L.info("snapshot written: " + file + " (" + data.length + " bytes)");
+  }
+
+  /**
+   * Mappt den Snapshot ohne ihn zu kopieren.
+   *
+   * @return die Belegung oder null, falls keine Datei existiert.
+   */
+  public TrayOccupancy load() {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    // PRIVATE braucht einen beschreibbaren Kanal, die Datei selbst bleibt
+    // unveraendert; das Mapping bleibt nach dem Schliessen des Kanals gueltig
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer mb = ch.map(FileChannel.MapMode.PRIVATE, 0, ch.size());
+      return new TrayOccupancy(mb);
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+  }
+
+  /**
+   * Laedt den Snapshot und gleicht ihn mit der Datenbank ab. Ist kein
+   * brauchbarer Snapshot vorhanden, wird die Belegung komplett aus der
+   * Datenbank gelesen.
+   */
+  public TrayOccupancy warmStart(Connection connection) {
+    long start = System.currentTimeMillis();
+    TrayOccupancy o = null;
+    try {
+      o = load();
+    } catch (DataException e) {
+      L.warn("snapshot unusable, cold start: " + e.getMessage());
+    }
+    o = o == null ? TrayOccupancy.load(connection) : o.catchUp(connection);
+    L.info("tray occupancy ready after " + (System.currentTimeMillis() - start) + " ms");
+    return o;
+  }
+
+  /**
+   * Schreibt regelmaessig die jeweils aktuelle Belegung.
+   */
+  public synchronized void startPeriodic(Supplier<TrayOccupancy> source, Duration interval) {
+    stop();
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "tray-occupancy-snapshot");
+      t.setDaemon(true);
+      return t;
+    });
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        write(source.get());
+      } catch (RuntimeException e) {
+        L.error("snapshot failed", e);
+      }
+    }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      scheduler = null;
+    }
+  }
+}
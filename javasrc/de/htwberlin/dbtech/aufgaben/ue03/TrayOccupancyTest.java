@@ -0,0 +1,121 @@
+package de.htwberlin.dbtech.aufgaben.ue03;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.htwberlin.dbtech.aufgaben.ue03.TrayOccupancy.TrayInfo;
+import de.htwberlin.dbtech.utils.FakeJdbc;
+
+public class TrayOccupancyTest {
+  TrayOccupancy o;
+
+  @org.junit.Before
+  public void setUp() throws Exception {
+    int day = (int) LocalDate.of(2017, 5, 31).toEpochDay();
+    o = TrayOccupancy.allocate(Arrays.asList(new TrayInfo(1, 1, 1, day), new TrayInfo(5, 4, 3, TrayOccupancy.NO_DATE),
+        new TrayInfo(6, 5, 130, day)));
+  }
+
+  @org.junit.Test
+  public void testBelegen() {
+    int i = o.indexOf(6);
+    assertTrue(o.occupy(i, 1));
+    assertTrue(o.occupy(i, 130));
+    assertFalse(o.occupy(i, 130));
+    assertEquals(2, o.occupied(i));
+    assertTrue(o.isOccupied(i, 130));
+    assertFalse(o.isOccupied(i, 64));
+    assertTrue(o.release(i, 1));
+    assertEquals(1, o.occupied(i));
+    assertEquals(-1, o.indexOf(2));
+  }
+
+  @org.junit.Test(expected = IllegalArgumentException.class)
+  public void testPlatzAusserhalb() {
+    o.occupy(o.indexOf(5), 4);
+  }
+
+  @org.junit.Test
+  public void testSnapshot() throws Exception {
+    o.occupy(o.indexOf(5), 2);
+    o.occupy(o.indexOf(6), 100);
+    File f = File.createTempFile("tray-occupancy", ".bin");
+    f.deleteOnExit();
+    TrayOccupancySnapshot snapshot = new TrayOccupancySnapshot(f.toPath());
+    snapshot.write(o);
+    TrayOccupancy geladen = snapshot.load();
+    assertEquals(3, geladen.size());
+    assertEquals(TrayOccupancy.NO_DATE, geladen.expirationEpochDay(1));
+    assertTrue(geladen.isOccupied(1, 2));
+    assertTrue(geladen.isOccupied(2, 100));
+    assertEquals(1, geladen.occupied(2));
+    // Aenderungen am geladenen Snapshot gehen nicht in die Datei
+    geladen.occupy(0, 1);
+    assertFalse(snapshot.load().isOccupied(0, 1));
+  }
+
+  // Datenbank im Speicher: Tablett 6 mit Version und Plaetzen
+  long version;
+  int[] places;
+  FakeJdbc db = new FakeJdbc()
+      .onQuery("FROM Tray", p -> Collections.singletonList(new Object[] { 6, 5, 130, null, version }))
+      .onQuery("FROM Place", p -> {
+        List<Object[]> rows = new ArrayList<>();
+        for (int place : places) {
+          rows.add(new Object[] { 6, place });
+        }
+        return rows;
+      });
+
+  private Connection db() {
+    return db.connection();
+  }
+
+  private int placeQueries() {
+    return db.count("query: SELECT TrayID, PlaceNo FROM Place");
+  }
+
+  @org.junit.Test
+  public void testCatchUpGleicheSummen() {
+    version = 3;
+    places = new int[] { 1, 5, 6 };
+    TrayOccupancy geladen = TrayOccupancy.load(db());
+    // gleiche Anzahl, Summe und Quadratsumme wie vorher: 3, 12, 62
+    version = 4;
+    places = new int[] { 2, 3, 7 };
+    assertTrue(geladen == geladen.catchUp(db()));
+    assertEquals(2, placeQueries());
+    assertFalse(geladen.isOccupied(0, 1));
+    assertTrue(geladen.isOccupied(0, 2));
+    assertTrue(geladen.isOccupied(0, 3));
+    assertFalse(geladen.isOccupied(0, 5));
+    assertFalse(geladen.isOccupied(0, 6));
+    assertTrue(geladen.isOccupied(0, 7));
+    assertEquals(4, geladen.placeVersion(0));
+  }
+
+  @org.junit.Test
+  public void testCatchUpUnveraendert() {
+    version = 3;
+    places = new int[] { 1, 5, 6 };
+    TrayOccupancy geladen = TrayOccupancy.load(db());
+    geladen.catchUp(db());
+    assertEquals(1, placeQueries());
+    // eine Aenderung im Speicher wird beim naechsten Abgleich verworfen
+    geladen.occupy(0, 2);
+    assertEquals(TrayOccupancy.UNKNOWN_VERSION, geladen.placeVersion(0));
+    geladen.catchUp(db());
+    assertEquals(2, placeQueries());
+    assertFalse(geladen.isOccupied(0, 2));
+    assertEquals(3, geladen.occupied(0));
+  }
+}
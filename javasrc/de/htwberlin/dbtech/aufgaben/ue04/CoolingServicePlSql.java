@@ -29,6 +29,11 @@ public class CoolingServicePlSql implements ICoolingService {
 
   @Override
   public void transferSample(Integer sampleId, Integer diameterInCM) {
+    transferSample(sampleId.intValue(), diameterInCM.intValue());
+  }
+
+  @Override
+  public void transferSample(int sampleId, int diameterInCM) {
     L.info("transferSample: sampleId: " + sampleId + ", diameterInCM: " + diameterInCM);
     try (CallableStatement cStmt = useConnection().prepareCall("{call cooling_service.transfer_sample(?, ?)}")) {
       cStmt.setInt(1, sampleId);
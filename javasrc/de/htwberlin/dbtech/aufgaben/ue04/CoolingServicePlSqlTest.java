@@ -1,18 +1,15 @@
 package de.htwberlin.dbtech.aufgaben.ue04;
 
-import java.io.File;
 import java.sql.SQLException;
 
 import org.dbunit.Assertion;
 import org.dbunit.DatabaseUnitException;
 import org.dbunit.IDatabaseTester;
-import org.dbunit.JdbcDatabaseTester;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.database.QueryDataSet;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.ITable;
-import org.dbunit.dataset.csv.CsvDataSet;
-import org.dbunit.operation.DatabaseOperation;
+import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
@@ -21,14 +18,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.htwberlin.dbtech.exceptions.CoolingSystemException;
-import de.htwberlin.dbtech.utils.DbCred;
 import de.htwberlin.dbtech.utils.DbUnitUtils;
+import de.htwberlin.dbtech.utils.FixtureEngine;
+import de.htwberlin.dbtech.utils.StatementCounter;
+import de.htwberlin.dbtech.utils.TestDb;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class CoolingServicePlSqlTest {
   private static final Logger L = LoggerFactory.getLogger(CoolingServicePlSqlTest.class);
   private static IDatabaseConnection dbTesterCon = null;
-  private static IDataSet pre = null;
+  private static FixtureEngine.Session fixture = null;
 
   private static ICoolingService cs = new CoolingServicePlSql();
 
@@ -36,13 +35,12 @@ public class CoolingServicePlSqlTest {
   public static void setUp() {
     L.debug("setUp: start");
     try {
-      IDatabaseTester dbTester = new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, DbCred.user, DbCred.password,
-          DbCred.schema);
+      IDatabaseTester dbTester = TestDb.tester();
       dbTesterCon = dbTester.getConnection();
-      pre = new CsvDataSet(new File("test-data/ue03-04/pre"));
-      dbTester.setDataSet(pre);
-      DatabaseOperation.CLEAN_INSERT.execute(dbTesterCon, pre);
-      cs.setConnection(dbTesterCon.getConnection());
+      // einmal laden, nach jedem Test auf den Savepoint zurueck
+      fixture = FixtureEngine.load("test-data/ue03-04/pre").begin(dbTesterCon.getConnection());
+      // der Aufruf der Prozedur ist ein einziger Roundtrip
+      cs.setConnection(StatementCounter.wrap(dbTesterCon.getConnection()));
     } catch (Exception e) {
       DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
       throw new RuntimeException(e);
@@ -52,9 +50,17 @@ public class CoolingServicePlSqlTest {
   @AfterClass
   public static void tearDown() throws Exception {
     L.debug("tearDown: start");
+    if (fixture != null) {
+      fixture.close();
+    }
     DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
   }
 
+  @After
+  public void resetFixture() {
+    fixture.reset();
+  }
+
   /**
    * SampleID existiert nicht.
    */
@@ -62,7 +68,7 @@ public class CoolingServicePlSqlTest {
   public void testCoolingService01() {
     Integer nonexistentSampleId = 999;
     Integer validDiameter = 1;
-    cs.transferSample(nonexistentSampleId, validDiameter);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(nonexistentSampleId, validDiameter));
   }
 
   /**
@@ -72,7 +78,7 @@ public class CoolingServicePlSqlTest {
   public void testCoolingService02() {
     Integer validSampleId = 1;
     Integer diameterTooLarge = 999;
-    cs.transferSample(validSampleId, diameterTooLarge);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(validSampleId, diameterTooLarge));
   }
 
   /**
@@ -82,7 +88,7 @@ public class CoolingServicePlSqlTest {
   public void testCoolingService03() {
     Integer sampleIdWithExpirationToFarInFuture = 1;
     Integer validDiameter = 1;
-    cs.transferSample(sampleIdWithExpirationToFarInFuture, validDiameter);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(sampleIdWithExpirationToFarInFuture, validDiameter));
   }
 
   /**
@@ -93,7 +99,7 @@ public class CoolingServicePlSqlTest {
   public void testCoolingService04() {
     Integer sampleIdWithExpirationOk = 2;
     Integer diameterPossible = 1;
-    cs.transferSample(sampleIdWithExpirationOk, diameterPossible);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(sampleIdWithExpirationOk, diameterPossible));
   }
 
   /**
@@ -106,7 +112,7 @@ public class CoolingServicePlSqlTest {
   public void testCoolingService05() throws SQLException, DatabaseUnitException {
     Integer sampleIdWithExpirationToFarInFuture = 3;
     Integer validDiameter = 2;
-    cs.transferSample(sampleIdWithExpirationToFarInFuture, validDiameter);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(sampleIdWithExpirationToFarInFuture, validDiameter));
 
     // Lade tatsaechliche Daten aus der Datenbank
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -118,7 +124,7 @@ public class CoolingServicePlSqlTest {
     ITable actualTablePlace = databaseDataSet.getTable("Place");
 
     // Lade erwartete Daten
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/ue03-04/post01"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/ue03-04/post01").asDataSet();
     ITable expectedTableTray = expectedDataSet.getTable("Tray");
     ITable expectedTablePlace = expectedDataSet.getTable("Place");
 
@@ -134,7 +140,7 @@ public class CoolingServicePlSqlTest {
   public void testCoolingService06() throws SQLException, DatabaseUnitException {
     Integer validSampleId = 5;
     Integer validDiameter = 3;
-    cs.transferSample(validSampleId, validDiameter);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(validSampleId, validDiameter));
 
     // Lade tatsaechliche Daten aus der Datenbank
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -146,7 +152,7 @@ public class CoolingServicePlSqlTest {
     ITable actualTablePlace = databaseDataSet.getTable("Place");
 
     // Lade erwartete Daten
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/ue03-04/post02"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/ue03-04/post02").asDataSet();
     ITable expectedTableTray = expectedDataSet.getTable("Tray");
     ITable expectedTablePlace = expectedDataSet.getTable("Place");
 
@@ -164,8 +170,8 @@ public class CoolingServicePlSqlTest {
     Integer validSampleId1 = 7;
     Integer validSampleId2 = 8;
     Integer validDiameter = 4;
-    cs.transferSample(validSampleId1, validDiameter);
-    cs.transferSample(validSampleId2, validDiameter);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(validSampleId1, validDiameter));
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(validSampleId2, validDiameter));
 
     // Lade tatsaechliche Daten aus der Datenbank
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -177,7 +183,7 @@ public class CoolingServicePlSqlTest {
     ITable actualTablePlace = databaseDataSet.getTable("Place");
 
     // Lade erwartete Daten
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/ue03-04/post03"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/ue03-04/post03").asDataSet();
     ITable expectedTableTray = expectedDataSet.getTable("Tray");
     ITable expectedTablePlace = expectedDataSet.getTable("Place");
 
@@ -195,8 +201,8 @@ public class CoolingServicePlSqlTest {
     Integer validSampleId1 = 11;
     Integer validSampleId2 = 12;
     Integer validDiameter = 5;
-    cs.transferSample(validSampleId1, validDiameter);
-    cs.transferSample(validSampleId2, validDiameter);
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(validSampleId1, validDiameter));
+    StatementCounter.assertMaxRoundTrips(1, () -> cs.transferSample(validSampleId2, validDiameter));
 
     // Lade tatsaechliche Daten aus der Datenbank
     QueryDataSet databaseDataSet = new QueryDataSet(dbTesterCon);
@@ -208,7 +214,7 @@ public class CoolingServicePlSqlTest {
     ITable actualTablePlace = databaseDataSet.getTable("Place");
 
     // Lade erwartete Daten
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/ue03-04/post04"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/ue03-04/post04").asDataSet();
     ITable expectedTableTray = expectedDataSet.getTable("Tray");
     ITable expectedTablePlace = expectedDataSet.getTable("Place");
 
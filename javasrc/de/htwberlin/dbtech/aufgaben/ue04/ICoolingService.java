@@ -42,4 +42,9 @@ public interface ICoolingService {
    *           bei allen Datenbankfehlern.
    */
   void transferSample(Integer sampleId, Integer diameterInCM);
+
+  /**
+   * Wie transferSample(Integer, Integer), aber ohne Boxing.
+   */
+  void transferSample(int sampleId, int diameterInCM);
 }
@@ -18,11 +18,17 @@ public class Angebot {
   private BigDecimal aktuellerPreis;
 
   private Connection connection = null;
+  private ArtikelIndex artikelIndex = null;
 
   public void setConnection(Connection connection) {
     this.connection = connection;
   }
 
+  // optional, haelt die Artikelsuche bei insert, update und delete aktuell
+  public void setArtikelIndex(ArtikelIndex artikelIndex) {
+    this.artikelIndex = artikelIndex;
+  }
+
   @SuppressWarnings("unused")
 private Connection useConnection() {
     if (connection == null) {
@@ -67,15 +73,28 @@ private Connection useConnection() {
     return aktuellerPreis;
   }
 
+  public void setAktuellerPreis(BigDecimal aktuellerPreis) {
+    this.aktuellerPreis = aktuellerPreis;
+  }
+
   public void insert() {
     // SQL-Code zum Speichern dieses Angebots in der Datenbank
+    if (artikelIndex != null) {
+      artikelIndex.hinzufuegen(this);
+    }
   }
 
   public void update() {
     // SQL-Code zum Aendern dieses Angebots in der Datenbank
+    if (artikelIndex != null) {
+      artikelIndex.aendern(this);
+    }
   }
 
   public void delete() {
     // SQL-Code zum Loeschen dieses Angebots in der Datenbank
+    if (artikelIndex != null) {
+      artikelIndex.entfernen(aid);
+    }
   }
 }
@@ -0,0 +1,314 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Invertierter Index ueber Angebot.ArtikelBez. Zu jedem Wort wird eine
+ * aufsteigend sortierte Liste der AIDs als int-Array gehalten. Gesucht wird
+ * mit Praefixen, mehrere Suchbegriffe muessen alle zutreffen. Die Treffer
+ * werden absteigend nach aktuellem Preis sortiert.
+ */
+public class ArtikelIndex implements IGebotListener {
+  private static final Logger L = LoggerFactory.getLogger(ArtikelIndex.class);
+
+  private final TreeMap<String, Posting> postings = new TreeMap<>();
+  private final Map<Integer, String[]> woerterVon = new HashMap<>();
+  private final Map<Integer, BigDecimal> preise = new HashMap<>();
+
+  /**
+   * Baut den Index aus allen Angeboten neu auf.
+   */
+  public synchronized void lade(Connection connection) {
+    String sql = String.join(" ",
+        "select a.AID, a.ArtikelBez,",
+        "  coalesce(max(g.GebotsPreis), a.AuktionMinPreis) as aktuellerPreis",
+        "from Angebot a left join Gebot g on a.AID = g.AID",
+        "group by a.AID, a.ArtikelBez, a.AuktionMinPreis",
+        "order by a.AID");
+    L.info(sql);
+    postings.clear();
+    woerterVon.clear();
+    preise.clear();
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      ps.setFetchSize(1000);
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          // AIDs kommen aufsteigend, die Postings werden also nur angehaengt
+          int aid = rs.getInt("AID");
+          String[] woerter = woerter(rs.getString("ArtikelBez")).toArray(new String[0]);
+          woerterVon.put(aid, woerter);
+          preise.put(aid, rs.getBigDecimal("aktuellerPreis"));
+          for (String wort : woerter) {
+            postings.computeIfAbsent(wort, w -> new Posting()).einfuegen(aid);
+          }
+        }
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+    for (Posting p : postings.values()) {
+      p.kuerzen();
+    }
+    L.info("Angebote: " + woerterVon.size() + "  Woerter: " + postings.size());
+  }
+
+  public synchronized void hinzufuegen(Angebot angebot) {
+    entfernen(angebot.getAid());
+    int aid = angebot.getAid();
+    String[] woerter = woerter(angebot.getArtikelBez()).toArray(new String[0]);
+    woerterVon.put(aid, woerter);
+    BigDecimal preis = angebot.getAktuellerPreis() != null ? angebot.getAktuellerPreis() : angebot.getAuktionMinPreis();
+    preise.put(aid, preis);
+    for (String wort : woerter) {
+      postings.computeIfAbsent(wort, w -> new Posting()).einfuegen(aid);
+    }
+  }
+
+  public synchronized void aendern(Angebot angebot) {
+    BigDecimal preis = preise.get(angebot.getAid());
+    hinzufuegen(angebot);
+    if (preis != null && angebot.getAktuellerPreis() == null) {
+      // ein Update der Artikelbezeichnung aendert den Preis aus den Geboten nicht
+      preise.put(angebot.getAid(), preis);
+    }
+  }
+
+  public synchronized void entfernen(Integer aid) {
+    String[] woerter = woerterVon.remove(aid);
+    preise.remove(aid);
+    if (woerter == null) {
+      return;
+    }
+    for (String wort : woerter) {
+      Posting p = postings.get(wort);
+      if (p != null && p.entfernen(aid) && p.size == 0) {
+        postings.remove(wort);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void gebotAngenommen(Integer aid, BigDecimal gebotspreis) {
+    BigDecimal preis = preise.get(aid);
+    if (preis != null && gebotspreis.compareTo(preis) > 0) {
+      preise.put(aid, gebotspreis);
+    }
+  }
+
+  /**
+   * Sucht Angebote, deren Artikelbezeichnung zu jedem Suchbegriff ein Wort
+   * mit diesem Praefix enthaelt.
+   *
+   * @param anfrage
+   *          z.B. "rot fahr" findet "Rotes Fahrrad".
+   * @param max
+   *          maximale Anzahl der Treffer.
+   * @return AIDs absteigend nach aktuellem Preis.
+   */
+  public synchronized List<Integer> suche(String anfrage, int max) {
+    List<String> begriffe = woerter(anfrage);
+    if (begriffe.isEmpty() || max <= 0) {
+      return Collections.emptyList();
+    }
+    // nur der seltenste Begriff wird ueber die Postings aufgeloest, die
+    // uebrigen werden an den wenigen Kandidaten direkt geprueft
+    String seltenster = null;
+    int minimum = Integer.MAX_VALUE;
+    // lange Praefixe zuerst zaehlen, sie sind meist selten und begrenzen das Zaehlen der kurzen
+    List<String> nachLaenge = new ArrayList<>(begriffe);
+    nachLaenge.sort(Comparator.comparingInt(String::length).reversed());
+    for (String begriff : nachLaenge) {
+      int n = anzahlPraefixTreffer(begriff, minimum);
+      if (n < minimum) {
+        minimum = n;
+        seltenster = begriff;
+      }
+    }
+    if (minimum == 0) {
+      return Collections.emptyList();
+    }
+    int[] treffer = praefixTreffer(seltenster);
+    int anzahl = 0;
+    for (int aid : treffer) {
+      if (passtZuAllen(woerterVon.get(aid), begriffe)) {
+        treffer[anzahl++] = aid;
+      }
+    }
+    return nachPreis(treffer, anzahl, max);
+  }
+
+  public synchronized int anzahlAngebote() {
+    return woerterVon.size();
+  }
+
+  private NavigableMap<String, Posting> praefixBereich(String praefix) {
+    return postings.subMap(praefix, true, praefix + Character.MAX_VALUE, false);
+  }
+
+  // zaehlt hoechstens bis zur Grenze, breite Praefixe werden nicht ganz durchlaufen
+  private int anzahlPraefixTreffer(String praefix, int grenze) {
+    int n = 0;
+    for (Posting p : praefixBereich(praefix).values()) {
+      n += p.size;
+      if (n >= grenze) {
+        break;
+      }
+    }
+    return n;
+  }
+
+  private static boolean passtZuAllen(String[] woerter, List<String> begriffe) {
+    for (String begriff : begriffe) {
+      boolean passt = false;
+      for (String wort : woerter) {
+        if (wort.startsWith(begriff)) {
+          passt = true;
+          break;
+        }
+      }
+      if (!passt) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int[] praefixTreffer(String praefix) {
+    NavigableMap<String, Posting> bereich = praefixBereich(praefix);
+    if (bereich.isEmpty()) {
+      return new int[0];
+    }
+    if (bereich.size() == 1) {
+      Posting p = bereich.firstEntry().getValue();
+      return Arrays.copyOf(p.aids, p.size);
+    }
+    int gesamt = 0;
+    for (Posting p : bereich.values()) {
+      gesamt += p.size;
+    }
+    int[] alle = new int[gesamt];
+    int pos = 0;
+    for (Posting p : bereich.values()) {
+      System.arraycopy(p.aids, 0, alle, pos, p.size);
+      pos += p.size;
+    }
+    Arrays.sort(alle);
+    // Duplikate entfernen, ein Angebot kann mehrere passende Woerter haben
+    int n = 0;
+    for (int i = 0; i < alle.length; i++) {
+      if (n == 0 || alle[n - 1] != alle[i]) {
+        alle[n++] = alle[i];
+      }
+    }
+    return Arrays.copyOf(alle, n);
+  }
+
+  private List<Integer> nachPreis(int[] aids, int n, int max) {
+    Comparator<Integer> aufsteigend = (x, y) -> {
+      int c = preise.get(x).compareTo(preise.get(y));
+      return c != 0 ? c : Integer.compare(y, x);
+    };
+    // Min-Heap der Groesse max, die Wurzel ist der schlechteste Treffer
+    PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(n, max) + 1, aufsteigend);
+    for (int i = 0; i < n; i++) {
+      heap.add(aids[i]);
+      if (heap.size() > max) {
+        heap.poll();
+      }
+    }
+    List<Integer> l = new ArrayList<>(heap);
+    l.sort(aufsteigend.reversed());
+    return l;
+  }
+
+  static List<String> woerter(String text) {
+    List<String> l = new ArrayList<>();
+    if (text == null) {
+      return l;
+    }
+    String s = text.toLowerCase(Locale.GERMAN);
+    int start = -1;
+    for (int i = 0; i <= s.length(); i++) {
+      boolean buchstabe = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+      if (buchstabe && start < 0) {
+        start = i;
+      } else if (!buchstabe && start >= 0) {
+        String w = s.substring(start, i);
+        if (!l.contains(w)) {
+          l.add(w);
+        }
+        start = -1;
+      }
+    }
+    return l;
+  }
+
+  private static class Posting {
+    int[] aids = new int[4];
+    int size;
+
+    void einfuegen(int aid) {
+      if (size > 0 && aids[size - 1] < aid) {
+        anhaengen(aid);
+        return;
+      }
+      int pos = Arrays.binarySearch(aids, 0, size, aid);
+      if (pos >= 0) {
+        return;
+      }
+      pos = -pos - 1;
+      wachsen();
+      System.arraycopy(aids, pos, aids, pos + 1, size - pos);
+      aids[pos] = aid;
+      size++;
+    }
+
+    boolean entfernen(int aid) {
+      int pos = Arrays.binarySearch(aids, 0, size, aid);
+      if (pos < 0) {
+        return false;
+      }
+      System.arraycopy(aids, pos + 1, aids, pos, size - pos - 1);
+      size--;
+      return true;
+    }
+
+    void anhaengen(int aid) {
+      wachsen();
+      aids[size++] = aid;
+    }
+
+    private void wachsen() {
+      if (size == aids.length) {
+        aids = Arrays.copyOf(aids, Math.max(4, size * 2));
+      }
+    }
+
+    void kuerzen() {
+      if (aids.length != size) {
+        aids = Arrays.copyOf(aids, size);
+      }
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+public class ArtikelIndexTest {
+  ArtikelIndex index;
+
+  @org.junit.Before
+  public void setUp() throws Exception {
+    index = new ArtikelIndex();
+    index.hinzufuegen(angebot(1, "Rotes Fahrrad", 50));
+    index.hinzufuegen(angebot(2, "Blaues Fahrrad", 80));
+    index.hinzufuegen(angebot(3, "Rote Lampe", 10));
+    index.hinzufuegen(angebot(4, "Fahrradhelm rot", 30));
+  }
+
+  @org.junit.Test
+  public void testPraefix() {
+    assertEquals(Arrays.asList(2, 1, 4), index.suche("fahr", 10));
+  }
+
+  @org.junit.Test
+  public void testMehrereBegriffe() {
+    assertEquals(Arrays.asList(1, 4), index.suche("rot FAHRRAD", 10));
+  }
+
+  @org.junit.Test
+  public void testMax() {
+    assertEquals(Arrays.asList(2), index.suche("fahrrad", 1));
+  }
+
+  @org.junit.Test
+  public void testGebotAendertReihenfolge() {
+    index.gebotAngenommen(3, BigDecimal.valueOf(99));
+    assertEquals(Arrays.asList(3, 1, 4), index.suche("rot", 10));
+  }
+
+  @org.junit.Test
+  public void testAendernUndEntfernen() {
+    index.aendern(angebot(2, "Blaue Vase", 80));
+    assertEquals(Arrays.asList(1, 4), index.suche("fahr", 10));
+    index.entfernen(1);
+    assertEquals(Arrays.asList(4), index.suche("fahr", 10));
+    assertTrue(index.suche("blaues", 10).isEmpty());
+    assertEquals(3, index.anzahlAngebote());
+  }
+
+  private static Angebot angebot(int aid, String artikelBez, int minPreis) {
+    Angebot a = new Angebot();
+    a.setAid(aid);
+    a.setArtikelBez(artikelBez);
+    a.setAuktionMinPreis(BigDecimal.valueOf(minPreis));
+    return a;
+  }
+}
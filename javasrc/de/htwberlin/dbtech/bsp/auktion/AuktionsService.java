@@ -7,6 +7,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +19,7 @@ import de.htwberlin.dbtech.exceptions.ServiceException;
 public class AuktionsService implements IAuktionsService {
   private static final Logger L = LoggerFactory.getLogger(AuktionsService.class);
   private Connection connection = null;
+  private final List<IGebotListener> gebotListener = new CopyOnWriteArrayList<>();
 
   @Override
   public void setConnection(Connection connection) {
@@ -30,6 +33,14 @@ public class AuktionsService implements IAuktionsService {
     return connection;
   }
 
+  public void addGebotListener(IGebotListener listener) {
+    gebotListener.add(listener);
+  }
+
+  public void removeGebotListener(IGebotListener listener) {
+    gebotListener.remove(listener);
+  }
+
   @Override
   public void biete(Integer aid, BigDecimal gebotspreis) {
     L.info("aid: " + aid + "  gebotspreis: " + gebotspreis);
@@ -44,6 +55,9 @@ public class AuktionsService implements IAuktionsService {
     }
 
     speichereGebot(aid, gebotspreis);
+    for (IGebotListener listener : gebotListener) {
+      listener.gebotAngenommen(aid, gebotspreis);
+    }
   }
 
   private boolean existiertAidInDb(Integer aid) {
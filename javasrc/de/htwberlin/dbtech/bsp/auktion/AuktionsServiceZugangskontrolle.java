@@ -0,0 +1,177 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+
+/**
+ * Zugangskontrolle vor einem IAuktionsService. Begrenzt die Anzahl gleichzeitiger
+ * Gebote pro AID und insgesamt. Wer nicht innerhalb der maximalen Wartezeit
+ * dran ist oder eine zu lange Warteschlange vorfindet, wird sofort mit einer
+ * UeberlastException abgewiesen, statt sich an der Connection anzustellen.
+ */
+public class AuktionsServiceZugangskontrolle implements IAuktionsService {
+  private static final Logger L = LoggerFactory.getLogger(AuktionsServiceZugangskontrolle.class);
+
+  private final IAuktionsService ziel;
+  private final int maxProAid;
+  private final int maxWartende;
+  private final long maxWartezeitNanos;
+  private final Semaphore global;
+  private final ConcurrentHashMap<Integer, Auktion> proAid = new ConcurrentHashMap<>();
+
+  /**
+   * Semaphore einer AID und die Anzahl der Gebote, die sie gerade halten oder
+   * darauf warten. Bei 0 wird der Eintrag entfernt, damit die Map nicht mit
+   * jeder je gesehenen AID waechst.
+   */
+  private static class Auktion {
+    final Semaphore semaphore;
+    int nutzer;
+
+    Auktion(int maxProAid) {
+      semaphore = new Semaphore(maxProAid, true);
+    }
+  }
+
+  private final AtomicLong angenommen = new AtomicLong();
+  private final AtomicLong abgewiesenWarteschlange = new AtomicLong();
+  private final AtomicLong abgewiesenWartezeit = new AtomicLong();
+  private final AtomicLong wartezeitNanosGesamt = new AtomicLong();
+
+  /**
+   * @param ziel
+   *          der eigentliche Service.
+   * @param maxGlobal
+   *          maximale Anzahl gleichzeitig ausgefuehrter Gebote.
+   * @param maxProAid
+   *          maximale Anzahl gleichzeitig ausgefuehrter Gebote fuer eine AID.
+   * @param maxWartende
+   *          ab dieser Laenge der Warteschlange wird sofort abgewiesen, wenn
+   *          kein Platz frei ist.
+   * @param maxWartezeitMillis
+   *          maximale Wartezeit auf einen freien Platz.
+   */
+  public AuktionsServiceZugangskontrolle(IAuktionsService ziel, int maxGlobal, int maxProAid, int maxWartende,
+      long maxWartezeitMillis) {
+    this.ziel = ziel;
+    this.maxProAid = maxProAid;
+    this.maxWartende = maxWartende;
+    this.maxWartezeitNanos = TimeUnit.MILLISECONDS.toNanos(maxWartezeitMillis);
+    this.global = new Semaphore(maxGlobal, true);
+  }
+
+  @Override
+  public void setConnection(Connection connection) {
+    ziel.setConnection(connection);
+  }
+
+  @Override
+  public void biete(Integer aid, BigDecimal angebotspreis) {
+    long start = System.nanoTime();
+    long frist = start + maxWartezeitNanos;
+    // erst pro AID anstellen, damit eine heisse Auktion nicht alle globalen
+    // Plaetze belegt
+    Auktion auktion = proAid.compute(aid, (k, a) -> {
+      a = a == null ? new Auktion(maxProAid) : a;
+      a.nutzer++;
+      return a;
+    });
+    try {
+      betreten(auktion.semaphore, frist, aid);
+      try {
+        betreten(global, frist, aid);
+        try {
+          wartezeitNanosGesamt.addAndGet(System.nanoTime() - start);
+          angenommen.incrementAndGet();
+          ziel.biete(aid, angebotspreis);
+        } finally {
+          global.release();
+        }
+      } finally {
+        auktion.semaphore.release();
+      }
+    } finally {
+      proAid.computeIfPresent(aid, (k, a) -> --a.nutzer == 0 ? null : a);
+    }
+  }
+
+  /**
+   * Ist sofort ein Platz frei, wird er genommen. Nur wer warten muesste, wird
+   * an der Laenge der Warteschlange gemessen.
+   */
+  private void betreten(Semaphore s, long frist, Integer aid) {
+    try {
+      // mit Zeitangabe, damit die Fairness der Semaphore gilt
+      if (s.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UeberlastException(e);
+    }
+    if (s.getQueueLength() >= maxWartende) {
+      abgewiesenWarteschlange.incrementAndGet();
+      L.warn("abgewiesen, Warteschlange voll, aid: " + aid);
+      throw new UeberlastException("Ueberlast, Warteschlange voll: " + aid);
+    }
+    boolean erhalten;
+    try {
+      erhalten = s.tryAcquire(frist - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UeberlastException(e);
+    }
+    if (!erhalten) {
+      abgewiesenWartezeit.incrementAndGet();
+      L.warn("abgewiesen, Wartezeit ueberschritten, aid: " + aid);
+      throw new UeberlastException("Ueberlast, Wartezeit ueberschritten: " + aid);
+    }
+  }
+
+  /**
+   * Anzahl der AIDs, fuer die gerade Gebote laufen oder warten.
+   */
+  int getAktiveAuktionen() {
+    return proAid.size();
+  }
+
+  public long getAngenommen() {
+    return angenommen.get();
+  }
+
+  public long getAbgewiesen() {
+    return abgewiesenWarteschlange.get() + abgewiesenWartezeit.get();
+  }
+
+  public long getAbgewiesenWarteschlange() {
+    return abgewiesenWarteschlange.get();
+  }
+
+  public long getAbgewiesenWartezeit() {
+    return abgewiesenWartezeit.get();
+  }
+
+  /**
+   * Mittlere Wartezeit der angenommenen Gebote in Millisekunden.
+   */
+  public double getMittlereWartezeitMillis() {
+    long n = angenommen.get();
+    return n == 0 ? 0 : wartezeitNanosGesamt.get() / 1e6 / n;
+  }
+
+  @Override
+  public String toString() {
+    return "AuktionsServiceZugangskontrolle [angenommen=" + getAngenommen() + ", abgewiesenWarteschlange="
+        + getAbgewiesenWarteschlange() + ", abgewiesenWartezeit=" + getAbgewiesenWartezeit()
+        + ", mittlereWartezeitMillis=" + getMittlereWartezeitMillis() + "]";
+  }
+}
@@ -0,0 +1,95 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.htwberlin.dbtech.exceptions.UeberlastException;
+
+public class AuktionsServiceZugangskontrolleTest {
+  CountDownLatch gestartet;
+  CountDownLatch freigabe;
+  IAuktionsService blockierend;
+  AuktionsServiceZugangskontrolle zk;
+
+  @org.junit.Before
+  public void setUp() throws Exception {
+    gestartet = new CountDownLatch(1);
+    freigabe = new CountDownLatch(1);
+    blockierend = new IAuktionsService() {
+      @Override
+      public void setConnection(Connection connection) {
+      }
+
+      @Override
+      public void biete(Integer aid, BigDecimal angebotspreis) {
+        gestartet.countDown();
+        try {
+          freigabe.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    zk = new AuktionsServiceZugangskontrolle(blockierend, 2, 1, 10, 50);
+  }
+
+  @org.junit.Test
+  public void testWartezeitProAid() throws Exception {
+    Thread t = new Thread(() -> zk.biete(1, BigDecimal.ONE));
+    t.start();
+    gestartet.await();
+    try {
+      zk.biete(1, BigDecimal.TEN);
+      org.junit.Assert.fail("UeberlastException erwartet");
+    } catch (UeberlastException e) {
+      // erwartet
+    }
+    freigabe.countDown();
+    t.join();
+    assertEquals(1, zk.getAngenommen());
+    assertEquals(1, zk.getAbgewiesenWartezeit());
+  }
+
+  @org.junit.Test
+  public void testWarteschlangeVoll() throws Exception {
+    zk = new AuktionsServiceZugangskontrolle(blockierend, 2, 1, 0, 50);
+    Thread t = new Thread(() -> zk.biete(1, BigDecimal.ONE));
+    t.start();
+    gestartet.await();
+    try {
+      zk.biete(1, BigDecimal.TEN);
+      org.junit.Assert.fail("UeberlastException erwartet");
+    } catch (UeberlastException e) {
+      // erwartet
+    }
+    freigabe.countDown();
+    t.join();
+    assertEquals(1, zk.getAngenommen());
+    assertEquals(1, zk.getAbgewiesenWarteschlange());
+    assertEquals(0, zk.getAbgewiesenWartezeit());
+  }
+
+  @org.junit.Test
+  public void testOhneWarteschlangeFreierPlatz() throws Exception {
+    freigabe.countDown();
+    zk = new AuktionsServiceZugangskontrolle(blockierend, 1, 1, 0, 50);
+    zk.biete(1, BigDecimal.ONE);
+    zk.biete(2, BigDecimal.ONE);
+    assertEquals(2, zk.getAngenommen());
+    assertEquals(0, zk.getAbgewiesen());
+  }
+
+  @org.junit.Test
+  public void testAuktionenWerdenFreigegeben() throws Exception {
+    freigabe.countDown();
+    for (int aid = 0; aid < 100; aid++) {
+      zk.biete(aid, BigDecimal.ONE);
+    }
+    assertEquals(100, zk.getAngenommen());
+    assertEquals(0, zk.getAktiveAuktionen());
+  }
+}
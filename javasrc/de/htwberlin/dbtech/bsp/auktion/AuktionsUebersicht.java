@@ -0,0 +1,182 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Haelt die offenen Angebote im Speicher, damit die Dashboards "hoechste
+ * Gebote" und "endet bald" ohne Datenbankzugriff beantwortet werden koennen.
+ * <p>
+ * Die Angebote werden einmal mit {@link #lade(Connection)} geladen und danach
+ * ueber {@link #gebotAngenommen(Integer, BigDecimal)} inkrementell
+ * aktualisiert. Dazu wird die Uebersicht beim AuktionsService als Listener
+ * registriert.
+ */
+public class AuktionsUebersicht implements IGebotListener {
+  private static final Logger L = LoggerFactory.getLogger(AuktionsUebersicht.class);
+
+  private static final Comparator<Angebot> NACH_PREIS = Comparator
+      .comparing(Angebot::getAktuellerPreis, Comparator.reverseOrder())
+      .thenComparing(Angebot::getAid);
+
+  private static final Comparator<Angebot> NACH_ENDE = Comparator
+      .comparing(Angebot::getAuktionEndeZeitpunkt)
+      .thenComparing(Angebot::getAid);
+
+  private final Map<Integer, Angebot> angebote = new HashMap<>();
+  // beide Mengen enthalten dieselben Objekte, nur anders sortiert;
+  // nachEnde.first() entspricht dem Minimum eines Heaps, zusaetzlich
+  // koennen die ersten k Elemente sortiert durchlaufen werden
+  private final TreeSet<Angebot> nachPreis = new TreeSet<>(NACH_PREIS);
+  private final TreeSet<Angebot> nachEnde = new TreeSet<>(NACH_ENDE);
+
+  /**
+   * Laedt alle noch offenen Angebote mit ihrem aktuellen Preis. Bereits
+   * vorhandene Eintraege werden verworfen.
+   */
+  public synchronized void lade(Connection connection) {
+    String sql = String.join(" ",
+        "select a.AID, a.ArtikelBez, a.AuktionEndeZeitpunkt, a.AuktionMinPreis,",
+        "  coalesce(max(g.GebotsPreis), a.AuktionMinPreis) as aktuellerPreis",
+        "from Angebot a left join Gebot g on a.AID = g.AID",
+        "where a.AuktionEndeZeitpunkt >= current_timestamp",
+        "group by a.AID, a.ArtikelBez, a.AuktionEndeZeitpunkt, a.AuktionMinPreis");
+    L.info(sql);
+    angebote.clear();
+    nachPreis.clear();
+    nachEnde.clear();
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          Angebot a = new Angebot();
+          a.setAid(rs.getInt("AID"));
+          a.setArtikelBez(rs.getString("ArtikelBez"));
+          a.setAuktionEndeZeitpunkt(rs.getTimestamp("AuktionEndeZeitpunkt"));
+          a.setAuktionMinPreis(rs.getBigDecimal("AuktionMinPreis"));
+          a.setAktuellerPreis(rs.getBigDecimal("aktuellerPreis"));
+          einfuegen(a);
+        }
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+    L.info("offene Angebote: " + angebote.size());
+  }
+
+  /**
+   * Nimmt ein neues Angebot auf. Ist kein aktueller Preis gesetzt, gilt der
+   * Mindestpreis.
+   */
+  public synchronized void hinzufuegen(Angebot angebot) {
+    Angebot a = kopie(angebot);
+    if (a.getAktuellerPreis() == null) {
+      a.setAktuellerPreis(a.getAuktionMinPreis());
+    }
+    entfernen(a.getAid());
+    einfuegen(a);
+  }
+
+  public synchronized void entfernen(Integer aid) {
+    Angebot a = angebote.remove(aid);
+    if (a != null) {
+      nachPreis.remove(a);
+      nachEnde.remove(a);
+    }
+  }
+
+  @Override
+  public synchronized void gebotAngenommen(Integer aid, BigDecimal gebotspreis) {
+    Angebot a = angebote.get(aid);
+    if (a == null || gebotspreis.compareTo(a.getAktuellerPreis()) <= 0) {
+      return;
+    }
+    // der Preis ist Teil des Sortierschluessels, daher neu einsortieren
+    nachPreis.remove(a);
+    a.setAktuellerPreis(gebotspreis);
+    nachPreis.add(a);
+  }
+
+  /**
+   * Liefert die k offenen Angebote mit dem hoechsten aktuellen Preis,
+   * absteigend sortiert.
+   */
+  public List<Angebot> hoechsteGebote(int k) {
+    return hoechsteGebote(k, jetzt());
+  }
+
+  public synchronized List<Angebot> hoechsteGebote(int k, Timestamp jetzt) {
+    entferneBeendete(jetzt);
+    return ersteK(nachPreis.iterator(), k);
+  }
+
+  /**
+   * Liefert die k offenen Angebote, die als naechstes enden, aufsteigend nach
+   * AuktionEndeZeitpunkt sortiert.
+   */
+  public List<Angebot> endetBald(int k) {
+    return endetBald(k, jetzt());
+  }
+
+  public synchronized List<Angebot> endetBald(int k, Timestamp jetzt) {
+    entferneBeendete(jetzt);
+    return ersteK(nachEnde.iterator(), k);
+  }
+
+  public synchronized int anzahl() {
+    return angebote.size();
+  }
+
+  private void einfuegen(Angebot a) {
+    angebote.put(a.getAid(), a);
+    nachPreis.add(a);
+    nachEnde.add(a);
+  }
+
+  private void entferneBeendete(Timestamp jetzt) {
+    while (!nachEnde.isEmpty() && nachEnde.first().getAuktionEndeZeitpunkt().before(jetzt)) {
+      Angebot a = nachEnde.pollFirst();
+      nachPreis.remove(a);
+      angebote.remove(a.getAid());
+    }
+  }
+
+  private static List<Angebot> ersteK(Iterator<Angebot> it, int k) {
+    List<Angebot> l = new ArrayList<>(Math.max(0, k));
+    while (l.size() < k && it.hasNext()) {
+      l.add(kopie(it.next()));
+    }
+    return l;
+  }
+
+  // Kopien herausgeben, damit Aufrufer die Sortierschluessel nicht veraendern
+  private static Angebot kopie(Angebot a) {
+    Angebot k = new Angebot();
+    k.setAid(a.getAid());
+    k.setArtikelBez(a.getArtikelBez());
+    k.setAuktionEndeZeitpunkt(a.getAuktionEndeZeitpunkt());
+    k.setAuktionMinPreis(a.getAuktionMinPreis());
+    k.setAktuellerPreis(a.getAktuellerPreis());
+    return k;
+  }
+
+  private static Timestamp jetzt() {
+    return new Timestamp(System.currentTimeMillis());
+  }
+}
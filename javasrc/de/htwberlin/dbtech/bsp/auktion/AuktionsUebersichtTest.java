@@ -0,0 +1,63 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+
+public class AuktionsUebersichtTest {
+  AuktionsUebersicht u;
+
+  @org.junit.Before
+  public void setUp() throws Exception {
+    u = new AuktionsUebersicht();
+    u.hinzufuegen(angebot(1, "Fahrrad", "2030-01-03 12:00:00", 50));
+    u.hinzufuegen(angebot(2, "Lampe", "2030-01-01 12:00:00", 10));
+    u.hinzufuegen(angebot(3, "Tisch", "2030-01-02 12:00:00", 30));
+  }
+
+  @org.junit.Test
+  public void testHoechsteGebote() {
+    u.gebotAngenommen(2, BigDecimal.valueOf(80));
+    List<Angebot> l = u.hoechsteGebote(2, ts("2029-12-31 00:00:00"));
+    assertEquals(2, l.size());
+    assertEquals(Integer.valueOf(2), l.get(0).getAid());
+    assertEquals(Integer.valueOf(1), l.get(1).getAid());
+  }
+
+  @org.junit.Test
+  public void testNiedrigeresGebotAendertNichts() {
+    u.gebotAngenommen(1, BigDecimal.valueOf(20));
+    assertEquals(BigDecimal.valueOf(50), u.hoechsteGebote(1, ts("2029-12-31 00:00:00")).get(0).getAktuellerPreis());
+  }
+
+  @org.junit.Test
+  public void testEndetBald() {
+    List<Angebot> l = u.endetBald(3, ts("2029-12-31 00:00:00"));
+    assertEquals(Integer.valueOf(2), l.get(0).getAid());
+    assertEquals(Integer.valueOf(3), l.get(1).getAid());
+    assertEquals(Integer.valueOf(1), l.get(2).getAid());
+  }
+
+  @org.junit.Test
+  public void testBeendeteAuktionenFallenRaus() {
+    List<Angebot> l = u.hoechsteGebote(3, ts("2030-01-02 00:00:00"));
+    assertEquals(2, l.size());
+    assertEquals(2, u.anzahl());
+    assertEquals(Integer.valueOf(3), u.endetBald(1, ts("2030-01-02 00:00:00")).get(0).getAid());
+  }
+
+  private static Angebot angebot(int aid, String artikelBez, String ende, int minPreis) {
+    Angebot a = new Angebot();
+    a.setAid(aid);
+    a.setArtikelBez(artikelBez);
+    a.setAuktionEndeZeitpunkt(ts(ende));
+    a.setAuktionMinPreis(BigDecimal.valueOf(minPreis));
+    return a;
+  }
+
+  private static Timestamp ts(String s) {
+    return Timestamp.valueOf(s);
+  }
+}
@@ -0,0 +1,11 @@
+package de.htwberlin.dbtech.bsp.auktion;
+
+import java.math.BigDecimal;
+
+/**
+ * Wird vom AuktionsService benachrichtigt, nachdem ein Gebot gespeichert
+ * wurde.
+ */
+public interface IGebotListener {
+  void gebotAngenommen(Integer aid, BigDecimal gebotspreis);
+}
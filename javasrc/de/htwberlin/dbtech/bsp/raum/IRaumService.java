@@ -1,8 +1,30 @@
 package de.htwberlin.dbtech.bsp.raum;
 
 import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+
+import de.htwberlin.dbtech.utils.IntIntMap;
 
 public interface IRaumService {
   void setConnection(Connection connection);
   Integer findAnzahlPlaetzeInRaum(int rid);
-}
\ No newline at end of file
+
+  /**
+   * Liefert die Anzahl der Plaetze fuer mehrere Raeume mit moeglichst wenigen
+   * Datenbankzugriffen. RIDs, die nicht existieren, fehlen in der Map.
+   */
+  IntIntMap findAnzahlPlaetze(Collection<Integer> rids);
+
+  /**
+   * Liefert alle Raeume mit mindestens anzahlSitze Plaetzen, aufsteigend nach
+   * AnzahlSitze. Beantwortet aus einem Index im Speicher.
+   */
+  List<Raum> findRaeumeMitMindestens(int anzahlSitze);
+
+  /**
+   * Liefert alle Raeume mit min bis max Plaetzen (jeweils einschliesslich),
+   * aufsteigend nach AnzahlSitze. Beantwortet aus einem Index im Speicher.
+   */
+  List<Raum> findRaeumeZwischen(int min, int max);
+}
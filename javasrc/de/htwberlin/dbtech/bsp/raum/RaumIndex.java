@@ -0,0 +1,118 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.IntIntMap;
+
+/**
+ * Unveraenderlicher Index ueber alle Raeume. Die Raeume liegen nach
+ * AnzahlSitze und RID sortiert in einem Array, parallel dazu die AnzahlSitze
+ * als int-Array fuer die binaere Suche. Fuer neue Daten wird ein neuer Index
+ * geladen.
+ */
+public class RaumIndex {
+  private static final Logger L = LoggerFactory.getLogger(RaumIndex.class);
+
+  private final int[] sitze;
+  private final Raum[] raeume;
+  private final IntIntMap sitzeProRid;
+
+  RaumIndex(List<Raum> sortiert) {
+    int n = sortiert.size();
+    sitze = new int[n];
+    raeume = new Raum[n];
+    sitzeProRid = new IntIntMap(n);
+    for (int i = 0; i < n; i++) {
+      Raum r = sortiert.get(i);
+      raeume[i] = r;
+      sitze[i] = r.getAnzahlSitze();
+      sitzeProRid.put(r.getRid(), r.getAnzahlSitze());
+    }
+  }
+
+  public static RaumIndex lade(Connection connection) {
+    String sql = "select RID, RaumNr, AnzahlSitze from Raum order by AnzahlSitze, RID";
+    L.info(sql);
+    List<Raum> l = new ArrayList<>();
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      ps.setFetchSize(1000);
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          // AnzahlSitze null wird wie bei findAnzahlPlaetzeInRaum zu 0,
+          // Oracle sortiert null ans Ende, daher wird unten nachsortiert
+          l.add(new Raum(rs.getInt("RID"), rs.getString("RaumNr"), rs.getInt("AnzahlSitze")));
+        }
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+    l.sort((a, b) -> a.getAnzahlSitze() != b.getAnzahlSitze() ? Integer.compare(a.getAnzahlSitze(), b.getAnzahlSitze())
+        : Integer.compare(a.getRid(), b.getRid()));
+    return new RaumIndex(l);
+  }
+
+  public int size() {
+    return raeume.length;
+  }
+
+  public boolean enthaelt(int rid) {
+    return sitzeProRid.containsKey(rid);
+  }
+
+  public int anzahlSitze(int rid) {
+    return sitzeProRid.get(rid, 0);
+  }
+
+  /**
+   * Raeume mit mindestens min Sitzen, aufsteigend nach AnzahlSitze.
+   */
+  public List<Raum> mitMindestens(int min) {
+    return bereich(ersterMitMindestens(min), raeume.length);
+  }
+
+  /**
+   * Raeume mit min bis max Sitzen (jeweils einschliesslich), aufsteigend nach
+   * AnzahlSitze.
+   */
+  public List<Raum> zwischen(int min, int max) {
+    if (max < min) {
+      return new ArrayList<>();
+    }
+    int bis = max == Integer.MAX_VALUE ? raeume.length : ersterMitMindestens(max + 1);
+    return bereich(ersterMitMindestens(min), bis);
+  }
+
+  private List<Raum> bereich(int von, int bis) {
+    List<Raum> l = new ArrayList<>(bis - von);
+    for (int i = von; i < bis; i++) {
+      Raum r = raeume[i];
+      l.add(new Raum(r.getRid(), r.getRaumNr(), r.getAnzahlSitze()));
+    }
+    return l;
+  }
+
+  // erste Position mit sitze[i] >= min
+  private int ersterMitMindestens(int min) {
+    int lo = 0;
+    int hi = sitze.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (sitze[mid] < min) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
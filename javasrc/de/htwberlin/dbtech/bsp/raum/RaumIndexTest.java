@@ -0,0 +1,41 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class RaumIndexTest {
+  RaumIndex index;
+
+  @org.junit.Before
+  public void setUp() throws Exception {
+    index = new RaumIndex(Arrays.asList(new Raum(3, "A010", 10), new Raum(1, "A020", 20), new Raum(4, "A021", 20),
+        new Raum(2, "B100", 100)));
+  }
+
+  @org.junit.Test
+  public void testMitMindestens() {
+    assertEquals(Arrays.asList(1, 4, 2), rids(index.mitMindestens(11)));
+    assertEquals(Arrays.asList(3, 1, 4, 2), rids(index.mitMindestens(0)));
+    assertEquals(Arrays.asList(), rids(index.mitMindestens(101)));
+  }
+
+  @org.junit.Test
+  public void testZwischen() {
+    assertEquals(Arrays.asList(3, 1, 4), rids(index.zwischen(10, 20)));
+    assertEquals(Arrays.asList(2), rids(index.zwischen(21, Integer.MAX_VALUE)));
+    assertEquals(Arrays.asList(), rids(index.zwischen(20, 10)));
+  }
+
+  @org.junit.Test
+  public void testAnzahlSitze() {
+    assertEquals(100, index.anzahlSitze(2));
+    assertEquals(false, index.enthaelt(9));
+  }
+
+  private static List<Integer> rids(List<Raum> l) {
+    return l.stream().map(Raum::getRid).collect(Collectors.toList());
+  }
+}
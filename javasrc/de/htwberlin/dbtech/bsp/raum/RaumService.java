@@ -4,17 +4,31 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.htwberlin.dbtech.exceptions.DataException;
 import de.htwberlin.dbtech.exceptions.RaumException;
+import de.htwberlin.dbtech.utils.IntIntMap;
 
 public class RaumService implements IRaumService {
   private static final Logger L = LoggerFactory.getLogger(RaumService.class);
+  // Oracle erlaubt hoechstens 1000 Ausdruecke in einer in-Liste
+  private static final int MAX_IN_LISTE = 1000;
+
   private Connection connection;
 
+  // Index ueber alle Raeume; fuer die Abfragen per RID nur genutzt, wenn ein
+  // Cache-Intervall gesetzt ist, fuer die Suche nach Sitzen immer
+  private Duration cacheIntervall = null;
+  private RaumIndex index = null;
+  private long indexGeladen = 0;
+
   @Override
   public void setConnection(Connection connection) {
     this.connection = connection;
@@ -29,8 +43,46 @@ public class RaumService implements IRaumService {
     }
   }
 
+  /**
+   * Schaltet den Cache ein. AnzahlSitze aendert sich selten, daher werden alle
+   * Raeume auf einmal geladen und erst nach Ablauf des Intervalls neu gelesen.
+   *
+   * @param intervall
+   *          null oder 0 schaltet den Cache aus. Der Index fuer die Suche nach
+   *          Sitzen wird dann nur noch ueber aktualisiereIndex() neu geladen.
+   */
+  public synchronized void setCacheIntervall(Duration intervall) {
+    this.cacheIntervall = (intervall == null || intervall.isZero()) ? null : intervall;
+    this.index = null;
+  }
+
+  /**
+   * Laedt den Index ueber alle Raeume sofort neu.
+   */
+  public synchronized void aktualisiereIndex() {
+    index = RaumIndex.lade(useConnection());
+    indexGeladen = System.currentTimeMillis();
+  }
+
+  @Override
+  public List<Raum> findRaeumeMitMindestens(int anzahlSitze) {
+    return raumIndex().mitMindestens(anzahlSitze);
+  }
+
+  @Override
+  public List<Raum> findRaeumeZwischen(int min, int max) {
+    return raumIndex().zwischen(min, max);
+  }
+
   @Override
   public Integer findAnzahlPlaetzeInRaum(int rid) {
+    RaumIndex c = aktuellerCache();
+    if (c != null) {
+      if (!c.enthaelt(rid)) {
+        throw new RaumException("rid doesn't exist in db: " + rid);
+      }
+      return c.anzahlSitze(rid);
+    }
     String sql = "select AnzahlSitze from Raum where RID=?";
     L.info(sql);
     try (PreparedStatement ps = useConnection().prepareStatement(sql)) {
@@ -48,4 +100,75 @@ public class RaumService implements IRaumService {
     }
   }
 
+  @Override
+  public IntIntMap findAnzahlPlaetze(Collection<Integer> rids) {
+    int[] r = rids.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+    IntIntMap ergebnis = new IntIntMap(r.length);
+    RaumIndex c = aktuellerCache();
+    if (c != null) {
+      for (int rid : r) {
+        if (c.enthaelt(rid)) {
+          ergebnis.put(rid, c.anzahlSitze(rid));
+        }
+      }
+      return ergebnis;
+    }
+    int volleBloecke = r.length / MAX_IN_LISTE;
+    if (volleBloecke > 0) {
+      // ein Statement fuer alle vollen Bloecke, eins fuer den Rest
+      try (PreparedStatement ps = useConnection().prepareStatement(inListeSql(MAX_IN_LISTE))) {
+        for (int b = 0; b < volleBloecke; b++) {
+          leseBlock(ps, r, b * MAX_IN_LISTE, MAX_IN_LISTE, ergebnis);
+        }
+      } catch (SQLException e) {
+        L.error("", e);
+        throw new DataException(e);
+      }
+    }
+    int rest = r.length - volleBloecke * MAX_IN_LISTE;
+    if (rest > 0) {
+      try (PreparedStatement ps = useConnection().prepareStatement(inListeSql(rest))) {
+        leseBlock(ps, r, volleBloecke * MAX_IN_LISTE, rest, ergebnis);
+      } catch (SQLException e) {
+        L.error("", e);
+        throw new DataException(e);
+      }
+    }
+    return ergebnis;
+  }
+
+  private static String inListeSql(int n) {
+    String[] platzhalter = new String[n];
+    Arrays.fill(platzhalter, "?");
+    return "select RID, AnzahlSitze from Raum where RID in (" + String.join(",", platzhalter) + ")";
+  }
+
+  private static void leseBlock(PreparedStatement ps, int[] rids, int von, int anzahl, IntIntMap ergebnis)
+      throws SQLException {
+    for (int i = 0; i < anzahl; i++) {
+      ps.setInt(i + 1, rids[von + i]);
+    }
+    try (ResultSet rs = ps.executeQuery()) {
+      while (rs.next()) {
+        ergebnis.put(rs.getInt("RID"), rs.getInt("AnzahlSitze"));
+      }
+    }
+  }
+
+  private synchronized RaumIndex aktuellerCache() {
+    if (cacheIntervall == null) {
+      return null;
+    }
+    return raumIndex();
+  }
+
+  private synchronized RaumIndex raumIndex() {
+    boolean veraltet = cacheIntervall != null
+        && System.currentTimeMillis() - indexGeladen >= cacheIntervall.toMillis();
+    if (index == null || veraltet) {
+      aktualisiereIndex();
+    }
+    return index;
+  }
+
 }
@@ -0,0 +1,106 @@
+package de.htwberlin.dbtech.bsp.raum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.htwberlin.dbtech.exceptions.RaumException;
+import de.htwberlin.dbtech.utils.FakeJdbc;
+import de.htwberlin.dbtech.utils.IntIntMap;
+
+public class RaumServiceTest {
+  // mehr als zwei volle in-Listen, RID 0 und RAEUME + 1 fehlen
+  private static final int RAEUME = 2 * 1000 + 5;
+
+  FakeJdbc db;
+  RaumService service;
+
+  private static int sitze(int rid) {
+    return 10 + rid % 50;
+  }
+
+  @org.junit.Before
+  public void setUp() {
+    db = new FakeJdbc().onQuery("RID=?", p -> {
+      int rid = (Integer) p[0];
+      return rid < 1 || rid > RAEUME ? Collections.emptyList()
+          : Collections.singletonList(new Object[] { sitze(rid) });
+    }, "AnzahlSitze").onQuery("RID in (", p -> {
+      List<Object[]> rows = new ArrayList<>();
+      for (Object rid : p) {
+        if ((Integer) rid >= 1 && (Integer) rid <= RAEUME) {
+          rows.add(new Object[] { rid, sitze((Integer) rid) });
+        }
+      }
+      return rows;
+    }, "RID", "AnzahlSitze").onQuery("order by AnzahlSitze", p -> {
+      List<Object[]> rows = new ArrayList<>();
+      for (int rid = 1; rid <= RAEUME; rid++) {
+        rows.add(new Object[] { rid, "R" + rid, sitze(rid) });
+      }
+      rows.sort((a, b) -> Integer.compare((Integer) a[2], (Integer) b[2]));
+      return rows;
+    }, "RID", "RaumNr", "AnzahlSitze");
+    service = new RaumService();
+    service.setConnection(db.connection());
+  }
+
+  private List<Integer> alleRids() {
+    List<Integer> rids = new ArrayList<>();
+    for (int rid = 0; rid <= RAEUME + 1; rid++) {
+      rids.add(rid);
+    }
+    return rids;
+  }
+
+  @org.junit.Test
+  public void testOhneCacheJedeAbfrageAnDieDatenbank() {
+    assertEquals(Integer.valueOf(sitze(7)), service.findAnzahlPlaetzeInRaum(7));
+    assertEquals(Integer.valueOf(sitze(7)), service.findAnzahlPlaetzeInRaum(7));
+    assertEquals(2, db.count("query: "));
+  }
+
+  @org.junit.Test
+  public void testCacheLiestAlleRaeumeEinmal() {
+    service.setCacheIntervall(Duration.ofHours(1));
+    assertEquals(Integer.valueOf(sitze(7)), service.findAnzahlPlaetzeInRaum(7));
+    assertEquals(Integer.valueOf(sitze(8)), service.findAnzahlPlaetzeInRaum(8));
+    assertEquals(Integer.valueOf(sitze(7)), service.findAnzahlPlaetzeInRaum(7));
+    assertEquals(RAEUME, service.findAnzahlPlaetze(alleRids()).size());
+    assertEquals(1, db.count("query: "));
+  }
+
+  @org.junit.Test(expected = RaumException.class)
+  public void testCacheUnbekannterRaum() {
+    service.setCacheIntervall(Duration.ofHours(1));
+    service.findAnzahlPlaetzeInRaum(RAEUME + 1);
+  }
+
+  @org.junit.Test
+  public void testBatchWieEinzelabfragen() {
+    IntIntMap batch = service.findAnzahlPlaetze(alleRids());
+    // zwei volle in-Listen und der Rest
+    assertEquals(3, db.count("query: "));
+    service.setCacheIntervall(Duration.ofHours(1));
+    IntIntMap ausCache = service.findAnzahlPlaetze(alleRids());
+    service.setCacheIntervall(null);
+    assertEquals(RAEUME, batch.size());
+    assertEquals(RAEUME, ausCache.size());
+    for (int rid : alleRids()) {
+      Integer einzeln;
+      try {
+        einzeln = service.findAnzahlPlaetzeInRaum(rid);
+      } catch (RaumException e) {
+        assertFalse(batch.containsKey(rid));
+        assertFalse(ausCache.containsKey(rid));
+        continue;
+      }
+      assertEquals(einzeln.intValue(), batch.get(rid, -1));
+      assertEquals(einzeln.intValue(), ausCache.get(rid, -1));
+    }
+  }
+}
@@ -1,17 +1,13 @@
 package de.htwberlin.dbtech.bsp.test;
 
-import java.io.File;
 import java.sql.Connection;
 import java.sql.Statement;
 
 import org.dbunit.Assertion;
 import org.dbunit.IDatabaseTester;
-import org.dbunit.JdbcDatabaseTester;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.ITable;
-import org.dbunit.dataset.csv.CsvDataSet;
-import org.dbunit.operation.DatabaseOperation;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
@@ -19,8 +15,9 @@ import org.junit.runners.MethodSorters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.htwberlin.dbtech.utils.DbCred;
 import de.htwberlin.dbtech.utils.DbUnitUtils;
+import de.htwberlin.dbtech.utils.FixtureEngine;
+import de.htwberlin.dbtech.utils.TestDb;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class DbTest {
@@ -31,12 +28,9 @@ public class DbTest {
   public static void setUp() {
     L.debug("setUp - start");
     try {
-      IDatabaseTester dbTester = new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, DbCred.user, DbCred.password,
-          DbCred.schema);
+      IDatabaseTester dbTester = TestDb.tester();
       dbTesterCon = dbTester.getConnection();
-      IDataSet pre = new CsvDataSet(new File("test-data/raum/pre"));
-      dbTester.setDataSet(pre);
-      DatabaseOperation.CLEAN_INSERT.execute(dbTesterCon, pre);
+      TestDb.restore(FixtureEngine.load("test-data/raum/pre"), dbTesterCon.getConnection());
     } catch (Exception e) {
       DbUnitUtils.closeDbUnitConnectionQuietly(dbTesterCon);
       throw new RuntimeException(e);
@@ -64,7 +58,7 @@ public class DbTest {
     ITable actualTable = databaseDataSet.getTable("raum");
 
     // Lade erwartete Daten aus der csv-Datei
-    IDataSet expectedDataSet = new CsvDataSet(new File("test-data/raum/post"));
+    IDataSet expectedDataSet = FixtureEngine.load("test-data/raum/post").asDataSet();
     ITable expectedTable = expectedDataSet.getTable("raum");
 
     // Pruefe, ob die Datenmengen uebereinstimmen
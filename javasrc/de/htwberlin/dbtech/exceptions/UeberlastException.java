@@ -0,0 +1,20 @@
+package de.htwberlin.dbtech.exceptions;
+
+/**
+ * Wird ausgeloest, wenn eine Anfrage wegen Ueberlast abgewiesen wird, bevor
+ * sie die Datenbank erreicht.
+ */
+public class UeberlastException extends ServiceException {
+  private static final long serialVersionUID = 1L;
+
+  public UeberlastException() {
+  }
+
+  public UeberlastException(Throwable t) {
+    super(t);
+  }
+
+  public UeberlastException(String msg) {
+    super(msg);
+  }
+}
@@ -0,0 +1,611 @@
+package de.htwberlin.dbtech.tools;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.IntIntMap;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+
+/**
+ * Laedt CSV-Dateien im Format der Testdaten (Kopfzeile mit Spaltennamen,
+ * Leerzeichen und Tabs um die Werte, null fuer NULL, Text optional in
+ * doppelten Anfuehrungszeichen) per JDBC-Batch in eine Tabelle.
+ * <p>
+ * Die Datei wird abschnittsweise in den Speicher abgebildet und direkt auf
+ * den Bytes zerlegt. Zahlen und Datumswerte werden ohne Umweg ueber String
+ * gelesen, nur Textspalten erzeugen Strings. Die Spalten werden ueber die
+ * Kopfzeile den Spalten der Tabelle zugeordnet, die Typen kommen aus den
+ * JDBC-Metadaten.
+ * <p>
+ * Aufruf: CsvBulkLoader [-batch n] [-commit n] [-delete] tabelle datei.csv
+ * oder CsvBulkLoader [-batch n] [-commit n] [-delete] verzeichnis (mit
+ * table-ordering.txt wie unter test-data). Mit -parseOnly werden die Dateien
+ * nur zerlegt, ohne Datenbank; das trennt die Zeit fuer das Lesen von der
+ * fuer die Inserts.
+ */
+public class CsvBulkLoader {
+  private static final Logger L = LoggerFactory.getLogger(CsvBulkLoader.class);
+
+  public static final int DEFAULT_BATCH_SIZE = 10000;
+  public static final int DEFAULT_COMMIT_ROWS = 500000;
+  // groesser als jede Zeile, kleiner als Integer.MAX_VALUE
+  static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+
+  private final Connection connection;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int commitRows = DEFAULT_COMMIT_ROWS;
+
+  public CsvBulkLoader(Connection connection) {
+    this.connection = connection;
+  }
+
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize " + batchSize);
+    }
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Nach so vielen Zeilen wird festgeschrieben; haelt Undo und Sperren klein.
+   * Scheitert das Laden, bleiben bereits festgeschriebene Abschnitte in der
+   * Tabelle (main mit -delete laedt dann neu).
+   */
+  public void setCommitRows(int commitRows) {
+    if (commitRows < 1) {
+      throw new IllegalArgumentException("commitRows " + commitRows);
+    }
+    this.commitRows = commitRows;
+  }
+
+  /**
+   * Laedt eine Datei und schreibt am Ende fest. Bei einem Fehler wird
+   * zurueckgerollt, bevor autoCommit wiederhergestellt wird, sonst wuerde
+   * setAutoCommit die halb geladenen Zeilen festschreiben.
+   *
+   * @return Anzahl der eingefuegten Zeilen.
+   */
+  public long load(String table, Path file) {
+    long start = System.nanoTime();
+    boolean autoCommit;
+    try {
+      autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+    } catch (SQLException e) {
+      throw new DataException(e);
+    }
+    JdbcSink sink = new JdbcSink(table, start);
+    try {
+      parse(file, DEFAULT_WINDOW, sink);
+      sink.finish();
+      connection.commit();
+    } catch (SQLException e) {
+      L.error("", e);
+      rollbackQuietly();
+      throw new DataException(table + ": " + e.getMessage(), e);
+    } catch (RuntimeException e) {
+      rollbackQuietly();
+      throw e;
+    } finally {
+      sink.close();
+      try {
+        connection.setAutoCommit(autoCommit);
+      } catch (SQLException e) {
+        L.error("", e);
+      }
+    }
+    report(table, sink.rows, start);
+    return sink.rows;
+  }
+
+  private void rollbackQuietly() {
+    try {
+      connection.rollback();
+    } catch (SQLException e) {
+      L.error("", e);
+    }
+  }
+
+  private static void report(String table, long rows, long start) {
+    double seconds = (System.nanoTime() - start) / 1e9;
+    L.info(String.format("%s: %d rows in %.1f s, %.0f rows/s", table, rows, seconds, rows / Math.max(seconds, 1e-9)));
+  }
+
+  /**
+   * Empfaengt die Zeilen einer Datei. Die Zeile ist nur waehrend des Aufrufs
+   * gueltig.
+   */
+  interface RowHandler {
+    void header(Line header) throws SQLException;
+
+    void row(Line line) throws SQLException;
+  }
+
+  /**
+   * Zerlegt die Datei und ruft den Handler je Zeile auf.
+   *
+   * @param window
+   *          Groesse eines abgebildeten Abschnitts; eine Zeile darf nicht
+   *          laenger sein.
+   */
+  static void parse(Path file, int window, RowHandler handler) throws SQLException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      long position = 0;
+      long lineNo = 0;
+      Line line = new Line();
+      boolean header = true;
+      while (position < size) {
+        long length = Math.min(window, size - position);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, position, length);
+        boolean last = position + length == size;
+        int lineStart = 0;
+        int limit = (int) length;
+        while (lineStart < limit) {
+          int lineEnd = indexOf(buf, (byte) '\n', lineStart, limit);
+          if (lineEnd < 0) {
+            if (!last) {
+              break;
+            }
+            lineEnd = limit;
+          }
+          lineNo++;
+          if (line.split(buf, lineStart, lineEnd, lineNo)) {
+            if (header) {
+              handler.header(line);
+              header = false;
+            } else {
+              handler.row(line);
+            }
+          }
+          lineStart = lineEnd + 1;
+        }
+        if (lineStart == 0 && !last) {
+          throw new DataException(file + ": line " + (lineNo + 1) + " longer than " + window + " bytes");
+        }
+        position += Math.min(lineStart, limit);
+      }
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+  }
+
+  private static int indexOf(MappedByteBuffer buf, byte b, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buf.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Eine zerlegte Zeile: Anfang und Ende jedes Werts im Puffer, ohne Leerraum
+   * und Anfuehrungszeichen.
+   */
+  static class Line {
+    private MappedByteBuffer buf;
+    private int[] start = new int[16];
+    private int[] end = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int count;
+    long lineNo;
+
+    // false bei Leerzeilen
+    boolean split(MappedByteBuffer buf, int from, int to, long lineNo) {
+      this.buf = buf;
+      this.lineNo = lineNo;
+      count = 0;
+      int i = from;
+      if (to > from && buf.get(to - 1) == '\r') {
+        to--;
+      }
+      while (i < to && isBlank(buf.get(i))) {
+        i++;
+      }
+      if (i == to) {
+        return false;
+      }
+      i = from;
+      while (true) {
+        while (i < to && isBlank(buf.get(i))) {
+          i++;
+        }
+        grow();
+        if (i < to && buf.get(i) == '"') {
+          int s = ++i;
+          while (i < to && !(buf.get(i) == '"' && (i + 1 >= to || buf.get(i + 1) != '"'))) {
+            i += buf.get(i) == '"' ? 2 : 1;
+          }
+          start[count] = s;
+          end[count] = i;
+          quoted[count] = true;
+          i++;
+          while (i < to && buf.get(i) != ',') {
+            i++;
+          }
+        } else {
+          int s = i;
+          while (i < to && buf.get(i) != ',') {
+            i++;
+          }
+          int e = i;
+          while (e > s && isBlank(buf.get(e - 1))) {
+            e--;
+          }
+          start[count] = s;
+          end[count] = e;
+          quoted[count] = false;
+        }
+        count++;
+        if (i >= to) {
+          return true;
+        }
+        i++;
+      }
+    }
+
+    private void grow() {
+      if (count == start.length) {
+        start = Arrays.copyOf(start, count * 2);
+        end = Arrays.copyOf(end, count * 2);
+        quoted = Arrays.copyOf(quoted, count * 2);
+      }
+    }
+
+    private static boolean isBlank(byte b) {
+      return b == ' ' || b == '\t';
+    }
+
+    int size() {
+      return count;
+    }
+
+    boolean isNull(int i) {
+      return !quoted[i] && end[i] - start[i] == 4 && buf.get(start[i]) == 'n' && buf.get(start[i] + 1) == 'u'
+          && buf.get(start[i] + 2) == 'l' && buf.get(start[i] + 3) == 'l';
+    }
+
+    /**
+     * Ganzzahl ohne Zwischenstring; false wenn der Wert keine ist (z.B.
+     * Nachkommastellen).
+     */
+    boolean isLong(int i) {
+      int s = start[i];
+      int e = end[i];
+      if (s < e && (buf.get(s) == '-' || buf.get(s) == '+')) {
+        s++;
+      }
+      if (s == e || e - s > 18) {
+        return false;
+      }
+      for (int k = s; k < e; k++) {
+        byte b = buf.get(k);
+        if (b < '0' || b > '9') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    long parseLong(int i) {
+      int s = start[i];
+      boolean negative = buf.get(s) == '-';
+      if (negative || buf.get(s) == '+') {
+        s++;
+      }
+      long v = 0;
+      for (int k = s; k < end[i]; k++) {
+        v = v * 10 + (buf.get(k) - '0');
+      }
+      return negative ? -v : v;
+    }
+
+    /**
+     * Datum yyyy-MM-dd als Tage seit 1970-01-01.
+     */
+    long parseEpochDay(int i) {
+      int s = start[i];
+      if (end[i] - s < 10 || buf.get(s + 4) != '-' || buf.get(s + 7) != '-') {
+        throw new DataException("line " + lineNo + ": not a date: " + text(i));
+      }
+      int y = digits(s, 4);
+      int m = digits(s + 5, 2);
+      int d = digits(s + 8, 2);
+      return LocalDate.of(y, m, d).toEpochDay();
+    }
+
+    private int digits(int s, int n) {
+      int v = 0;
+      for (int k = s; k < s + n; k++) {
+        byte b = buf.get(k);
+        if (b < '0' || b > '9') {
+          throw new DataException("line " + lineNo + ": not a number at column " + (k - s));
+        }
+        v = v * 10 + (b - '0');
+      }
+      return v;
+    }
+
+    /**
+     * Hat der Wert die Form yyyy-MM-dd? Ob er ein Datum sein soll, entscheidet
+     * beim Laden der Typ der Spalte, hier geht es nur um die Schreibweise.
+     */
+    boolean isDateOnly(int i) {
+      int s = start[i];
+      if (quoted[i] || end[i] - s != 10) {
+        return false;
+      }
+      for (int k = 0; k < 10; k++) {
+        byte b = buf.get(s + k);
+        if (k == 4 || k == 7 ? b != '-' : b < '0' || b > '9') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    String text(int i) {
+      byte[] b = new byte[end[i] - start[i]];
+      int n = 0;
+      for (int k = start[i]; k < end[i]; k++) {
+        byte c = buf.get(k);
+        b[n++] = c;
+        // verdoppeltes Anfuehrungszeichen im geschuetzten Text
+        if (quoted[i] && c == '"' && k + 1 < end[i] && buf.get(k + 1) == '"') {
+          k++;
+        }
+      }
+      return new String(b, 0, n, StandardCharsets.UTF_8);
+    }
+  }
+
+  private class JdbcSink implements RowHandler {
+    private final String table;
+    private final long startNanos;
+    private PreparedStatement ps;
+    private int[] types;
+    // Datum (Tage seit 1970) -> Index in timestamps; Datumswerte wiederholen sich stark
+    private final IntIntMap dateIndex = new IntIntMap();
+    private final List<Timestamp> timestamps = new ArrayList<>();
+    private int inBatch;
+    long rows;
+
+    JdbcSink(String table, long startNanos) {
+      this.table = table;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void header(Line header) throws SQLException {
+      String[] columns = new String[header.size()];
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = header.text(i);
+      }
+      String cols = String.join(", ", columns);
+      types = new int[columns.length];
+      try (Statement s = connection.createStatement();
+          ResultSet rs = s.executeQuery("select " + cols + " from " + table + " where 1 = 0")) {
+        ResultSetMetaData md = rs.getMetaData();
+        for (int i = 0; i < columns.length; i++) {
+          types[i] = md.getColumnType(i + 1);
+        }
+      }
+      StringBuilder sql = new StringBuilder("insert into ").append(table).append(" (").append(cols).append(") values (");
+      for (int i = 0; i < columns.length; i++) {
+        sql.append(i == 0 ? "?" : ", ?");
+      }
+      ps = connection.prepareStatement(sql.append(')').toString());
+    }
+
+    @Override
+    public void row(Line line) throws SQLException {
+      if (line.size() != types.length) {
+        throw new DataException(table + " line " + line.lineNo + ": expected " + types.length + " values, got "
+            + line.size());
+      }
+      for (int i = 0; i < types.length; i++) {
+        bind(line, i);
+      }
+      ps.addBatch();
+      rows++;
+      if (++inBatch == batchSize) {
+        ps.executeBatch();
+        inBatch = 0;
+      }
+      if (rows % commitRows == 0) {
+        if (inBatch > 0) {
+          ps.executeBatch();
+          inBatch = 0;
+        }
+        connection.commit();
+        report(table, rows, startNanos);
+      }
+    }
+
+    private void bind(Line line, int i) throws SQLException {
+      int p = i + 1;
+      if (line.isNull(i)) {
+        ps.setNull(p, types[i]);
+        return;
+      }
+      switch (types[i]) {
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+      case Types.INTEGER:
+      case Types.BIGINT:
+      case Types.SMALLINT:
+        if (line.isLong(i)) {
+          ps.setLong(p, line.parseLong(i));
+        } else {
+          ps.setBigDecimal(p, new BigDecimal(line.text(i)));
+        }
+        break;
+      case Types.DATE:
+      case Types.TIMESTAMP:
+        if (line.isDateOnly(i)) {
+          ps.setTimestamp(p, timestamp(line.parseEpochDay(i)));
+        } else {
+          ps.setTimestamp(p, Timestamp.valueOf(line.text(i)));
+        }
+        break;
+      default:
+        ps.setString(p, line.text(i));
+      }
+    }
+
+    private Timestamp timestamp(long epochDay) {
+      int k = (int) epochDay;
+      int idx = dateIndex.get(k, -1);
+      if (idx < 0) {
+        idx = timestamps.size();
+        timestamps.add(Timestamp.valueOf(LocalDate.ofEpochDay(epochDay).atStartOfDay()));
+        dateIndex.put(k, idx);
+      }
+      return timestamps.get(idx);
+    }
+
+    void finish() throws SQLException {
+      if (ps != null && inBatch > 0) {
+        ps.executeBatch();
+        inBatch = 0;
+      }
+    }
+
+    void close() {
+      if (ps != null) {
+        try {
+          ps.close();
+        } catch (SQLException e) {
+          L.error("", e);
+        }
+      }
+    }
+  }
+
+  // liest jeden Wert wie beim Laden, Zahlen und Datumswerte ohne String. Ohne
+  // Datenbank gibt es keine Spaltentypen, Datum ist daher, was wie eines aussieht
+  static long parseOnly(Path file) throws SQLException {
+    long[] rows = { 0, 0 };
+    parse(file, DEFAULT_WINDOW, new RowHandler() {
+      @Override
+      public void header(Line header) {
+      }
+
+      @Override
+      public void row(Line line) {
+        for (int i = 0; i < line.size(); i++) {
+          if (line.isNull(i)) {
+            continue;
+          }
+          if (line.isLong(i)) {
+            rows[1] += line.parseLong(i);
+          } else if (line.isDateOnly(i)) {
+            rows[1] += line.parseEpochDay(i);
+          } else {
+            rows[1] += line.text(i).length();
+          }
+        }
+        rows[0]++;
+      }
+    });
+    return rows[0];
+  }
+
+  public static void main(String[] args) throws IOException {
+    int batch = DEFAULT_BATCH_SIZE;
+    int commit = DEFAULT_COMMIT_ROWS;
+    boolean delete = false;
+    boolean parseOnly = false;
+    List<String> rest = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-batch")) {
+        batch = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-commit")) {
+        commit = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-delete")) {
+        delete = true;
+      } else if (args[i].equals("-parseOnly")) {
+        parseOnly = true;
+      } else {
+        rest.add(args[i]);
+      }
+    }
+    List<String> tables = new ArrayList<>();
+    List<Path> files = new ArrayList<>();
+    if (rest.size() == 1) {
+      Path dir = Paths.get(rest.get(0));
+      for (String t : Files.readAllLines(dir.resolve("table-ordering.txt"))) {
+        if (!t.trim().isEmpty()) {
+          tables.add(t.trim());
+          files.add(dir.resolve(t.trim() + ".csv"));
+        }
+      }
+    } else if (rest.size() == 2) {
+      tables.add(rest.get(0));
+      files.add(Paths.get(rest.get(1)));
+    } else {
+      System.err.println("usage: CsvBulkLoader [-batch n] [-commit n] [-delete] [-parseOnly] (table file.csv | directory)");
+      System.exit(2);
+    }
+    if (parseOnly) {
+      for (int i = 0; i < tables.size(); i++) {
+        long start = System.nanoTime();
+        long rows;
+        try {
+          rows = parseOnly(files.get(i));
+        } catch (SQLException e) {
+          throw new DataException(e);
+        }
+        report(tables.get(i), rows, start);
+      }
+      return;
+    }
+
+    JdbcUtils.loadDriver(DbCred.driverClass);
+    Connection connection = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password);
+    try {
+      if (delete) {
+        try (Statement s = connection.createStatement()) {
+          for (int i = tables.size() - 1; i >= 0; i--) {
+            s.executeUpdate("delete from " + tables.get(i));
+          }
+        }
+      }
+      CsvBulkLoader loader = new CsvBulkLoader(connection);
+      loader.setBatchSize(batch);
+      loader.setCommitRows(commit);
+      for (int i = 0; i < tables.size(); i++) {
+        loader.load(tables.get(i), files.get(i));
+      }
+    } catch (SQLException e) {
+      throw new DataException(e);
+    } finally {
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package de.htwberlin.dbtech.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.FakeJdbc;
+
+public class CsvBulkLoaderTest {
+
+  // schreibt jede Zeile so, wie sie beim Laden gebunden wuerde
+  private static List<String> parse(Path file, int window) throws Exception {
+    List<String> l = new ArrayList<>();
+    CsvBulkLoader.parse(file, window, new CsvBulkLoader.RowHandler() {
+      @Override
+      public void header(CsvBulkLoader.Line header) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < header.size(); i++) {
+          sb.append(i == 0 ? "" : "|").append(header.text(i));
+        }
+        l.add(sb.toString());
+      }
+
+      @Override
+      public void row(CsvBulkLoader.Line line) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < line.size(); i++) {
+          sb.append(i == 0 ? "" : "|");
+          if (line.isNull(i)) {
+            sb.append("NULL");
+          } else if (line.isLong(i)) {
+            sb.append(line.parseLong(i));
+          } else if (line.isDateOnly(i)) {
+            sb.append(LocalDate.ofEpochDay(line.parseEpochDay(i)));
+          } else {
+            sb.append(line.text(i));
+          }
+        }
+        l.add(sb.toString());
+      }
+    });
+    return l;
+  }
+
+  @org.junit.Test
+  public void testTestDataTray() throws Exception {
+    List<String> l = parse(Paths.get("test-data/ue03-04/pre/tray.csv"), CsvBulkLoader.DEFAULT_WINDOW);
+    Assert.assertEquals("TrayID|DiameterInCM|Capacity|ExpirationDate", l.get(0));
+    Assert.assertEquals("1|1|1|2017-05-31", l.get(1));
+    Assert.assertEquals("2|2|1|NULL", l.get(2));
+  }
+
+  @org.junit.Test
+  public void testQuotedText() throws Exception {
+    List<String> l = parse(Paths.get("test-data/raum/pre/raum.csv"), CsvBulkLoader.DEFAULT_WINDOW);
+    Assert.assertEquals(Arrays.asList("RID|RaumNr|AnzahlSitze", "1|A027|60", "2|A028|30", "3|A029|40"), l);
+  }
+
+  /**
+   * Abschnitte kleiner als die Datei: Zeilen ueber eine Abschnittsgrenze
+   * muessen vollstaendig ankommen, gleich bei welcher Groesse.
+   */
+  @org.junit.Test
+  public void testWindowBoundaries() throws Exception {
+    Path f = Files.createTempFile("bulk", ".csv");
+    try {
+      StringBuilder sb = new StringBuilder("TrayID, PlaceNo, SampleID\r\n");
+      for (int i = 0; i < 500; i++) {
+        sb.append(i / 10 + 1).append(",\t").append(i % 10 + 1).append(",  ").append(i).append(i % 7 == 0 ? "\r\n" : "\n");
+        if (i % 50 == 0) {
+          sb.append("\n");
+        }
+      }
+      Files.write(f, sb.toString().getBytes(StandardCharsets.UTF_8));
+      List<String> expected = parse(f, CsvBulkLoader.DEFAULT_WINDOW);
+      Assert.assertEquals(501, expected.size());
+      Assert.assertEquals("50|10|499", expected.get(500));
+      for (int window : new int[] { 32, 33, 47, 100 }) {
+        Assert.assertEquals("window " + window, expected, parse(f, window));
+      }
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  @org.junit.Test(expected = DataException.class)
+  public void testLineLongerThanWindow() throws Exception {
+    parse(Paths.get("test-data/ue03-04/pre/tray.csv"), 8);
+  }
+
+  @org.junit.Test
+  public void testTextWieDatum() throws Exception {
+    Path f = Files.createTempFile("bulk", ".csv");
+    try {
+      Files.write(f, "Name, Datum\nABCDEFGHIJ, 2017-05-31\n\"2017-05-31\", 2017-06-01\n".getBytes(StandardCharsets.UTF_8));
+      Assert.assertEquals(Arrays.asList("Name|Datum", "ABCDEFGHIJ|2017-05-31", "2017-05-31|2017-06-01"),
+          parse(f, CsvBulkLoader.DEFAULT_WINDOW));
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  // Verbindung ohne Datenbank: Spalten VARCHAR und DATE, zeichnet Aufrufe auf
+  private static FakeJdbc recorder() {
+    return new FakeJdbc().columnTypes(Types.VARCHAR, Types.DATE).recordRows();
+  }
+
+  @org.junit.Test(expected = IllegalArgumentException.class)
+  public void testBatchSizeNull() {
+    new CsvBulkLoader(recorder().connection()).setBatchSize(0);
+  }
+
+  @org.junit.Test(expected = IllegalArgumentException.class)
+  public void testCommitRowsNull() {
+    new CsvBulkLoader(recorder().connection()).setCommitRows(0);
+  }
+
+  @org.junit.Test
+  public void testLoadTextNachSpaltentyp() throws Exception {
+    Path f = Files.createTempFile("bulk", ".csv");
+    try {
+      Files.write(f, "Name, Datum\nABCDEFGHIJ, 2017-05-31\n".getBytes(StandardCharsets.UTF_8));
+      FakeJdbc db = recorder();
+      Assert.assertEquals(1, new CsvBulkLoader(db.connection()).load("T", f));
+      Assert.assertEquals(Arrays.asList("autoCommit false", "query: select Name, Datum from T where 1 = 0",
+          "row: [ABCDEFGHIJ, 2017-05-31 00:00:00.0]", "batch 1: insert into T (Name, Datum) values (?, ?)", "commit",
+          "autoCommit true"), db.log());
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  @org.junit.Test
+  public void testLoadRolltZurueck() throws Exception {
+    Path f = Files.createTempFile("bulk", ".csv");
+    try {
+      Files.write(f, "Name, Datum\na, 2017-05-31\nb, 2017-06-01\nc\n".getBytes(StandardCharsets.UTF_8));
+      FakeJdbc db = recorder();
+      List<String> log = db.log();
+      CsvBulkLoader loader = new CsvBulkLoader(db.connection());
+      loader.setBatchSize(2);
+      try {
+        loader.load("T", f);
+        Assert.fail("DataException erwartet");
+      } catch (DataException e) {
+        // erwartet: falsche Anzahl Werte in Zeile 4
+      }
+      Assert.assertFalse(log.contains("commit"));
+      Assert.assertEquals(Arrays.asList("batch 2: insert into T (Name, Datum) values (?, ?)", "rollback", "autoCommit true"),
+          log.subList(log.size() - 3, log.size()));
+    } finally {
+      Files.delete(f);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package de.htwberlin.dbtech.tools;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramm fuer Latenzen in Mikrosekunden nach dem Muster von
+ * HdrHistogram: unter SUB_COUNT ein Eimer je Wert, darueber je Zweierpotenz
+ * SUB_COUNT gleich breite Eimer. Der relative Fehler eines Perzentils ist
+ * damit hoechstens 1 / SUB_COUNT (unter 1 %), der Speicher fest und
+ * record() ohne Sperren. Werte ueber MAX_VALUE (eine Stunde) zaehlen als
+ * MAX_VALUE.
+ */
+public class LatencyHistogram {
+  static final int SUB_BITS = 7;
+  static final int SUB_COUNT = 1 << SUB_BITS;
+  static final long MAX_VALUE = 3600L * 1000 * 1000;
+
+  private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+
+  static int index(long value) {
+    if (value < SUB_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return SUB_COUNT + shift * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+  }
+
+  // groesster Wert, der in denselben Eimer faellt
+  static long highestEquivalent(int index) {
+    if (index < SUB_COUNT) {
+      return index;
+    }
+    int shift = (index - SUB_COUNT) / SUB_COUNT;
+    long lowest = (long) (SUB_COUNT + (index - SUB_COUNT) % SUB_COUNT) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  public void record(long micros) {
+    long v = Math.min(Math.max(micros, 0), MAX_VALUE);
+    counts.incrementAndGet(index(v));
+    total.incrementAndGet();
+    sum.addAndGet(v);
+    max.accumulateAndGet(v, Math::max);
+  }
+
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      long c = other.counts.get(i);
+      if (c != 0) {
+        counts.addAndGet(i, c);
+      }
+    }
+    total.addAndGet(other.total.get());
+    sum.addAndGet(other.sum.get());
+    max.accumulateAndGet(other.max.get(), Math::max);
+  }
+
+  public long count() {
+    return total.get();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  public double mean() {
+    long n = total.get();
+    return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * Kleinster Wert, unter dem mindestens percentile Prozent der Werte liegen,
+   * als obere Grenze seines Eimers, hoechstens max(). 0 ohne Werte.
+   */
+  public long percentile(double percentile) {
+    long n = total.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestEquivalent(i), max.get());
+      }
+    }
+    return max.get();
+  }
+}
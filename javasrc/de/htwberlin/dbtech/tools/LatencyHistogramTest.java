@@ -0,0 +1,53 @@
+package de.htwberlin.dbtech.tools;
+
+import org.junit.Assert;
+
+public class LatencyHistogramTest {
+
+  @org.junit.Test
+  public void testBuckets() {
+    // jeder Wert liegt in seinem Eimer, die Eimer schliessen luecklos aneinander
+    long previous = -1;
+    for (int i = 0; i <= LatencyHistogram.index(LatencyHistogram.MAX_VALUE); i++) {
+      long high = LatencyHistogram.highestEquivalent(i);
+      Assert.assertEquals(i, LatencyHistogram.index(high));
+      Assert.assertEquals(i + 1, LatencyHistogram.index(high + 1));
+      Assert.assertTrue(high > previous);
+      // relative Breite unter 1 %
+      Assert.assertTrue(high - previous <= Math.max(1, high / LatencyHistogram.SUB_COUNT + 1));
+      previous = high;
+    }
+  }
+
+  @org.junit.Test
+  public void testPercentiles() {
+    LatencyHistogram h = new LatencyHistogram();
+    for (int i = 1; i <= 100000; i++) {
+      h.record(i);
+    }
+    Assert.assertEquals(100000, h.count());
+    Assert.assertEquals(100000, h.max());
+    Assert.assertEquals(50000.5, h.mean(), 1e-9);
+    for (double p : new double[] { 50, 90, 99, 99.9 }) {
+      long expected = Math.round(p * 1000);
+      long actual = h.percentile(p);
+      Assert.assertTrue(p + ": " + actual, actual >= expected && actual <= expected * 1.01);
+    }
+    Assert.assertEquals(100000, h.percentile(100));
+  }
+
+  @org.junit.Test
+  public void testAddAndClamp() {
+    LatencyHistogram a = new LatencyHistogram();
+    LatencyHistogram b = new LatencyHistogram();
+    a.record(5);
+    b.record(-3);
+    b.record(Long.MAX_VALUE);
+    a.add(b);
+    Assert.assertEquals(3, a.count());
+    Assert.assertEquals(0, a.percentile(1));
+    Assert.assertEquals(5, a.percentile(50));
+    Assert.assertEquals(LatencyHistogram.MAX_VALUE, a.max());
+    Assert.assertEquals(0, new LatencyHistogram().percentile(99));
+  }
+}
@@ -0,0 +1,552 @@
+package de.htwberlin.dbtech.tools;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.aufgaben.ue02.CoolingJdbc;
+import de.htwberlin.dbtech.aufgaben.ue03.CoolingService;
+import de.htwberlin.dbtech.bsp.auktion.AuktionsService;
+import de.htwberlin.dbtech.exceptions.CoolingSystemException;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.GroupCommitter;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+
+/**
+ * Lastgenerator fuer transferSample, createSample, clearTray und biete. Spielt
+ * einen aufgezeichneten oder erzeugten Ablauf (Trace) mit offener Last ab:
+ * jeder Aufruf hat einen geplanten Startzeitpunkt und wird dann abgeschickt,
+ * gleich ob die vorherigen schon fertig sind. Sind alle Clients belegt,
+ * wartet er in der Warteschlange.
+ * <p>
+ * Gemessen wird ab dem geplanten Start, nicht ab dem tatsaechlichen. Sonst
+ * fielen genau die Aufrufe aus der Messung, die hinter einem langsamen
+ * Aufruf warten (coordinated omission). Zum Vergleich wird auch die reine
+ * Bearbeitungszeit ausgegeben. Alle interval ms erscheinen Durchsatz und
+ * Perzentile des Intervalls, am Ende die Summe je Operation.
+ * <p>
+ * Aufruf: LoadGenerator [-clients n] [-rate ops/s] [-calls n] [-seed s]
+ * [-interval ms] [-simulate rtt-us] [-groupCommit n] [-write datei] [trace-datei]
+ * <p>
+ * Ohne Trace-Datei wird ein Ablauf mit Poisson-verteilten Ankuenften erzeugt,
+ * mit -write laesst er sich fuer spaetere Laeufe speichern. Eine Trace-Datei
+ * wird mit -rate auf die mittlere Rate gestreckt oder gestaucht, die Abstaende
+ * bleiben im Verhaeltnis erhalten. Jeder Client hat eine eigene Verbindung zu
+ * DbCred; clearTray und createSample aendern Daten, also nur gegen ein
+ * Testschema laufen lassen. Die Dienste loggen jeden Aufruf, bei hoher Rate
+ * mit -Dorg.slf4j.simpleLogger.defaultLogLevel=warn starten.
+ * <p>
+ * -groupCommit n schickt alle Aufrufe ueber einen GroupCommitter, bis zu n
+ * Aufrufe teilen sich einen Commit.
+ * <p>
+ * -simulate ersetzt die Datenbank durch einen Platzhalter im Speicher: jeder
+ * Aufruf wartet so viele Roundtrips, wie die Budgets der Tests erlauben
+ * (siehe StatementCounter), jeden mit exponentiell verteilter Dauer um rtt.
+ */
+public class LoadGenerator {
+  private static final Logger L = LoggerFactory.getLogger(LoadGenerator.class);
+
+  static final String[] OPERATIONS = { "transferSample", "createSample", "clearTray", "biete" };
+  static final int TRANSFER_SAMPLE = 0;
+  static final int CREATE_SAMPLE = 1;
+  static final int CLEAR_TRAY = 2;
+  static final int BIETE = 3;
+
+  // Roundtrips je Operation fuer -simulate
+  static final int[] ROUND_TRIPS = { 4, 3, 4, 5 };
+
+  // Anteile der Operationen im erzeugten Ablauf, in Promille
+  private static final int[] MIX = { 500, 200, 50, 250 };
+
+  // Fenster, in dem -groupCommit auf weitere Aufrufe wartet
+  static final long GROUP_COMMIT_DELAY_MICROS = 1000;
+
+  // erzeugte Proben beginnen hier, damit sie nicht mit den vorhandenen kollidieren
+  static final int FIRST_NEW_SAMPLE_ID = 1000000;
+
+  /**
+   * Ein Aufruf mit Startzeitpunkt relativ zum Beginn des Ablaufs.
+   */
+  public static class Call {
+    public final long offsetMicros;
+    public final int operation;
+    public final String[] args;
+
+    public Call(long offsetMicros, int operation, String... args) {
+      this.offsetMicros = offsetMicros;
+      this.operation = operation;
+      this.args = args;
+    }
+
+    int intArg(int i) {
+      return Integer.parseInt(args[i]);
+    }
+
+    @Override
+    public String toString() {
+      return offsetMicros / 1000.0 + " " + OPERATIONS[operation] + " " + String.join(" ", args);
+    }
+  }
+
+  /**
+   * Ein Client fuehrt Aufrufe nacheinander aus, immer im selben Thread.
+   */
+  public interface Client extends AutoCloseable {
+    void execute(Call call);
+
+    @Override
+    void close();
+  }
+
+  public interface Target {
+    Client open();
+  }
+
+  /**
+   * Liest einen Ablauf: je Zeile Startzeitpunkt in ms, Operation und deren
+   * Argumente, durch Leerraum getrennt. Leere Zeilen und Zeilen mit # am
+   * Anfang werden uebersprungen.
+   */
+  public static List<Call> readTrace(Path file) throws IOException {
+    List<Call> calls = new ArrayList<>();
+    int lineNo = 0;
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      lineNo++;
+      String s = line.trim();
+      if (s.isEmpty() || s.startsWith("#")) {
+        continue;
+      }
+      String[] f = s.split("\\s+");
+      int op = f.length < 2 ? -1 : operation(f[1]);
+      if (op < 0 || f.length - 2 != (op == CLEAR_TRAY ? 1 : 2)) {
+        throw new DataException(file + ":" + lineNo + ": expected <ms> <operation> <args>: " + line);
+      }
+      String[] args = new String[f.length - 2];
+      System.arraycopy(f, 2, args, 0, args.length);
+      try {
+        calls.add(new Call(Math.round(Double.parseDouble(f[0]) * 1000), op, args));
+      } catch (NumberFormatException e) {
+        throw new DataException(file + ":" + lineNo + ": " + e.getMessage());
+      }
+    }
+    calls.sort((a, b) -> Long.compare(a.offsetMicros, b.offsetMicros));
+    return calls;
+  }
+
+  public static void writeTrace(List<Call> calls, Path file) throws IOException {
+    List<String> lines = new ArrayList<>(calls.size() + 1);
+    lines.add("# ms operation args");
+    for (Call c : calls) {
+      lines.add(c.toString());
+    }
+    Files.write(file, lines, StandardCharsets.UTF_8);
+  }
+
+  static int operation(String name) {
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      if (OPERATIONS[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Erzeugt n Aufrufe mit Poisson-verteilten Ankuenften bei mittlerer Rate
+   * rate pro Sekunde. Die Argumente verteilen sich gleichmaessig ueber die
+   * Proben 1 bis samples, die Tabletts 1 bis trays und die Angebote 1 bis
+   * auctions.
+   */
+  public static List<Call> synthetic(int n, double rate, long seed, int samples, int trays, int auctions) {
+    Random r = new Random(seed);
+    List<Call> calls = new ArrayList<>(n);
+    double t = 0;
+    int newSamples = 0;
+    for (int i = 0; i < n; i++) {
+      long offset = Math.round(t * 1e6);
+      t += -Math.log(1 - r.nextDouble()) / rate;
+      int p = r.nextInt(1000);
+      int op = 0;
+      while (p >= MIX[op]) {
+        p -= MIX[op++];
+      }
+      switch (op) {
+      case TRANSFER_SAMPLE:
+        calls.add(new Call(offset, op, Integer.toString(1 + r.nextInt(samples)), Integer.toString(1 + r.nextInt(5))));
+        break;
+      case CREATE_SAMPLE:
+        calls.add(new Call(offset, op, Integer.toString(FIRST_NEW_SAMPLE_ID + newSamples++),
+            Integer.toString(1 + r.nextInt(3))));
+        break;
+      case CLEAR_TRAY:
+        calls.add(new Call(offset, op, Integer.toString(1 + r.nextInt(trays))));
+        break;
+      default:
+        calls.add(new Call(offset, op, Integer.toString(1 + r.nextInt(auctions)),
+            BigDecimal.valueOf(1 + r.nextInt(100000), 2).toPlainString()));
+      }
+    }
+    return calls;
+  }
+
+  /**
+   * Streckt die Startzeitpunkte so, dass der Ablauf im Mittel rate Aufrufe
+   * pro Sekunde hat.
+   */
+  public static List<Call> atRate(List<Call> calls, double rate) {
+    if (calls.size() < 2) {
+      return calls;
+    }
+    long first = calls.get(0).offsetMicros;
+    long span = calls.get(calls.size() - 1).offsetMicros - first;
+    double factor = span == 0 ? 0 : (calls.size() - 1) / rate * 1e6 / span;
+    List<Call> l = new ArrayList<>(calls.size());
+    for (Call c : calls) {
+      long offset = span == 0 ? Math.round(l.size() / rate * 1e6) : Math.round((c.offsetMicros - first) * factor);
+      l.add(new Call(offset, c.operation, c.args));
+    }
+    return l;
+  }
+
+  /**
+   * Ergebnis eines Laufs. response misst ab dem geplanten Start, service ab
+   * dem tatsaechlichen.
+   */
+  public static class Report {
+    public final LatencyHistogram[] response = histograms();
+    public final LatencyHistogram[] service = histograms();
+    public final AtomicLongArray rejected = new AtomicLongArray(OPERATIONS.length);
+    public final AtomicLongArray errors = new AtomicLongArray(OPERATIONS.length);
+    public long elapsedNanos;
+
+    public LatencyHistogram total(LatencyHistogram[] byOperation) {
+      LatencyHistogram h = new LatencyHistogram();
+      for (LatencyHistogram o : byOperation) {
+        h.add(o);
+      }
+      return h;
+    }
+
+    private static LatencyHistogram[] histograms() {
+      LatencyHistogram[] a = new LatencyHistogram[OPERATIONS.length];
+      for (int i = 0; i < a.length; i++) {
+        a[i] = new LatencyHistogram();
+      }
+      return a;
+    }
+  }
+
+  private static class Scheduled {
+    final Call call;
+    final long intendedNanos;
+
+    Scheduled(Call call, long intendedNanos) {
+      this.call = call;
+      this.intendedNanos = intendedNanos;
+    }
+  }
+
+  private static final Scheduled END = new Scheduled(null, 0);
+
+  private final Target target;
+  private final int clients;
+  private final long intervalMillis;
+
+  public LoadGenerator(Target target, int clients, long intervalMillis) {
+    this.target = target;
+    this.clients = clients;
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Spielt den Ablauf ab und wartet, bis alle Aufrufe fertig sind.
+   * Fachliche Ablehnungen (CoolingSystemException, ServiceException) zaehlen
+   * als rejected, DataException und alle anderen Ausnahmen als Fehler;
+   * gemessen werden beide.
+   */
+  public Report run(List<Call> calls) throws InterruptedException {
+    Report report = new Report();
+    AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+    BlockingQueue<Scheduled> queue = new LinkedBlockingQueue<>();
+    List<Thread> threads = new ArrayList<>(clients);
+    for (int i = 0; i < clients; i++) {
+      Thread t = new Thread(() -> work(queue, report, interval), "load-client-" + i);
+      threads.add(t);
+      t.start();
+    }
+    long start = System.nanoTime();
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(() -> logInterval(start, interval.getAndSet(new LatencyHistogram()), queue.size()),
+        intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    try {
+      for (Call c : calls) {
+        long intended = start + c.offsetMicros * 1000;
+        long wait;
+        while ((wait = intended - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(wait);
+        }
+        queue.add(new Scheduled(c, intended));
+      }
+      for (int i = 0; i < clients; i++) {
+        queue.add(END);
+      }
+      for (Thread t : threads) {
+        t.join();
+      }
+    } finally {
+      reporter.shutdownNow();
+    }
+    report.elapsedNanos = System.nanoTime() - start;
+    return report;
+  }
+
+  private void work(BlockingQueue<Scheduled> queue, Report report, AtomicReference<LatencyHistogram> interval) {
+    try (Client client = target.open()) {
+      Scheduled s;
+      while ((s = queue.take()) != END) {
+        int op = s.call.operation;
+        long started = System.nanoTime();
+        try {
+          client.execute(s.call);
+        } catch (CoolingSystemException | ServiceException e) {
+          report.rejected.incrementAndGet(op);
+        } catch (DataException e) {
+          report.errors.incrementAndGet(op);
+          L.warn(s.call + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+          report.errors.incrementAndGet(op);
+          L.warn(s.call + ": " + e, e);
+        }
+        long end = System.nanoTime();
+        long response = (end - s.intendedNanos) / 1000;
+        report.response[op].record(response);
+        report.service[op].record((end - started) / 1000);
+        interval.get().record(response);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void logInterval(long start, LatencyHistogram h, int backlog) {
+    L.info(String.format("t=%5.1fs %8.1f ops/s  p50 %s  p90 %s  p99 %s  p99.9 %s  max %s  backlog %d",
+        (System.nanoTime() - start) / 1e9, h.count() * 1000.0 / intervalMillis, ms(h.percentile(50)), ms(h.percentile(90)),
+        ms(h.percentile(99)), ms(h.percentile(99.9)), ms(h.max()), backlog));
+  }
+
+  static String ms(long micros) {
+    return String.format("%8.2fms", micros / 1000.0);
+  }
+
+  /**
+   * Die Dienste an einer Verbindung.
+   */
+  static class Services {
+    final CoolingService cs = new CoolingService();
+    final CoolingJdbc cj = new CoolingJdbc();
+    final AuktionsService as = new AuktionsService();
+
+    Services(Connection connection) {
+      cs.setConnection(connection);
+      cj.setConnection(connection);
+      as.setConnection(connection);
+    }
+
+    void execute(Call c) {
+      switch (c.operation) {
+      case TRANSFER_SAMPLE:
+        cs.transferSample(c.intArg(0), c.intArg(1));
+        break;
+      case CREATE_SAMPLE:
+        cj.createSample(c.intArg(0), c.intArg(1));
+        break;
+      case CLEAR_TRAY:
+        cj.clearTray(c.intArg(0));
+        break;
+      default:
+        as.biete(c.intArg(0), new BigDecimal(c.args[1]));
+      }
+    }
+  }
+
+  /**
+   * Eine Verbindung je Client im autoCommit.
+   */
+  static class JdbcTarget implements Target {
+    @Override
+    public Client open() {
+      Connection connection = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password);
+      Services services = new Services(connection);
+      return new Client() {
+        @Override
+        public void execute(Call c) {
+          services.execute(c);
+        }
+
+        @Override
+        public void close() {
+          JdbcUtils.closeConnectionQuietly(connection);
+        }
+      };
+    }
+  }
+
+  /**
+   * Alle Clients geben ihre Aufrufe an einen GroupCommitter mit einer
+   * gemeinsamen Verbindung.
+   */
+  static class GroupCommitTarget implements Target, AutoCloseable {
+    private final Connection connection;
+    private final Services services;
+    private final GroupCommitter committer;
+
+    GroupCommitTarget(int maxGroupSize, long maxDelayMicros) {
+      connection = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password);
+      services = new Services(connection);
+      committer = new GroupCommitter(connection, maxGroupSize, maxDelayMicros);
+      committer.addOutbox(services.cs.events());
+      committer.addOutbox(services.cj.events());
+    }
+
+    @Override
+    public Client open() {
+      return new Client() {
+        @Override
+        public void execute(Call c) {
+          committer.execute(() -> services.execute(c));
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+    }
+
+    @Override
+    public void close() {
+      committer.close();
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+
+  /**
+   * Platzhalter fuer die Datenbank, es gibt hier keine eingebettete.
+   */
+  static class SimulatedTarget implements Target {
+    private final long roundTripMicros;
+    private final AtomicLong seeds = new AtomicLong();
+
+    SimulatedTarget(long roundTripMicros) {
+      this.roundTripMicros = roundTripMicros;
+    }
+
+    @Override
+    public Client open() {
+      Random r = new Random(seeds.getAndIncrement());
+      return new Client() {
+        @Override
+        public void execute(Call c) {
+          double micros = 0;
+          for (int i = 0; i < ROUND_TRIPS[c.operation]; i++) {
+            micros += -Math.log(1 - r.nextDouble()) * roundTripMicros;
+          }
+          long until = System.nanoTime() + Math.round(micros * 1000);
+          long wait;
+          while ((wait = until - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+          }
+        }
+
+        @Override
+        public void close() {
+        }
+      };
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int clients = 32;
+    double rate = 100;
+    int n = 6000;
+    long seed = 1;
+    long intervalMillis = 1000;
+    long simulate = -1;
+    int groupCommit = 0;
+    Path write = null;
+    Path trace = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-clients")) {
+        clients = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-rate")) {
+        rate = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("-calls")) {
+        n = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-seed")) {
+        seed = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-interval")) {
+        intervalMillis = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-simulate")) {
+        simulate = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-groupCommit")) {
+        groupCommit = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-write")) {
+        write = Paths.get(args[++i]);
+      } else {
+        trace = Paths.get(args[i]);
+      }
+    }
+    List<Call> calls = trace == null ? synthetic(n, rate, seed, 20, 10, 10) : atRate(readTrace(trace), rate);
+    if (write != null) {
+      writeTrace(calls, write);
+    }
+    Target target = simulate >= 0 ? new SimulatedTarget(simulate)
+        : groupCommit > 0 ? new GroupCommitTarget(groupCommit, GROUP_COMMIT_DELAY_MICROS) : new JdbcTarget();
+    L.info(calls.size() + " calls at " + rate + " ops/s, " + clients + " clients");
+    Report report;
+    try {
+      report = new LoadGenerator(target, clients, intervalMillis).run(calls);
+    } finally {
+      if (target instanceof GroupCommitTarget) {
+        ((GroupCommitTarget) target).close();
+      }
+    }
+
+    long total = report.total(report.response).count();
+    System.out.printf("%d calls in %.1f s, %.1f ops/s%n", total, report.elapsedNanos / 1e9,
+        total * 1e9 / report.elapsedNanos);
+    System.out.printf("%-16s %7s %8s %6s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "rejected", "errors",
+        "mean", "p50", "p90", "p99", "p99.9", "max");
+    for (int op = 0; op < OPERATIONS.length; op++) {
+      print(OPERATIONS[op], report.response[op], report.rejected.get(op), report.errors.get(op));
+    }
+    print("all", report.total(report.response), -1, -1);
+    print("all (service)", report.total(report.service), -1, -1);
+  }
+
+  private static void print(String name, LatencyHistogram h, long rejected, long errors) {
+    System.out.printf("%-16s %7d %8s %6s %s %s %s %s %s %s%n", name, h.count(), rejected < 0 ? "" : rejected,
+        errors < 0 ? "" : errors, ms(Math.round(h.mean())), ms(h.percentile(50)), ms(h.percentile(90)),
+        ms(h.percentile(99)), ms(h.percentile(99.9)), ms(h.max()));
+  }
+}
@@ -0,0 +1,139 @@
+package de.htwberlin.dbtech.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+
+import de.htwberlin.dbtech.exceptions.CoolingSystemException;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.exceptions.ServiceException;
+
+public class LoadGeneratorTest {
+
+  private static Path trace(String... lines) throws Exception {
+    Path f = Files.createTempFile("trace", ".txt");
+    Files.write(f, Arrays.asList(lines), StandardCharsets.UTF_8);
+    return f;
+  }
+
+  @org.junit.Test
+  public void testReadTrace() throws Exception {
+    Path f = trace("# ms operation args", "", "2.5 biete 1 12.50", "0 transferSample 7 4", "1 clearTray 9");
+    try {
+      List<LoadGenerator.Call> calls = LoadGenerator.readTrace(f);
+      Assert.assertEquals(3, calls.size());
+      Assert.assertEquals("0.0 transferSample 7 4", calls.get(0).toString());
+      Assert.assertEquals("1.0 clearTray 9", calls.get(1).toString());
+      Assert.assertEquals(2500, calls.get(2).offsetMicros);
+      Assert.assertEquals(LoadGenerator.BIETE, calls.get(2).operation);
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  @org.junit.Test(expected = DataException.class)
+  public void testReadTraceWrongArguments() throws Exception {
+    Path f = trace("0 clearTray 9 10");
+    try {
+      LoadGenerator.readTrace(f);
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  @org.junit.Test
+  public void testSyntheticAndRate() {
+    List<LoadGenerator.Call> calls = LoadGenerator.synthetic(10000, 500, 42, 20, 10, 10);
+    long last = calls.get(calls.size() - 1).offsetMicros;
+    // mittlere Rate 500/s, also etwa 20 s
+    Assert.assertEquals(20.0, last / 1e6, 1.0);
+    int[] n = new int[LoadGenerator.OPERATIONS.length];
+    for (int i = 0; i < calls.size(); i++) {
+      n[calls.get(i).operation]++;
+      if (i > 0) {
+        Assert.assertTrue(calls.get(i).offsetMicros >= calls.get(i - 1).offsetMicros);
+      }
+    }
+    Assert.assertEquals(5000, n[LoadGenerator.TRANSFER_SAMPLE], 300);
+    Assert.assertEquals(500, n[LoadGenerator.CLEAR_TRAY], 100);
+
+    List<LoadGenerator.Call> faster = LoadGenerator.atRate(calls, 1000);
+    Assert.assertEquals(10.0, faster.get(faster.size() - 1).offsetMicros / 1e6, 0.01);
+    Assert.assertSame(calls.get(5).args, faster.get(5).args);
+  }
+
+  /**
+   * Der erste Aufruf haelt den einzigen Client 200 ms auf. Die Aufrufe
+   * dahinter sind selbst schnell, warten aber: ab dem geplanten Start
+   * gemessen muss das in den Perzentilen sichtbar sein.
+   */
+  @org.junit.Test
+  public void testCoordinatedOmissionCorrected() throws Exception {
+    List<LoadGenerator.Call> calls = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      calls.add(new LoadGenerator.Call(i * 10000L, LoadGenerator.TRANSFER_SAMPLE, "1", "1"));
+    }
+    LoadGenerator.Target stall = () -> new LoadGenerator.Client() {
+      private boolean first = true;
+
+      @Override
+      public void execute(LoadGenerator.Call call) {
+        if (first) {
+          first = false;
+          try {
+            Thread.sleep(200);
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    LoadGenerator.Report r = new LoadGenerator(stall, 1, 1000).run(calls);
+    LatencyHistogram response = r.response[LoadGenerator.TRANSFER_SAMPLE];
+    LatencyHistogram service = r.service[LoadGenerator.TRANSFER_SAMPLE];
+    Assert.assertEquals(20, response.count());
+    Assert.assertTrue("service p50 " + service.percentile(50), service.percentile(50) < 10000);
+    Assert.assertTrue("response p50 " + response.percentile(50), response.percentile(50) > 50000);
+    Assert.assertTrue("response max " + response.max(), response.max() >= 190000);
+  }
+
+  @org.junit.Test
+  public void testRejectedNurFachlicheAusnahmen() throws Exception {
+    List<LoadGenerator.Call> calls = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      calls.add(new LoadGenerator.Call(0, LoadGenerator.TRANSFER_SAMPLE, Integer.toString(i), "1"));
+    }
+    LoadGenerator.Target failing = () -> new LoadGenerator.Client() {
+      @Override
+      public void execute(LoadGenerator.Call call) {
+        switch (call.intArg(0)) {
+        case 0:
+          throw new CoolingSystemException("kein Tablett");
+        case 1:
+          throw new ServiceException("Gebotspreis zu niedrig");
+        case 2:
+          throw new DataException("ORA-00001");
+        default:
+          throw new NullPointerException();
+        }
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    LoadGenerator.Report r = new LoadGenerator(failing, 1, 1000).run(calls);
+    Assert.assertEquals(2, r.rejected.get(LoadGenerator.TRANSFER_SAMPLE));
+    Assert.assertEquals(2, r.errors.get(LoadGenerator.TRANSFER_SAMPLE));
+    Assert.assertEquals(4, r.response[LoadGenerator.TRANSFER_SAMPLE].count());
+  }
+}
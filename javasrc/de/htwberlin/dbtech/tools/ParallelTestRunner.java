@@ -0,0 +1,177 @@
+package de.htwberlin.dbtech.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.utils.TestDb;
+
+/**
+ * Laesst die Datenbank-Testklassen gleichzeitig laufen, jede in einem eigenen
+ * Schema (siehe TestDb). Die Methoden einer Klasse laufen weiter der Reihe
+ * nach, @FixMethodOrder bleibt also gueltig.
+ * <p>
+ * Aufruf: ParallelTestRunner [-workers n] [-noProvision] [Testklasse ...]
+ * <p>
+ * Ohne Klassen laufen die Testklassen aus DEFAULT_CLASSES. Vor dem Start
+ * werden alle Schemata gleichzeitig vorbereitet, danach nimmt sich jede
+ * Testklasse ein freies Schema und gibt es nach ihrem Lauf zurueck. Eine
+ * Klasse laedt ihre Testdaten selbst, so laden mehrere Klassen gleichzeitig.
+ */
+public class ParallelTestRunner {
+  private static final Logger L = LoggerFactory.getLogger(ParallelTestRunner.class);
+
+  public static final List<String> DEFAULT_CLASSES = Arrays.asList(
+      "de.htwberlin.dbtech.aufgaben.ue02.CoolingJdbcTest",
+      "de.htwberlin.dbtech.aufgaben.ue02.CoolingJdbcQueryPlanTest",
+      "de.htwberlin.dbtech.aufgaben.ue03.CoolingServiceJavaTest",
+      "de.htwberlin.dbtech.aufgaben.ue03.CoolingServiceQueryPlanTest",
+      "de.htwberlin.dbtech.aufgaben.ue04.CoolingServicePlSqlTest",
+      "de.htwberlin.dbtech.bsp.test.DbTest");
+
+  /**
+   * Ergebnis einer Testklasse.
+   */
+  public static class ClassResult {
+    public final String className;
+    public final TestDb.Worker worker;
+    public final Result result;
+
+    ClassResult(String className, TestDb.Worker worker, Result result) {
+      this.className = className;
+      this.worker = worker;
+      this.result = result;
+    }
+  }
+
+  private final List<TestDb.Worker> workers;
+
+  public ParallelTestRunner(List<TestDb.Worker> workers) {
+    this.workers = workers;
+  }
+
+  /**
+   * Bereitet alle Schemata gleichzeitig vor.
+   */
+  public void provision() throws InterruptedException {
+    ExecutorService pool = Executors.newFixedThreadPool(workers.size());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (TestDb.Worker w : workers) {
+        futures.add(pool.submit(() -> TestDb.provision(w)));
+      }
+      await(futures);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Fuehrt die Klassen aus, hoechstens so viele gleichzeitig wie es Schemata
+   * gibt. Die Ergebnisse stehen in der Reihenfolge der Klassen.
+   */
+  public List<ClassResult> run(List<Class<?>> classes) throws InterruptedException {
+    BlockingQueue<TestDb.Worker> free = new ArrayBlockingQueue<>(workers.size(), false, workers);
+    ExecutorService pool = Executors.newFixedThreadPool(workers.size());
+    try {
+      List<Future<ClassResult>> futures = new ArrayList<>();
+      for (Class<?> c : classes) {
+        futures.add(pool.submit(() -> {
+          TestDb.Worker w = free.take();
+          TestDb.assign(w);
+          try {
+            L.info(c.getSimpleName() + " on " + w);
+            return new ClassResult(c.getName(), w, new JUnitCore().run(c));
+          } finally {
+            TestDb.release();
+            free.put(w);
+          }
+        }));
+      }
+      List<ClassResult> l = new ArrayList<>();
+      for (Future<ClassResult> f : futures) {
+        try {
+          l.add(f.get());
+        } catch (ExecutionException e) {
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+      return l;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static void await(List<Future<?>> futures) throws InterruptedException {
+    for (Future<?> f : futures) {
+      try {
+        f.get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int n = Runtime.getRuntime().availableProcessors();
+    boolean provision = true;
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-workers")) {
+        n = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-noProvision")) {
+        provision = false;
+      } else {
+        names.add(args[i]);
+      }
+    }
+    if (names.isEmpty()) {
+      names = DEFAULT_CLASSES;
+    }
+    List<Class<?>> classes = new ArrayList<>();
+    for (String name : names) {
+      classes.add(Class.forName(name));
+    }
+    n = Math.max(1, Math.min(n, classes.size()));
+
+    ParallelTestRunner runner = new ParallelTestRunner(TestDb.workers(n));
+    long start = System.nanoTime();
+    if (provision) {
+      runner.provision();
+      System.out.printf("provision: %d schemas in %d ms%n", n, (System.nanoTime() - start) / 1000000);
+    }
+    long runStart = System.nanoTime();
+    List<ClassResult> results = runner.run(classes);
+    long elapsed = (System.nanoTime() - runStart) / 1000000;
+
+    int tests = 0;
+    int failures = 0;
+    long serial = 0;
+    for (ClassResult r : results) {
+      tests += r.result.getRunCount();
+      failures += r.result.getFailureCount();
+      serial += r.result.getRunTime();
+      System.out.printf("%-60s %-12s %3d tests %3d failed %6d ms%n", r.className, r.worker, r.result.getRunCount(),
+          r.result.getFailureCount(), r.result.getRunTime());
+      for (Failure f : r.result.getFailures()) {
+        System.out.println("  " + f.getTestHeader() + ": " + f.getMessage());
+        L.debug(f.getTrace());
+      }
+    }
+    System.out.printf("%d tests, %d failed, %d ms with %d workers (%d ms one after another)%n", tests, failures,
+        elapsed, n, serial);
+    System.exit(failures == 0 ? 0 : 1);
+  }
+}
@@ -0,0 +1,653 @@
+package de.htwberlin.dbtech.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.ForeignKeyGraph;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+
+/**
+ * Sichert Tabellen in ein kompaktes Binaerformat und spielt sie wieder ein,
+ * z.B. um Produktionsdaten in eine Testumgebung zu kopieren.
+ * <p>
+ * Je Tabelle entsteht eine Datei &lt;tabelle&gt;.dump. Nach einem Kopf mit
+ * Spaltennamen und -typen folgen Bloecke zu BLOCK_ROWS Zeilen. Ein Block ist
+ * spaltenweise abgelegt (je Spalte ein NULL-Bitfeld und die Werte; Ganzzahlen
+ * und Zeitpunkte als Differenz zum Vorgaenger mit variabler Laenge), mit
+ * Deflater komprimiert und mit einer CRC32 ueber die unkomprimierten Bytes
+ * versehen.
+ * <p>
+ * Beide Richtungen halten nur einen Block je Tabelle im Speicher. Gesichert
+ * wird jede Tabelle ueber eine eigene Verbindung, alle zur selben SCN (AS OF
+ * SCN), damit die Sicherung auch bei gleichzeitigen Aenderungen ueber die
+ * Tabellen hinweg konsistent ist. Eingespielt wird stufenweise nach den
+ * Fremdschluesseln (ForeignKeyGraph), die Tabellen einer Stufe gleichzeitig,
+ * jede Tabelle in einer Transaktion.
+ * <p>
+ * Aufruf: SchemaDump dump|restore verzeichnis [tabelle ...]
+ */
+public class SchemaDump {
+  private static final Logger L = LoggerFactory.getLogger(SchemaDump.class);
+
+  public static final List<String> DEFAULT_TABLES = Arrays.asList("SampleKind", "Tray", "Sample", "Place",
+      "Angebot", "Gebot", "Raum");
+  public static final String SUFFIX = ".dump";
+
+  static final int MAGIC = 0x504b5344;
+  static final int VERSION = 1;
+  static final int BLOCK_ROWS = 8192;
+  private static final int FETCH_SIZE = 10000;
+  /** Ohne Flashback-Abfrage, liest den aktuellen Stand. */
+  static final long NO_SCN = -1;
+
+  // Spaltentypen im Dateiformat
+  static final byte LONG = 'L';
+  static final byte DECIMAL = 'N';
+  static final byte TIMESTAMP = 'T';
+  static final byte STRING = 'S';
+
+  private final Supplier<Connection> connections;
+
+  /**
+   * @param connections
+   *          liefert je Aufruf eine neue Verbindung, die nach Gebrauch
+   *          geschlossen wird.
+   */
+  public SchemaDump(Supplier<Connection> connections) {
+    this.connections = connections;
+  }
+
+  /**
+   * Sichert die Tabellen gleichzeitig in das Verzeichnis, alle zum Stand
+   * derselben SCN (siehe currentScn()).
+   */
+  public void dumpAll(List<String> tables, Path directory) {
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+    long scn;
+    Connection first = connections.get();
+    try {
+      scn = currentScn(first);
+    } finally {
+      JdbcUtils.closeConnectionQuietly(first);
+    }
+    L.info("dump as of scn " + scn);
+    List<Runnable> tasks = new ArrayList<>();
+    for (String t : tables) {
+      tasks.add(() -> {
+        Connection c = connections.get();
+        try {
+          dump(c, t, directory.resolve(t.toLowerCase(Locale.ROOT) + SUFFIX), scn);
+        } finally {
+          JdbcUtils.closeConnectionQuietly(c);
+        }
+      });
+    }
+    runAll(tasks);
+  }
+
+  /**
+   * Leert die Tabellen und spielt sie aus dem Verzeichnis ein, Eltern vor
+   * Kindern. Scheitert eine Tabelle, bleibt sie leer und die folgenden Stufen
+   * werden nicht mehr eingespielt; ein erneuter Aufruf beginnt wieder mit dem
+   * Leeren.
+   */
+  public void restoreAll(List<String> tables, Path directory, ForeignKeyGraph graph) {
+    List<List<String>> levels = graph.levels(tables);
+    Connection c = connections.get();
+    try (Statement s = c.createStatement()) {
+      for (int i = levels.size() - 1; i >= 0; i--) {
+        for (String t : levels.get(i)) {
+          s.executeUpdate("delete from " + t);
+        }
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    } finally {
+      JdbcUtils.closeConnectionQuietly(c);
+    }
+    for (List<String> level : levels) {
+      List<Runnable> tasks = new ArrayList<>();
+      for (String t : level) {
+        tasks.add(() -> {
+          Connection con = connections.get();
+          try {
+            restore(con, t, directory.resolve(t.toLowerCase(Locale.ROOT) + SUFFIX));
+          } finally {
+            JdbcUtils.closeConnectionQuietly(con);
+          }
+        });
+      }
+      runAll(tasks);
+    }
+  }
+
+  private static void runAll(List<Runnable> tasks) {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, tasks.size()));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Runnable r : tasks) {
+        futures.add(pool.submit(r));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DataException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new DataException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * SCN der Datenbank, zu der dumpAll alle Tabellen liest. timestamp_to_scn
+   * braucht im Gegensatz zu dbms_flashback.get_system_change_number kein
+   * EXECUTE-Recht auf DBMS_FLASHBACK.
+   *
+   * @return NO_SCN, wenn die SCN nicht gelesen werden kann; die Tabellen werden
+   *         dann jede fuer sich zum aktuellen Stand gesichert.
+   */
+  static long currentScn(Connection connection) {
+    String sql = "select timestamp_to_scn(systimestamp) from dual";
+    try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery(sql)) {
+      rs.next();
+      return rs.getLong(1);
+    } catch (SQLException e) {
+      L.warn("no scn, dumping each table as of its own read: " + e.getMessage());
+      return NO_SCN;
+    }
+  }
+
+  static String selectSql(String table, long scn) {
+    return "select * from " + table + (scn == NO_SCN ? "" : " as of scn ?");
+  }
+
+  /**
+   * @return Anzahl der gesicherten Zeilen.
+   */
+  public static long dump(Connection connection, String table, Path file) {
+    return dump(connection, table, file, NO_SCN);
+  }
+
+  /**
+   * @param scn
+   *          Stand, zu dem gelesen wird, oder NO_SCN fuer den aktuellen.
+   * @return Anzahl der gesicherten Zeilen.
+   */
+  public static long dump(Connection connection, String table, Path file, long scn) {
+    long start = System.nanoTime();
+    try (PreparedStatement s = connection.prepareStatement(selectSql(table, scn))) {
+      s.setFetchSize(FETCH_SIZE);
+      if (scn != NO_SCN) {
+        s.setLong(1, scn);
+      }
+      try (ResultSet rs = s.executeQuery();
+          OutputStream out = Files.newOutputStream(file)) {
+        ResultSetMetaData md = rs.getMetaData();
+        String[] names = new String[md.getColumnCount()];
+        byte[] types = new byte[names.length];
+        for (int i = 0; i < names.length; i++) {
+          names[i] = md.getColumnName(i + 1);
+          types[i] = fileType(md.getColumnType(i + 1), md.getScale(i + 1));
+        }
+        DumpWriter w = new DumpWriter(out, table, names, types);
+        Object[] row = new Object[names.length];
+        while (rs.next()) {
+          for (int i = 0; i < names.length; i++) {
+            row[i] = read(rs, i + 1, types[i]);
+          }
+          w.add(row);
+        }
+        w.finish();
+        L.info(String.format("dump %s: %d rows, %d bytes in %d ms", table, w.rows, Files.size(file),
+            (System.nanoTime() - start) / 1000000));
+        return w.rows;
+      }
+    } catch (SQLException | IOException e) {
+      L.error("", e);
+      throw new DataException(table + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Fuegt die Zeilen der Datei ein, ein Batch je Block, und schreibt erst am
+   * Ende fest. Bei einem Fehler ist die Tabelle also wieder wie vorher; das
+   * Undo waechst dafuer mit der ganzen Tabelle.
+   *
+   * @return Anzahl der eingefuegten Zeilen.
+   */
+  public static long restore(Connection connection, String table, Path file) {
+    long start = System.nanoTime();
+    try (InputStream in = Files.newInputStream(file)) {
+      DumpReader r = new DumpReader(in);
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      StringBuilder sql = new StringBuilder("insert into ").append(table).append(" (")
+          .append(String.join(", ", r.names)).append(") values (");
+      for (int i = 0; i < r.names.length; i++) {
+        sql.append(i == 0 ? "?" : ", ?");
+      }
+      sql.append(')');
+      long rows = 0;
+      try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+        Object[][] block;
+        while ((block = r.nextBlock()) != null) {
+          int n = r.blockRows;
+          for (int k = 0; k < n; k++) {
+            for (int i = 0; i < r.names.length; i++) {
+              bind(ps, i + 1, r.types[i], block[i][k]);
+            }
+            ps.addBatch();
+          }
+          ps.executeBatch();
+          rows += n;
+        }
+        if (rows != r.totalRows) {
+          throw new DataException(file + ": " + rows + " rows read, trailer says " + r.totalRows);
+        }
+        connection.commit();
+      } catch (SQLException | IOException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+      L.info(String.format("restore %s: %d rows in %d ms", table, rows, (System.nanoTime() - start) / 1000000));
+      return rows;
+    } catch (SQLException | IOException e) {
+      L.error("", e);
+      throw new DataException(table + ": " + e.getMessage(), e);
+    }
+  }
+
+  static byte fileType(int sqlType, int scale) {
+    switch (sqlType) {
+    case Types.NUMERIC:
+    case Types.DECIMAL:
+      return scale == 0 ? LONG : DECIMAL;
+    case Types.INTEGER:
+    case Types.BIGINT:
+    case Types.SMALLINT:
+    case Types.TINYINT:
+      return LONG;
+    case Types.DATE:
+    case Types.TIMESTAMP:
+      return TIMESTAMP;
+    default:
+      return STRING;
+    }
+  }
+
+  private static Object read(ResultSet rs, int i, byte type) throws SQLException {
+    switch (type) {
+    case LONG:
+      long v = rs.getLong(i);
+      return rs.wasNull() ? null : v;
+    case DECIMAL:
+      return rs.getBigDecimal(i);
+    case TIMESTAMP:
+      Timestamp t = rs.getTimestamp(i);
+      return t == null ? null : t.toLocalDateTime();
+    default:
+      return rs.getString(i);
+    }
+  }
+
+  private static void bind(PreparedStatement ps, int i, byte type, Object value) throws SQLException {
+    switch (type) {
+    case LONG:
+      if (value == null) {
+        ps.setNull(i, Types.NUMERIC);
+      } else {
+        ps.setLong(i, (Long) value);
+      }
+      break;
+    case DECIMAL:
+      ps.setBigDecimal(i, (BigDecimal) value);
+      break;
+    case TIMESTAMP:
+      ps.setTimestamp(i, value == null ? null : Timestamp.valueOf((LocalDateTime) value));
+      break;
+    default:
+      ps.setString(i, (String) value);
+    }
+  }
+
+  /**
+   * Schreibt eine Tabellendatei. Werte: Long, BigDecimal, LocalDateTime,
+   * String oder null, passend zum Spaltentyp.
+   */
+  static class DumpWriter {
+    private final DataOutputStream out;
+    private final byte[] types;
+    private final Object[][] block;
+    private int blockRows;
+    long rows;
+    private final ByteArrayOutputStream raw = new ByteArrayOutputStream(1 << 16);
+    private final DataOutputStream rawOut = new DataOutputStream(raw);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[1 << 16];
+    private final CRC32 crc = new CRC32();
+
+    DumpWriter(OutputStream os, String table, String[] names, byte[] types) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+      this.types = types;
+      this.block = new Object[types.length][BLOCK_ROWS];
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(table);
+      out.writeInt(names.length);
+      for (int i = 0; i < names.length; i++) {
+        out.writeUTF(names[i]);
+        out.writeByte(types[i]);
+      }
+    }
+
+    void add(Object[] row) throws IOException {
+      for (int i = 0; i < types.length; i++) {
+        block[i][blockRows] = row[i];
+      }
+      if (++blockRows == BLOCK_ROWS) {
+        writeBlock();
+      }
+    }
+
+    private void writeBlock() throws IOException {
+      raw.reset();
+      for (int i = 0; i < types.length; i++) {
+        encodeColumn(rawOut, types[i], block[i], blockRows);
+      }
+      rawOut.flush();
+      byte[] bytes = raw.toByteArray();
+      crc.reset();
+      crc.update(bytes);
+      deflater.reset();
+      deflater.setInput(bytes);
+      deflater.finish();
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == compressed.length) {
+          compressed = Arrays.copyOf(compressed, compressed.length * 2);
+        }
+        length += deflater.deflate(compressed, length, compressed.length - length);
+      }
+      out.writeInt(blockRows);
+      out.writeInt(bytes.length);
+      out.writeInt(length);
+      out.writeInt((int) crc.getValue());
+      out.write(compressed, 0, length);
+      rows += blockRows;
+      blockRows = 0;
+      for (Object[] column : block) {
+        Arrays.fill(column, null);
+      }
+    }
+
+    void finish() throws IOException {
+      if (blockRows > 0) {
+        writeBlock();
+      }
+      out.writeInt(0);
+      out.writeLong(rows);
+      out.flush();
+      deflater.end();
+    }
+  }
+
+  /**
+   * Liest eine Tabellendatei blockweise.
+   */
+  static class DumpReader {
+    private final DataInputStream in;
+    final String table;
+    final String[] names;
+    final byte[] types;
+    private final Object[][] block;
+    int blockRows;
+    private long rowsRead;
+    // aus dem Dateiende, -1 bis dahin
+    long totalRows = -1;
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[1 << 16];
+    private byte[] raw = new byte[1 << 16];
+    private final CRC32 crc = new CRC32();
+
+    DumpReader(InputStream is) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(is, 1 << 16));
+      if (in.readInt() != MAGIC) {
+        throw new IOException("not a dump file");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("unsupported dump version " + version);
+      }
+      table = in.readUTF();
+      names = new String[in.readInt()];
+      types = new byte[names.length];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = in.readUTF();
+        types[i] = in.readByte();
+      }
+      block = new Object[names.length][BLOCK_ROWS];
+    }
+
+    /**
+     * @return je Spalte die Werte des Blocks, gueltig bis zum naechsten
+     *         Aufruf; null nach dem letzten Block.
+     */
+    Object[][] nextBlock() throws IOException {
+      int n = in.readInt();
+      if (n == 0) {
+        totalRows = in.readLong();
+        inflater.end();
+        return null;
+      }
+      if (n < 0 || n > BLOCK_ROWS) {
+        throw new IOException("corrupt block header");
+      }
+      int rawLength = in.readInt();
+      int length = in.readInt();
+      int expectedCrc = in.readInt();
+      if (compressed.length < length) {
+        compressed = new byte[length];
+      }
+      if (raw.length < rawLength) {
+        raw = new byte[rawLength];
+      }
+      in.readFully(compressed, 0, length);
+      inflater.reset();
+      inflater.setInput(compressed, 0, length);
+      try {
+        int got = 0;
+        while (got < rawLength) {
+          int k = inflater.inflate(raw, got, rawLength - got);
+          if (k == 0 && (inflater.finished() || inflater.needsInput())) {
+            break;
+          }
+          got += k;
+        }
+        if (got != rawLength) {
+          throw new IOException("block too short");
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("corrupt block: " + e.getMessage(), e);
+      }
+      crc.reset();
+      crc.update(raw, 0, rawLength);
+      if ((int) crc.getValue() != expectedCrc) {
+        throw new IOException("checksum mismatch in block after row " + rowsRead);
+      }
+      DataInputStream d = new DataInputStream(new ByteArrayInputStream(raw, 0, rawLength));
+      for (int i = 0; i < types.length; i++) {
+        decodeColumn(d, types[i], block[i], n);
+      }
+      blockRows = n;
+      rowsRead += n;
+      return block;
+    }
+  }
+
+  // NULL-Bitfeld, dann die Werte ungleich NULL
+  static void encodeColumn(DataOutputStream out, byte type, Object[] values, int n) throws IOException {
+    byte[] nulls = new byte[(n + 7) / 8];
+    for (int k = 0; k < n; k++) {
+      if (values[k] == null) {
+        nulls[k >> 3] |= 1 << (k & 7);
+      }
+    }
+    out.write(nulls);
+    long previous = 0;
+    for (int k = 0; k < n; k++) {
+      Object v = values[k];
+      if (v == null) {
+        continue;
+      }
+      switch (type) {
+      case LONG:
+        long l = (Long) v;
+        writeVarLong(out, zigZag(l - previous));
+        previous = l;
+        break;
+      case TIMESTAMP:
+        LocalDateTime t = (LocalDateTime) v;
+        long seconds = t.toEpochSecond(ZoneOffset.UTC);
+        writeVarLong(out, zigZag(seconds - previous));
+        writeVarLong(out, t.getNano());
+        previous = seconds;
+        break;
+      case DECIMAL:
+        out.writeUTF(((BigDecimal) v).toString());
+        break;
+      default:
+        out.writeUTF((String) v);
+      }
+    }
+  }
+
+  static void decodeColumn(DataInputStream in, byte type, Object[] values, int n) throws IOException {
+    byte[] nulls = new byte[(n + 7) / 8];
+    in.readFully(nulls);
+    long previous = 0;
+    for (int k = 0; k < n; k++) {
+      if ((nulls[k >> 3] & (1 << (k & 7))) != 0) {
+        values[k] = null;
+        continue;
+      }
+      switch (type) {
+      case LONG:
+        previous += unZigZag(readVarLong(in));
+        values[k] = previous;
+        break;
+      case TIMESTAMP:
+        previous += unZigZag(readVarLong(in));
+        values[k] = LocalDateTime.ofEpochSecond(previous, (int) readVarLong(in), ZoneOffset.UTC);
+        break;
+      case DECIMAL:
+        values[k] = new BigDecimal(in.readUTF());
+        break;
+      default:
+        values[k] = in.readUTF();
+      }
+    }
+  }
+
+  private static long zigZag(long v) {
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private static long unZigZag(long v) {
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      out.writeByte((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.writeByte((int) v);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long v = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException();
+      }
+      v |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+    }
+    throw new IOException("varint too long");
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 2 || !(args[0].equals("dump") || args[0].equals("restore"))) {
+      System.err.println("usage: SchemaDump dump|restore directory [table ...]");
+      System.exit(2);
+    }
+    Path directory = Paths.get(args[1]);
+    List<String> tables = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : DEFAULT_TABLES;
+    JdbcUtils.loadDriver(DbCred.driverClass);
+    SchemaDump d = new SchemaDump(
+        () -> JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password));
+    long start = System.nanoTime();
+    if (args[0].equals("dump")) {
+      d.dumpAll(tables, directory);
+    } else {
+      d.restoreAll(tables, directory, ForeignKeyGraph.fromDefaultDirectory());
+    }
+    System.out.printf("%s %s: %d ms%n", args[0], tables, (System.nanoTime() - start) / 1000000);
+  }
+}
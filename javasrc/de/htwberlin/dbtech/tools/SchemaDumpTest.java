@@ -0,0 +1,145 @@
+package de.htwberlin.dbtech.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.FakeJdbc;
+
+import org.junit.Assert;
+
+public class SchemaDumpTest {
+  private static final String[] NAMES = { "GID", "AID", "GebotsZeitpunkt", "GebotsPreis", "Text" };
+  private static final byte[] TYPES = { SchemaDump.LONG, SchemaDump.LONG, SchemaDump.TIMESTAMP, SchemaDump.DECIMAL,
+      SchemaDump.STRING };
+
+  private static Object[] row(int i) {
+    LocalDateTime t = LocalDate.of(2017, 3, 1).atStartOfDay().plusMinutes(i * 7L);
+    return new Object[] { (long) i, (long) (i % 13 - 6), i % 5 == 0 ? null : t,
+        new BigDecimal(i).movePointLeft(2), i % 3 == 0 ? null : "Artikel " + (i % 17) };
+  }
+
+  private static byte[] write(int rows) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SchemaDump.DumpWriter w = new SchemaDump.DumpWriter(out, "Gebot", NAMES, TYPES);
+    for (int i = 0; i < rows; i++) {
+      w.add(row(i));
+    }
+    w.finish();
+    return out.toByteArray();
+  }
+
+  @org.junit.Test
+  public void testRoundTrip() throws IOException {
+    int rows = 2 * SchemaDump.BLOCK_ROWS + 5;
+    byte[] bytes = write(rows);
+    SchemaDump.DumpReader r = new SchemaDump.DumpReader(new ByteArrayInputStream(bytes));
+    Assert.assertEquals("Gebot", r.table);
+    Assert.assertArrayEquals(NAMES, r.names);
+    Assert.assertArrayEquals(TYPES, r.types);
+    int i = 0;
+    Object[][] block;
+    int blocks = 0;
+    while ((block = r.nextBlock()) != null) {
+      blocks++;
+      for (int k = 0; k < r.blockRows; k++, i++) {
+        Object[] expected = row(i);
+        for (int c = 0; c < NAMES.length; c++) {
+          Assert.assertEquals("row " + i + " " + NAMES[c], expected[c], block[c][k]);
+        }
+      }
+    }
+    Assert.assertEquals(3, blocks);
+    Assert.assertEquals(rows, i);
+    Assert.assertEquals(rows, r.totalRows);
+    // Differenzen und Kompression: deutlich unter 8 Byte je Wert
+    Assert.assertTrue("size " + bytes.length, bytes.length < rows * NAMES.length * 2);
+  }
+
+  @org.junit.Test
+  public void testEmptyTable() throws IOException {
+    SchemaDump.DumpReader r = new SchemaDump.DumpReader(new ByteArrayInputStream(write(0)));
+    Assert.assertNull(r.nextBlock());
+    Assert.assertEquals(0, r.totalRows);
+  }
+
+  @org.junit.Test
+  public void testCorruptBlockDetected() throws IOException {
+    byte[] bytes = write(100);
+    // ein Bit im komprimierten Teil des ersten Blocks kippen
+    bytes[bytes.length - 40] ^= 0x10;
+    SchemaDump.DumpReader r = new SchemaDump.DumpReader(new ByteArrayInputStream(bytes));
+    try {
+      r.nextBlock();
+      Assert.fail("corruption not detected");
+    } catch (IOException e) {
+      // erwartet: Pruefsumme oder Deflate-Format verletzt
+    }
+  }
+
+  @org.junit.Test
+  public void testFileTypes() {
+    Assert.assertEquals(SchemaDump.LONG, SchemaDump.fileType(Types.NUMERIC, 0));
+    Assert.assertEquals(SchemaDump.DECIMAL, SchemaDump.fileType(Types.NUMERIC, 2));
+    Assert.assertEquals(SchemaDump.TIMESTAMP, SchemaDump.fileType(Types.DATE, 0));
+    Assert.assertEquals(SchemaDump.STRING, SchemaDump.fileType(Types.VARCHAR, 0));
+  }
+
+  @org.junit.Test
+  public void testSelectAsOfScn() {
+    Assert.assertEquals("select * from Tray", SchemaDump.selectSql("Tray", SchemaDump.NO_SCN));
+    Assert.assertEquals("select * from Tray as of scn ?", SchemaDump.selectSql("Tray", 4711));
+  }
+
+  @org.junit.Test
+  public void testCurrentScn() {
+    FakeJdbc db = new FakeJdbc().onQuery("timestamp_to_scn", p -> Collections.singletonList(new Object[] { 4711L }));
+    Assert.assertEquals(4711L, SchemaDump.currentScn(db.connection()));
+  }
+
+  @org.junit.Test
+  public void testRestoreInEinerTransaktion() throws IOException {
+    Path f = Files.createTempFile("gebot", SchemaDump.SUFFIX);
+    try {
+      Files.write(f, write(2 * SchemaDump.BLOCK_ROWS + 5));
+      FakeJdbc db = new FakeJdbc();
+      Assert.assertEquals(2 * SchemaDump.BLOCK_ROWS + 5, SchemaDump.restore(db.connection(), "Gebot", f));
+      Assert.assertEquals(3, db.count("batch "));
+      List<String> log = db.log();
+      Assert.assertEquals(Arrays.asList("commit", "autoCommit true"), log.subList(log.size() - 2, log.size()));
+    } finally {
+      Files.delete(f);
+    }
+  }
+
+  @org.junit.Test
+  public void testRestoreAbgeschnittenRolltZurueck() throws IOException {
+    Path f = Files.createTempFile("gebot", SchemaDump.SUFFIX);
+    try {
+      byte[] bytes = write(2 * SchemaDump.BLOCK_ROWS + 5);
+      Files.write(f, Arrays.copyOf(bytes, bytes.length - 20));
+      FakeJdbc db = new FakeJdbc();
+      List<String> log = db.log();
+      try {
+        SchemaDump.restore(db.connection(), "Gebot", f);
+        Assert.fail("DataException erwartet");
+      } catch (DataException e) {
+        // erwartet
+      }
+      Assert.assertFalse(log.contains("commit"));
+      Assert.assertEquals(Arrays.asList("rollback", "autoCommit true"), log.subList(log.size() - 2, log.size()));
+    } finally {
+      Files.delete(f);
+    }
+  }
+}
@@ -0,0 +1,407 @@
+package de.htwberlin.dbtech.tools;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.aufgaben.ue02.SampleStore;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DateUtils;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.IntIntMap;
+import de.htwberlin.dbtech.utils.IntList;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+
+/**
+ * Plant das Zusammenlegen duenn belegter Tabletts, damit wieder leere
+ * Tabletts fuer transferSample frei werden. Eine Probe darf nur auf ein
+ * Tablett desselben Durchmessers, das nicht vor ihr ablaeuft, und kommt dort
+ * auf den kleinsten freien Platz; dieselben Regeln wie in CoolingService.
+ * Ein Tablett wird nur geraeumt, wenn alle seine Proben einen Platz finden,
+ * sonst bleibt es unveraendert. Ziel sind nur belegte Tabletts, ein Tablett,
+ * das Proben aufgenommen hat, wird selbst nicht mehr geraeumt.
+ * <p>
+ * Je Durchmesser werden mehrere Kandidaten gerechnet, jede Kombination aus
+ * Reihenfolge der zu raeumenden Tabletts (SourceOrder) und Wahl des Ziels
+ * (TargetChoice), alle gleichzeitig im gemeinsamen ForkJoinPool. Der Plan
+ * mit den meisten freien Tabletts gewinnt, bei Gleichstand der mit den
+ * wenigsten Umzuegen.
+ * <p>
+ * apply() schreibt alle Plaene in einer Transaktion: die alten Plaetze in
+ * einem Batch loeschen, die neuen in einem Batch einfuegen. Die Trigger auf
+ * Place fuehren TrayFill mit. Offline heisst: waehrend Planung und Ausfuehrung
+ * sollen keine Proben eingelagert werden. Hat sich ein Platz trotzdem
+ * geaendert, wird alles zurueckgerollt.
+ * <p>
+ * Aufruf: TrayConsolidationPlanner [-apply]
+ */
+public class TrayConsolidationPlanner {
+  private static final Logger L = LoggerFactory.getLogger(TrayConsolidationPlanner.class);
+
+  static final int BATCH_SIZE = 10000;
+
+  static final String SQL_DELETE_PLACE = "DELETE FROM Place WHERE TrayID = ? AND PlaceNo = ? AND SampleID = ?";
+  static final String SQL_INSERT_PLACE = "INSERT INTO Place (TrayID, PlaceNo, SampleID) VALUES (?, ?, ?)";
+
+  /**
+   * Reihenfolge, in der Tabletts zum Raeumen versucht werden.
+   */
+  enum SourceOrder {
+    // wenigste Proben zuerst
+    SPARSEST,
+    // frueh ablaufende zuerst, ihre Proben passen auf die meisten Ziele
+    EARLIEST_EXPIRATION,
+    // spaet ablaufende zuerst, sie werden sonst lange nicht frei
+    LATEST_EXPIRATION
+  }
+
+  /**
+   * Welches der moeglichen Ziele eine Probe bekommt.
+   */
+  enum TargetChoice {
+    // kleinstes Ablaufdatum, wie EarliestExpiration in CoolingService
+    EARLIEST_EXPIRATION,
+    // wenigste freie Plaetze
+    FULLEST
+  }
+
+  /**
+   * Umzug einer Probe.
+   */
+  public static class Move {
+    public final int sampleId;
+    public final int fromTray;
+    public final int fromPlace;
+    public final int toTray;
+    public final int toPlace;
+
+    Move(int sampleId, int fromTray, int fromPlace, int toTray, int toPlace) {
+      this.sampleId = sampleId;
+      this.fromTray = fromTray;
+      this.fromPlace = fromPlace;
+      this.toTray = toTray;
+      this.toPlace = toPlace;
+    }
+
+    @Override
+    public String toString() {
+      return "Sample " + sampleId + ": " + fromTray + "/" + fromPlace + " -> " + toTray + "/" + toPlace;
+    }
+  }
+
+  /**
+   * Plan fuer einen Durchmesser.
+   */
+  public static class Plan {
+    public final int diameter;
+    public final String candidate;
+    public final List<Move> moves;
+    public final int[] freedTrays;
+
+    Plan(int diameter, String candidate, List<Move> moves, int[] freedTrays) {
+      this.diameter = diameter;
+      this.candidate = candidate;
+      this.moves = Collections.unmodifiableList(moves);
+      this.freedTrays = freedTrays;
+    }
+
+    // mehr freie Tabletts, dann weniger Umzuege
+    boolean betterThan(Plan p) {
+      return freedTrays.length != p.freedTrays.length ? freedTrays.length > p.freedTrays.length
+          : moves.size() < p.moves.size();
+    }
+
+    @Override
+    public String toString() {
+      return "Plan[diameter " + diameter + ", " + candidate + ": " + freedTrays.length + " trays freed, "
+          + moves.size() + " moves]";
+    }
+  }
+
+  /**
+   * Liest Tray und Place, Ablaufdaten der Proben ueber den SampleStore.
+   */
+  static TrayPlaceColumns read(Connection connection) {
+    return TrayPlaceColumns.read(connection, SampleStore.load(connection));
+  }
+
+  /**
+   * Rechnet alle Kandidaten fuer alle Durchmesser in pool und liefert je
+   * Durchmesser den besten Plan, nach Durchmesser sortiert. Durchmesser, bei
+   * denen kein Tablett frei wird, fehlen.
+   */
+  static List<Plan> plan(TrayPlaceColumns state, ExecutorService pool) {
+    IntIntMap seen = new IntIntMap();
+    IntList diameters = new IntList();
+    for (int t = 0; t < state.trays(); t++) {
+      if (!seen.containsKey(state.trayDiameter[t])) {
+        seen.put(state.trayDiameter[t], 0);
+        diameters.add(state.trayDiameter[t]);
+      }
+    }
+    int[] sorted = diameters.toArray();
+    Arrays.sort(sorted);
+    List<Callable<Plan>> tasks = new ArrayList<>();
+    for (int d : sorted) {
+      for (SourceOrder order : SourceOrder.values()) {
+        for (TargetChoice choice : TargetChoice.values()) {
+          tasks.add(() -> planDiameter(state, d, order, choice));
+        }
+      }
+    }
+    List<Plan> best = new ArrayList<>();
+    try {
+      for (Future<Plan> f : pool.invokeAll(tasks)) {
+        Plan p = f.get();
+        Plan b = best.isEmpty() ? null : best.get(best.size() - 1);
+        if (b == null || b.diameter != p.diameter) {
+          best.add(p);
+        } else if (p.betterThan(b)) {
+          best.set(best.size() - 1, p);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+    best.removeIf(p -> p.freedTrays.length == 0);
+    return best;
+  }
+
+  /**
+   * Ein Kandidat fuer einen Durchmesser.
+   */
+  static Plan planDiameter(TrayPlaceColumns s, int diameter, SourceOrder order, TargetChoice choice) {
+    IntList trays = new IntList();
+    for (int t = 0; t < s.trays(); t++) {
+      if (s.trayDiameter[t] == diameter) {
+        trays.add(t);
+      }
+    }
+    int n = trays.size();
+    int[] tray = trays.toArray();
+    int[] occupied = new int[n];
+    BitSet[] used = new BitSet[n];
+    boolean[] freed = new boolean[n];
+    boolean[] pinned = new boolean[n];
+    Integer[] sources = new Integer[n];
+    int sourceCount = 0;
+    for (int i = 0; i < n; i++) {
+      int t = tray[i];
+      occupied[i] = s.occupied(t);
+      used[i] = new BitSet(s.trayCapacity[t]);
+      boolean movable = occupied[i] > 0;
+      for (int p = s.placeStart[t]; p < s.placeStart[t + 1]; p++) {
+        used[i].set(s.placeNo[p] - 1);
+        movable &= s.placeExpiration[p] != DateUtils.NO_EPOCH_DAY;
+      }
+      if (movable) {
+        sources[sourceCount++] = i;
+      }
+    }
+    Integer[] order0 = Arrays.copyOf(sources, sourceCount);
+    Comparator<Integer> byId = Comparator.comparingInt(i -> s.trayId[tray[i]]);
+    Comparator<Integer> byExpiration = Comparator.comparingInt(i -> expirationOrMax(s.trayExpiration[tray[i]]));
+    switch (order) {
+    case SPARSEST:
+      Arrays.sort(order0, Comparator.<Integer> comparingInt(i -> occupied[i]).thenComparing(byId));
+      break;
+    case EARLIEST_EXPIRATION:
+      Arrays.sort(order0, byExpiration.thenComparing(byId));
+      break;
+    default:
+      Arrays.sort(order0, byExpiration.reversed().thenComparing(byId));
+    }
+
+    List<Move> moves = new ArrayList<>();
+    IntList freedTrays = new IntList();
+    List<Move> tentative = new ArrayList<>();
+    IntList tentativeTarget = new IntList();
+    for (int src : order0) {
+      if (pinned[src]) {
+        continue;
+      }
+      int t = tray[src];
+      // spaet ablaufende Proben zuerst, sie haben die wenigsten Ziele
+      Integer[] places = new Integer[occupied[src]];
+      for (int k = 0; k < places.length; k++) {
+        places[k] = s.placeStart[t] + k;
+      }
+      Arrays.sort(places, Comparator.<Integer> comparingInt(p -> s.placeExpiration[p]).reversed());
+      tentative.clear();
+      tentativeTarget.clear();
+      boolean ok = true;
+      for (int p : places) {
+        int target = chooseTarget(s, tray, occupied, freed, src, s.placeExpiration[p], choice);
+        if (target < 0) {
+          ok = false;
+          break;
+        }
+        int placeNo = used[target].nextClearBit(0) + 1;
+        used[target].set(placeNo - 1);
+        occupied[target]++;
+        tentative.add(new Move(s.placeSample[p], s.trayId[t], s.placeNo[p], s.trayId[tray[target]], placeNo));
+        tentativeTarget.add(target);
+      }
+      if (ok) {
+        moves.addAll(tentative);
+        freedTrays.add(s.trayId[t]);
+        freed[src] = true;
+        occupied[src] = 0;
+        used[src].clear();
+        for (int k = 0; k < tentativeTarget.size(); k++) {
+          pinned[tentativeTarget.get(k)] = true;
+        }
+      } else {
+        for (int k = 0; k < tentative.size(); k++) {
+          int target = tentativeTarget.get(k);
+          used[target].clear(tentative.get(k).toPlace - 1);
+          occupied[target]--;
+        }
+      }
+    }
+    return new Plan(diameter, order + "/" + choice, moves, freedTrays.toArray());
+  }
+
+  private static int expirationOrMax(int e) {
+    return e == DateUtils.NO_EPOCH_DAY ? Integer.MAX_VALUE : e;
+  }
+
+  // Index des Ziels oder -1
+  private static int chooseTarget(TrayPlaceColumns s, int[] tray, int[] occupied, boolean[] freed, int src, int expiration,
+      TargetChoice choice) {
+    int best = -1;
+    for (int i = 0; i < tray.length; i++) {
+      int t = tray[i];
+      int e = s.trayExpiration[t];
+      if (i == src || freed[i] || occupied[i] == 0 || occupied[i] >= s.trayCapacity[t] || e == DateUtils.NO_EPOCH_DAY
+          || e < expiration) {
+        continue;
+      }
+      if (best < 0) {
+        best = i;
+        continue;
+      }
+      int b = tray[best];
+      int be = s.trayExpiration[b];
+      if (choice == TargetChoice.FULLEST) {
+        int free = s.trayCapacity[t] - occupied[i];
+        int bestFree = s.trayCapacity[b] - occupied[best];
+        if (free < bestFree || free == bestFree && (e < be || e == be && s.trayId[t] < s.trayId[b])) {
+          best = i;
+        }
+      } else if (e < be || e == be && s.trayId[t] < s.trayId[b]) {
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Fuehrt die Plaene in einer Transaktion aus.
+   *
+   * @throws DataException
+   *           wenn ein Platz nicht mehr so belegt ist wie geplant; dann ist
+   *           nichts geaendert.
+   */
+  public static void apply(Connection connection, List<Plan> plans) {
+    try {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (PreparedStatement delete = connection.prepareStatement(SQL_DELETE_PLACE);
+          PreparedStatement insert = connection.prepareStatement(SQL_INSERT_PLACE)) {
+        int n = 0;
+        for (Plan p : plans) {
+          for (Move m : p.moves) {
+            delete.setInt(1, m.fromTray);
+            delete.setInt(2, m.fromPlace);
+            delete.setInt(3, m.sampleId);
+            delete.addBatch();
+            if (++n % BATCH_SIZE == 0) {
+              checkDeleted(delete.executeBatch());
+            }
+          }
+        }
+        checkDeleted(delete.executeBatch());
+        n = 0;
+        for (Plan p : plans) {
+          for (Move m : p.moves) {
+            insert.setInt(1, m.toTray);
+            insert.setInt(2, m.toPlace);
+            insert.setInt(3, m.sampleId);
+            insert.addBatch();
+            if (++n % BATCH_SIZE == 0) {
+              insert.executeBatch();
+            }
+          }
+        }
+        insert.executeBatch();
+        connection.commit();
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+  }
+
+  private static void checkDeleted(int[] counts) {
+    for (int c : counts) {
+      if (c == 0 || c < 0 && c != Statement.SUCCESS_NO_INFO) {
+        throw new DataException("Place changed since planning, nothing applied");
+      }
+    }
+  }
+
+  /**
+   * Gibt die Plaene fuer das Schema aus DbCred aus, mit -apply werden sie
+   * auch ausgefuehrt.
+   */
+  public static void main(String[] args) {
+    boolean apply = args.length > 0 && args[0].equals("-apply");
+    JdbcUtils.loadDriver(DbCred.driverClass);
+    Connection connection = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password);
+    try {
+      TrayPlaceColumns state = read(connection);
+      long start = System.nanoTime();
+      List<Plan> plans = plan(state, ForkJoinPool.commonPool());
+      L.info(String.format("planned in %d ms", (System.nanoTime() - start) / 1000000));
+      int freed = 0;
+      int moves = 0;
+      for (Plan p : plans) {
+        System.out.println(p);
+        freed += p.freedTrays.length;
+        moves += p.moves.size();
+      }
+      System.out.println(freed + " trays freed, " + moves + " moves");
+      if (apply && moves > 0) {
+        start = System.nanoTime();
+        apply(connection, plans);
+        L.info(String.format("applied in %d ms", (System.nanoTime() - start) / 1000000));
+      }
+    } finally {
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+}
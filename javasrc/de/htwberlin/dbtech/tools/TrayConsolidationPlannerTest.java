@@ -0,0 +1,115 @@
+package de.htwberlin.dbtech.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.tools.TrayConsolidationPlanner.Move;
+import de.htwberlin.dbtech.tools.TrayConsolidationPlanner.Plan;
+import de.htwberlin.dbtech.tools.TrayConsolidationPlanner.SourceOrder;
+import de.htwberlin.dbtech.tools.TrayConsolidationPlanner.TargetChoice;
+import de.htwberlin.dbtech.utils.DateUtils;
+import de.htwberlin.dbtech.utils.FakeJdbc;
+
+public class TrayConsolidationPlannerTest {
+
+  private static int tag(int monat, int tag) {
+    return DateUtils.toEpochDay(LocalDate.of(2017, monat, tag));
+  }
+
+  /**
+   * Durchmesser 1: Tablett 1 (bis 30.4.) mit 2 Proben und Luecke auf Platz 1,
+   * Tablett 2 (bis 10.4.) mit einer Probe, Tablett 3 (bis 5.4.) mit einer
+   * Probe, die erst am 8.4. ablaeuft, Tablett 4 leer. Durchmesser 2: ein
+   * einzelnes Tablett.
+   */
+  private static TrayPlaceColumns kuehlschrank() {
+    TrayPlaceColumns.Builder b = new TrayPlaceColumns.Builder();
+    b.addTray(1, 1, 4, tag(4, 30));
+    b.addTray(2, 1, 4, tag(4, 10));
+    b.addTray(3, 1, 4, tag(4, 5));
+    b.addTray(4, 1, 4, DateUtils.NO_EPOCH_DAY);
+    b.addTray(5, 2, 4, tag(4, 30));
+    b.addPlace(1, 2, 11, 1, tag(4, 20));
+    b.addPlace(1, 3, 12, 1, tag(4, 25));
+    b.addPlace(2, 1, 21, 1, tag(4, 9));
+    b.addPlace(3, 1, 31, 1, tag(4, 8));
+    b.addPlace(5, 1, 51, 1, tag(4, 1));
+    return b.build();
+  }
+
+  @org.junit.Test
+  public void testSparsestEarliest() {
+    Plan p = TrayConsolidationPlanner.planDiameter(kuehlschrank(), 1, SourceOrder.SPARSEST,
+        TargetChoice.EARLIEST_EXPIRATION);
+    // Tablett 2 ist nur auf Tablett 1 zu raeumen, danach ist Tablett 1 Ziel
+    // und Tablett 3 geht ebenfalls dorthin; Tablett 1 selbst bleibt
+    assertEquals("[Sample 21: 2/1 -> 1/1, Sample 31: 3/1 -> 1/4]", p.moves.toString());
+    assertArrayEquals(new int[] { 2, 3 }, p.freedTrays);
+  }
+
+  @org.junit.Test
+  public void testExpirationRespected() {
+    TrayPlaceColumns s = kuehlschrank();
+    for (SourceOrder o : SourceOrder.values()) {
+      for (TargetChoice c : TargetChoice.values()) {
+        Plan p = TrayConsolidationPlanner.planDiameter(s, 1, o, c);
+        for (Move m : p.moves) {
+          int sampleExpiration = s.placeExpiration[Arrays.binarySearch(s.placeSample, m.sampleId)];
+          int trayExpiration = s.trayExpiration[m.toTray - 1];
+          assertTrue(o + "/" + c + " " + m, trayExpiration >= sampleExpiration);
+          assertTrue(m.toString(), m.toTray != 4);
+        }
+      }
+    }
+  }
+
+  @org.junit.Test
+  public void testPlanPicksBestPerDiameter() {
+    List<Plan> plans = TrayConsolidationPlanner.plan(kuehlschrank(), ForkJoinPool.commonPool());
+    // Durchmesser 2 hat kein Ziel und fehlt
+    assertEquals(1, plans.size());
+    assertEquals(2, plans.get(0).freedTrays.length);
+    assertEquals(2, plans.get(0).moves.size());
+  }
+
+  @org.junit.Test
+  public void testNothingMovesWithoutRoom() {
+    TrayPlaceColumns.Builder b = new TrayPlaceColumns.Builder();
+    b.addTray(1, 1, 2, tag(4, 30));
+    b.addTray(2, 1, 2, tag(4, 30));
+    b.addPlace(1, 1, 1, 1, tag(4, 1));
+    b.addPlace(1, 2, 2, 1, tag(4, 1));
+    b.addPlace(2, 1, 3, 1, tag(4, 1));
+    b.addPlace(2, 2, 4, 1, tag(4, 1));
+    assertEquals(0, TrayConsolidationPlanner.plan(b.build(), ForkJoinPool.commonPool()).size());
+  }
+
+  @org.junit.Test
+  public void testApplyInOneTransaction() {
+    List<Plan> plans = TrayConsolidationPlanner.plan(kuehlschrank(), ForkJoinPool.commonPool());
+    FakeJdbc db = new FakeJdbc();
+    TrayConsolidationPlanner.apply(db.connection(), plans);
+    assertEquals(Arrays.asList("autoCommit false", "batch 2: " + TrayConsolidationPlanner.SQL_DELETE_PLACE,
+        "batch 2: " + TrayConsolidationPlanner.SQL_INSERT_PLACE, "commit", "autoCommit true"), db.log());
+  }
+
+  @org.junit.Test
+  public void testApplyRollsBackOnChangedPlace() {
+    List<Plan> plans = TrayConsolidationPlanner.plan(kuehlschrank(), ForkJoinPool.commonPool());
+    FakeJdbc db = new FakeJdbc().updateCount("DELETE", 0);
+    try {
+      TrayConsolidationPlanner.apply(db.connection(), plans);
+      throw new AssertionError("expected DataException");
+    } catch (DataException e) {
+      assertEquals(Arrays.asList("autoCommit false", "batch 2: " + TrayConsolidationPlanner.SQL_DELETE_PLACE, "rollback",
+          "autoCommit true"), db.log());
+    }
+  }
+}
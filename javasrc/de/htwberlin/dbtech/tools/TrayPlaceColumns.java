@@ -0,0 +1,163 @@
+package de.htwberlin.dbtech.tools;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.aufgaben.ue02.SampleStore;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DateUtils;
+import de.htwberlin.dbtech.utils.IntIntMap;
+import de.htwberlin.dbtech.utils.IntList;
+
+/**
+ * Tray und Place spaltenweise in int-Arrays, gemeinsame Eingabe von
+ * UtilizationReport und TrayConsolidationPlanner. Die Plaetze sind nach
+ * Tablett gruppiert: die Plaetze von Tablett t liegen an den Positionen
+ * placeStart[t] bis placeStart[t + 1].
+ * <p>
+ * Probenart und Ablaufdatum einer Probe kommen aus dem SampleStore statt aus
+ * einem Join. Fehlt die Probe, ist placeKind SampleStore.NOT_FOUND und
+ * placeExpiration NO_EPOCH_DAY.
+ */
+class TrayPlaceColumns {
+  private static final Logger L = LoggerFactory.getLogger(TrayPlaceColumns.class);
+
+  static final int FETCH_SIZE = 10000;
+
+  static final String SQL_TRAYS = "SELECT TrayID, DiameterInCM, Capacity, ExpirationDate FROM Tray ORDER BY TrayID";
+  // ueber den Primaerschluesselindex schon in der benoetigten Reihenfolge
+  static final String SQL_PLACES = "SELECT TrayID, PlaceNo, SampleID FROM Place ORDER BY TrayID, PlaceNo";
+
+  final int[] trayId;
+  final int[] trayDiameter;
+  final int[] trayCapacity;
+  final int[] trayExpiration;
+  final int[] placeStart;
+  final int[] placeNo;
+  final int[] placeSample;
+  final int[] placeKind;
+  final int[] placeExpiration;
+
+  private TrayPlaceColumns(int[] trayId, int[] trayDiameter, int[] trayCapacity, int[] trayExpiration,
+      int[] placeStart, int[] placeNo, int[] placeSample, int[] placeKind, int[] placeExpiration) {
+    this.trayId = trayId;
+    this.trayDiameter = trayDiameter;
+    this.trayCapacity = trayCapacity;
+    this.trayExpiration = trayExpiration;
+    this.placeStart = placeStart;
+    this.placeNo = placeNo;
+    this.placeSample = placeSample;
+    this.placeKind = placeKind;
+    this.placeExpiration = placeExpiration;
+  }
+
+  int trays() {
+    return trayId.length;
+  }
+
+  int places() {
+    return placeNo.length;
+  }
+
+  int occupied(int t) {
+    return placeStart[t + 1] - placeStart[t];
+  }
+
+  /**
+   * Liest alle Tabletts und Plaetze mit grosser Fetch-Size.
+   */
+  static TrayPlaceColumns read(Connection connection, SampleStore samples) {
+    long start = System.nanoTime();
+    Builder b = new Builder();
+    try {
+      L.info(SQL_TRAYS);
+      try (PreparedStatement ps = connection.prepareStatement(SQL_TRAYS)) {
+        ps.setFetchSize(FETCH_SIZE);
+        try (ResultSet rs = ps.executeQuery()) {
+          while (rs.next()) {
+            b.addTray(rs.getInt(1), rs.getInt(2), rs.getInt(3), DateUtils.getEpochDay(rs, 4));
+          }
+        }
+      }
+      L.info(SQL_PLACES);
+      try (PreparedStatement ps = connection.prepareStatement(SQL_PLACES)) {
+        ps.setFetchSize(FETCH_SIZE);
+        try (ResultSet rs = ps.executeQuery()) {
+          while (rs.next()) {
+            int sampleId = rs.getInt(3);
+            int kindId = samples.sampleKindId(sampleId);
+            int e = kindId == SampleStore.NOT_FOUND ? DateUtils.NO_EPOCH_DAY : samples.expirationEpochDay(sampleId);
+            b.addPlace(rs.getInt(1), rs.getInt(2), sampleId, kindId, e);
+          }
+        }
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+    TrayPlaceColumns c = b.build();
+    L.info(String.format("read %d trays, %d places in %d ms", c.trays(), c.places(),
+        (System.nanoTime() - start) / 1000000));
+    return c;
+  }
+
+  /**
+   * Erst alle Tabletts, dann die Plaetze nach TrayID sortiert.
+   */
+  static class Builder {
+    private final IntIntMap trayIndex = new IntIntMap();
+    private final IntList trayId = new IntList();
+    private final IntList trayDiameter = new IntList();
+    private final IntList trayCapacity = new IntList();
+    private final IntList trayExpiration = new IntList();
+    private final IntList placeTray = new IntList(1024);
+    private final IntList placeNo = new IntList(1024);
+    private final IntList placeSample = new IntList(1024);
+    private final IntList placeKind = new IntList(1024);
+    private final IntList placeExpiration = new IntList(1024);
+    private int lastTray = -1;
+
+    void addTray(int id, int diameter, int capacity, int expirationEpochDay) {
+      trayIndex.put(id, trayId.size());
+      trayId.add(id);
+      trayDiameter.add(diameter);
+      trayCapacity.add(capacity);
+      trayExpiration.add(expirationEpochDay);
+    }
+
+    void addPlace(int trayId, int placeNo, int sampleId, int kindId, int expirationEpochDay) {
+      int t = trayIndex.get(trayId, -1);
+      if (t < 0) {
+        throw new IllegalArgumentException("unknown tray " + trayId);
+      }
+      if (t < lastTray) {
+        throw new IllegalArgumentException("places not ordered by tray at " + trayId + "/" + placeNo);
+      }
+      lastTray = t;
+      placeTray.add(t);
+      this.placeNo.add(placeNo);
+      placeSample.add(sampleId);
+      placeKind.add(kindId);
+      placeExpiration.add(expirationEpochDay);
+    }
+
+    TrayPlaceColumns build() {
+      int trays = trayId.size();
+      int[] start = new int[trays + 1];
+      for (int i = 0; i < placeTray.size(); i++) {
+        start[placeTray.get(i) + 1]++;
+      }
+      for (int t = 0; t < trays; t++) {
+        start[t + 1] += start[t];
+      }
+      return new TrayPlaceColumns(trayId.toArray(), trayDiameter.toArray(), trayCapacity.toArray(),
+          trayExpiration.toArray(), start, placeNo.toArray(), placeSample.toArray(), placeKind.toArray(),
+          placeExpiration.toArray());
+    }
+  }
+}
@@ -0,0 +1,488 @@
+package de.htwberlin.dbtech.tools;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.aufgaben.ue02.SampleStore;
+import de.htwberlin.dbtech.exceptions.DataException;
+import de.htwberlin.dbtech.utils.DateUtils;
+import de.htwberlin.dbtech.utils.DbCred;
+import de.htwberlin.dbtech.utils.IntIntMap;
+import de.htwberlin.dbtech.utils.IntList;
+import de.htwberlin.dbtech.utils.JdbcUtils;
+
+/**
+ * Auslastungsbericht des Kuehlschranks je Durchmesser und je Probenart:
+ * Kapazitaet, belegte Plaetze, bald ablaufende und abgelaufene Proben sowie
+ * die Fragmentierung (freie Plaetze unterhalb des hoechsten belegten Platzes
+ * eines Tabletts).
+ * <p>
+ * Tray, Place und Sample werden mit grosser Fetch-Size in int-Arrays gelesen
+ * (TrayPlaceColumns), die Plaetze nach TrayID gruppiert. Die Auswertung teilt die
+ * Tabletts per Fork/Join in Bereiche. Jeder Bereich zaehlt in eigene
+ * long-Arrays, die beim Join addiert werden, gemeinsam veraenderte Daten gibt
+ * es nicht.
+ */
+public class UtilizationReport {
+  private static final Logger L = LoggerFactory.getLogger(UtilizationReport.class);
+
+  // so viele Plaetze zaehlt ein Teilauftrag, ohne weiter zu teilen
+  static final int SPLIT_THRESHOLD = 1 << 15;
+
+  // Spalten der Zaehler
+  static final int TRAYS = 0;
+  static final int CAPACITY = 1;
+  static final int OCCUPIED = 2;
+  static final int EXPIRING_SOON = 3;
+  static final int EXPIRED = 4;
+  static final int GAPS = 5;
+  static final int FRAGMENTED_TRAYS = 6;
+  static final int TRAYS_EXPIRING_SOON = 7;
+  static final int FIELDS = 8;
+
+  private final LocalDate today;
+  private final int soonDays;
+  private final List<Row> byDiameter;
+  private final List<Row> byKind;
+
+  private UtilizationReport(LocalDate today, int soonDays, List<Row> byDiameter, List<Row> byKind) {
+    this.today = today;
+    this.soonDays = soonDays;
+    this.byDiameter = byDiameter;
+    this.byKind = byKind;
+  }
+
+  /**
+   * Liest die Daten und wertet sie im gemeinsamen ForkJoinPool aus.
+   *
+   * @param soonDays
+   *          Proben, die heute bis einschliesslich heute + soonDays ablaufen,
+   *          gelten als bald ablaufend.
+   */
+  public static UtilizationReport create(Connection connection, LocalDate today, int soonDays) {
+    Input input = read(connection);
+    return aggregate(input, today, soonDays, ForkJoinPool.commonPool(), SPLIT_THRESHOLD);
+  }
+
+  public List<Row> byDiameter() {
+    return byDiameter;
+  }
+
+  public List<Row> byKind() {
+    return byKind;
+  }
+
+  static Input read(Connection connection) {
+    SampleStore samples = SampleStore.load(connection);
+    IntList kinds = new IntList();
+    List<String> kindLabels = new ArrayList<>();
+    String sql = "SELECT SampleKindID, Text FROM SampleKind ORDER BY SampleKindID";
+    L.info(sql);
+    try (PreparedStatement ps = connection.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+      while (rs.next()) {
+        kinds.add(rs.getInt(1));
+        kindLabels.add(rs.getString(2));
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+    return Input.of(kinds.toArray(), kindLabels.toArray(new String[0]), TrayPlaceColumns.read(connection, samples));
+  }
+
+  static UtilizationReport aggregate(Input input, LocalDate today, int soonDays, ForkJoinPool pool, int threshold) {
+    int day = DateUtils.toEpochDay(today);
+    Counters c = pool.invoke(new CountTask(input, day, day + soonDays, 0, input.trays(), threshold));
+    List<Row> byDiameter = new ArrayList<>();
+    for (int d = 0; d < input.diameters.length; d++) {
+      byDiameter.add(new Row(input.diameters[d], String.valueOf(input.diameters[d]), c.byDiameter[d]));
+    }
+    List<Row> byKind = new ArrayList<>();
+    for (int k = 0; k < input.kinds.length; k++) {
+      byKind.add(new Row(input.kinds[k], input.kindLabels[k], c.byKind[k]));
+    }
+    return new UtilizationReport(today, soonDays, Collections.unmodifiableList(byDiameter),
+        Collections.unmodifiableList(byKind));
+  }
+
+  /**
+   * Bericht als Text mit je einer Tabelle fuer Durchmesser und Probenart.
+   */
+  public String render() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("Utilization as of ").append(today).append(", expiring soon = within ").append(soonDays)
+        .append(" days\n\n");
+    String head = "%-12s %8s %10s %10s %6s %12s %8s %8s %10s %12s%n";
+    String line = "%-12s %8d %10d %10d %5.1f%% %12d %8d %8d %10d %12d%n";
+    sb.append(String.format(head, "Diameter", "Trays", "Capacity", "Occupied", "Used", "ExpSoon", "Expired", "Gaps",
+        "FragTrays", "TraysExpSoon"));
+    Row total = new Row(0, "total", new long[FIELDS]);
+    for (Row r : byDiameter) {
+      sb.append(String.format(line, r.label, r.trays, r.capacity, r.occupied, 100 * r.utilization(), r.expiringSoon,
+          r.expired, r.gaps, r.fragmentedTrays, r.traysExpiringSoon));
+      total = total.plus(r);
+    }
+    sb.append(String.format(line, total.label, total.trays, total.capacity, total.occupied, 100 * total.utilization(),
+        total.expiringSoon, total.expired, total.gaps, total.fragmentedTrays, total.traysExpiringSoon));
+    sb.append('\n');
+    sb.append(String.format("%-12s %8s %10s %12s %8s%n", "SampleKind", "Trays", "Occupied", "ExpSoon", "Expired"));
+    for (Row r : byKind) {
+      sb.append(String.format("%-12s %8d %10d %12d %8d%n", r.label, r.trays, r.occupied, r.expiringSoon, r.expired));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Eine Zeile des Berichts. Bei Probenarten sind capacity, gaps,
+   * fragmentedTrays und traysExpiringSoon 0, trays zaehlt die Tabletts mit
+   * mindestens einer Probe der Art.
+   */
+  public static class Row {
+    public final int key;
+    public final String label;
+    public final long trays;
+    public final long capacity;
+    public final long occupied;
+    public final long expiringSoon;
+    public final long expired;
+    public final long gaps;
+    public final long fragmentedTrays;
+    public final long traysExpiringSoon;
+
+    Row(int key, String label, long[] c) {
+      this.key = key;
+      this.label = label;
+      trays = c[TRAYS];
+      capacity = c[CAPACITY];
+      occupied = c[OCCUPIED];
+      expiringSoon = c[EXPIRING_SOON];
+      expired = c[EXPIRED];
+      gaps = c[GAPS];
+      fragmentedTrays = c[FRAGMENTED_TRAYS];
+      traysExpiringSoon = c[TRAYS_EXPIRING_SOON];
+    }
+
+    public double utilization() {
+      return capacity == 0 ? 0 : occupied / (double) capacity;
+    }
+
+    Row plus(Row r) {
+      long[] c = new long[FIELDS];
+      c[TRAYS] = trays + r.trays;
+      c[CAPACITY] = capacity + r.capacity;
+      c[OCCUPIED] = occupied + r.occupied;
+      c[EXPIRING_SOON] = expiringSoon + r.expiringSoon;
+      c[EXPIRED] = expired + r.expired;
+      c[GAPS] = gaps + r.gaps;
+      c[FRAGMENTED_TRAYS] = fragmentedTrays + r.fragmentedTrays;
+      c[TRAYS_EXPIRING_SOON] = traysExpiringSoon + r.traysExpiringSoon;
+      return new Row(key, label, c);
+    }
+
+    @Override
+    public String toString() {
+      return "Row[" + label + ", trays=" + trays + ", capacity=" + capacity + ", occupied=" + occupied
+          + ", expiringSoon=" + expiringSoon + ", expired=" + expired + ", gaps=" + gaps + ", fragmentedTrays="
+          + fragmentedTrays + ", traysExpiringSoon=" + traysExpiringSoon + "]";
+    }
+  }
+
+  /**
+   * Eingabedaten spaltenweise. Durchmesser und Probenarten sind auf 0..n-1
+   * abgebildet, damit die Zaehler einfache Arrays sind.
+   */
+  static class Input {
+    final int[] diameters;
+    final int[] kinds;
+    final String[] kindLabels;
+    final int[] trayDiameter;
+    final int[] trayCapacity;
+    final int[] trayExpiration;
+    final int[] placeStart;
+    final int[] placeNo;
+    // -1 bzw. NO_EPOCH_DAY, falls die Probe fehlt
+    final int[] placeKind;
+    final int[] placeExpiration;
+
+    Input(int[] diameters, int[] kinds, String[] kindLabels, int[] trayDiameter, int[] trayCapacity,
+        int[] trayExpiration, int[] placeStart, int[] placeNo, int[] placeKind, int[] placeExpiration) {
+      this.diameters = diameters;
+      this.kinds = kinds;
+      this.kindLabels = kindLabels;
+      this.trayDiameter = trayDiameter;
+      this.trayCapacity = trayCapacity;
+      this.trayExpiration = trayExpiration;
+      this.placeStart = placeStart;
+      this.placeNo = placeNo;
+      this.placeKind = placeKind;
+      this.placeExpiration = placeExpiration;
+    }
+
+    /**
+     * Bildet Durchmesser und Probenarten auf Indizes ab. Plaetze mit
+     * unbekannter Probe oder Probenart zaehlen bei keiner Art.
+     */
+    static Input of(int[] kinds, String[] kindLabels, TrayPlaceColumns c) {
+      IntIntMap kindIndex = new IntIntMap();
+      for (int k = 0; k < kinds.length; k++) {
+        kindIndex.put(kinds[k], k);
+      }
+      IntList diameters = new IntList();
+      IntIntMap diameterIndex = new IntIntMap();
+      int[] trayDiameter = new int[c.trays()];
+      for (int t = 0; t < trayDiameter.length; t++) {
+        int d = diameterIndex.get(c.trayDiameter[t], -1);
+        if (d < 0) {
+          d = diameters.size();
+          diameterIndex.put(c.trayDiameter[t], d);
+          diameters.add(c.trayDiameter[t]);
+        }
+        trayDiameter[t] = d;
+      }
+      int[] placeKind = new int[c.places()];
+      for (int p = 0; p < placeKind.length; p++) {
+        int kindId = c.placeKind[p];
+        placeKind[p] = kindId == SampleStore.NOT_FOUND ? -1 : kindIndex.get(kindId, -1);
+      }
+      return new Input(diameters.toArray(), kinds, kindLabels, trayDiameter, c.trayCapacity, c.trayExpiration,
+          c.placeStart, c.placeNo, placeKind, c.placeExpiration);
+    }
+
+    int trays() {
+      return trayDiameter.length;
+    }
+
+    int places() {
+      return placeNo.length;
+    }
+  }
+
+  /**
+   * Sammelt die Eingabedaten fuer Tests und synthetic(). Erst alle
+   * Probenarten und Tabletts, dann die Plaetze nach TrayID sortiert.
+   */
+  static class InputBuilder {
+    private final IntList kinds = new IntList();
+    private final List<String> kindLabels = new ArrayList<>();
+    private final TrayPlaceColumns.Builder places = new TrayPlaceColumns.Builder();
+
+    void addKind(int kindId, String label) {
+      kinds.add(kindId);
+      kindLabels.add(label);
+    }
+
+    void addTray(int trayId, int diameter, int capacity, int expirationEpochDay) {
+      places.addTray(trayId, diameter, capacity, expirationEpochDay);
+    }
+
+    // die SampleID wertet der Bericht nicht aus
+    void addPlace(int trayId, int placeNo, int kindId, int expirationEpochDay) {
+      places.addPlace(trayId, placeNo, 0, kindId, expirationEpochDay);
+    }
+
+    Input build() {
+      return Input.of(kinds.toArray(), kindLabels.toArray(new String[0]), places.build());
+    }
+  }
+
+  static class Counters {
+    final long[][] byDiameter;
+    final long[][] byKind;
+
+    Counters(int diameters, int kinds) {
+      byDiameter = new long[diameters][FIELDS];
+      byKind = new long[kinds][FIELDS];
+    }
+
+    Counters add(Counters o) {
+      for (int d = 0; d < byDiameter.length; d++) {
+        for (int f = 0; f < FIELDS; f++) {
+          byDiameter[d][f] += o.byDiameter[d][f];
+        }
+      }
+      for (int k = 0; k < byKind.length; k++) {
+        for (int f = 0; f < FIELDS; f++) {
+          byKind[k][f] += o.byKind[k][f];
+        }
+      }
+      return this;
+    }
+  }
+
+  static class CountTask extends RecursiveTask<Counters> {
+    private static final long serialVersionUID = 1L;
+
+    private final Input in;
+    private final int today;
+    private final int soon;
+    private final int from;
+    private final int to;
+    private final int threshold;
+
+    CountTask(Input in, int today, int soon, int from, int to, int threshold) {
+      this.in = in;
+      this.today = today;
+      this.soon = soon;
+      this.from = from;
+      this.to = to;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected Counters compute() {
+      if (to - from > 1 && in.placeStart[to] - in.placeStart[from] > threshold) {
+        // nach Plaetzen halbieren, nicht nach Tabletts, damit volle und leere Bereiche gleich viel Arbeit sind
+        int middle = middleTray();
+        CountTask left = new CountTask(in, today, soon, from, middle, threshold);
+        CountTask right = new CountTask(in, today, soon, middle, to, threshold);
+        left.fork();
+        Counters r = right.compute();
+        return left.join().add(r);
+      }
+      return count();
+    }
+
+    private int middleTray() {
+      int target = (in.placeStart[from] + in.placeStart[to]) >>> 1;
+      int lo = from + 1;
+      int hi = to - 1;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (in.placeStart[mid] < target) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    private Counters count() {
+      Counters c = new Counters(in.diameters.length, in.kinds.length);
+      // letztes Tablett, in dem die Probenart gezaehlt wurde
+      int[] kindSeen = new int[in.kinds.length];
+      Arrays.fill(kindSeen, -1);
+      for (int t = from; t < to; t++) {
+        long[] d = c.byDiameter[in.trayDiameter[t]];
+        int first = in.placeStart[t];
+        int end = in.placeStart[t + 1];
+        int occupied = end - first;
+        d[TRAYS]++;
+        d[CAPACITY] += in.trayCapacity[t];
+        d[OCCUPIED] += occupied;
+        int trayExpiration = in.trayExpiration[t];
+        if (trayExpiration != DateUtils.NO_EPOCH_DAY && trayExpiration >= today && trayExpiration <= soon) {
+          d[TRAYS_EXPIRING_SOON]++;
+        }
+        int maxPlace = 0;
+        for (int p = first; p < end; p++) {
+          maxPlace = Math.max(maxPlace, in.placeNo[p]);
+          int e = in.placeExpiration[p];
+          int status = e == DateUtils.NO_EPOCH_DAY ? -1 : e < today ? EXPIRED : e <= soon ? EXPIRING_SOON : -1;
+          if (status >= 0) {
+            d[status]++;
+          }
+          int k = in.placeKind[p];
+          if (k >= 0) {
+            long[] kind = c.byKind[k];
+            kind[OCCUPIED]++;
+            if (status >= 0) {
+              kind[status]++;
+            }
+            if (kindSeen[k] != t) {
+              kindSeen[k] = t;
+              kind[TRAYS]++;
+            }
+          }
+        }
+        int gaps = maxPlace - occupied;
+        if (gaps > 0) {
+          d[GAPS] += gaps;
+          d[FRAGMENTED_TRAYS]++;
+        }
+      }
+      return c;
+    }
+  }
+
+  /**
+   * Erzeugt einen Kuehlschrank mit zufaelliger Belegung, fuer Tests und die
+   * Messung der Skalierung.
+   */
+  static Input synthetic(int places, long seed) {
+    Random r = new Random(seed);
+    InputBuilder b = new InputBuilder();
+    for (int k = 1; k <= 3; k++) {
+      b.addKind(k, "Kind" + k);
+    }
+    int day = DateUtils.toEpochDay(LocalDate.of(2017, 3, 1));
+    int trayId = 0;
+    int n = 0;
+    while (n < places) {
+      trayId++;
+      int capacity = 50 + r.nextInt(200);
+      b.addTray(trayId, 1 + r.nextInt(5), capacity, r.nextInt(10) == 0 ? DateUtils.NO_EPOCH_DAY : day + r.nextInt(90));
+      for (int p = 1; p <= capacity && n < places; p++) {
+        // etwa 90 % belegt, Luecken zufaellig verteilt
+        if (r.nextInt(10) != 0) {
+          b.addPlace(trayId, p, 1 + r.nextInt(3), day + r.nextInt(90));
+          n++;
+        }
+      }
+    }
+    return b.build();
+  }
+
+  /**
+   * Gibt den Bericht fuer das Schema aus DbCred aus. Mit "synthetic
+   * &lt;Plaetze&gt;" wird stattdessen die Auswertung erzeugter Daten mit
+   * steigender Parallelitaet gemessen.
+   */
+  public static void main(String[] args) {
+    if (args.length > 0 && args[0].equals("synthetic")) {
+      measureScaling(args.length > 1 ? Integer.parseInt(args[1]) : 20000000);
+      return;
+    }
+    JdbcUtils.loadDriver(DbCred.driverClass);
+    Connection connection = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password);
+    try {
+      System.out.println(create(connection, LocalDate.now(), 7).render());
+    } finally {
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+
+  private static void measureScaling(int places) {
+    Input input = synthetic(places, 42);
+    LocalDate today = LocalDate.of(2017, 4, 1);
+    int cores = Runtime.getRuntime().availableProcessors();
+    double base = 0;
+    for (int p = 1; p <= cores; p = p < cores && p * 2 > cores ? cores : p * 2) {
+      ForkJoinPool pool = new ForkJoinPool(p);
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < 5; i++) {
+        long start = System.nanoTime();
+        aggregate(input, today, 7, pool, SPLIT_THRESHOLD);
+        best = Math.min(best, System.nanoTime() - start);
+      }
+      pool.shutdown();
+      if (p == 1) {
+        base = best;
+      }
+      L.info(String.format("%2d threads: %7.1f ms  speedup %.2f", p, best / 1e6, base / best));
+    }
+  }
+}
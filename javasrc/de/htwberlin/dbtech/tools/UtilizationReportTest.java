@@ -0,0 +1,77 @@
+package de.htwberlin.dbtech.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+
+import de.htwberlin.dbtech.tools.UtilizationReport.Input;
+import de.htwberlin.dbtech.tools.UtilizationReport.InputBuilder;
+import de.htwberlin.dbtech.tools.UtilizationReport.Row;
+import de.htwberlin.dbtech.utils.DateUtils;
+
+public class UtilizationReportTest {
+  private static final LocalDate HEUTE = LocalDate.of(2017, 4, 1);
+
+  private static int tag(int monat, int tag) {
+    return DateUtils.toEpochDay(LocalDate.of(2017, monat, tag));
+  }
+
+  @org.junit.Test
+  public void testKleinerKuehlschrank() {
+    InputBuilder b = new InputBuilder();
+    b.addKind(1, "Blood");
+    b.addKind(2, "Serum");
+    b.addTray(1, 1, 4, tag(4, 5));
+    b.addTray(2, 1, 2, DateUtils.NO_EPOCH_DAY);
+    b.addTray(3, 2, 3, tag(5, 1));
+    // Tablett 1: Platz 2 frei -> eine Luecke
+    b.addPlace(1, 1, 1, tag(3, 30));
+    b.addPlace(1, 3, 1, tag(4, 3));
+    b.addPlace(1, 4, 2, tag(4, 20));
+    b.addPlace(3, 1, 2, tag(4, 8));
+    UtilizationReport r = UtilizationReport.aggregate(b.build(), HEUTE, 7, ForkJoinPool.commonPool(), 1);
+
+    Row d1 = r.byDiameter().get(0);
+    assertEquals(1, d1.key);
+    assertEquals(2, d1.trays);
+    assertEquals(6, d1.capacity);
+    assertEquals(3, d1.occupied);
+    assertEquals(1, d1.expired);
+    assertEquals(1, d1.expiringSoon);
+    assertEquals(1, d1.gaps);
+    assertEquals(1, d1.fragmentedTrays);
+    assertEquals(1, d1.traysExpiringSoon);
+
+    Row d2 = r.byDiameter().get(1);
+    assertEquals(1, d2.occupied);
+    assertEquals(1, d2.expiringSoon);
+    assertEquals(0, d2.gaps);
+
+    Row serum = r.byKind().get(1);
+    assertEquals("Serum", serum.label);
+    assertEquals(2, serum.trays);
+    assertEquals(2, serum.occupied);
+    assertEquals(1, serum.expiringSoon);
+    assertTrue(r.render().contains("Serum"));
+  }
+
+  @org.junit.Test
+  public void testParallelWieSequentiell() {
+    Input in = UtilizationReport.synthetic(200000, 7);
+    UtilizationReport seq = UtilizationReport.aggregate(in, HEUTE, 7, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+    UtilizationReport par = UtilizationReport.aggregate(in, HEUTE, 7, ForkJoinPool.commonPool(), 1000);
+    assertEquals(seq.byDiameter().toString(), par.byDiameter().toString());
+    assertEquals(seq.byKind().toString(), par.byKind().toString());
+  }
+
+  @org.junit.Test(expected = IllegalArgumentException.class)
+  public void testPlaetzeUnsortiert() {
+    InputBuilder b = new InputBuilder();
+    b.addTray(1, 1, 4, DateUtils.NO_EPOCH_DAY);
+    b.addTray(2, 1, 4, DateUtils.NO_EPOCH_DAY);
+    b.addPlace(2, 1, 1, tag(4, 1));
+    b.addPlace(1, 1, 1, tag(4, 1));
+  }
+}
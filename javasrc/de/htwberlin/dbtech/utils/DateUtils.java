@@ -1,30 +1,66 @@
 package de.htwberlin.dbtech.utils;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
-import java.util.Calendar;
 
 public class DateUtils {
+  /** Epoch-Day fuer ein Datum, das in der Datenbank null ist. */
+  public static final int NO_EPOCH_DAY = Integer.MIN_VALUE;
+
   public static LocalDate sqlDate2LocalDate(java.sql.Date d) {
     if (d == null) {
       return null;
     }
-    Calendar cal = Calendar.getInstance();
-    cal.setTimeInMillis(d.getTime());
-    int year = cal.get(Calendar.YEAR);
-    // Month indexing start at 0
-    int month = cal.get(Calendar.MONTH) + 1;
-    int day = cal.get(Calendar.DAY_OF_MONTH);
-    return LocalDate.of(year, month, day);
+    return d.toLocalDate();
   }
 
   public static java.sql.Date localDate2SqlDate(LocalDate d) {
     if (d == null) {
       return null;
     }
-    Calendar cal = Calendar.getInstance();
-    // Month indexing start at 0
-    cal.set(d.getYear(), d.getMonthValue() - 1, d.getDayOfMonth(), 0, 0, 0);
-    return new java.sql.Date(cal.getTime().getTime());
+    return java.sql.Date.valueOf(d);
+  }
+
+  /**
+   * Liest eine DATE-Spalte direkt als LocalDate, ohne Umweg ueber
+   * java.sql.Date oder Strings.
+   */
+  public static LocalDate getLocalDate(ResultSet rs, String column) throws SQLException {
+    return rs.getObject(column, LocalDate.class);
+  }
+
+  public static LocalDate getLocalDate(ResultSet rs, int column) throws SQLException {
+    return rs.getObject(column, LocalDate.class);
+  }
+
+  /**
+   * Bindet ein LocalDate als DATE-Parameter, null wird als SQL-NULL gebunden.
+   */
+  public static void setLocalDate(PreparedStatement ps, int index, LocalDate d) throws SQLException {
+    if (d == null) {
+      ps.setNull(index, Types.DATE);
+    } else {
+      ps.setObject(index, d);
+    }
+  }
+
+  /**
+   * Liest eine DATE-Spalte als Epoch-Day, NO_EPOCH_DAY fuer null. Epoch-Days
+   * lassen sich als int vergleichen und speichern.
+   */
+  public static int getEpochDay(ResultSet rs, int column) throws SQLException {
+    return toEpochDay(rs.getObject(column, LocalDate.class));
+  }
+
+  public static int toEpochDay(LocalDate d) {
+    return d == null ? NO_EPOCH_DAY : (int) d.toEpochDay();
+  }
+
+  public static LocalDate fromEpochDay(int epochDay) {
+    return epochDay == NO_EPOCH_DAY ? null : LocalDate.ofEpochDay(epochDay);
   }
 
-}
\ No newline at end of file
+}
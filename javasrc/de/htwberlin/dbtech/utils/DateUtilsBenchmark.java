@@ -0,0 +1,101 @@
+package de.htwberlin.dbtech.utils;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Vergleicht die Datumsumwandlung ueber Calendar (bisherige DateUtils) mit
+ * java.time und mit dem Epoch-Day-Vergleich. Einfacher Mikrobenchmark mit
+ * Aufwaermphase, da JMH nicht in javalib liegt.
+ */
+public class DateUtilsBenchmark {
+  private static final Logger L = LoggerFactory.getLogger(DateUtilsBenchmark.class);
+
+  private static final int N = 2_000_000;
+  private static final int RUNDEN = 5;
+
+  public static void main(String[] args) {
+    LocalDate[] daten = new LocalDate[1024];
+    java.sql.Date[] sqlDaten = new java.sql.Date[daten.length];
+    int[] tage = new int[daten.length];
+    for (int i = 0; i < daten.length; i++) {
+      daten[i] = LocalDate.of(2017, 1, 1).plusDays(i);
+      sqlDaten[i] = DateUtils.localDate2SqlDate(daten[i]);
+      tage[i] = DateUtils.toEpochDay(daten[i]);
+    }
+    for (int r = 0; r < RUNDEN; r++) {
+      boolean messen = r == RUNDEN - 1;
+      messe("sqlDate2LocalDate Calendar", messen, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += calendarSqlDate2LocalDate(sqlDaten[i & 1023]).getDayOfMonth();
+        }
+        return x;
+      });
+      messe("sqlDate2LocalDate java.time", messen, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += DateUtils.sqlDate2LocalDate(sqlDaten[i & 1023]).getDayOfMonth();
+        }
+        return x;
+      });
+      messe("localDate2SqlDate Calendar", messen, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += calendarLocalDate2SqlDate(daten[i & 1023]).getTime();
+        }
+        return x;
+      });
+      messe("localDate2SqlDate java.time", messen, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += DateUtils.localDate2SqlDate(daten[i & 1023]).getTime();
+        }
+        return x;
+      });
+      messe("Vergleich LocalDate", messen, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += daten[i & 1023].isBefore(daten[(i + 7) & 1023]) ? 1 : 0;
+        }
+        return x;
+      });
+      messe("Vergleich Epoch-Day", messen, () -> {
+        long x = 0;
+        for (int i = 0; i < N; i++) {
+          x += tage[i & 1023] < tage[(i + 7) & 1023] ? 1 : 0;
+        }
+        return x;
+      });
+    }
+  }
+
+  private interface Lauf {
+    long ausfuehren();
+  }
+
+  private static void messe(String name, boolean ausgeben, Lauf lauf) {
+    long start = System.nanoTime();
+    long ergebnis = lauf.ausfuehren();
+    double nsProAufruf = (System.nanoTime() - start) / (double) N;
+    if (ausgeben) {
+      L.info(String.format("%-30s %8.2f ns/op  (%d)", name, nsProAufruf, ergebnis));
+    }
+  }
+
+  // bisherige Implementierung als Vergleichsbasis
+  private static LocalDate calendarSqlDate2LocalDate(java.sql.Date d) {
+    Calendar cal = Calendar.getInstance();
+    cal.setTimeInMillis(d.getTime());
+    return LocalDate.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
+  }
+
+  private static java.sql.Date calendarLocalDate2SqlDate(LocalDate d) {
+    Calendar cal = Calendar.getInstance();
+    cal.set(d.getYear(), d.getMonthValue() - 1, d.getDayOfMonth(), 0, 0, 0);
+    return new java.sql.Date(cal.getTime().getTime());
+  }
+}
@@ -0,0 +1,284 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ereignisbus innerhalb des Prozesses auf einem vorab angelegten Ringpuffer.
+ * <p>
+ * Erzeuger reservieren eine Sequenznummer per CAS, legen das Ereignis in den
+ * Slot und veroeffentlichen es, indem sie die Nummer im Slot vermerken. Jeder
+ * Verbraucher hat einen eigenen Thread und eine eigene Sequenz und liest alle
+ * seit seinem letzten Stand veroeffentlichten Ereignisse als einen Stapel.
+ * <p>
+ * Ein Erzeuger wartet nie. Liegt der langsamste Verbraucher eine ganze
+ * Puffergroesse zurueck, wird das Ereignis verworfen und gezaehlt; Rueckstau
+ * ist also an dropped() und lag() abzulesen, nicht an blockierten Aufrufern.
+ */
+public class EventBus<E> {
+  private static final Logger L = LoggerFactory.getLogger(EventBus.class);
+
+  private static final int SPINS = 100;
+  private static final int YIELDS = 10;
+
+  /**
+   * Verarbeitet Ereignisse im Thread des Verbrauchers.
+   */
+  public interface Handler<E> {
+    /**
+     * @param endOfBatch
+     *          true beim letzten Ereignis des Stapels, z.B. um erst dann
+     *          gesammelte Aenderungen weiterzugeben.
+     */
+    void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+  }
+
+  private final Object[] entries;
+  // Sequenz, die zuletzt im Slot veroeffentlicht wurde
+  private final AtomicLongArray published;
+  private final int mask;
+  // zuletzt reservierte Sequenz
+  private final AtomicLong cursor = new AtomicLong(-1);
+  private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+  // Minimum der Verbraucher-Sequenzen beim letzten Nachsehen, spart das Lesen aller Verbraucher
+  private volatile long gatingCache = -1;
+  private final LongAdder publishedCount = new LongAdder();
+  private final LongAdder droppedCount = new LongAdder();
+  private final long parkNanos;
+  private volatile boolean running = true;
+
+  /**
+   * @param bufferSize
+   *          Anzahl der Slots, wird auf eine Zweierpotenz aufgerundet.
+   */
+  public EventBus(int bufferSize) {
+    this(bufferSize, TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  public EventBus(int bufferSize, long parkNanos) {
+    int size = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+    entries = new Object[size];
+    published = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      published.set(i, -1);
+    }
+    mask = size - 1;
+    this.parkNanos = parkNanos;
+  }
+
+  /**
+   * Startet einen Verbraucher, der alle ab jetzt veroeffentlichten Ereignisse
+   * erhaelt.
+   */
+  public synchronized void addConsumer(String name, Handler<? super E> handler) {
+    if (!running) {
+      throw new IllegalStateException("event bus closed");
+    }
+    Consumer c = new Consumer(name, handler, cursor.get());
+    consumers.add(c);
+    gatingCache = -1;
+    c.thread.start();
+  }
+
+  /**
+   * Veroeffentlicht ein Ereignis, ohne zu warten.
+   *
+   * @return false, falls der Puffer voll war und das Ereignis verworfen wurde.
+   */
+  public boolean publish(E event) {
+    Objects.requireNonNull(event);
+    long next;
+    while (true) {
+      long current = cursor.get();
+      next = current + 1;
+      long wrapPoint = next - entries.length;
+      if (wrapPoint > gatingCache) {
+        long min = minimumSequence(current);
+        gatingCache = min;
+        if (wrapPoint > min) {
+          droppedCount.increment();
+          return false;
+        }
+      }
+      if (cursor.compareAndSet(current, next)) {
+        break;
+      }
+    }
+    int slot = (int) next & mask;
+    entries[slot] = event;
+    // volatile geschrieben: macht den Eintrag sichtbar und wird nicht hinter das
+    // Lesen von parked verschoben, sonst koennte ein Verbraucher das Ereignis verschlafen
+    published.set(slot, next);
+    publishedCount.increment();
+    for (Consumer c : consumers) {
+      if (c.parked) {
+        LockSupport.unpark(c.thread);
+      }
+    }
+    return true;
+  }
+
+  public int bufferSize() {
+    return entries.length;
+  }
+
+  public long published() {
+    return publishedCount.sum();
+  }
+
+  public long dropped() {
+    return droppedCount.sum();
+  }
+
+  /**
+   * Anzahl der veroeffentlichten, vom Verbraucher noch nicht verarbeiteten
+   * Ereignisse, -1 fuer unbekannte Verbraucher.
+   */
+  public long lag(String consumer) {
+    for (Consumer c : consumers) {
+      if (c.name.equals(consumer)) {
+        return cursor.get() - c.sequence.get();
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Groesster Rueckstand aller Verbraucher.
+   */
+  public long maxLag() {
+    return consumers.isEmpty() ? 0 : cursor.get() - minimumSequence(cursor.get());
+  }
+
+  /**
+   * Kennzahlen je Verbraucher, z.B. fuer ein Dashboard.
+   */
+  public List<String> consumerStats() {
+    List<String> l = new ArrayList<>();
+    long c = cursor.get();
+    for (Consumer k : consumers) {
+      l.add(k.name + ": lag=" + (c - k.sequence.get()) + ", batches=" + k.batches.sum() + ", maxBatch=" + k.maxBatch
+          + ", errors=" + k.errors.sum());
+    }
+    return l;
+  }
+
+  /**
+   * Verarbeitet die bereits veroeffentlichten Ereignisse und beendet die
+   * Verbraucher.
+   */
+  public synchronized void close() {
+    running = false;
+    for (Consumer c : consumers) {
+      LockSupport.unpark(c.thread);
+    }
+    for (Consumer c : consumers) {
+      try {
+        c.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private long minimumSequence(long defaultValue) {
+    long min = defaultValue;
+    for (Consumer c : consumers) {
+      min = Math.min(min, c.sequence.get());
+    }
+    return min;
+  }
+
+  // hoechste lueckenlos veroeffentlichte Sequenz ab from, from - 1 falls keine
+  private long highestPublished(long from, long to) {
+    for (long s = from; s <= to; s++) {
+      if (published.get((int) s & mask) != s) {
+        return s - 1;
+      }
+    }
+    return to;
+  }
+
+  private class Consumer implements Runnable {
+    final String name;
+    final Handler<? super E> handler;
+    // zuletzt verarbeitete Sequenz
+    final AtomicLong sequence;
+    final Thread thread;
+    final LongAdder batches = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    volatile long maxBatch;
+    volatile boolean parked;
+
+    Consumer(String name, Handler<? super E> handler, long start) {
+      this.name = name;
+      this.handler = handler;
+      this.sequence = new AtomicLong(start);
+      thread = new Thread(this, "event-" + name);
+      thread.setDaemon(true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+      long next = sequence.get() + 1;
+      int idle = 0;
+      while (true) {
+        long available = highestPublished(next, cursor.get());
+        if (available < next) {
+          if (!running) {
+            break;
+          }
+          idle = idle(idle);
+          continue;
+        }
+        idle = 0;
+        for (long s = next; s <= available; s++) {
+          E event = (E) entries[(int) s & mask];
+          try {
+            handler.onEvent(event, s, s == available);
+          } catch (Throwable e) {
+            // auch Errors: ein beendeter Verbraucher gibt seine Slots nie frei
+            // und blockiert damit alle Erzeuger
+            errors.increment();
+            L.error("consumer " + name + " failed at sequence " + s, e);
+          }
+        }
+        batches.increment();
+        if (available - next + 1 > maxBatch) {
+          maxBatch = available - next + 1;
+        }
+        // gibt die Slots fuer die Erzeuger frei
+        sequence.set(available);
+        next = available + 1;
+      }
+    }
+
+    // erst kurz aktiv warten, dann abgeben, dann schlafen bis zum naechsten publish
+    private int idle(int idle) {
+      if (idle < SPINS) {
+        Thread.onSpinWait();
+      } else if (idle < SPINS + YIELDS) {
+        Thread.yield();
+      } else {
+        parked = true;
+        if (highestPublished(sequence.get() + 1, cursor.get()) <= sequence.get() && running) {
+          LockSupport.parkNanos(this, parkNanos);
+        }
+        parked = false;
+      }
+      return Math.min(idle + 1, SPINS + YIELDS);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package de.htwberlin.dbtech.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EventBusTest {
+
+  @org.junit.Test
+  public void testMehrereErzeuger() throws Exception {
+    EventBus<long[]> bus = new EventBus<>(1024);
+    int erzeuger = 4;
+    int jeErzeuger = 50000;
+    long[] letzte = new long[erzeuger];
+    long[] summe = new long[1];
+    List<String> fehler = new ArrayList<>();
+    bus.addConsumer("pruefer", (e, seq, endOfBatch) -> {
+      // Reihenfolge je Erzeuger bleibt erhalten
+      int p = (int) e[0];
+      if (e[1] != letzte[p] + 1) {
+        fehler.add(p + ": " + e[1] + " nach " + letzte[p]);
+      }
+      letzte[p] = e[1];
+      summe[0]++;
+    });
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < erzeuger; p++) {
+      int id = p;
+      Thread t = new Thread(() -> {
+        for (int i = 1; i <= jeErzeuger; i++) {
+          // bei vollem Puffer erneut versuchen, damit nichts verloren geht
+          while (!bus.publish(new long[] { id, i })) {
+            Thread.yield();
+          }
+        }
+      });
+      threads.add(t);
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    bus.close();
+    assertEquals(new ArrayList<String>(), fehler);
+    assertEquals(erzeuger * jeErzeuger, summe[0]);
+    assertEquals(erzeuger * jeErzeuger, bus.published());
+    assertEquals(0, bus.maxLag());
+  }
+
+  @org.junit.Test
+  public void testVerwerfenBeiVollemPuffer() throws Exception {
+    EventBus<Integer> bus = new EventBus<>(8);
+    CountDownLatch blockiert = new CountDownLatch(1);
+    CountDownLatch weiter = new CountDownLatch(1);
+    List<Integer> erhalten = new ArrayList<>();
+    bus.addConsumer("langsam", (e, seq, endOfBatch) -> {
+      blockiert.countDown();
+      weiter.await();
+      erhalten.add(e);
+    });
+    assertTrue(bus.publish(0));
+    assertTrue(blockiert.await(5, TimeUnit.SECONDS));
+    // der Verbraucher haengt in Ereignis 0, dessen Slot erst nach dem Stapel
+    // frei wird, es passen also noch 7 hinein
+    int angenommen = 0;
+    for (int i = 1; i <= 20; i++) {
+      if (bus.publish(i)) {
+        angenommen++;
+      }
+    }
+    assertEquals(7, angenommen);
+    assertEquals(13, bus.dropped());
+    assertEquals(8, bus.lag("langsam"));
+    weiter.countDown();
+    bus.close();
+    assertEquals(8, erhalten.size());
+    assertEquals(0, bus.lag("langsam"));
+    assertFalse(bus.consumerStats().isEmpty());
+  }
+
+  @org.junit.Test
+  public void testVerbraucherUeberlebtError() throws Exception {
+    EventBus<Integer> bus = new EventBus<>(8);
+    List<Integer> erhalten = new ArrayList<>();
+    bus.addConsumer("fehlerhaft", (e, seq, endOfBatch) -> {
+      if (e % 3 == 0) {
+        throw new AssertionError("Ereignis " + e);
+      }
+      erhalten.add(e);
+    });
+    // mehr Ereignisse als Slots: ohne laufenden Verbraucher ginge publish nicht
+    for (int i = 1; i <= 30; i++) {
+      while (!bus.publish(i)) {
+        Thread.yield();
+      }
+    }
+    bus.close();
+    assertEquals(20, erhalten.size());
+    assertTrue(bus.consumerStats().get(0).endsWith("errors=10"));
+  }
+}
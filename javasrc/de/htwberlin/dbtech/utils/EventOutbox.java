@@ -0,0 +1,80 @@
+package de.htwberlin.dbtech.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Gibt Ereignisse eines Dienstes erst nach dem Commit an den EventBus weiter.
+ * Bei autoCommit ist jede Anweisung schon festgeschrieben, das Ereignis geht
+ * sofort hinaus. Sonst wird es gesammelt, bis der Aufrufer nach seinem Commit
+ * afterCommit() bzw. nach einem Rollback afterRollback() aufruft.
+ */
+public class EventOutbox<E> {
+  private volatile EventBus<? super E> bus;
+  private final List<E> pending = new ArrayList<>();
+
+  public void setEventBus(EventBus<? super E> bus) {
+    this.bus = bus;
+  }
+
+  public void emit(Connection connection, E event) {
+    EventBus<? super E> b = bus;
+    if (b == null) {
+      return;
+    }
+    try {
+      if (connection.getAutoCommit()) {
+        b.publish(event);
+        return;
+      }
+    } catch (SQLException e) {
+      throw new DataException(e);
+    }
+    synchronized (pending) {
+      pending.add(event);
+    }
+  }
+
+  public void afterCommit() {
+    List<E> l;
+    synchronized (pending) {
+      l = new ArrayList<>(pending);
+      pending.clear();
+    }
+    EventBus<? super E> b = bus;
+    if (b != null) {
+      for (E e : l) {
+        b.publish(e);
+      }
+    }
+  }
+
+  /**
+   * Stand der gesammelten Ereignisse, z.B. beim Setzen eines Savepoints.
+   */
+  public int mark() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+
+  /**
+   * Verwirft die seit mark() gesammelten Ereignisse, nach einem Rollback auf
+   * den zugehoerigen Savepoint.
+   */
+  public void afterRollbackTo(int mark) {
+    synchronized (pending) {
+      pending.subList(Math.min(mark, pending.size()), pending.size()).clear();
+    }
+  }
+
+  public void afterRollback() {
+    synchronized (pending) {
+      pending.clear();
+    }
+  }
+}
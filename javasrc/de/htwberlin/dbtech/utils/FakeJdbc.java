@@ -0,0 +1,291 @@
+package de.htwberlin.dbtech.utils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Verbindung ohne Datenbank fuer Tests, die nur pruefen, welche Anweisungen
+ * ein Dienst in welcher Reihenfolge schickt. Alles landet als Zeile in log():
+ *
+ * <pre>
+ * autoCommit false
+ * query: SELECT ... (executeQuery)
+ * update: DELETE ... (executeUpdate)
+ * batch 2: INSERT ... (executeBatch mit zwei Zeilen)
+ * row: [1, 2] (addBatch, nur mit recordRows())
+ * commit | rollback | rollback to savepoint
+ * </pre>
+ *
+ * Anfragen liefern die Zeilen des ersten passenden onQuery(), sonst keine.
+ * Aenderungen liefern je Zeile updateCount(), sonst 1. Alle anderen Aufrufe
+ * tun nichts und liefern 0, false oder null.
+ */
+public class FakeJdbc {
+
+  /**
+   * Wird bei commit() ausgefuehrt, z.B. um zu warten oder zu scheitern.
+   */
+  public interface Action {
+    void run() throws Exception;
+  }
+
+  private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+  private final Map<String, Function<Object[], List<Object[]>>> queries = new LinkedHashMap<>();
+  private final Map<String, String[]> labels = new LinkedHashMap<>();
+  private final Map<String, Integer> updateCounts = new LinkedHashMap<>();
+  private int[] columnTypes = new int[0];
+  private boolean recordRows;
+  private volatile boolean autoCommit = true;
+  private Action onCommit = () -> {
+  };
+
+  /**
+   * Zeilen fuer Anfragen, deren SQL sqlPart enthaelt. rows bekommt die
+   * gebundenen Parameter; labels erlauben rs.getInt("Spalte").
+   */
+  public FakeJdbc onQuery(String sqlPart, Function<Object[], List<Object[]>> rows, String... labels) {
+    queries.put(sqlPart, rows);
+    this.labels.put(sqlPart, labels);
+    return this;
+  }
+
+  /**
+   * Anzahl betroffener Zeilen je Aenderung, deren SQL mit sqlPrefix beginnt.
+   */
+  public FakeJdbc updateCount(String sqlPrefix, int count) {
+    updateCounts.put(sqlPrefix, count);
+    return this;
+  }
+
+  /**
+   * java.sql.Types der Spalten in getMetaData() jeder Anfrage.
+   */
+  public FakeJdbc columnTypes(int... types) {
+    columnTypes = types;
+    return this;
+  }
+
+  public FakeJdbc autoCommit(boolean autoCommit) {
+    this.autoCommit = autoCommit;
+    return this;
+  }
+
+  public FakeJdbc onCommit(Action action) {
+    onCommit = action;
+    return this;
+  }
+
+  /**
+   * Schreibt auch die Parameter jeder Zeile eines Batches ins log.
+   */
+  public FakeJdbc recordRows() {
+    recordRows = true;
+    return this;
+  }
+
+  public List<String> log() {
+    return log;
+  }
+
+  /**
+   * Anzahl der Eintraege im log, die mit prefix beginnen.
+   */
+  public int count(String prefix) {
+    synchronized (log) {
+      return (int) log.stream().filter(s -> s.startsWith(prefix)).count();
+    }
+  }
+
+  public Connection connection() {
+    return proxy(Connection.class, (m, args) -> {
+      switch (m.getName()) {
+      case "getAutoCommit":
+        return autoCommit;
+      case "setAutoCommit":
+        autoCommit = (Boolean) args[0];
+        log.add("autoCommit " + args[0]);
+        return null;
+      case "commit":
+        onCommit.run();
+        log.add("commit");
+        return null;
+      case "rollback":
+        log.add(args == null ? "rollback" : "rollback to savepoint");
+        return null;
+      case "setSavepoint":
+        return proxy(Savepoint.class, (sm, sargs) -> defaultValue(sm));
+      case "createStatement":
+        return statement(Statement.class, null);
+      case "prepareStatement":
+      case "prepareCall":
+        return statement(PreparedStatement.class, (String) args[0]);
+      default:
+        return defaultValue(m);
+      }
+    });
+  }
+
+  private <T extends Statement> T statement(Class<T> type, String preparedSql) {
+    List<Object> params = new ArrayList<>();
+    int[] batch = new int[1];
+    return proxy(type, (m, args) -> {
+      String name = m.getName();
+      String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+      switch (name) {
+      case "executeQuery":
+        log.add("query: " + sql);
+        return query(sql, params.toArray());
+      case "executeUpdate":
+      case "executeLargeUpdate":
+        log.add("update: " + sql);
+        return updateCount(sql);
+      case "addBatch":
+        batch[0]++;
+        if (recordRows) {
+          log.add("row: " + params);
+        }
+        return null;
+      case "executeBatch":
+        log.add("batch " + batch[0] + ": " + sql);
+        int[] counts = new int[batch[0]];
+        Arrays.fill(counts, updateCount(sql));
+        batch[0] = 0;
+        return counts;
+      case "clearParameters":
+        params.clear();
+        return null;
+      default:
+        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+          int i = (Integer) args[0] - 1;
+          while (params.size() <= i) {
+            params.add(null);
+          }
+          params.set(i, name.equals("setNull") ? null : args[1]);
+          return null;
+        }
+        return defaultValue(m);
+      }
+    });
+  }
+
+  private int updateCount(String sql) {
+    for (Map.Entry<String, Integer> e : updateCounts.entrySet()) {
+      if (sql.startsWith(e.getKey())) {
+        return e.getValue();
+      }
+    }
+    return 1;
+  }
+
+  private ResultSet query(String sql, Object[] params) {
+    for (Map.Entry<String, Function<Object[], List<Object[]>>> e : queries.entrySet()) {
+      if (sql.contains(e.getKey())) {
+        return resultSet(e.getValue().apply(params), columnTypes, labels.get(e.getKey()));
+      }
+    }
+    return resultSet(Collections.emptyList(), columnTypes);
+  }
+
+  /**
+   * ResultSet ueber rows, null steht fuer NULL.
+   */
+  public static ResultSet resultSet(List<Object[]> rows, String... labels) {
+    return resultSet(rows, new int[0], labels);
+  }
+
+  private static ResultSet resultSet(List<Object[]> rows, int[] types, String... labels) {
+    int[] row = { -1 };
+    Object[] last = new Object[1];
+    ResultSetMetaData md = proxy(ResultSetMetaData.class, (m, args) -> {
+      switch (m.getName()) {
+      case "getColumnCount":
+        return Math.max(types.length, labels.length);
+      case "getColumnType":
+        return types[(Integer) args[0] - 1];
+      case "getColumnName":
+      case "getColumnLabel":
+        return labels[(Integer) args[0] - 1];
+      default:
+        return defaultValue(m);
+      }
+    });
+    return proxy(ResultSet.class, (m, args) -> {
+      switch (m.getName()) {
+      case "next":
+        return ++row[0] < rows.size();
+      case "wasNull":
+        return last[0] == null;
+      case "getMetaData":
+        return md;
+      default:
+        if (!m.getName().startsWith("get") || args == null || args.length == 0) {
+          return defaultValue(m);
+        }
+        int column = args[0] instanceof String ? Arrays.asList(labels).indexOf(args[0]) + 1 : (Integer) args[0];
+        last[0] = rows.get(row[0])[column - 1];
+        if (last[0] == null) {
+          return defaultValue(m);
+        }
+        if (m.getReturnType() == int.class) {
+          return ((Number) last[0]).intValue();
+        }
+        if (m.getReturnType() == long.class) {
+          return ((Number) last[0]).longValue();
+        }
+        if (m.getReturnType() == String.class) {
+          return last[0].toString();
+        }
+        return last[0];
+      }
+    });
+  }
+
+  private interface Handler {
+    Object invoke(Method m, Object[] args) throws Exception;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, Handler h) {
+    return (T) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[] { type },
+        (p, m, args) -> m.getName().equals("toString") ? "Fake" + type.getSimpleName() : h.invoke(m, args));
+  }
+
+  private static Object defaultValue(Method m) {
+    Class<?> t = m.getReturnType();
+    if (t == boolean.class) {
+      return false;
+    }
+    if (t == int.class) {
+      return 0;
+    }
+    if (t == long.class) {
+      return 0L;
+    }
+    if (t == double.class) {
+      return 0.0;
+    }
+    if (t == float.class) {
+      return 0.0f;
+    }
+    if (t == short.class) {
+      return (short) 0;
+    }
+    if (t == byte.class) {
+      return (byte) 0;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,605 @@
+package de.htwberlin.dbtech.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Ersatz fuer CsvDataSet und DatabaseOperation.CLEAN_INSERT in den Tests.
+ * <p>
+ * Ein Testdaten-Verzeichnis (table-ordering.txt und eine CSV-Datei je Tabelle)
+ * wird je JVM nur einmal gelesen. Zusaetzlich wird es binaer im
+ * Temp-Verzeichnis abgelegt; der Dateiname enthaelt eine Pruefsumme ueber die
+ * CSV-Dateien, geaenderte Testdaten werden also neu eingelesen.
+ * <p>
+ * restore() loescht die Tabellen in umgekehrter Reihenfolge und fuegt die
+ * Zeilen je Tabelle mit einem Batch ein. Mit begin() wird der Zustand einmal
+ * hergestellt und danach zwischen den Tests nur noch auf einen Savepoint
+ * zurueckgerollt.
+ */
+public class FixtureEngine {
+  private static final Logger L = LoggerFactory.getLogger(FixtureEngine.class);
+
+  static final String TABLE_ORDERING = "table-ordering.txt";
+  static final String NULL = "null";
+  private static final int MAGIC = 0x504b5346;
+  private static final int FORMAT_VERSION = 1;
+
+  private static final Map<Path, Fixture> CACHE = new ConcurrentHashMap<>();
+
+  /**
+   * Liefert die Testdaten eines Verzeichnisses, z.B. "test-data/ue02".
+   */
+  public static Fixture load(String directory) {
+    return load(Paths.get(directory));
+  }
+
+  public static Fixture load(Path directory) {
+    Path key = directory.toAbsolutePath().normalize();
+    return CACHE.computeIfAbsent(key, FixtureEngine::read);
+  }
+
+  private static Fixture read(Path directory) {
+    try {
+      List<String> names = tableNames(directory);
+      CRC32 crc = new CRC32();
+      crc.update(directory.toString().getBytes(StandardCharsets.UTF_8));
+      List<byte[]> contents = new ArrayList<>();
+      for (String name : names) {
+        byte[] b = Files.readAllBytes(directory.resolve(name + ".csv"));
+        crc.update(b);
+        contents.add(b);
+      }
+      Path cacheFile = cacheDirectory().resolve(String.format("%08x-v%d.fixture", crc.getValue(), FORMAT_VERSION));
+      if (Files.isRegularFile(cacheFile)) {
+        try (InputStream in = Files.newInputStream(cacheFile)) {
+          Fixture f = readBinary(in);
+          L.debug("read " + directory + " from " + cacheFile);
+          return f;
+        } catch (IOException e) {
+          // unvollstaendig oder alte Version, wird unten neu geschrieben
+          L.warn("ignoring fixture cache " + cacheFile + ": " + e.getMessage());
+        }
+      }
+      List<Table> tables = new ArrayList<>();
+      for (int i = 0; i < names.size(); i++) {
+        tables.add(parseCsv(names.get(i), new String(contents.get(i), StandardCharsets.UTF_8)));
+      }
+      Fixture f = new Fixture(tables);
+      writeCache(f, cacheFile);
+      return f;
+    } catch (IOException e) {
+      throw new DataException("cannot read fixture " + directory, e);
+    }
+  }
+
+  private static Path cacheDirectory() throws IOException {
+    Path p = Paths.get(System.getProperty("java.io.tmpdir"), "dbtech-fixtures");
+    Files.createDirectories(p);
+    return p;
+  }
+
+  private static void writeCache(Fixture f, Path cacheFile) {
+    try {
+      // erst unter anderem Namen schreiben, damit parallele Leser keine halbe Datei sehen
+      Path tmp = Files.createTempFile(cacheFile.getParent(), "fixture", ".tmp");
+      try (OutputStream out = Files.newOutputStream(tmp)) {
+        writeBinary(f, out);
+      }
+      Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // der Cache ist nur eine Abkuerzung
+      L.warn("cannot write fixture cache " + cacheFile + ": " + e.getMessage());
+    }
+  }
+
+  static List<String> tableNames(Path directory) throws IOException {
+    List<String> l = new ArrayList<>();
+    for (String line : Files.readAllLines(directory.resolve(TABLE_ORDERING), StandardCharsets.UTF_8)) {
+      String name = line.trim();
+      if (!name.isEmpty()) {
+        l.add(name);
+      }
+    }
+    return l;
+  }
+
+  /**
+   * Liest eine CSV-Datei wie CsvDataSet: erste Zeile Spaltennamen, Werte durch
+   * Komma getrennt, Leerraum um die Werte wird entfernt, doppelte
+   * Anfuehrungszeichen schuetzen Kommas, ein ungeschuetztes null ist NULL.
+   */
+  static Table parseCsv(String tableName, String content) {
+    List<String[]> rows = new ArrayList<>();
+    String[] columns = null;
+    for (String line : content.split("\r?\n")) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      String[] values = splitLine(line);
+      if (columns == null) {
+        columns = values;
+        continue;
+      }
+      if (values.length != columns.length) {
+        throw new DataException(tableName + ": expected " + columns.length + " values, got " + values.length
+            + " in line: " + line);
+      }
+      rows.add(values);
+    }
+    if (columns == null) {
+      throw new DataException(tableName + ": no header line");
+    }
+    return new Table(tableName, columns, rows);
+  }
+
+  static String[] splitLine(String line) {
+    List<String> values = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    boolean quoted = false;
+    // Laenge bis zum schliessenden Anfuehrungszeichen, -1 bei ungeschuetzten Werten
+    int quotedLength = -1;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          sb.append('"');
+          i++;
+        } else if (quoted) {
+          quoted = false;
+          quotedLength = sb.length();
+        } else {
+          // Leerraum vor dem Anfuehrungszeichen gehoert nicht zum Wert
+          sb.setLength(0);
+          quoted = true;
+        }
+      } else if (c == ',' && !quoted) {
+        values.add(value(sb, quotedLength));
+        sb.setLength(0);
+        quotedLength = -1;
+      } else {
+        sb.append(c);
+      }
+    }
+    values.add(value(sb, quotedLength));
+    return values.toArray(new String[0]);
+  }
+
+  private static String value(StringBuilder sb, int quotedLength) {
+    if (quotedLength >= 0) {
+      return sb.substring(0, quotedLength);
+    }
+    String s = sb.toString().trim();
+    return NULL.equals(s) ? null : s;
+  }
+
+  static void writeBinary(Fixture f, OutputStream os) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    out.writeInt(f.tables.size());
+    for (Table t : f.tables) {
+      out.writeUTF(t.name);
+      out.writeInt(t.columns.length);
+      for (String c : t.columns) {
+        out.writeUTF(c);
+      }
+      out.writeInt(t.rows.size());
+      for (String[] row : t.rows) {
+        for (String v : row) {
+          out.writeBoolean(v != null);
+          if (v != null) {
+            out.writeUTF(v);
+          }
+        }
+      }
+    }
+    out.flush();
+  }
+
+  static Fixture readBinary(InputStream is) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+    if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+      throw new IOException("unknown fixture format");
+    }
+    int tableCount = in.readInt();
+    List<Table> tables = new ArrayList<>(tableCount);
+    for (int t = 0; t < tableCount; t++) {
+      String name = in.readUTF();
+      String[] columns = new String[in.readInt()];
+      for (int c = 0; c < columns.length; c++) {
+        columns[c] = in.readUTF();
+      }
+      int rowCount = in.readInt();
+      List<String[]> rows = new ArrayList<>(rowCount);
+      for (int r = 0; r < rowCount; r++) {
+        String[] row = new String[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+          row[c] = in.readBoolean() ? in.readUTF() : null;
+        }
+        rows.add(row);
+      }
+      tables.add(new Table(name, columns, rows));
+    }
+    return new Fixture(tables);
+  }
+
+  /**
+   * Eingelesene Testdaten eines Verzeichnisses, Tabellen in der Reihenfolge von
+   * table-ordering.txt.
+   */
+  public static class Fixture {
+    final List<Table> tables;
+    // JDBC-Typen je Tabelle, beim ersten restore() aus den Metadaten gelesen
+    private final Map<String, int[]> columnTypes = new ConcurrentHashMap<>();
+    private volatile IDataSet dataSet;
+
+    Fixture(List<Table> tables) {
+      this.tables = Collections.unmodifiableList(tables);
+    }
+
+    public List<String> tableNames() {
+      List<String> l = new ArrayList<>();
+      for (Table t : tables) {
+        l.add(t.name);
+      }
+      return l;
+    }
+
+    public int rowCount(String table) {
+      return table(table).rows.size();
+    }
+
+    Table table(String name) {
+      for (Table t : tables) {
+        if (t.name.equalsIgnoreCase(name)) {
+          return t;
+        }
+      }
+      throw new DataException("no table " + name + " in fixture");
+    }
+
+    /**
+     * Die Testdaten als DbUnit-Datenmenge fuer Assertion.assertEquals. Wie bei
+     * CsvDataSet sind alle Werte Zeichenketten vom Typ UNKNOWN, verglichen wird
+     * mit den Typen der tatsaechlichen Tabelle.
+     */
+    public IDataSet asDataSet() {
+      IDataSet ds = dataSet;
+      if (ds == null) {
+        try {
+          DefaultDataSet d = new DefaultDataSet();
+          for (Table t : tables) {
+            Column[] columns = new Column[t.columns.length];
+            for (int i = 0; i < columns.length; i++) {
+              columns[i] = new Column(t.columns[i], DataType.UNKNOWN);
+            }
+            DefaultTable table = new DefaultTable(t.name, columns);
+            for (String[] row : t.rows) {
+              table.addRow(row.clone());
+            }
+            d.addTable(table);
+          }
+          ds = d;
+          dataSet = ds;
+        } catch (DataSetException e) {
+          throw new DataException(e);
+        }
+      }
+      return ds;
+    }
+
+    public ITable getTable(String name) {
+      try {
+        return asDataSet().getTable(name);
+      } catch (DataSetException e) {
+        throw new DataException(e);
+      }
+    }
+
+    /**
+     * Leert die Tabellen und fuegt die Testdaten ein. Bei autoCommit wird am
+     * Ende festgeschrieben, sonst bleibt das dem Aufrufer.
+     */
+    public void restore(Connection connection) {
+      long start = System.nanoTime();
+      try {
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+          connection.setAutoCommit(false);
+        }
+        try {
+          try (Statement s = connection.createStatement()) {
+            for (int i = tables.size() - 1; i >= 0; i--) {
+              s.executeUpdate("delete from " + tables.get(i).name);
+            }
+          }
+          for (Table t : tables) {
+            insert(connection, t);
+          }
+          if (autoCommit) {
+            connection.commit();
+          }
+        } catch (SQLException | RuntimeException e) {
+          if (autoCommit) {
+            connection.rollback();
+          }
+          throw e;
+        } finally {
+          if (autoCommit) {
+            connection.setAutoCommit(true);
+          }
+        }
+      } catch (SQLException e) {
+        L.error("", e);
+        throw new DataException(e);
+      }
+      L.debug("restore: " + tableNames() + " in " + (System.nanoTime() - start) / 1000 + " us");
+    }
+
+    /**
+     * Wie restore(), verteilt die Tabellen aber auf mehrere Verbindungen zum
+     * selben Schema. Geleert und befuellt wird stufenweise nach den
+     * Fremdschluesseln, die Tabellen einer Stufe gleichzeitig; jede Stufe wird
+     * festgeschrieben, bevor die naechste beginnt. Anders als restore() also
+     * nicht in einer Transaktion, fuer Sessions mit Savepoint bleibt es bei
+     * restore().
+     */
+    public void restoreParallel(List<Connection> connections, ForeignKeyGraph graph) {
+      long start = System.nanoTime();
+      List<List<String>> levels = graph.levels(tableNames());
+      ExecutorService pool = Executors.newFixedThreadPool(connections.size());
+      List<Boolean> autoCommits = new ArrayList<>();
+      try {
+        for (Connection c : connections) {
+          autoCommits.add(c.getAutoCommit());
+          c.setAutoCommit(false);
+        }
+        for (int i = levels.size() - 1; i >= 0; i--) {
+          runLevel(pool, connections, levels.get(i), (c, t) -> {
+            try (Statement s = c.createStatement()) {
+              s.executeUpdate("delete from " + t.name);
+            }
+          });
+        }
+        for (List<String> level : levels) {
+          runLevel(pool, connections, level, this::insert);
+        }
+      } catch (SQLException e) {
+        L.error("", e);
+        throw new DataException(e);
+      } finally {
+        pool.shutdown();
+        for (int i = 0; i < autoCommits.size(); i++) {
+          try {
+            connections.get(i).setAutoCommit(autoCommits.get(i));
+          } catch (SQLException e) {
+            L.error("", e);
+          }
+        }
+      }
+      L.debug("restoreParallel: " + levels + " with " + connections.size() + " connections in "
+          + (System.nanoTime() - start) / 1000 + " us");
+    }
+
+    // je Verbindung ein Task, der seine Tabellen der Reihe nach bearbeitet und dann festschreibt
+    private void runLevel(ExecutorService pool, List<Connection> connections, List<String> level, TableWork work)
+        throws SQLException {
+      List<Future<?>> futures = new ArrayList<>();
+      int n = Math.min(connections.size(), level.size());
+      for (int i = 0; i < n; i++) {
+        Connection c = connections.get(i);
+        List<Table> mine = new ArrayList<>();
+        for (int j = i; j < level.size(); j += n) {
+          mine.add(table(level.get(j)));
+        }
+        futures.add(pool.submit(() -> {
+          try {
+            for (Table t : mine) {
+              work.run(c, t);
+            }
+            c.commit();
+          } catch (SQLException e) {
+            c.rollback();
+            throw e;
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        try {
+          f.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new DataException(e);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof SQLException) {
+            throw (SQLException) e.getCause();
+          }
+          throw new DataException(e.getCause());
+        }
+      }
+    }
+
+    private void insert(Connection connection, Table t) throws SQLException {
+      if (t.rows.isEmpty()) {
+        return;
+      }
+      int[] types = columnTypes(connection, t);
+      StringBuilder sql = new StringBuilder("insert into ").append(t.name).append(" (");
+      sql.append(String.join(", ", t.columns)).append(") values (");
+      for (int i = 0; i < t.columns.length; i++) {
+        sql.append(i == 0 ? "?" : ", ?");
+      }
+      sql.append(')');
+      try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+        for (String[] row : t.rows) {
+          for (int i = 0; i < row.length; i++) {
+            bind(ps, i + 1, types[i], row[i]);
+          }
+          ps.addBatch();
+        }
+        ps.executeBatch();
+      }
+    }
+
+    private int[] columnTypes(Connection connection, Table t) throws SQLException {
+      int[] types = columnTypes.get(t.name);
+      if (types == null) {
+        types = new int[t.columns.length];
+        String sql = "select " + String.join(", ", t.columns) + " from " + t.name + " where 1 = 0";
+        try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery(sql)) {
+          ResultSetMetaData md = rs.getMetaData();
+          for (int i = 0; i < types.length; i++) {
+            types[i] = md.getColumnType(i + 1);
+          }
+        }
+        columnTypes.put(t.name, types);
+      }
+      return types;
+    }
+
+    /**
+     * Ein begin() je Testklasse, dann reset() vor oder nach jedem Test und
+     * close() am Ende.
+     */
+    public Session begin(Connection connection) {
+      return new Session(this, connection);
+    }
+  }
+
+  static void bind(PreparedStatement ps, int index, int type, String value) throws SQLException {
+    if (value == null) {
+      ps.setNull(index, type);
+      return;
+    }
+    switch (type) {
+    case Types.NUMERIC:
+    case Types.DECIMAL:
+    case Types.INTEGER:
+    case Types.BIGINT:
+    case Types.SMALLINT:
+      ps.setBigDecimal(index, new BigDecimal(value));
+      break;
+    case Types.DATE:
+    case Types.TIMESTAMP:
+      // Oracle meldet DATE als TIMESTAMP
+      ps.setTimestamp(index, value.length() <= 10 ? Timestamp.valueOf(value + " 00:00:00") : Timestamp.valueOf(value));
+      break;
+    default:
+      ps.setString(index, value);
+    }
+  }
+
+  /**
+   * Stellt die Testdaten einmal her und setzt danach einen Savepoint. reset()
+   * rollt alle Aenderungen eines Tests zurueck, statt neu zu laden. Hat der
+   * Test selbst festgeschrieben, ist der Savepoint weg; dann wird neu geladen.
+   */
+  public static class Session implements AutoCloseable {
+    private final Fixture fixture;
+    private final Connection connection;
+    private final boolean autoCommit;
+    private Savepoint savepoint;
+
+    Session(Fixture fixture, Connection connection) {
+      this.fixture = fixture;
+      this.connection = connection;
+      try {
+        autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        fixture.restore(connection);
+        connection.commit();
+        savepoint = connection.setSavepoint();
+      } catch (SQLException e) {
+        L.error("", e);
+        throw new DataException(e);
+      }
+    }
+
+    public void reset() {
+      try {
+        connection.rollback(savepoint);
+      } catch (SQLException e) {
+        L.debug("savepoint lost, reloading: " + e.getMessage());
+        try {
+          connection.rollback();
+          fixture.restore(connection);
+          connection.commit();
+          savepoint = connection.setSavepoint();
+        } catch (SQLException e2) {
+          L.error("", e2);
+          throw new DataException(e2);
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        connection.rollback();
+        connection.setAutoCommit(autoCommit);
+      } catch (SQLException e) {
+        L.error("", e);
+        throw new DataException(e);
+      }
+    }
+  }
+
+  private interface TableWork {
+    void run(Connection connection, Table table) throws SQLException;
+  }
+
+  static class Table {
+    final String name;
+    final String[] columns;
+    final List<String[]> rows;
+
+    Table(String name, String[] columns, List<String[]> rows) {
+      this.name = name;
+      this.columns = columns;
+      this.rows = rows;
+    }
+  }
+}
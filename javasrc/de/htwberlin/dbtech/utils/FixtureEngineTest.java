@@ -0,0 +1,60 @@
+package de.htwberlin.dbtech.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.dbunit.dataset.ITable;
+import org.junit.Assert;
+
+import de.htwberlin.dbtech.utils.FixtureEngine.Fixture;
+import de.htwberlin.dbtech.utils.FixtureEngine.Table;
+
+public class FixtureEngineTest {
+
+  @org.junit.Test
+  public void testSplitLine() {
+    Assert.assertArrayEquals(new String[] { "2", "1", "2" }, FixtureEngine.splitLine("2, \t\t1,\t\t\t  2"));
+    Assert.assertArrayEquals(new String[] { "1", "A027", "60" }, FixtureEngine.splitLine("1, \"A027\", 60"));
+    Assert.assertArrayEquals(new String[] { "a, b", " c" }, FixtureEngine.splitLine("\"a, b\",\" c\""));
+    Assert.assertArrayEquals(new String[] { "x\"y" }, FixtureEngine.splitLine("\"x\"\"y\""));
+    // nur ein ungeschuetztes null ist NULL
+    Assert.assertArrayEquals(new String[] { "2", null, "null" }, FixtureEngine.splitLine("2, null, \"null\""));
+  }
+
+  @org.junit.Test
+  public void testLoadDirectory() {
+    Fixture f = FixtureEngine.load("test-data/ue03-04/pre");
+    Assert.assertEquals(Arrays.asList("samplekind", "tray", "sample", "place"), f.tableNames());
+    Assert.assertSame(f, FixtureEngine.load("test-data/../test-data/ue03-04/pre"));
+
+    Table tray = f.table("Tray");
+    Assert.assertArrayEquals(new String[] { "TrayID", "DiameterInCM", "Capacity", "ExpirationDate" }, tray.columns);
+    Assert.assertArrayEquals(new String[] { "2", "2", "1", null }, tray.rows.get(1));
+  }
+
+  @org.junit.Test
+  public void testBinaryRoundTrip() throws Exception {
+    Fixture f = FixtureEngine.load("test-data/ue02");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FixtureEngine.writeBinary(f, out);
+    Fixture g = FixtureEngine.readBinary(new ByteArrayInputStream(out.toByteArray()));
+    Assert.assertEquals(f.tableNames(), g.tableNames());
+    for (Table t : f.tables) {
+      Table u = g.table(t.name);
+      Assert.assertArrayEquals(t.columns, u.columns);
+      Assert.assertEquals(t.rows.size(), u.rows.size());
+      for (int i = 0; i < t.rows.size(); i++) {
+        Assert.assertArrayEquals(t.rows.get(i), u.rows.get(i));
+      }
+    }
+  }
+
+  @org.junit.Test
+  public void testAsDataSet() throws Exception {
+    ITable raum = FixtureEngine.load("test-data/raum/pre").getTable("RAUM");
+    Assert.assertEquals(3, raum.getRowCount());
+    Assert.assertEquals("A028", raum.getValue(1, "RaumNr"));
+    Assert.assertEquals("30", raum.getValue(1, "AnzahlSitze"));
+  }
+}
@@ -0,0 +1,179 @@
+package de.htwberlin.dbtech.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Abhaengigkeiten zwischen Tabellen aus den Fremdschluesseln der
+ * create-table-Skripte. Eine Tabelle haengt von den Tabellen ab, die sie
+ * referenziert; sie darf erst nach ihnen angelegt und befuellt und muss vor
+ * ihnen geleert werden.
+ * <p>
+ * levels() teilt die Tabellen in Stufen: innerhalb einer Stufe gibt es keine
+ * Abhaengigkeiten, die Tabellen koennen also gleichzeitig geladen werden.
+ */
+public class ForeignKeyGraph {
+
+  public static final String DEFAULT_DIRECTORY = "db";
+
+  private static final Pattern CREATE_TABLE = Pattern.compile("^create\\s+table\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern ALTER_TABLE = Pattern.compile("^alter\\s+table\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern REFERENCES = Pattern.compile("\\breferences\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+
+  // Tabelle (klein geschrieben) -> referenzierte Tabellen
+  private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+  // Tabelle (klein geschrieben) -> create-table-Anweisung
+  private final Map<String, String> createStatements = new LinkedHashMap<>();
+
+  /**
+   * Liest db/&lt;Thema&gt;/tables-create.sql und die Migrationen darunter.
+   */
+  public static ForeignKeyGraph fromDirectory(Path db) {
+    ForeignKeyGraph g = new ForeignKeyGraph();
+    try (Stream<Path> dirs = Files.list(db)) {
+      for (Path d : (Iterable<Path>) dirs.sorted()::iterator) {
+        Path create = d.resolve("tables-create.sql");
+        if (Files.isRegularFile(create)) {
+          g.add(read(create));
+        }
+        Path migrations = d.resolve("migrations");
+        if (Files.isDirectory(migrations)) {
+          for (SchemaMigrator.Migration m : SchemaMigrator.scan(migrations)) {
+            g.add(read(m.file));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+    return g;
+  }
+
+  public static ForeignKeyGraph fromDefaultDirectory() {
+    return fromDirectory(Paths.get(DEFAULT_DIRECTORY));
+  }
+
+  public static ForeignKeyGraph parse(String script) {
+    ForeignKeyGraph g = new ForeignKeyGraph();
+    g.add(script);
+    return g;
+  }
+
+  void add(String script) {
+    for (String statement : SchemaMigrator.statements(script)) {
+      Matcher m = CREATE_TABLE.matcher(statement);
+      String table;
+      if (m.find()) {
+        table = key(m.group(1));
+        createStatements.put(table, statement);
+      } else {
+        m = ALTER_TABLE.matcher(statement);
+        if (!m.find()) {
+          continue;
+        }
+        table = key(m.group(1));
+      }
+      Set<String> deps = dependencies.computeIfAbsent(table, k -> new LinkedHashSet<>());
+      Matcher r = REFERENCES.matcher(statement);
+      while (r.find()) {
+        String referenced = key(r.group(1));
+        // Selbstbezuege (z.B. Hierarchien) legen keine Reihenfolge fest
+        if (!referenced.equals(table)) {
+          deps.add(referenced);
+        }
+      }
+    }
+  }
+
+  public Set<String> tables() {
+    return dependencies.keySet();
+  }
+
+  /**
+   * Direkt referenzierte Tabellen, leer fuer unbekannte Tabellen.
+   */
+  public Set<String> dependencies(String table) {
+    Set<String> s = dependencies.get(key(table));
+    return s == null ? Set.of() : s;
+  }
+
+  /**
+   * Die create-table-Anweisung ohne abschliessendes ";", null falls die
+   * Tabelle nur per alter table bekannt ist.
+   */
+  public String createStatement(String table) {
+    return createStatements.get(key(table));
+  }
+
+  /**
+   * Teilt die angegebenen Tabellen in Stufen. Stufe 0 referenziert keine der
+   * angegebenen Tabellen, Stufe n nur Tabellen aus den Stufen davor.
+   * Abhaengigkeiten zu nicht angegebenen Tabellen werden ignoriert. Die Namen
+   * werden so zurueckgegeben, wie sie uebergeben wurden.
+   *
+   * @throws DataException
+   *           bei zyklischen Fremdschluesseln.
+   */
+  public List<List<String>> levels(Collection<String> tables) {
+    Map<String, String> remaining = new LinkedHashMap<>();
+    for (String t : tables) {
+      remaining.put(key(t), t);
+    }
+    List<List<String>> levels = new ArrayList<>();
+    while (!remaining.isEmpty()) {
+      List<String> level = new ArrayList<>();
+      for (Map.Entry<String, String> e : remaining.entrySet()) {
+        boolean ready = true;
+        for (String d : dependencies(e.getKey())) {
+          if (remaining.containsKey(d)) {
+            ready = false;
+            break;
+          }
+        }
+        if (ready) {
+          level.add(e.getValue());
+        }
+      }
+      if (level.isEmpty()) {
+        throw new DataException("cyclic foreign keys between " + remaining.values());
+      }
+      for (String t : level) {
+        remaining.remove(key(t));
+      }
+      levels.add(level);
+    }
+    return levels;
+  }
+
+  public List<List<String>> levels() {
+    return levels(tables());
+  }
+
+  private static String key(String table) {
+    return table.toLowerCase(Locale.ROOT);
+  }
+
+  private static String read(Path f) {
+    try {
+      return new String(Files.readAllBytes(f), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+  }
+}
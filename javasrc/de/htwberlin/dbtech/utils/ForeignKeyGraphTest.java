@@ -0,0 +1,49 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+public class ForeignKeyGraphTest {
+
+  @org.junit.Test
+  public void testDefaultDirectory() {
+    ForeignKeyGraph g = ForeignKeyGraph.fromDefaultDirectory();
+    Assert.assertTrue(g.tables().containsAll(Arrays.asList("angebot", "gebot", "samplekind", "tray", "sample",
+        "place", "trayfill", "raum")));
+    Assert.assertEquals(Arrays.asList("samplekind"), List.copyOf(g.dependencies("Sample")));
+    Assert.assertEquals(Arrays.asList("tray", "sample"), List.copyOf(g.dependencies("PLACE")));
+    Assert.assertEquals(Arrays.asList("tray"), List.copyOf(g.dependencies("TrayFill")));
+    Assert.assertTrue(g.createStatement("Raum").startsWith("create table Raum"));
+  }
+
+  @org.junit.Test
+  public void testLevelsOfFixture() {
+    ForeignKeyGraph g = ForeignKeyGraph.fromDefaultDirectory();
+    List<List<String>> levels = g.levels(Arrays.asList("samplekind", "tray", "sample", "place"));
+    Assert.assertEquals(Arrays.asList(Arrays.asList("samplekind", "tray"), Arrays.asList("sample"),
+        Arrays.asList("place")), levels);
+  }
+
+  @org.junit.Test
+  public void testAlterTableAndSelfReference() {
+    String script = String.join("\n",
+        "create table A (ID integer primary key, Parent integer references A);",
+        "create table B (ID integer primary key);",
+        "alter table B add constraint fk_b_a foreign key (ID) references A;");
+    ForeignKeyGraph g = ForeignKeyGraph.parse(script);
+    Assert.assertEquals(Arrays.asList(Arrays.asList("A"), Arrays.asList("B")),
+        g.levels(Arrays.asList("B", "A")));
+  }
+
+  @org.junit.Test(expected = DataException.class)
+  public void testCycle() {
+    String script = String.join("\n",
+        "create table A (ID integer primary key, B integer references B);",
+        "create table B (ID integer primary key, A integer references A);");
+    ForeignKeyGraph.parse(script).levels();
+  }
+}
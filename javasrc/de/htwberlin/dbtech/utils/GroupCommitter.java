@@ -0,0 +1,338 @@
+package de.htwberlin.dbtech.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Fasst Dienstaufrufe mehrerer Threads zu einem Commit zusammen (group
+ * commit). Im autoCommit zahlt jeder transferSample und createSample ein
+ * eigenes Schreiben des Redo-Logs, hier teilt sich eine Gruppe eines.
+ * <p>
+ * Die Aufrufe laufen nacheinander im Thread des GroupCommitter auf seiner
+ * Verbindung, die Dienste werden also mit connection() verbunden:
+ *
+ * <pre>
+ * GroupCommitter gc = new GroupCommitter(connection, 64, 2000);
+ * cs.setConnection(gc.connection());
+ * gc.addOutbox(cs.events());
+ * gc.execute(() -&gt; cs.transferSample(7, 4));
+ * </pre>
+ *
+ * Eine Gruppe beginnt mit dem ersten wartenden Aufruf und nimmt weitere auf,
+ * bis maxGroupSize erreicht ist oder maxDelayMicros vergangen sind. Vor jedem
+ * Aufruf wird ein Savepoint gesetzt: scheitert er, wird nur auf diesen
+ * zurueckgerollt und nur sein Aufrufer bekommt die Ausnahme. Alle anderen
+ * werden erst nach dem Commit der Gruppe bestaetigt. Scheitert der Commit
+ * selbst, scheitern alle Aufrufe der Gruppe mit DataException.
+ * <p>
+ * Ereignisse der Dienste (EventOutbox) gehen erst nach dem Commit hinaus,
+ * die eines gescheiterten Aufrufs werden verworfen.
+ */
+public class GroupCommitter implements AutoCloseable {
+  private static final Logger L = LoggerFactory.getLogger(GroupCommitter.class);
+
+  private static class Task<T> {
+    final Callable<T> work;
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    T result;
+    Throwable failure;
+
+    Task(Callable<T> work) {
+      this.work = work;
+    }
+
+    void complete() {
+      if (failure == null) {
+        future.complete(result);
+      } else {
+        future.completeExceptionally(failure);
+      }
+    }
+  }
+
+  private static final Task<Void> END = new Task<>(null);
+
+  private final Connection connection;
+  private final int maxGroupSize;
+  private final long maxDelayMicros;
+  private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+  private final List<EventOutbox<?>> outboxes = new CopyOnWriteArrayList<>();
+  private final Thread thread;
+  private final LongAdder groups = new LongAdder();
+  private final LongAdder tasks = new LongAdder();
+  // unter dem Monitor des GroupCommitter, damit nach dem Ende nichts mehr eingereiht wird
+  private boolean running = true;
+
+  /**
+   * Schaltet autoCommit der Verbindung ab und startet den Thread.
+   */
+  public GroupCommitter(Connection connection, int maxGroupSize, long maxDelayMicros) {
+    if (maxGroupSize < 1) {
+      throw new IllegalArgumentException("maxGroupSize " + maxGroupSize);
+    }
+    this.connection = connection;
+    this.maxGroupSize = maxGroupSize;
+    this.maxDelayMicros = maxDelayMicros;
+    try {
+      connection.setAutoCommit(false);
+    } catch (SQLException e) {
+      throw new DataException(e);
+    }
+    thread = new Thread(this::run, "group-committer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public Connection connection() {
+    return connection;
+  }
+
+  /**
+   * Ereignisse dieser Outbox gehen nach dem Commit der Gruppe hinaus. Vor dem
+   * ersten Aufruf hinzufuegen.
+   */
+  public void addOutbox(EventOutbox<?> outbox) {
+    outboxes.add(outbox);
+  }
+
+  /**
+   * Reiht den Aufruf ein. Die Zukunft ist erst nach dem Commit der Gruppe
+   * erfuellt, bzw. mit der Ausnahme des Aufrufs gescheitert.
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> work) {
+    Task<T> t = new Task<>(work);
+    synchronized (this) {
+      if (!running) {
+        throw new IllegalStateException("group committer closed");
+      }
+      queue.add(t);
+    }
+    return t.future;
+  }
+
+  /**
+   * Wartet auf den Commit. Eine RuntimeException oder ein Error des Aufrufs
+   * wird unveraendert weitergegeben, damit z.B. CoolingSystemException beim
+   * Aufrufer ankommt wie ohne GroupCommitter.
+   * <p>
+   * Ein Interrupt beim Warten bricht den Aufruf ab, wenn er noch in der
+   * Warteschlange steht. Laeuft er schon, wird er trotzdem festgeschrieben;
+   * der Aufrufer erfaehrt davon nichts mehr.
+   */
+  public <T> T execute(Callable<T> work) {
+    CompletableFuture<T> future = submit(work);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(false);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new DataException(cause);
+    }
+  }
+
+  public void execute(Runnable work) {
+    execute(() -> {
+      work.run();
+      return null;
+    });
+  }
+
+  public long groups() {
+    return groups.sum();
+  }
+
+  public long tasks() {
+    return tasks.sum();
+  }
+
+  private void run() {
+    List<Task<?>> group = new ArrayList<>(maxGroupSize);
+    boolean end = false;
+    try {
+      while (!end) {
+        Task<?> first = queue.take();
+        if (first == END) {
+          break;
+        }
+        group.add(first);
+        // was schon wartet, kommt sofort dazu, danach bis zum Ablauf des Fensters
+        long deadline = System.nanoTime() + maxDelayMicros * 1000;
+        while (group.size() < maxGroupSize) {
+          Task<?> t = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (t == null) {
+            break;
+          }
+          if (t == END) {
+            end = true;
+            break;
+          }
+          group.add(t);
+        }
+        commitGroup(group);
+        group.clear();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException | Error e) {
+      // z.B. aus einer Outbox; ohne Thread wuerde jeder Aufrufer ewig warten
+      L.error("group committer stopped", e);
+    } finally {
+      synchronized (this) {
+        running = false;
+      }
+      if (!group.isEmpty()) {
+        // nicht festgeschriebene Arbeit der Gruppe nicht auf der Verbindung lassen
+        rollbackQuietly();
+        for (EventOutbox<?> o : outboxes) {
+          try {
+            o.afterRollback();
+          } catch (RuntimeException e) {
+            L.error("discarding events failed", e);
+          }
+        }
+      }
+      // Aufrufe, die sich mit close() ueberschnitten haben; bereits erfuellte
+      // Zukuenfte bleiben unveraendert
+      DataException closed = new DataException("group committer closed");
+      for (Task<?> t : group) {
+        t.future.completeExceptionally(closed);
+      }
+      Task<?> t;
+      while ((t = queue.poll()) != null) {
+        t.future.completeExceptionally(closed);
+      }
+    }
+  }
+
+  private void commitGroup(List<Task<?>> group) {
+    DataException groupFailure = null;
+    for (Task<?> t : group) {
+      if (groupFailure != null) {
+        t.failure = groupFailure;
+      } else if (!runTask(t)) {
+        groupFailure = new DataException("rollback to savepoint failed, group rolled back");
+      }
+    }
+    if (groupFailure == null) {
+      try {
+        connection.commit();
+      } catch (SQLException e) {
+        L.error("group commit failed, " + group.size() + " calls", e);
+        groupFailure = new DataException(e);
+      }
+    }
+    if (groupFailure != null) {
+      rollbackQuietly();
+      for (Task<?> t : group) {
+        if (t.failure == null) {
+          t.failure = groupFailure;
+        }
+      }
+      for (EventOutbox<?> o : outboxes) {
+        o.afterRollback();
+      }
+    } else {
+      groups.increment();
+      tasks.add(group.size());
+      for (EventOutbox<?> o : outboxes) {
+        try {
+          o.afterCommit();
+        } catch (RuntimeException e) {
+          // die Gruppe ist festgeschrieben, die Aufrufer bekommen ihr Ergebnis
+          L.error("publishing events after commit failed", e);
+        }
+      }
+    }
+    for (Task<?> t : group) {
+      t.complete();
+    }
+  }
+
+  // false, wenn nicht einmal der Savepoint zurueckgerollt werden konnte
+  private <T> boolean runTask(Task<T> t) {
+    if (t.future.isCancelled()) {
+      // Aufrufer wurde beim Warten unterbrochen
+      return true;
+    }
+    int[] marks = new int[outboxes.size()];
+    for (int i = 0; i < marks.length; i++) {
+      marks[i] = outboxes.get(i).mark();
+    }
+    Savepoint savepoint;
+    try {
+      savepoint = connection.setSavepoint();
+    } catch (SQLException e) {
+      t.failure = new DataException(e);
+      return true;
+    }
+    try {
+      t.result = t.work.call();
+    } catch (Throwable e) {
+      // auch Errors wie AssertionError betreffen nur diesen Aufruf
+      t.failure = e;
+      try {
+        connection.rollback(savepoint);
+      } catch (SQLException re) {
+        L.error("rollback to savepoint failed", re);
+        return false;
+      }
+      for (int i = 0; i < marks.length; i++) {
+        outboxes.get(i).afterRollbackTo(marks[i]);
+      }
+    }
+    return true;
+  }
+
+  private void rollbackQuietly() {
+    try {
+      connection.rollback();
+    } catch (SQLException e) {
+      L.error("rollback failed", e);
+    }
+  }
+
+  /**
+   * Fuehrt die eingereihten Aufrufe noch aus und beendet den Thread. Die
+   * Verbindung bleibt offen.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (running) {
+        running = false;
+        queue.add(END);
+      }
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    L.info(tasks() + " calls in " + groups() + " commits");
+  }
+}
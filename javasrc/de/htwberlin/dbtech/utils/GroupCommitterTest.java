@@ -0,0 +1,256 @@
+package de.htwberlin.dbtech.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+
+import de.htwberlin.dbtech.exceptions.CoolingSystemException;
+import de.htwberlin.dbtech.exceptions.DataException;
+
+public class GroupCommitterTest {
+
+  /**
+   * Verbindung ohne Datenbank: ein Commit dauert commitMillis wie das
+   * Schreiben des Redo-Logs und zaehlt commits hoch.
+   */
+  private static FakeJdbc db(AtomicInteger commits, long commitMillis, boolean failCommit) {
+    return new FakeJdbc().autoCommit(false).onCommit(() -> {
+      Thread.sleep(commitMillis);
+      if (failCommit) {
+        throw new SQLException("redo log full");
+      }
+      commits.incrementAndGet();
+    });
+  }
+
+  @org.junit.Test
+  public void testGroupsConcurrentCalls() throws Exception {
+    AtomicInteger commits = new AtomicInteger();
+    int threads = 16;
+    int calls = 50;
+    try (GroupCommitter gc = new GroupCommitter(db(commits, 2, false).connection(), 64, 500)) {
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(pool.submit(() -> {
+          for (int k = 0; k < calls; k++) {
+            int[] seen = new int[1];
+            gc.execute(() -> {
+              seen[0] = commits.get();
+            });
+            // erst nach dem Commit der eigenen Gruppe bestaetigt
+            Assert.assertTrue(commits.get() > seen[0]);
+          }
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+      pool.shutdown();
+      Assert.assertEquals(threads * calls, gc.tasks());
+      // jeder Thread wartet auf seinen Commit, also etwa threads Aufrufe je Gruppe
+      Assert.assertTrue("groups " + gc.groups(), gc.groups() <= threads * calls / 4);
+    }
+  }
+
+  @org.junit.Test
+  public void testFailureIsolated() throws Exception {
+    FakeJdbc db = db(new AtomicInteger(), 0, false);
+    EventBus<String> bus = new EventBus<>(16);
+    List<String> published = Collections.synchronizedList(new ArrayList<>());
+    bus.addConsumer("test", (e, seq, endOfBatch) -> published.add(e));
+    EventOutbox<String> outbox = new EventOutbox<>();
+    outbox.setEventBus(bus);
+    // grosses Fenster, damit alle drei Aufrufe in eine Gruppe kommen
+    try (GroupCommitter gc = new GroupCommitter(db.connection(), 3, 1000000)) {
+      gc.addOutbox(outbox);
+      Connection c = gc.connection();
+      CompletableFuture<Integer> a = gc.submit(() -> {
+        outbox.emit(c, "a");
+        return 1;
+      });
+      CompletableFuture<Integer> b = gc.submit(() -> {
+        outbox.emit(c, "b");
+        throw new CoolingSystemException("No suitable tray found.");
+      });
+      CompletableFuture<Integer> d = gc.submit(() -> {
+        outbox.emit(c, "d");
+        return 3;
+      });
+      Assert.assertEquals(Integer.valueOf(1), a.get());
+      Assert.assertEquals(Integer.valueOf(3), d.get());
+      try {
+        b.get();
+        Assert.fail();
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof CoolingSystemException);
+      }
+      try {
+        gc.execute(() -> {
+          throw new CoolingSystemException("Sample does not exist.");
+        });
+        Assert.fail();
+      } catch (CoolingSystemException e) {
+        // wie ohne GroupCommitter
+      }
+    }
+    bus.close();
+    Assert.assertEquals("[autoCommit false, rollback to savepoint, commit, rollback to savepoint, commit]",
+        db.log().toString());
+    Assert.assertEquals("[a, d]", published.toString());
+  }
+
+  @org.junit.Test
+  public void testCommitFailureFailsGroup() throws Exception {
+    FakeJdbc db = db(new AtomicInteger(), 0, true);
+    try (GroupCommitter gc = new GroupCommitter(db.connection(), 8, 0)) {
+      try {
+        gc.execute(() -> {
+        });
+        Assert.fail();
+      } catch (DataException e) {
+        Assert.assertEquals("redo log full", e.getCause().getMessage());
+      }
+      Assert.assertEquals(0, gc.groups());
+    }
+    Assert.assertEquals("[autoCommit false, rollback]", db.log().toString());
+  }
+
+  @org.junit.Test
+  public void testAbnormalEndRollsBack() throws Exception {
+    FakeJdbc db = new FakeJdbc().autoCommit(false).onCommit(() -> {
+      throw new IllegalStateException("driver bug");
+    });
+    EventBus<String> bus = new EventBus<>(16);
+    List<String> published = Collections.synchronizedList(new ArrayList<>());
+    bus.addConsumer("test", (e, seq, endOfBatch) -> published.add(e));
+    EventOutbox<String> outbox = new EventOutbox<>();
+    outbox.setEventBus(bus);
+    GroupCommitter gc = new GroupCommitter(db.connection(), 8, 0);
+    gc.addOutbox(outbox);
+    CompletableFuture<Integer> f = gc.submit(() -> {
+      outbox.emit(gc.connection(), "a");
+      return 1;
+    });
+    try {
+      f.get(5, TimeUnit.SECONDS);
+      Assert.fail("DataException erwartet");
+    } catch (ExecutionException e) {
+      Assert.assertEquals("group committer closed", e.getCause().getMessage());
+    }
+    gc.close();
+    // spaetere Commits auf der Verbindung duerfen die Arbeit nicht mitnehmen
+    Assert.assertEquals("[autoCommit false, rollback]", db.log().toString());
+    outbox.afterCommit();
+    bus.close();
+    Assert.assertEquals("[]", published.toString());
+  }
+
+  @org.junit.Test
+  public void testInterruptedCallNotRun() throws Exception {
+    CountDownLatch busy = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger runs = new AtomicInteger();
+    try (GroupCommitter gc = new GroupCommitter(db(new AtomicInteger(), 0, false).connection(), 1, 0)) {
+      // haelt den Thread auf, damit der naechste Aufruf wartet
+      CompletableFuture<Integer> first = gc.submit(() -> {
+        busy.countDown();
+        release.await();
+        return 1;
+      });
+      Assert.assertTrue(busy.await(5, TimeUnit.SECONDS));
+      AtomicReference<Throwable> thrown = new AtomicReference<>();
+      Thread caller = new Thread(() -> {
+        try {
+          gc.execute(runs::incrementAndGet);
+        } catch (Throwable e) {
+          thrown.set(e);
+        }
+      });
+      caller.start();
+      // wartet in execute() auf den eingereihten Aufruf
+      while (caller.getState() != Thread.State.WAITING) {
+        Thread.yield();
+      }
+      caller.interrupt();
+      caller.join();
+      Assert.assertTrue(thrown.get() instanceof IllegalStateException);
+      release.countDown();
+      Assert.assertEquals(1, first.get(5, TimeUnit.SECONDS).intValue());
+    }
+    Assert.assertEquals(0, runs.get());
+  }
+
+  @org.junit.Test(expected = IllegalStateException.class)
+  public void testClosed() {
+    GroupCommitter gc = new GroupCommitter(db(new AtomicInteger(), 0, false).connection(), 8, 0);
+    gc.close();
+    gc.submit(() -> 1);
+  }
+
+  @org.junit.Test
+  public void testErrorIsolated() throws Exception {
+    FakeJdbc db = db(new AtomicInteger(), 0, false);
+    try (GroupCommitter gc = new GroupCommitter(db.connection(), 8, 1000)) {
+      CompletableFuture<Integer> ok = gc.submit(() -> 1);
+      CompletableFuture<Integer> error = gc.submit(() -> {
+        throw new AssertionError("kaputt");
+      });
+      Assert.assertEquals(1, ok.get(5, TimeUnit.SECONDS).intValue());
+      try {
+        error.get(5, TimeUnit.SECONDS);
+        Assert.fail("AssertionError erwartet");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof AssertionError);
+      }
+      Assert.assertTrue(db.log().contains("rollback to savepoint"));
+      // der Thread laeuft weiter
+      Assert.assertEquals(2, gc.execute(() -> 2).intValue());
+    }
+  }
+
+  @org.junit.Test
+  public void testSubmitWhileClosing() throws Exception {
+    for (int round = 0; round < 50; round++) {
+      GroupCommitter gc = new GroupCommitter(db(new AtomicInteger(), 0, false).connection(), 4, 0);
+      ExecutorService pool = Executors.newFixedThreadPool(4);
+      List<Future<CompletableFuture<Integer>>> submitted = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        int v = i;
+        submitted.add(pool.submit(() -> {
+          try {
+            return gc.submit(() -> v);
+          } catch (IllegalStateException e) {
+            return null;
+          }
+        }));
+      }
+      gc.close();
+      pool.shutdown();
+      for (Future<CompletableFuture<Integer>> f : submitted) {
+        CompletableFuture<Integer> result = f.get();
+        if (result != null) {
+          // erfuellt oder mit "closed" gescheitert, aber nie haengend
+          try {
+            result.get(5, TimeUnit.SECONDS);
+          } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DataException);
+          }
+        }
+      }
+    }
+  }
+}
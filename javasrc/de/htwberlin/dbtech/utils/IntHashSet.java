@@ -0,0 +1,123 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.Arrays;
+
+/**
+ * Menge von int-Werten ohne Boxing. Offene Adressierung mit linearer
+ * Sondierung wie bei IntIntMap.
+ */
+public class IntHashSet {
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private int[] keys;
+  private boolean[] used;
+  private int size;
+  private int threshold;
+
+  public IntHashSet() {
+    this(16);
+  }
+
+  public IntHashSet(int expectedSize) {
+    allocate(Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR) + 1) * 2 - 1));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int key) {
+    return used[indexOf(key)];
+  }
+
+  /**
+   * @return true, falls der Wert neu hinzugekommen ist.
+   */
+  public boolean add(int key) {
+    int i = indexOf(key);
+    if (used[i]) {
+      return false;
+    }
+    used[i] = true;
+    keys[i] = key;
+    if (++size > threshold) {
+      rehash(keys.length * 2);
+    }
+    return true;
+  }
+
+  public boolean remove(int key) {
+    int i = indexOf(key);
+    if (!used[i]) {
+      return false;
+    }
+    int mask = keys.length - 1;
+    int gap = i;
+    int j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      if (!used[j]) {
+        break;
+      }
+      int home = IntIntMap.hash(keys[j]) & mask;
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        keys[gap] = keys[j];
+        gap = j;
+      }
+    }
+    used[gap] = false;
+    size--;
+    return true;
+  }
+
+  public void clear() {
+    Arrays.fill(used, false);
+    size = 0;
+  }
+
+  /**
+   * Liefert alle Werte in unbestimmter Reihenfolge.
+   */
+  public int[] toArray() {
+    int[] result = new int[size];
+    int n = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (used[i]) {
+        result[n++] = keys[i];
+      }
+    }
+    return result;
+  }
+
+  private int indexOf(int key) {
+    int mask = keys.length - 1;
+    int i = IntIntMap.hash(key) & mask;
+    while (used[i] && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    boolean[] oldUsed = used;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int j = indexOf(oldKeys[i]);
+        used[j] = true;
+        keys[j] = oldKeys[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    used = new boolean[capacity];
+    threshold = (int) (capacity * LOAD_FACTOR);
+  }
+}
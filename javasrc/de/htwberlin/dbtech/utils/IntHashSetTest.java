@@ -0,0 +1,74 @@
+package de.htwberlin.dbtech.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class IntHashSetTest {
+
+  @org.junit.Test
+  public void testAddContains() {
+    IntHashSet s = new IntHashSet();
+    assertTrue(s.isEmpty());
+    assertTrue(s.add(5));
+    assertTrue(s.add(-3));
+    assertTrue(s.add(0));
+    assertFalse(s.add(5));
+    assertEquals(3, s.size());
+    assertTrue(s.contains(0));
+    assertFalse(s.contains(7));
+    int[] a = s.toArray();
+    Arrays.sort(a);
+    assertArrayEquals(new int[] { -3, 0, 5 }, a);
+  }
+
+  @org.junit.Test
+  public void testLeer() {
+    IntHashSet s = new IntHashSet(0);
+    assertEquals(0, s.size());
+    assertFalse(s.contains(0));
+    assertFalse(s.remove(0));
+    assertEquals(0, s.toArray().length);
+  }
+
+  @org.junit.Test
+  public void testWachsen() {
+    IntHashSet s = new IntHashSet(1);
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(s.add(i * 64));
+    }
+    assertEquals(10000, s.size());
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(s.contains(i * 64));
+      assertFalse(s.contains(i * 64 + 1));
+    }
+    s.clear();
+    assertTrue(s.isEmpty());
+    assertFalse(s.contains(0));
+  }
+
+  @org.junit.Test
+  public void testVergleichMitHashSet() {
+    IntHashSet s = new IntHashSet(2);
+    Set<Integer> soll = new HashSet<>();
+    Random r = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      int k = r.nextInt(2000);
+      if (r.nextInt(3) == 0) {
+        assertEquals(soll.remove(k), s.remove(k));
+      } else {
+        assertEquals(soll.add(k), s.add(k));
+      }
+    }
+    assertEquals(soll.size(), s.size());
+    for (int k = 0; k < 2000; k++) {
+      assertEquals(soll.contains(k), s.contains(k));
+    }
+  }
+}
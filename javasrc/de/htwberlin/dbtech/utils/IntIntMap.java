@@ -0,0 +1,156 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash-Map von int nach int ohne Boxing. Offene Adressierung mit linearer
+ * Sondierung, Schluessel und Werte liegen in zwei parallelen Arrays.
+ */
+public class IntIntMap {
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private int[] keys;
+  private int[] values;
+  private boolean[] used;
+  private int size;
+  private int threshold;
+
+  public IntIntMap() {
+    this(16);
+  }
+
+  public IntIntMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR) + 1) * 2 - 1);
+    allocate(capacity);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(int key) {
+    return used[indexOf(key)];
+  }
+
+  /**
+   * Liefert den Wert zum Schluessel oder den Standardwert, falls der Schluessel
+   * nicht enthalten ist.
+   */
+  public int get(int key, int defaultValue) {
+    int i = indexOf(key);
+    return used[i] ? values[i] : defaultValue;
+  }
+
+  public void put(int key, int value) {
+    int i = indexOf(key);
+    if (used[i]) {
+      values[i] = value;
+      return;
+    }
+    used[i] = true;
+    keys[i] = key;
+    values[i] = value;
+    if (++size > threshold) {
+      rehash(keys.length * 2);
+    }
+  }
+
+  public boolean remove(int key) {
+    int i = indexOf(key);
+    if (!used[i]) {
+      return false;
+    }
+    // Rueckwaertsverschiebung statt Grabsteinen, damit die Sondierketten kurz bleiben
+    int mask = keys.length - 1;
+    int gap = i;
+    int j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      if (!used[j]) {
+        break;
+      }
+      int home = hash(keys[j]) & mask;
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        keys[gap] = keys[j];
+        values[gap] = values[j];
+        gap = j;
+      }
+    }
+    used[gap] = false;
+    size--;
+    return true;
+  }
+
+  public void clear() {
+    Arrays.fill(used, false);
+    size = 0;
+  }
+
+  /**
+   * Liefert alle Schluessel in unbestimmter Reihenfolge.
+   */
+  public int[] keys() {
+    int[] result = new int[size];
+    int n = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (used[i]) {
+        result[n++] = keys[i];
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < keys.length; i++) {
+      if (used[i]) {
+        if (sb.length() > 1) {
+          sb.append(", ");
+        }
+        sb.append(keys[i]).append('=').append(values[i]);
+      }
+    }
+    return sb.append('}').toString();
+  }
+
+  private int indexOf(int key) {
+    int mask = keys.length - 1;
+    int i = hash(key) & mask;
+    while (used[i] && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    boolean[] oldUsed = used;
+    allocate(capacity);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int j = indexOf(oldKeys[i]);
+        used[j] = true;
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new int[capacity];
+    used = new boolean[capacity];
+    threshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  static int hash(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
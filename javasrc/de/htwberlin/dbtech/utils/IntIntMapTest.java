@@ -0,0 +1,47 @@
+package de.htwberlin.dbtech.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class IntIntMapTest {
+
+  @org.junit.Test
+  public void testPutGet() {
+    IntIntMap m = new IntIntMap();
+    m.put(1, 30);
+    m.put(-7, 12);
+    m.put(1, 40);
+    assertEquals(2, m.size());
+    assertEquals(40, m.get(1, 0));
+    assertEquals(12, m.get(-7, 0));
+    assertEquals(-1, m.get(99, -1));
+    assertFalse(m.containsKey(99));
+  }
+
+  @org.junit.Test
+  public void testVergleichMitHashMap() {
+    IntIntMap m = new IntIntMap(2);
+    Map<Integer, Integer> soll = new HashMap<>();
+    Random r = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      int k = r.nextInt(2000);
+      if (r.nextInt(3) == 0) {
+        assertEquals(soll.remove(k) != null, m.remove(k));
+      } else {
+        soll.put(k, i);
+        m.put(k, i);
+      }
+    }
+    assertEquals(soll.size(), m.size());
+    for (Map.Entry<Integer, Integer> e : soll.entrySet()) {
+      assertTrue(m.containsKey(e.getKey()));
+      assertEquals(e.getValue().intValue(), m.get(e.getKey(), -1));
+    }
+    assertEquals(soll.size(), m.keys().length);
+  }
+}
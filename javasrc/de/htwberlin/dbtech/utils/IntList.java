@@ -0,0 +1,95 @@
+package de.htwberlin.dbtech.utils;
+
+import java.util.Arrays;
+
+/**
+ * Wachsende Liste von int-Werten ohne Boxing.
+ */
+public class IntList {
+  private int[] values;
+  private int size;
+
+  public IntList() {
+    this(16);
+  }
+
+  public IntList(int initialCapacity) {
+    values = new int[Math.max(1, initialCapacity)];
+  }
+
+  public static IntList of(int... values) {
+    IntList l = new IntList(values.length);
+    l.addAll(values);
+    return l;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void add(int value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size++] = value;
+  }
+
+  public void addAll(int[] a) {
+    if (size + a.length > values.length) {
+      values = Arrays.copyOf(values, Math.max(size + a.length, size * 2));
+    }
+    System.arraycopy(a, 0, values, size, a.length);
+    size += a.length;
+  }
+
+  public int get(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+    }
+    return values[index];
+  }
+
+  public void set(int index, int value) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+    }
+    values[index] = value;
+  }
+
+  public boolean contains(int value) {
+    for (int i = 0; i < size; i++) {
+      if (values[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void sort() {
+    Arrays.sort(values, 0, size);
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public int[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(values[i]);
+    }
+    return sb.append(']').toString();
+  }
+}
@@ -0,0 +1,56 @@
+package de.htwberlin.dbtech.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntListTest {
+
+  @org.junit.Test
+  public void testAddGet() {
+    IntList l = IntList.of(3, 1, 3);
+    l.add(-2);
+    assertEquals(4, l.size());
+    assertEquals(3, l.get(0));
+    assertEquals(-2, l.get(3));
+    assertTrue(l.contains(1));
+    assertFalse(l.contains(2));
+    l.set(1, 7);
+    l.sort();
+    assertArrayEquals(new int[] { -2, 3, 3, 7 }, l.toArray());
+    assertEquals("[-2, 3, 3, 7]", l.toString());
+  }
+
+  @org.junit.Test
+  public void testLeer() {
+    IntList l = new IntList(0);
+    assertTrue(l.isEmpty());
+    assertEquals(0, l.toArray().length);
+    assertEquals("[]", l.toString());
+    l.add(1);
+    assertEquals(1, l.size());
+    l.clear();
+    assertTrue(l.isEmpty());
+  }
+
+  @org.junit.Test
+  public void testWachsen() {
+    IntList l = new IntList(1);
+    for (int i = 0; i < 10000; i++) {
+      l.add(i);
+    }
+    l.addAll(new int[] { -1, -2 });
+    l.addAll(new int[0]);
+    assertEquals(10002, l.size());
+    assertEquals(9999, l.get(9999));
+    assertEquals(-2, l.get(10001));
+  }
+
+  @org.junit.Test(expected = IndexOutOfBoundsException.class)
+  public void testAusserhalb() {
+    IntList l = new IntList(16);
+    l.add(1);
+    l.get(1);
+  }
+}
@@ -3,6 +3,7 @@ package de.htwberlin.dbtech.utils;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 import javax.sql.DataSource;
@@ -102,4 +103,55 @@ public class JdbcUtils {
     }
   }
 
+  /**
+   * Liest eine int-Spalte aller restlichen Zeilen in eine IntList. Zeilen mit
+   * NULL werden uebersprungen, statt als 0 gelesen zu werden.
+   */
+  public static IntList readIntList(final ResultSet resultSet, final int column) throws SQLException {
+    IntList l = new IntList();
+    while (resultSet.next()) {
+      int v = resultSet.getInt(column);
+      if (!resultSet.wasNull()) {
+        l.add(v);
+      }
+    }
+    return l;
+  }
+
+  /**
+   * Liest eine int-Spalte aller restlichen Zeilen in ein IntHashSet. Zeilen
+   * mit NULL werden uebersprungen.
+   */
+  public static IntHashSet readIntSet(final ResultSet resultSet, final int column) throws SQLException {
+    IntHashSet s = new IntHashSet();
+    while (resultSet.next()) {
+      int v = resultSet.getInt(column);
+      if (!resultSet.wasNull()) {
+        s.add(v);
+      }
+    }
+    return s;
+  }
+
+  /**
+   * Liest zwei int-Spalten aller restlichen Zeilen in eine IntIntMap. Zeilen
+   * mit NULL in einer der Spalten werden uebersprungen, bei doppelten
+   * Schluesseln gilt die letzte Zeile.
+   */
+  public static IntIntMap readIntIntMap(final ResultSet resultSet, final int keyColumn, final int valueColumn)
+      throws SQLException {
+    IntIntMap m = new IntIntMap();
+    while (resultSet.next()) {
+      int k = resultSet.getInt(keyColumn);
+      if (resultSet.wasNull()) {
+        continue;
+      }
+      int v = resultSet.getInt(valueColumn);
+      if (!resultSet.wasNull()) {
+        m.put(k, v);
+      }
+    }
+    return m;
+  }
+
 }
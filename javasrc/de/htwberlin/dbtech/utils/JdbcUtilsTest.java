@@ -0,0 +1,45 @@
+package de.htwberlin.dbtech.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+
+public class JdbcUtilsTest {
+
+  private static ResultSet rows(Integer[]... rows) {
+    return FakeJdbc.resultSet(Arrays.asList(rows));
+  }
+
+  @org.junit.Test
+  public void testReadIntList() throws Exception {
+    IntList l = JdbcUtils.readIntList(rows(new Integer[] { 4 }, new Integer[] { null }, new Integer[] { 4 },
+        new Integer[] { 0 }), 1);
+    assertArrayEquals(new int[] { 4, 4, 0 }, l.toArray());
+    assertTrue(JdbcUtils.readIntList(rows(), 1).isEmpty());
+  }
+
+  @org.junit.Test
+  public void testReadIntSet() throws Exception {
+    IntHashSet s = JdbcUtils.readIntSet(rows(new Integer[] { 4 }, new Integer[] { null }, new Integer[] { 4 },
+        new Integer[] { 2 }), 1);
+    assertEquals(2, s.size());
+    assertTrue(s.contains(4));
+    assertFalse(s.contains(0));
+    assertTrue(JdbcUtils.readIntSet(rows(), 1).isEmpty());
+  }
+
+  @org.junit.Test
+  public void testReadIntIntMap() throws Exception {
+    IntIntMap m = JdbcUtils.readIntIntMap(rows(new Integer[] { 1, 10 }, new Integer[] { null, 20 },
+        new Integer[] { 2, null }, new Integer[] { 1, 11 }), 1, 2);
+    assertEquals(1, m.size());
+    assertEquals(11, m.get(1, -1));
+    assertFalse(m.containsKey(0));
+    assertFalse(m.containsKey(2));
+    assertEquals(0, JdbcUtils.readIntIntMap(rows(), 1, 2).size());
+  }
+}
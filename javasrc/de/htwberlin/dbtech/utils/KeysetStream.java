@@ -0,0 +1,78 @@
+package de.htwberlin.dbtech.utils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Stream ueber eine Abfrage, die erst beim Verbrauch seitenweise gelesen wird.
+ * Jede Seite ist eine eigene Abfrage, die nach dem Schluessel des letzten
+ * Elements der vorigen Seite aufsetzt (Keyset-Paginierung, kein OFFSET). Es
+ * bleibt also kein Cursor offen, und im Speicher liegt hoechstens eine Seite.
+ */
+public class KeysetStream<T> extends Spliterators.AbstractSpliterator<T> {
+
+  /**
+   * Liest eine Seite.
+   */
+  public interface PageQuery<T> {
+    /**
+     * @param last
+     *          letztes Element der vorigen Seite, null fuer die erste Seite.
+     * @param pageSize
+     *          hoechstens so viele Elemente in page einfuegen.
+     */
+    void readPage(T last, int pageSize, List<T> page) throws SQLException;
+  }
+
+  private final PageQuery<T> query;
+  private final int pageSize;
+  private final List<T> page;
+  private int next;
+  private boolean lastPage;
+
+  private KeysetStream(PageQuery<T> query, int pageSize) {
+    super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("pageSize " + pageSize);
+    }
+    this.query = query;
+    this.pageSize = pageSize;
+    this.page = new ArrayList<>(pageSize);
+  }
+
+  public static <T> Stream<T> of(PageQuery<T> query, int pageSize) {
+    return StreamSupport.stream(new KeysetStream<>(query, pageSize), false);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (next == page.size()) {
+      if (lastPage) {
+        return false;
+      }
+      T last = page.isEmpty() ? null : page.get(page.size() - 1);
+      page.clear();
+      next = 0;
+      try {
+        query.readPage(last, pageSize, page);
+      } catch (SQLException e) {
+        throw new DataException(e);
+      }
+      // eine unvollstaendige Seite ist die letzte, eine weitere Abfrage spart man sich
+      lastPage = page.size() < pageSize;
+      if (page.isEmpty()) {
+        return false;
+      }
+    }
+    action.accept(page.get(next++));
+    return true;
+  }
+}
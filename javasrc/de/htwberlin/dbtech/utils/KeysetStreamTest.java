@@ -0,0 +1,45 @@
+package de.htwberlin.dbtech.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class KeysetStreamTest {
+  private static final List<Integer> WERTE = Arrays.asList(1, 3, 4, 7, 8, 9, 12);
+
+  private int abfragen;
+
+  // liefert die Werte nach last, wie "where x > ? order by x fetch first n rows only"
+  private KeysetStream.PageQuery<Integer> abfrage() {
+    return (last, pageSize, page) -> {
+      abfragen++;
+      for (Integer w : WERTE) {
+        if ((last == null || w > last) && page.size() < pageSize) {
+          page.add(w);
+        }
+      }
+    };
+  }
+
+  @org.junit.Test
+  public void testAlleSeiten() {
+    assertEquals(WERTE, KeysetStream.of(abfrage(), 3).collect(Collectors.toList()));
+    // 3 + 3 + 1, die unvollstaendige dritte Seite beendet den Stream
+    assertEquals(3, abfragen);
+  }
+
+  @org.junit.Test
+  public void testVolleLetzteSeite() {
+    assertEquals(WERTE, KeysetStream.of(abfrage(), 7).collect(Collectors.toList()));
+    // die volle Seite verlangt eine weitere, leere Abfrage
+    assertEquals(2, abfragen);
+  }
+
+  @org.junit.Test
+  public void testNurBeiBedarf() {
+    assertEquals(Arrays.asList(1, 3), KeysetStream.of(abfrage(), 2).limit(2).collect(Collectors.toList()));
+    assertEquals(1, abfragen);
+  }
+}
@@ -0,0 +1,401 @@
+package de.htwberlin.dbtech.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Vergleicht eine Tabelle mit einer CSV-Datei, ohne eine der beiden in den
+ * Speicher zu laden. Beide Seiten werden nach dem Primaerschluessel sortiert
+ * gelesen und wie beim Mischen im Gleichschritt verglichen; gemerkt werden nur
+ * die ersten maxDiffs Abweichungen.
+ * <p>
+ * Die CSV-Datei hat das Format der Testdaten (siehe FixtureEngine) und muss
+ * nach dem Primaerschluessel sortiert sein, sonst bricht der Vergleich ab.
+ * Schluessel werden numerisch verglichen, wenn beide Werte Zahlen sind, sonst
+ * als Zeichenketten; fuer Textschluessel muss die Datenbank also binaer
+ * sortieren (NLS_SORT=BINARY).
+ */
+public class MergeAssertion {
+  private static final Logger L = LoggerFactory.getLogger(MergeAssertion.class);
+
+  public static final int DEFAULT_MAX_DIFFS = 10;
+  private static final int FETCH_SIZE = 10000;
+
+  /**
+   * Ergebnis eines Vergleichs.
+   */
+  public static class Result {
+    public final long expectedRows;
+    public final long actualRows;
+    public final long differences;
+    public final List<String> firstDifferences;
+
+    Result(long expectedRows, long actualRows, long differences, List<String> firstDifferences) {
+      this.expectedRows = expectedRows;
+      this.actualRows = actualRows;
+      this.differences = differences;
+      this.firstDifferences = firstDifferences;
+    }
+
+    public boolean isEqual() {
+      return differences == 0;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(differences).append(" differences (expected ").append(expectedRows).append(" rows, actual ")
+          .append(actualRows).append(" rows)");
+      for (String d : firstDifferences) {
+        sb.append("\n  ").append(d);
+      }
+      if (differences > firstDifferences.size()) {
+        sb.append("\n  ...");
+      }
+      return sb.toString();
+    }
+  }
+
+  public static void assertTableEquals(String expectedCsv, Connection connection, String table) {
+    assertTableEquals(Paths.get(expectedCsv), connection, table, DEFAULT_MAX_DIFFS);
+  }
+
+  /**
+   * @throws AssertionError
+   *           mit den ersten maxDiffs Abweichungen.
+   */
+  public static void assertTableEquals(Path expectedCsv, Connection connection, String table, int maxDiffs) {
+    Result r = compare(expectedCsv, connection, table, maxDiffs);
+    if (!r.isEqual()) {
+      throw new AssertionError(table + ": " + r);
+    }
+  }
+
+  /**
+   * Vergleicht die Tabelle mit der CSV-Datei. Verglichen werden die Spalten
+   * aus der Kopfzeile der Datei.
+   */
+  public static Result compare(Path expectedCsv, Connection connection, String table, int maxDiffs) {
+    try (CsvRows expected = new CsvRows(expectedCsv)) {
+      String[] columns = expected.columns;
+      int[] keys = keyIndices(columns, primaryKey(connection, table));
+      StringBuilder orderBy = new StringBuilder();
+      for (int k : keys) {
+        orderBy.append(orderBy.length() == 0 ? "" : ", ").append(columns[k]);
+      }
+      String sql = String.join(" ",
+          "select", String.join(", ", columns),
+          "from", table,
+          "order by", orderBy);
+      try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        ps.setFetchSize(FETCH_SIZE);
+        try (ResultSet rs = ps.executeQuery()) {
+          long start = System.nanoTime();
+          Result r = compare(columns, keys, expected, new ResultSetRows(rs, columns.length), maxDiffs);
+          L.debug(table + ": " + r.expectedRows + " rows compared in " + (System.nanoTime() - start) / 1000000 + " ms");
+          return r;
+        }
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+  }
+
+  /**
+   * Mischt zwei nach den Schluesselspalten sortierte Zeilenfolgen. Werte sind
+   * bereits normalisierte Zeichenketten, null fuer NULL.
+   */
+  public static Result compare(String[] columns, int[] keys, Iterator<String[]> expected, Iterator<String[]> actual,
+      int maxDiffs) {
+    List<String> diffs = new ArrayList<>();
+    long differences = 0;
+    long expectedRows = 0;
+    long actualRows = 0;
+    String[] e = next(expected);
+    String[] a = next(actual);
+    String[] previous = null;
+    while (e != null || a != null) {
+      int cmp;
+      if (e == null) {
+        cmp = 1;
+      } else if (a == null) {
+        cmp = -1;
+      } else {
+        cmp = compareKeys(e, a, keys);
+      }
+      String diff = null;
+      if (cmp < 0) {
+        diff = "missing row " + key(columns, keys, e);
+      } else if (cmp > 0) {
+        diff = "unexpected row " + key(columns, keys, a) + " " + Arrays.toString(a);
+      } else {
+        for (int i = 0; i < columns.length; i++) {
+          if (!equal(e[i], a[i])) {
+            diff = "row " + key(columns, keys, e) + ": " + columns[i] + " expected <" + e[i] + "> but was <" + a[i]
+                + ">";
+            break;
+          }
+        }
+      }
+      if (diff != null) {
+        differences++;
+        if (diffs.size() < maxDiffs) {
+          diffs.add(diff);
+        }
+      }
+      if (cmp <= 0) {
+        if (previous != null && compareKeys(previous, e, keys) >= 0) {
+          throw new DataException("expected rows not sorted by primary key at " + key(columns, keys, e));
+        }
+        previous = e;
+        expectedRows++;
+        e = next(expected);
+      }
+      if (cmp >= 0) {
+        actualRows++;
+        a = next(actual);
+      }
+    }
+    return new Result(expectedRows, actualRows, differences, diffs);
+  }
+
+  private static String[] next(Iterator<String[]> it) {
+    return it.hasNext() ? it.next() : null;
+  }
+
+  static int compareKeys(String[] x, String[] y, int[] keys) {
+    for (int k : keys) {
+      int c = compareValues(x[k], y[k]);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  private static int compareValues(String x, String y) {
+    if (x == null || y == null) {
+      return x == null ? (y == null ? 0 : -1) : 1;
+    }
+    BigDecimal bx = number(x);
+    BigDecimal by = bx == null ? null : number(y);
+    if (by != null) {
+      return bx.compareTo(by);
+    }
+    return x.compareTo(y);
+  }
+
+  private static boolean equal(String x, String y) {
+    return x == null ? y == null : y != null && compareValues(x, y) == 0;
+  }
+
+  private static BigDecimal number(String s) {
+    if (s.isEmpty()) {
+      return null;
+    }
+    char c = s.charAt(0);
+    if (!(c >= '0' && c <= '9') && c != '-' && c != '+' && c != '.') {
+      return null;
+    }
+    try {
+      return new BigDecimal(s);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static String key(String[] columns, int[] keys, String[] row) {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < keys.length; i++) {
+      sb.append(i == 0 ? "" : ", ").append(columns[keys[i]]).append('=').append(row[keys[i]]);
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Schreibt einen Spaltenwert so, wie er in den CSV-Dateien steht: Zahlen ohne
+   * Nachkommanullen, Datumswerte ohne Uhrzeit als yyyy-MM-dd.
+   */
+  static String normalize(Object value) {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof BigDecimal) {
+      BigDecimal d = ((BigDecimal) value).stripTrailingZeros();
+      return d.scale() < 0 ? d.setScale(0).toPlainString() : d.toPlainString();
+    }
+    if (value instanceof Timestamp) {
+      String s = value.toString();
+      return s.endsWith(" 00:00:00.0") ? s.substring(0, 10) : s;
+    }
+    return value.toString();
+  }
+
+  private static List<String> primaryKey(Connection connection, String table) throws SQLException {
+    DatabaseMetaData md = connection.getMetaData();
+    TreeMap<Short, String> columns = new TreeMap<>();
+    try (ResultSet rs = md.getPrimaryKeys(null, md.getUserName(), table.toUpperCase(Locale.ROOT))) {
+      while (rs.next()) {
+        columns.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+      }
+    }
+    if (columns.isEmpty()) {
+      throw new DataException("no primary key on " + table);
+    }
+    return new ArrayList<>(columns.values());
+  }
+
+  static int[] keyIndices(String[] columns, List<String> keyColumns) {
+    int[] keys = new int[keyColumns.size()];
+    for (int k = 0; k < keys.length; k++) {
+      keys[k] = -1;
+      for (int i = 0; i < columns.length; i++) {
+        if (columns[i].equalsIgnoreCase(keyColumns.get(k))) {
+          keys[k] = i;
+        }
+      }
+      if (keys[k] < 0) {
+        throw new DataException("key column " + keyColumns.get(k) + " missing in " + Arrays.toString(columns));
+      }
+    }
+    return keys;
+  }
+
+  // liest die CSV-Datei zeilenweise
+  static class CsvRows implements Iterator<String[]>, AutoCloseable {
+    final String[] columns;
+    private final BufferedReader reader;
+    private String[] next;
+
+    CsvRows(Path file) {
+      try {
+        reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        String header = nextLine();
+        if (header == null) {
+          throw new DataException(file + ": no header line");
+        }
+        columns = FixtureEngine.splitLine(header);
+        next = advance();
+      } catch (IOException e) {
+        throw new DataException(e);
+      }
+    }
+
+    private String nextLine() throws IOException {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.trim().isEmpty()) {
+          return line;
+        }
+      }
+      return null;
+    }
+
+    private String[] advance() throws IOException {
+      String line = nextLine();
+      if (line == null) {
+        return null;
+      }
+      String[] row = FixtureEngine.splitLine(line);
+      if (row.length != columns.length) {
+        throw new DataException("expected " + columns.length + " values, got " + row.length + " in line: " + line);
+      }
+      return row;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public String[] next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      String[] r = next;
+      try {
+        next = advance();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return r;
+    }
+
+    @Override
+    public void close() {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        L.error("", e);
+      }
+    }
+  }
+
+  private static class ResultSetRows implements Iterator<String[]> {
+    private final ResultSet rs;
+    private final int columnCount;
+    private String[] next;
+
+    ResultSetRows(ResultSet rs, int columnCount) throws SQLException {
+      this.rs = rs;
+      this.columnCount = columnCount;
+      next = advance();
+    }
+
+    private String[] advance() throws SQLException {
+      if (!rs.next()) {
+        return null;
+      }
+      String[] row = new String[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        row[i] = normalize(rs.getObject(i + 1));
+      }
+      return row;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public String[] next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      String[] r = next;
+      try {
+        next = advance();
+      } catch (SQLException e) {
+        throw new DataException(e);
+      }
+      return r;
+    }
+  }
+}
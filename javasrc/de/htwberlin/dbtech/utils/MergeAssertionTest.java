@@ -0,0 +1,98 @@
+package de.htwberlin.dbtech.utils;
+
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+public class MergeAssertionTest {
+  private static final String[] PLACE = { "TrayID", "PlaceNo", "SampleID" };
+  private static final int[] PLACE_KEY = { 0, 1 };
+
+  private static Iterator<String[]> rows(String[]... rows) {
+    return Arrays.asList(rows).iterator();
+  }
+
+  @org.junit.Test
+  public void testEqual() {
+    MergeAssertion.Result r = MergeAssertion.compare(PLACE, PLACE_KEY,
+        rows(new String[] { "1", "1", "2" }, new String[] { "1", "2", "3" }, new String[] { "10", "1", "4" }),
+        rows(new String[] { "1", "1", "2" }, new String[] { "1", "2", "3.0" }, new String[] { "10", "1", "4" }), 10);
+    Assert.assertTrue(r.toString(), r.isEqual());
+    Assert.assertEquals(3, r.expectedRows);
+    Assert.assertEquals(3, r.actualRows);
+  }
+
+  @org.junit.Test
+  public void testDifferences() {
+    MergeAssertion.Result r = MergeAssertion.compare(PLACE, PLACE_KEY,
+        rows(new String[] { "1", "1", "2" }, new String[] { "1", "2", "3" }, new String[] { "3", "1", "5" }),
+        rows(new String[] { "1", "1", "9" }, new String[] { "2", "1", "4" }, new String[] { "3", "1", "5" }), 2);
+    Assert.assertEquals(3, r.differences);
+    Assert.assertEquals(Arrays.asList("row [TrayID=1, PlaceNo=1]: SampleID expected <2> but was <9>",
+        "missing row [TrayID=1, PlaceNo=2]"), r.firstDifferences);
+  }
+
+  @org.junit.Test(expected = DataException.class)
+  public void testUnsortedExpected() {
+    MergeAssertion.compare(PLACE, PLACE_KEY, rows(new String[] { "2", "1", "2" }, new String[] { "1", "1", "3" }),
+        rows(), 10);
+  }
+
+  @org.junit.Test
+  public void testNormalize() {
+    Assert.assertEquals("2", MergeAssertion.normalize(new BigDecimal("2.00")));
+    Assert.assertEquals("20", MergeAssertion.normalize(new BigDecimal("2E+1")));
+    Assert.assertEquals("2017-03-24", MergeAssertion.normalize(Timestamp.valueOf("2017-03-24 00:00:00")));
+    Assert.assertNull(MergeAssertion.normalize(null));
+  }
+
+  @org.junit.Test
+  public void testCsvRows() {
+    try (MergeAssertion.CsvRows csv = new MergeAssertion.CsvRows(Paths.get("test-data/ue03-04/pre/tray.csv"))) {
+      Assert.assertArrayEquals(new String[] { "TrayID", "DiameterInCM", "Capacity", "ExpirationDate" }, csv.columns);
+      Assert.assertArrayEquals(new String[] { "1", "1", "1", "2017-05-31" }, csv.next());
+      Assert.assertArrayEquals(new String[] { "2", "2", "1", null }, csv.next());
+    }
+  }
+
+  /**
+   * Eine Million Zeilen je Seite, erzeugt beim Lesen; der Vergleich haelt
+   * davon nur die aktuelle Zeile.
+   */
+  @org.junit.Test
+  public void testLargeStreams() {
+    int n = 1000000;
+    MergeAssertion.Result r = MergeAssertion.compare(PLACE, PLACE_KEY, generate(n, -1), generate(n, 777777), 5);
+    Assert.assertEquals(n, r.expectedRows);
+    Assert.assertEquals(1, r.differences);
+    List<String> expected = Arrays.asList("row [TrayID=7778, PlaceNo=78]: SampleID expected <777777> but was <-1>");
+    Assert.assertEquals(expected, r.firstDifferences);
+  }
+
+  // Tablett i / 100 + 1, Platz i % 100 + 1, Probe i; bei changed die Probe -1
+  private static Iterator<String[]> generate(int n, int changed) {
+    return new Iterator<String[]>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < n;
+      }
+
+      @Override
+      public String[] next() {
+        String[] row = { Integer.toString(i / 100 + 1), Integer.toString(i % 100 + 1),
+            Integer.toString(i == changed ? -1 : i) };
+        i++;
+        return row;
+      }
+    };
+  }
+}
@@ -0,0 +1,211 @@
+package de.htwberlin.dbtech.utils;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Liest Oracle-Ausfuehrungsplaene ueber EXPLAIN PLAN und PLAN_TABLE.
+ * <p>
+ * Bei den kleinen Testdaten waehlt der Optimierer fast immer einen Full Scan.
+ * Mit setTableStats() werden deshalb vorher grosse Tabellen vorgetaeuscht,
+ * deleteTableStats() setzt das wieder zurueck.
+ */
+public class QueryPlan {
+  private static final Logger L = LoggerFactory.getLogger(QueryPlan.class);
+
+  private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+  /**
+   * Liefert den Plan einer Anweisung, eine Zeile je Schritt mit Einrueckung
+   * nach Tiefe, z.B. "  INDEX RANGE SCAN IX_TRAY_DIAMETER_EXPIRATION".
+   *
+   * @param sql
+   *          Anweisung mit "?" als Platzhalter, wie sie an prepareStatement
+   *          uebergeben wird.
+   */
+  public static List<String> explain(Connection connection, String sql) {
+    List<String> l = new ArrayList<>();
+    for (Step s : steps(connection, sql)) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < s.depth; i++) {
+        sb.append("  ");
+      }
+      sb.append(s.operation);
+      if (s.options != null) {
+        sb.append(' ').append(s.options);
+      }
+      if (s.objectName != null) {
+        sb.append(' ').append(s.objectName);
+      }
+      l.add(sb.toString());
+    }
+    return l;
+  }
+
+  /**
+   * Liefert die Tabellen, die laut Plan vollstaendig gelesen werden.
+   */
+  public static List<String> fullScans(Connection connection, String sql) {
+    List<String> l = new ArrayList<>();
+    for (Step s : steps(connection, sql)) {
+      if ("TABLE ACCESS".equals(s.operation) && "FULL".equals(s.options)) {
+        l.add(s.objectName);
+      }
+    }
+    return l;
+  }
+
+  /**
+   * Prueft, dass der Plan keine Tabelle vollstaendig liest, und schreibt ihn
+   * ins Log.
+   */
+  public static void assertNoFullScan(Connection connection, String sql) {
+    L.info(sql + "\n" + String.join("\n", explain(connection, sql)));
+    Assert.assertEquals(sql, Collections.emptyList(), fullScans(connection, sql));
+  }
+
+  /**
+   * Baut die Anzahl verschiedener Werte fuer setTableStats() aus Paaren
+   * Spalte, Anzahl, z.B. distinct("TrayID", 100000, "DiameterInCM", 20).
+   */
+  public static Map<String, Long> distinct(Object... columnsAndCounts) {
+    Map<String, Long> m = new HashMap<>();
+    for (int i = 0; i < columnsAndCounts.length; i += 2) {
+      m.put((String) columnsAndCounts[i], ((Number) columnsAndCounts[i + 1]).longValue());
+    }
+    return m;
+  }
+
+  /**
+   * Setzt Optimierer-Statistiken, als ob die Tabelle numRows Zeilen haette.
+   *
+   * @param distinctValues
+   *          Anzahl verschiedener Werte je Spalte; Spalten ohne Angabe
+   *          behalten ihre Statistik.
+   */
+  public static void setTableStats(Connection connection, String table, long numRows,
+      Map<String, Long> distinctValues) {
+    String tableSql = "begin dbms_stats.set_table_stats(ownname => user, tabname => ?,"
+        + " numrows => ?, numblks => ?, no_invalidate => false); end;";
+    String columnSql = "begin dbms_stats.set_column_stats(ownname => user, tabname => ?, colname => ?,"
+        + " distcnt => ?, density => ?, no_invalidate => false); end;";
+    L.info("setTableStats: " + table + " " + numRows + " " + distinctValues);
+    try (CallableStatement cs = connection.prepareCall(tableSql)) {
+      cs.setString(1, table.toUpperCase());
+      cs.setLong(2, numRows);
+      // etwa 100 Zeilen je Block
+      cs.setLong(3, Math.max(1, numRows / 100));
+      cs.execute();
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+    try (CallableStatement cs = connection.prepareCall(columnSql)) {
+      for (Map.Entry<String, Long> e : distinctValues.entrySet()) {
+        long distinct = Math.max(1, e.getValue());
+        cs.setString(1, table.toUpperCase());
+        cs.setString(2, e.getKey().toUpperCase());
+        cs.setLong(3, distinct);
+        cs.setDouble(4, 1.0 / distinct);
+        cs.execute();
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+  }
+
+  public static void deleteTableStats(Connection connection, String... tables) {
+    String sql = "begin dbms_stats.delete_table_stats(ownname => user, tabname => ?, no_invalidate => false); end;";
+    try (CallableStatement cs = connection.prepareCall(sql)) {
+      for (String table : tables) {
+        cs.setString(1, table.toUpperCase());
+        cs.execute();
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+  }
+
+  private static List<Step> steps(Connection connection, String sql) {
+    String statementId = "qp" + NEXT_ID.incrementAndGet();
+    List<Step> l = new ArrayList<>();
+    try {
+      try (Statement s = connection.createStatement()) {
+        s.execute("explain plan set statement_id = '" + statementId + "' for " + withNamedBinds(sql));
+      }
+      String select = String.join(" ",
+          "select depth, operation, options, object_name from plan_table",
+          "where statement_id = ? order by id");
+      try (PreparedStatement ps = connection.prepareStatement(select)) {
+        ps.setString(1, statementId);
+        try (ResultSet rs = ps.executeQuery()) {
+          while (rs.next()) {
+            l.add(new Step(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+          }
+        }
+      }
+      try (PreparedStatement ps = connection.prepareStatement("delete from plan_table where statement_id = ?")) {
+        ps.setString(1, statementId);
+        ps.executeUpdate();
+      }
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+    return l;
+  }
+
+  /**
+   * Ersetzt die JDBC-Platzhalter "?" ausserhalb von Zeichenketten durch :1,
+   * :2, ... EXPLAIN PLAN braucht keine Werte, kennt aber kein "?".
+   */
+  static String withNamedBinds(String sql) {
+    StringBuilder sb = new StringBuilder(sql.length() + 8);
+    boolean inString = false;
+    int n = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (c == '\'') {
+        inString = !inString;
+      }
+      if (c == '?' && !inString) {
+        sb.append(':').append(++n);
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static class Step {
+    final int depth;
+    final String operation;
+    final String options;
+    final String objectName;
+
+    Step(int depth, String operation, String options, String objectName) {
+      this.depth = depth;
+      this.operation = operation;
+      this.options = options;
+      this.objectName = objectName;
+    }
+  }
+}
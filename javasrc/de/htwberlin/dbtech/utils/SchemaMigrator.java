@@ -0,0 +1,280 @@
+package de.htwberlin.dbtech.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Spielt versionierte SQL-Skripte in aufsteigender Reihenfolge ein und
+ * vermerkt sie in der Tabelle schema_history. Die Skripte heissen
+ * V&lt;Version&gt;__&lt;Beschreibung&gt;.sql, z.B. V001__service_indexes.sql.
+ * Bereits eingespielte Versionen werden uebersprungen, wurde ein eingespieltes
+ * Skript nachtraeglich geaendert, bricht migrate() ab.
+ * <p>
+ * Anweisungen enden mit ";" am Zeilenende. PL/SQL-Bloecke (create trigger,
+ * procedure, function, package, type sowie begin und declare) enden wie in
+ * SQL*Plus mit einer Zeile, die nur "/" enthaelt.
+ */
+public class SchemaMigrator {
+  private static final Logger L = LoggerFactory.getLogger(SchemaMigrator.class);
+
+  public static final String DEFAULT_DIRECTORY = "db/proben-kuehlschrank/migrations";
+  public static final String HISTORY_TABLE = "schema_history";
+
+  private static final Pattern SCRIPT = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+  private static final Pattern PLSQL_START = Pattern.compile(
+      "^(create\\s+(or\\s+replace\\s+)?(trigger|procedure|function|package|type)\\b|begin\\b|declare\\b)",
+      Pattern.CASE_INSENSITIVE);
+
+  private final Connection connection;
+  private final Path directory;
+
+  public SchemaMigrator(Connection connection, Path directory) {
+    this.connection = connection;
+    this.directory = directory;
+  }
+
+  /**
+   * Spielt alle noch fehlenden Skripte ein.
+   *
+   * @return die Anzahl der eingespielten Skripte.
+   */
+  public int migrate() {
+    try {
+      createHistoryTable();
+      Map<Integer, Long> applied = appliedVersions();
+      int n = 0;
+      for (Migration m : scan(directory)) {
+        Long checksum = applied.get(m.version);
+        if (checksum == null) {
+          apply(m);
+          n++;
+        } else if (checksum != m.checksum) {
+          throw new DataException("migration V" + m.version + " (" + m.file.getFileName()
+              + ") was changed after it had been applied");
+        }
+      }
+      L.info(n + " migrations applied, " + (applied.size() + n) + " in " + HISTORY_TABLE);
+      return n;
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+  }
+
+  /**
+   * Liefert die Versionen, die in schema_history stehen.
+   */
+  public List<Integer> appliedVersionList() {
+    try {
+      createHistoryTable();
+      List<Integer> l = new ArrayList<>(appliedVersions().keySet());
+      l.sort(Comparator.naturalOrder());
+      return l;
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException(e);
+    }
+  }
+
+  private void createHistoryTable() throws SQLException {
+    String sql = "select count(*) from user_tables where table_name = ?";
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      ps.setString(1, HISTORY_TABLE.toUpperCase());
+      try (ResultSet rs = ps.executeQuery()) {
+        if (rs.next() && rs.getInt(1) > 0) {
+          return;
+        }
+      }
+    }
+    String ddl = String.join(" ",
+        "create table " + HISTORY_TABLE + " (",
+        "  Version integer not null,",
+        "  Description varchar2(200) not null,",
+        "  Checksum number(10) not null,",
+        "  InstalledOn timestamp not null,",
+        "  constraint pk_schema_history primary key(Version))");
+    L.info(ddl);
+    try (Statement s = connection.createStatement()) {
+      s.execute(ddl);
+    }
+  }
+
+  private Map<Integer, Long> appliedVersions() throws SQLException {
+    String sql = "select Version, Checksum from " + HISTORY_TABLE;
+    Map<Integer, Long> m = new HashMap<>();
+    try (PreparedStatement ps = connection.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+      while (rs.next()) {
+        m.put(rs.getInt(1), rs.getLong(2));
+      }
+    }
+    return m;
+  }
+
+  private void apply(Migration m) throws SQLException {
+    L.info("applying " + m.file.getFileName());
+    List<String> statements = statements(read(m.file));
+    try (Statement s = connection.createStatement()) {
+      for (String sql : statements) {
+        L.info(sql);
+        try {
+          s.execute(sql);
+        } catch (SQLException e) {
+          // DDL ist in Oracle nicht transaktional, die Anweisungen davor bleiben bestehen
+          throw new DataException("migration V" + m.version + " failed at: " + sql, e);
+        }
+      }
+    }
+    String sql = "insert into " + HISTORY_TABLE + " (Version, Description, Checksum, InstalledOn) values (?, ?, ?, ?)";
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      ps.setInt(1, m.version);
+      ps.setString(2, m.description);
+      ps.setLong(3, m.checksum);
+      ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+      ps.executeUpdate();
+    }
+    if (!connection.getAutoCommit()) {
+      connection.commit();
+    }
+  }
+
+  /**
+   * Liefert die Skripte des Verzeichnisses aufsteigend nach Version.
+   */
+  static List<Migration> scan(Path directory) {
+    List<Migration> l = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path f : (Iterable<Path>) files::iterator) {
+        Matcher m = SCRIPT.matcher(f.getFileName().toString());
+        if (m.matches()) {
+          l.add(new Migration(Integer.parseInt(m.group(1)), m.group(2).replace('_', ' '), f, checksum(read(f))));
+        }
+      }
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+    l.sort(Comparator.comparingInt(m -> m.version));
+    for (int i = 1; i < l.size(); i++) {
+      if (l.get(i).version == l.get(i - 1).version) {
+        throw new DataException("duplicate migration version " + l.get(i).version + " in " + directory);
+      }
+    }
+    return l;
+  }
+
+  /**
+   * Zerlegt ein Skript in einzelne Anweisungen ohne abschliessendes ";" bzw.
+   * "/". Zeilen, die mit "--" beginnen, werden ausserhalb von PL/SQL-Bloecken
+   * uebergangen.
+   */
+  static List<String> statements(String script) {
+    List<String> l = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    boolean plsql = false;
+    for (String line : script.split("\r?\n")) {
+      String t = line.trim();
+      if (plsql) {
+        if (t.equals("/")) {
+          add(l, current);
+          plsql = false;
+        } else {
+          current.append(line).append('\n');
+        }
+        continue;
+      }
+      if (t.isEmpty() || t.startsWith("--")) {
+        continue;
+      }
+      if (current.length() == 0 && PLSQL_START.matcher(t).find()) {
+        plsql = true;
+        current.append(line).append('\n');
+        continue;
+      }
+      if (t.endsWith(";")) {
+        current.append(t, 0, t.length() - 1);
+        add(l, current);
+      } else {
+        current.append(t).append(' ');
+      }
+    }
+    add(l, current);
+    return l;
+  }
+
+  private static void add(List<String> l, StringBuilder current) {
+    String s = current.toString().trim();
+    if (!s.isEmpty()) {
+      l.add(s);
+    }
+    current.setLength(0);
+  }
+
+  private static String read(Path f) {
+    try {
+      return new String(Files.readAllBytes(f), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+  }
+
+  // Zeilenenden werden vereinheitlicht, damit ein Checkout unter Windows nicht als Aenderung gilt
+  static long checksum(String script) {
+    CRC32 crc = new CRC32();
+    crc.update(script.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+    return crc.getValue();
+  }
+
+  static class Migration {
+    final int version;
+    final String description;
+    final Path file;
+    final long checksum;
+
+    Migration(int version, String description, Path file, long checksum) {
+      this.version = version;
+      this.description = description;
+      this.file = file;
+      this.checksum = checksum;
+    }
+  }
+
+  /**
+   * Spielt die Skripte mit den Zugangsdaten aus DbCred ein.
+   *
+   * @param args
+   *          optional das Verzeichnis der Skripte, sonst
+   *          db/proben-kuehlschrank/migrations.
+   */
+  public static void main(String[] args) {
+    Path dir = Paths.get(args.length > 0 ? args[0] : DEFAULT_DIRECTORY);
+    JdbcUtils.loadDriver(DbCred.driverClass);
+    Connection connection = JdbcUtils.getConnectionViaDriverManager(DbCred.url, DbCred.user, DbCred.password);
+    try {
+      new SchemaMigrator(connection, dir).migrate();
+    } finally {
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package de.htwberlin.dbtech.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+public class SchemaMigratorTest {
+
+  @org.junit.Test
+  public void testStatements() {
+    String script = String.join("\n",
+        "-- Kommentar",
+        "create index ix_a on A(X);",
+        "",
+        "create index ix_b",
+        "  on B(Y, Z);",
+        "create or replace trigger tr_a",
+        "after insert on A for each row",
+        "begin",
+        "  update B set Y = Y + 1;",
+        "end;",
+        "/",
+        "drop index ix_c;");
+    List<String> l = SchemaMigrator.statements(script);
+    assertEquals(4, l.size());
+    assertEquals("create index ix_a on A(X)", l.get(0));
+    assertEquals("create index ix_b on B(Y, Z)", l.get(1));
+    assertTrue(l.get(2).startsWith("create or replace trigger tr_a"));
+    assertTrue(l.get(2).endsWith("end;"));
+    assertEquals("drop index ix_c", l.get(3));
+  }
+
+  @org.junit.Test
+  public void testScan() {
+    List<SchemaMigrator.Migration> l = SchemaMigrator.scan(Paths.get(SchemaMigrator.DEFAULT_DIRECTORY));
+    assertEquals(1, l.get(0).version);
+    for (int i = 1; i < l.size(); i++) {
+      assertTrue(l.get(i - 1).version < l.get(i).version);
+    }
+  }
+
+  @org.junit.Test
+  public void testChecksumIgnoresLineEndings() {
+    assertEquals(SchemaMigrator.checksum("a;\nb;\n"), SchemaMigrator.checksum("a;\r\nb;\r\n"));
+    assertTrue(SchemaMigrator.checksum("a;\n") != SchemaMigrator.checksum("b;\n"));
+  }
+}
@@ -0,0 +1,185 @@
+package de.htwberlin.dbtech.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Zaehlt die Anweisungen, die ueber eine Verbindung zur Datenbank gehen, um
+ * in Tests eine Obergrenze je Dienstmethode festzulegen:
+ *
+ * <pre>
+ * cs.setConnection(StatementCounter.wrap(connection));
+ * StatementCounter.assertMaxRoundTrips(4, () -&gt; cs.transferSample(7, 4));
+ * </pre>
+ *
+ * Als ein Roundtrip zaehlt jedes execute*, executeBatch, commit und rollback.
+ * prepareStatement zaehlt nicht, der Oracle-Treiber schickt die Anweisung erst
+ * mit der Ausfuehrung. Nachgeladene Zeilen grosser Ergebnisse (fetch size)
+ * werden ebenfalls nicht gezaehlt. Gezaehlt wird je Thread und nur innerhalb
+ * von count() bzw. assertMaxRoundTrips().
+ */
+public class StatementCounter {
+
+  private static final ThreadLocal<List<String>> RECORDING = new ThreadLocal<>();
+
+  /**
+   * Verbindung, deren Anweisungen gezaehlt werden. Alle uebrigen Aufrufe gehen
+   * unveraendert an die Verbindung, auch Transaktionen werden geteilt.
+   */
+  public static Connection wrap(Connection connection) {
+    return (Connection) Proxy.newProxyInstance(StatementCounter.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, new ConnectionHandler(connection));
+  }
+
+  /**
+   * Fuehrt r aus und liefert die dabei abgesetzten Anweisungen in der
+   * Reihenfolge der Ausfuehrung.
+   */
+  public static List<String> record(Runnable r) {
+    List<String> outer = RECORDING.get();
+    List<String> l = new ArrayList<>();
+    RECORDING.set(l);
+    try {
+      r.run();
+    } finally {
+      restore(outer, l);
+    }
+    return l;
+  }
+
+  public static int count(Runnable r) {
+    return record(r).size();
+  }
+
+  /**
+   * Fuehrt r aus und scheitert, wenn dabei mehr als max Roundtrips anfallen.
+   * Eine Ausnahme aus r wird weitergereicht, wenn das Budget eingehalten
+   * wurde; so bleiben Tests mit expected = ... unveraendert.
+   *
+   * @throws AssertionError
+   *           mit der Liste der Anweisungen.
+   */
+  public static void assertMaxRoundTrips(int max, Runnable r) {
+    List<String> outer = RECORDING.get();
+    List<String> l = new ArrayList<>();
+    RECORDING.set(l);
+    RuntimeException thrown = null;
+    try {
+      r.run();
+    } catch (RuntimeException e) {
+      thrown = e;
+    } finally {
+      restore(outer, l);
+    }
+    if (l.size() > max) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("expected at most ").append(max).append(" round trips, got ").append(l.size()).append(':');
+      for (String s : l) {
+        sb.append("\n  ").append(s);
+      }
+      AssertionError e = new AssertionError(sb.toString());
+      if (thrown != null) {
+        e.addSuppressed(thrown);
+      }
+      throw e;
+    }
+    if (thrown != null) {
+      throw thrown;
+    }
+  }
+
+  /**
+   * Wie assertMaxRoundTrips(int, Runnable) fuer Methoden mit Ergebnis.
+   */
+  public static <T> T assertMaxRoundTrips(int max, Supplier<T> s) {
+    List<T> result = new ArrayList<>(1);
+    assertMaxRoundTrips(max, () -> {
+      result.add(s.get());
+    });
+    return result.get(0);
+  }
+
+  // verschachtelte Messungen: die aeussere zaehlt die Anweisungen der inneren mit
+  private static void restore(List<String> outer, List<String> inner) {
+    if (outer != null) {
+      outer.addAll(inner);
+      RECORDING.set(outer);
+    } else {
+      RECORDING.remove();
+    }
+  }
+
+  private static void note(String what) {
+    List<String> l = RECORDING.get();
+    if (l != null) {
+      l.add(what);
+    }
+  }
+
+  private static Object invoke(Object target, Method m, Object[] args) throws Throwable {
+    try {
+      return m.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static class ConnectionHandler implements InvocationHandler {
+    private final Connection connection;
+
+    ConnectionHandler(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+      String name = m.getName();
+      if (name.equals("commit") || name.equals("rollback")) {
+        note(name);
+      }
+      Object result = StatementCounter.invoke(connection, m, args);
+      if (result instanceof Statement) {
+        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+        Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+            : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[] { type },
+            new StatementHandler((Statement) result, sql, (Connection) proxy));
+      }
+      return result;
+    }
+  }
+
+  private static class StatementHandler implements InvocationHandler {
+    private final Statement statement;
+    private final String sql;
+    private final Connection connection;
+
+    StatementHandler(Statement statement, String sql, Connection connection) {
+      this.statement = statement;
+      this.sql = sql;
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+      String name = m.getName();
+      if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+        note("batch: " + sql);
+      } else if (name.startsWith("execute")) {
+        note(args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql);
+      } else if (name.equals("getConnection")) {
+        return connection;
+      }
+      return StatementCounter.invoke(statement, m, args);
+    }
+  }
+}
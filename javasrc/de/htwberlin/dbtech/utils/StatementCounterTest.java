@@ -0,0 +1,77 @@
+package de.htwberlin.dbtech.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+public class StatementCounterTest {
+
+  private static Connection fakeConnection() {
+    return new FakeJdbc().connection();
+  }
+
+  private static void work(Connection c) {
+    try (PreparedStatement ps = c.prepareStatement("select 1 from dual where 1 = ?");
+        Statement s = c.createStatement()) {
+      ps.setInt(1, 1);
+      ps.executeQuery();
+      ps.addBatch();
+      ps.executeBatch();
+      s.executeUpdate("delete from Place");
+      c.commit();
+    } catch (SQLException e) {
+      throw new DataException(e);
+    }
+  }
+
+  @org.junit.Test
+  public void testRecord() {
+    Connection c = StatementCounter.wrap(fakeConnection());
+    List<String> l = StatementCounter.record(() -> work(c));
+    Assert.assertEquals(Arrays.asList("select 1 from dual where 1 = ?", "batch: select 1 from dual where 1 = ?",
+        "delete from Place", "commit"), l);
+    // ausserhalb einer Messung wird nichts gezaehlt
+    work(c);
+    Assert.assertEquals(0, StatementCounter.count(() -> {
+    }));
+  }
+
+  @org.junit.Test
+  public void testBudget() {
+    Connection c = StatementCounter.wrap(fakeConnection());
+    StatementCounter.assertMaxRoundTrips(4, () -> work(c));
+    Assert.assertEquals("x", StatementCounter.assertMaxRoundTrips(0, () -> "x"));
+    try {
+      StatementCounter.assertMaxRoundTrips(3, () -> work(c));
+      Assert.fail();
+    } catch (AssertionError e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("expected at most 3 round trips, got 4:"));
+    }
+  }
+
+  @org.junit.Test(expected = IllegalStateException.class)
+  public void testExceptionWithinBudget() {
+    Connection c = StatementCounter.wrap(fakeConnection());
+    StatementCounter.assertMaxRoundTrips(4, () -> {
+      work(c);
+      throw new IllegalStateException();
+    });
+  }
+
+  @org.junit.Test
+  public void testNested() {
+    Connection c = StatementCounter.wrap(fakeConnection());
+    int outer = StatementCounter.count(() -> {
+      Assert.assertEquals(4, StatementCounter.count(() -> work(c)));
+      work(c);
+    });
+    Assert.assertEquals(8, outer);
+  }
+}
@@ -0,0 +1,239 @@
+package de.htwberlin.dbtech.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.dbunit.IDatabaseTester;
+import org.dbunit.JdbcDatabaseTester;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.htwberlin.dbtech.exceptions.DataException;
+
+/**
+ * Zugang der Tests zur Datenbank. Ohne weitere Angaben ist das das Schema aus
+ * DbCred. Der ParallelTestRunner weist jedem Thread ein eigenes Schema
+ * (Worker) zu, damit Testklassen gleichzeitig laufen koennen, ohne sich die
+ * Tabellen zu teilen.
+ * <p>
+ * Die Schemata heissen &lt;DbCred.user&gt;_W1 ... _Wn und haben das Passwort
+ * aus DbCred. Anlegen muss sie ein DBA, z.B.
+ *
+ * <pre>
+ * create user pks_w1 identified by ... quota unlimited on users;
+ * grant create session, create table, create trigger, create procedure to pks_w1;
+ * </pre>
+ *
+ * Tabellen, Migrationen und das PL/SQL-Paket spielt provision() ein.
+ */
+public class TestDb {
+  private static final Logger L = LoggerFactory.getLogger(TestDb.class);
+
+  /**
+   * Anzahl Verbindungen, mit denen restore() die Testdaten laedt. Bei mehr als
+   * einer werden die Tabellen stufenweise nach Fremdschluesseln gleichzeitig
+   * geladen.
+   */
+  public static final String LOADERS_PROPERTY = "dbtech.test.loaders";
+
+  static final String PACKAGE_DIRECTORY = "db/aufgaben/ue04";
+
+  private static final InheritableThreadLocal<Worker> CURRENT = new InheritableThreadLocal<>();
+  private static volatile ForeignKeyGraph graph;
+
+  /**
+   * Ein Schema samt Zugangsdaten.
+   */
+  public static class Worker {
+    public final int id;
+    public final String user;
+    public final String password;
+    public final String schema;
+
+    public Worker(int id, String user, String password, String schema) {
+      this.id = id;
+      this.user = user;
+      this.password = password;
+      this.schema = schema;
+    }
+
+    @Override
+    public String toString() {
+      return schema;
+    }
+  }
+
+  /**
+   * Die Schemata fuer n parallele Worker.
+   */
+  public static List<Worker> workers(int n) {
+    List<Worker> l = new ArrayList<>();
+    for (int i = 1; i <= n; i++) {
+      String user = DbCred.user + "_W" + i;
+      l.add(new Worker(i, user, DbCred.password, user.toUpperCase(Locale.ROOT)));
+    }
+    return l;
+  }
+
+  /**
+   * Das dem aktuellen Thread zugewiesene Schema, sonst das aus DbCred.
+   */
+  public static Worker current() {
+    Worker w = CURRENT.get();
+    return w != null ? w : new Worker(0, DbCred.user, DbCred.password, DbCred.schema);
+  }
+
+  public static void assign(Worker worker) {
+    CURRENT.set(worker);
+  }
+
+  public static void release() {
+    CURRENT.remove();
+  }
+
+  public static IDatabaseTester tester() throws ClassNotFoundException {
+    Worker w = current();
+    return new JdbcDatabaseTester(DbCred.driverClass, DbCred.url, w.user, w.password, w.schema);
+  }
+
+  public static Connection connect() {
+    return connect(current());
+  }
+
+  public static Connection connect(Worker w) {
+    JdbcUtils.loadDriver(DbCred.driverClass);
+    return JdbcUtils.getConnectionViaDriverManager(DbCred.url, w.user, w.password);
+  }
+
+  public static ForeignKeyGraph foreignKeys() {
+    ForeignKeyGraph g = graph;
+    if (g == null) {
+      g = ForeignKeyGraph.fromDefaultDirectory();
+      graph = g;
+    }
+    return g;
+  }
+
+  /**
+   * Stellt die Testdaten im Schema des aktuellen Threads her, siehe
+   * LOADERS_PROPERTY.
+   */
+  public static void restore(FixtureEngine.Fixture fixture, Connection connection) {
+    int loaders = Integer.getInteger(LOADERS_PROPERTY, 1);
+    if (loaders <= 1) {
+      fixture.restore(connection);
+      return;
+    }
+    List<Connection> connections = new ArrayList<>();
+    connections.add(connection);
+    try {
+      for (int i = 1; i < loaders; i++) {
+        connections.add(connect());
+      }
+      fixture.restoreParallel(connections, foreignKeys());
+    } finally {
+      for (int i = 1; i < connections.size(); i++) {
+        JdbcUtils.closeConnectionQuietly(connections.get(i));
+      }
+    }
+  }
+
+  /**
+   * Legt fehlende Tabellen in der Reihenfolge der Fremdschluessel an, spielt
+   * die Migrationen ein und installiert das PL/SQL-Paket aus ue04.
+   */
+  public static void provision(Worker w) {
+    long start = System.nanoTime();
+    Connection connection = connect(w);
+    try {
+      ForeignKeyGraph g = foreignKeys();
+      Set<String> existing = existingTables(connection);
+      Set<String> migrated = migratedTables();
+      int created = 0;
+      try (Statement s = connection.createStatement()) {
+        for (List<String> level : g.levels()) {
+          for (String table : level) {
+            String sql = g.createStatement(table);
+            if (sql != null && !existing.contains(table.toUpperCase(Locale.ROOT))
+                && !migrated.contains(table)) {
+              s.execute(sql);
+              created++;
+            }
+          }
+        }
+      }
+      new SchemaMigrator(connection, Paths.get(SchemaMigrator.DEFAULT_DIRECTORY)).migrate();
+      installPackage(connection);
+      L.info("provision " + w + ": " + created + " tables created in " + (System.nanoTime() - start) / 1000000
+          + " ms");
+    } catch (SQLException e) {
+      L.error("", e);
+      throw new DataException("cannot provision schema " + w, e);
+    } finally {
+      JdbcUtils.closeConnectionQuietly(connection);
+    }
+  }
+
+  // Tabellen aus Migrationen legt der SchemaMigrator an, sonst fehlt der Eintrag in schema_history
+  private static Set<String> migratedTables() {
+    Set<String> s = new HashSet<>();
+    Path directory = Paths.get(SchemaMigrator.DEFAULT_DIRECTORY);
+    if (Files.isDirectory(directory)) {
+      for (SchemaMigrator.Migration m : SchemaMigrator.scan(directory)) {
+        ForeignKeyGraph g = ForeignKeyGraph.parse(read(m.file));
+        for (String table : g.tables()) {
+          if (g.createStatement(table) != null) {
+            s.add(table);
+          }
+        }
+      }
+    }
+    return s;
+  }
+
+  private static Set<String> existingTables(Connection connection) throws SQLException {
+    Set<String> s = new HashSet<>();
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery("select table_name from user_tables")) {
+      while (rs.next()) {
+        s.add(rs.getString(1));
+      }
+    }
+    return s;
+  }
+
+  private static void installPackage(Connection connection) throws SQLException {
+    try (Statement s = connection.createStatement()) {
+      for (String name : new String[] { "pkg.txt", "pkg-body.txt" }) {
+        Path f = Paths.get(PACKAGE_DIRECTORY, name);
+        if (Files.isRegularFile(f)) {
+          String sql = read(f).trim();
+          if (sql.endsWith("/")) {
+            sql = sql.substring(0, sql.length() - 1).trim();
+          }
+          s.execute(sql);
+        }
+      }
+    }
+  }
+
+  private static String read(Path f) {
+    try {
+      return new String(Files.readAllBytes(f), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new DataException(e);
+    }
+  }
+}